@@ -0,0 +1,103 @@
+package nablarch.fw.handler;
+
+import nablarch.core.transaction.Transaction;
+import nablarch.core.transaction.TransactionFactory;
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+
+/**
+ * ハンドラのベンチマークで共通に使用するクラス群。
+ * <p/>
+ * フレームワークのオーバヘッドのみを計測するため、
+ * データリーダはメモリ上のデータを返し、業務アクション及びトランザクションは何もしない。
+ */
+final class BenchmarkSupport {
+
+    /** 1回の計測で処理するレコード件数 */
+    static final int RECORDS = 10000;
+
+    /** ベンチマーク用のログ設定を使用するためのJVM引数 */
+    static final String LOG_SETTINGS = "-Dnablarch.log.filePath=classpath:benchmark-log.properties";
+
+    /** 隠蔽コンストラクタ。 */
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 指定された件数の連番を返すデータリーダ。
+     * <p/>
+     * マルチスレッドで使用されるため、各メソッドは同期化している。
+     */
+    static final class InMemoryDataReader implements DataReader<Integer> {
+
+        /** 読み込むレコード件数 */
+        private final int records;
+
+        /** 読み込んだレコード件数 */
+        private int count;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param records 読み込むレコード件数
+         */
+        InMemoryDataReader(int records) {
+            this.records = records;
+        }
+
+        @Override
+        public synchronized Integer read(ExecutionContext ctx) {
+            return (count < records) ? Integer.valueOf(count++) : null;
+        }
+
+        @Override
+        public synchronized boolean hasNext(ExecutionContext ctx) {
+            return count < records;
+        }
+
+        @Override
+        public void close(ExecutionContext ctx) {
+            // nop
+        }
+    }
+
+    /**
+     * 何もしない業務アクション。
+     */
+    static final class NopAction implements Handler<Object, Result> {
+
+        /** 処理結果 */
+        private static final Result SUCCESS = new Result.Success();
+
+        @Override
+        public Result handle(Object data, ExecutionContext context) {
+            return SUCCESS;
+        }
+    }
+
+    /**
+     * 何もしないトランザクションを返す{@link TransactionFactory}。
+     */
+    static final class NopTransactionFactory implements TransactionFactory {
+
+        /** 何もしないトランザクション */
+        private static final Transaction TRANSACTION = new Transaction() {
+            public void begin() {
+                // nop
+            }
+            public void commit() {
+                // nop
+            }
+            public void rollback() {
+                // nop
+            }
+        };
+
+        @Override
+        public Transaction getTransaction(String resourceName) {
+            return TRANSACTION;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package nablarch.fw.handler;
+
+import static nablarch.fw.handler.BenchmarkSupport.LOG_SETTINGS;
+import static nablarch.fw.handler.BenchmarkSupport.RECORDS;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.handler.BenchmarkSupport.InMemoryDataReader;
+import nablarch.fw.handler.BenchmarkSupport.NopAction;
+
+/**
+ * {@link RequestThreadLoopHandler} -> {@link DataReadHandler} -> 業務アクション のハンドラ構成で、
+ * 1レコードあたりの処理時間を計測するベンチマーク。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(RECORDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = LOG_SETTINGS)
+public class RequestThreadLoopHandlerBenchmark {
+
+    /** 実行コンテキストを再利用するか否か */
+    @Param({"false", "true"})
+    public boolean reuseContext;
+
+    /** ハンドラキュー */
+    private List<Handler<?, ?>> handlerQueue;
+
+    /** ハンドラキューを構築する。 */
+    @Setup
+    public void setUp() {
+        handlerQueue = Arrays.<Handler<?, ?>>asList(
+                new RequestThreadLoopHandler().setReuseContext(reuseContext),
+                new DataReadHandler(),
+                new NopAction());
+    }
+
+    /**
+     * 全レコードを処理する。
+     *
+     * @return 処理結果
+     */
+    @Benchmark
+    public Object loop() {
+        ExecutionContext context = new ExecutionContext();
+        context.setHandlerQueue(handlerQueue);
+        context.setDataReader(new InMemoryDataReader(RECORDS));
+        return context.handleNext(null);
+    }
+}
@@ -0,0 +1,102 @@
+package nablarch.fw.launcher;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import nablarch.core.repository.SystemRepository;
+
+/**
+ * ランチャーの起動処理の各コストを計測するベンチマーク。
+ * <p/>
+ * 以下のコストを個別に計測する。
+ * <ul>
+ *     <li>起動オプションの解析</li>
+ *     <li>システムリポジトリの初期化(コンポーネントの件数毎)</li>
+ *     <li>ログの初期化</li>
+ *     <li>何もしないハンドラキューを使用した、{@link Main#execute(CommandLine)}の起動から終了まで</li>
+ * </ul>
+ * 計測方法(初回実行と繰り返し実行)はサブクラスで指定する。
+ *
+ * @see LauncherColdStartBenchmark
+ * @see LauncherWarmStartBenchmark
+ */
+public abstract class LauncherBenchmark {
+
+    /** 起動オプション */
+    private static final String[] ARGS = LauncherBenchmarkSupport.args(
+            LauncherBenchmarkSupport.NOP_HANDLER_QUEUE_CONFIG);
+
+    /**
+     * システムリポジトリの初期化に使用するコンポーネント設定ファイル。
+     */
+    @State(Scope.Benchmark)
+    public static class ComponentConfig {
+
+        /** コンポーネント設定ファイルに定義するコンポーネントの件数 */
+        @Param({"10", "100", "1000"})
+        public int components;
+
+        /** コンポーネント設定ファイルのパス */
+        private String path;
+
+        /**
+         * コンポーネント設定ファイルを作成する。
+         *
+         * @throws IOException 入出力例外
+         */
+        @Setup
+        public void setUp() throws IOException {
+            path = LauncherBenchmarkSupport.createComponentConfig(components);
+        }
+    }
+
+    /**
+     * 起動オプションを解析する。
+     *
+     * @return 起動オプション
+     */
+    @Benchmark
+    public CommandLine parseCommandLine() {
+        return new CommandLine(ARGS);
+    }
+
+    /**
+     * システムリポジトリを初期化する。
+     *
+     * @param config コンポーネント設定ファイル
+     * @return 初期化したシステムリポジトリから取得したコンポーネント
+     */
+    @Benchmark
+    public Object setUpSystemRepository(ComponentConfig config) {
+        SystemRepository.clear();
+        new Main().setUpSystemRepository(config.path);
+        return SystemRepository.get("bean0");
+    }
+
+    /**
+     * ログを初期化する。
+     *
+     * @return 初期化に使用したランチャー
+     */
+    @Benchmark
+    public Main initializeLog() {
+        Main main = new Main();
+        main.initializeLog();
+        return main;
+    }
+
+    /**
+     * 何もしないハンドラキューを起動から終了まで実行する。
+     *
+     * @return 終了コード
+     */
+    @Benchmark
+    public int execute() {
+        return Main.execute(new CommandLine(ARGS));
+    }
+}
@@ -0,0 +1,116 @@
+package nablarch.fw.launcher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+
+/**
+ * ランチャーのベンチマークで共通に使用するクラス群。
+ */
+public final class LauncherBenchmarkSupport {
+
+    /** ベンチマーク用のログ設定を使用するためのJVM引数 */
+    static final String LOG_SETTINGS = "-Dnablarch.log.filePath=classpath:benchmark-log.properties";
+
+    /** 何もしないハンドラキューを定義したコンポーネント設定ファイル */
+    static final String NOP_HANDLER_QUEUE_CONFIG = "nablarch/fw/launcher/benchmark-main.xml";
+
+    /** 隠蔽コンストラクタ。 */
+    private LauncherBenchmarkSupport() {
+    }
+
+    /**
+     * 起動オプションを生成する。
+     *
+     * @param diConfig コンポーネント設定ファイルのパス
+     * @return 起動オプション
+     */
+    static String[] args(String diConfig) {
+        return new String[] {
+                "-diConfig", diConfig,
+                "-requestPath", "benchmark/BM0001",
+                "-userId", "benchmark",
+                "-option1", "value1",
+                "-option2", "value2",
+                "argument1", "argument2"
+        };
+    }
+
+    /**
+     * 指定された件数のコンポーネントを定義したコンポーネント設定ファイルを一時ファイルに作成する。
+     * <p/>
+     * 各コンポーネントは、直前に定義したコンポーネントを参照する。
+     *
+     * @param components コンポーネントの件数
+     * @return 作成したコンポーネント設定ファイルのパス
+     * @throws IOException 入出力例外
+     */
+    static String createComponentConfig(int components) throws IOException {
+        File file = File.createTempFile("benchmark-components-", ".xml");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<component-configuration xmlns=\"http://tis.co.jp/nablarch/component-configuration\">\n");
+            for (int i = 0; i < components; i++) {
+                writer.write("  <component name=\"bean" + i + "\" class=\"" + Bean.class.getName() + "\">\n"
+                        + "    <property name=\"value\" value=\"value" + i + "\" />\n");
+                if (i > 0) {
+                    writer.write("    <property name=\"previous\" ref=\"bean" + (i - 1) + "\" />\n");
+                }
+                writer.write("  </component>\n");
+            }
+            writer.write("</component-configuration>\n");
+        } finally {
+            writer.close();
+        }
+        return "file:" + file.getAbsolutePath();
+    }
+
+    /**
+     * コンポーネント設定ファイルに定義するコンポーネント。
+     */
+    public static class Bean {
+
+        /** 値 */
+        private String value;
+
+        /** 直前に定義したコンポーネント */
+        private Bean previous;
+
+        /**
+         * 値を設定する。
+         *
+         * @param value 値
+         */
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+        /**
+         * 直前に定義したコンポーネントを設定する。
+         *
+         * @param previous 直前に定義したコンポーネント
+         */
+        public void setPrevious(Bean previous) {
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * 何もしない業務アクション。
+     */
+    public static class NopAction implements Handler<CommandLine, Result> {
+
+        @Override
+        public Result handle(CommandLine commandLine, ExecutionContext context) {
+            return new Result.Success();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package nablarch.fw.launcher;
+
+import static nablarch.fw.launcher.LauncherBenchmarkSupport.LOG_SETTINGS;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ランチャーの起動処理の各コストを、起動直後のJVMで1回だけ実行して計測するベンチマーク。
+ * <p/>
+ * 計測毎にJVMを起動するため、クラスロードやJITコンパイル前の処理時間を含む。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 10, jvmArgsAppend = LOG_SETTINGS)
+public class LauncherColdStartBenchmark extends LauncherBenchmark {
+}
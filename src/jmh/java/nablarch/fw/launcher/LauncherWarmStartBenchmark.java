@@ -0,0 +1,25 @@
+package nablarch.fw.launcher;
+
+import static nablarch.fw.launcher.LauncherBenchmarkSupport.LOG_SETTINGS;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ランチャーの起動処理の各コストを、同一JVM内で繰り返し実行して計測するベンチマーク。
+ * <p/>
+ * {@link LauncherDaemon}のように、起動済みのJVMでバッチを実行する場合の処理時間に相当する。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = LOG_SETTINGS)
+public class LauncherWarmStartBenchmark extends LauncherBenchmark {
+}
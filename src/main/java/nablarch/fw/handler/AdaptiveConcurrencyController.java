@@ -0,0 +1,281 @@
+package nablarch.fw.handler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+
+/**
+ * レコード毎の処理時間とスループットに応じて、並行実行数を動的に増減させるクラス。
+ * <p/>
+ * 本クラスは{@link MultiThreadExecutionHandler}に設定して使用する。
+ * {@link MultiThreadExecutionHandler}は並行実行スレッド数分のスレッドを起動するが、
+ * 同時にレコードを処理できるスレッドの数(有効スレッド数)は本クラスによって制限される。
+ * 有効スレッド数を超えたスレッドは、レコードを読み込んだ後、そのレコードを処理する前に待機する。
+ * <p/>
+ * 有効スレッド数は、調整間隔({@link #setAdjustInterval(long)})毎に、
+ * 以下の要領(AIMD方式)で最小値({@link #setMinConcurrentNumber(int)})から
+ * 並行実行スレッド数の範囲内で調整する。
+ * <pre>
+ * - 調整間隔内の平均処理時間が、これまでに観測した最小の平均処理時間に
+ *   許容倍率({@link #setLatencyTolerance(double)})を乗じた値以下であれば、有効スレッド数を1増やす。
+ * - 上記を超えている場合は、有効スレッド数に減少率({@link #setDecreaseFactor(double)})を乗じた値に減らす。
+ * </pre>
+ * 有効スレッド数を変更した場合は、変更内容と判断に使用した統計値をINFOレベルでログ出力する。
+ * <p/>
+ * なお、待機はレコードの読み込み後にトランザクションの中で行われるため、コミット間隔が大きい場合は
+ * 未コミットのトランザクションを保持したまま待機する可能性がある点に注意すること。
+ *
+ * @see MultiThreadExecutionHandler#setAdaptiveConcurrencyController(AdaptiveConcurrencyController)
+ */
+public class AdaptiveConcurrencyController {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(AdaptiveConcurrencyController.class);
+
+    //------------------------------------------------------------- Settings
+    /** 有効スレッド数の最小値 */
+    private int minConcurrentNumber = 1;
+
+    /** 有効スレッド数の初期値(0以下の場合は最小値) */
+    private int initialConcurrentNumber = 0;
+
+    /** 調整間隔(単位:msec) */
+    private long adjustInterval = 5000;
+
+    /** 平均処理時間の許容倍率 */
+    private double latencyTolerance = 2.0;
+
+    /** 有効スレッド数の減少率 */
+    private double decreaseFactor = 0.75;
+
+    //-------------------------------------------------- Internal structure
+    /** 状態へのアクセスを制御するロック */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** 実行許可が得られたことを通知する条件 */
+    private final Condition permitted = lock.newCondition();
+
+    /** 有効スレッド数の最大値 */
+    private int maxConcurrentNumber = 1;
+
+    /** 現在の有効スレッド数 */
+    private int limit = 1;
+
+    /** レコードを処理中のスレッド数 */
+    private int active = 0;
+
+    /** 現在の調整間隔の開始時刻(単位:nsec) */
+    private long windowStart = 0;
+
+    /** 現在の調整間隔内で処理したレコード数 */
+    private long windowCount = 0;
+
+    /** 現在の調整間隔内の処理時間の合計(単位:nsec) */
+    private long windowLatency = 0;
+
+    /** これまでに観測した最小の平均処理時間(単位:nsec) */
+    private long minLatency = Long.MAX_VALUE;
+
+    /**
+     * 処理開始前の初期化を行う。
+     *
+     * @param maxConcurrentNumber 有効スレッド数の最大値(並行実行スレッド数)
+     */
+    public void initialize(int maxConcurrentNumber) {
+        lock.lock();
+        try {
+            this.maxConcurrentNumber = maxConcurrentNumber;
+            int min = Math.min(minConcurrentNumber, maxConcurrentNumber);
+            int initial = initialConcurrentNumber > 0 ? initialConcurrentNumber : min;
+            limit = Math.max(min, Math.min(initial, maxConcurrentNumber));
+            active = 0;
+            windowStart = System.nanoTime();
+            windowCount = 0;
+            windowLatency = 0;
+            minLatency = Long.MAX_VALUE;
+            LOGGER.logInfo(String.format(
+                    "adaptive concurrency control started. active thread count = [%d] (min = [%d], max = [%d])",
+                    limit, min, maxConcurrentNumber));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * レコードを処理するための実行許可を取得する。
+     * <p/>
+     * 処理中のスレッド数が有効スレッド数に達している場合は、実行許可が得られるまで待機する。
+     *
+     * @throws InterruptedException 待機中に割り込みが発生した場合
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (active >= limit) {
+                permitted.await();
+            }
+            active++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 実行許可を返却する。
+     */
+    public void release() {
+        lock.lock();
+        try {
+            active--;
+            permitted.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * レコードの処理時間を記録する。
+     * <p/>
+     * 調整間隔が経過していれば、有効スレッド数の調整を行う。
+     *
+     * @param latencyNanos レコードの処理時間(単位:nsec)
+     */
+    public void record(long latencyNanos) {
+        lock.lock();
+        try {
+            windowCount++;
+            windowLatency += latencyNanos;
+            long now = System.nanoTime();
+            long elapsed = now - windowStart;
+            if (elapsed >= TimeUnit.MILLISECONDS.toNanos(adjustInterval)) {
+                adjust(elapsed);
+                windowStart = now;
+                windowCount = 0;
+                windowLatency = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 現在の調整間隔内の統計値に応じて有効スレッド数を調整する。
+     * <p/>
+     * ロックを取得した状態で呼び出すこと。
+     *
+     * @param elapsed 調整間隔の経過時間(単位:nsec)
+     */
+    private void adjust(long elapsed) {
+        long avgLatency = windowLatency / windowCount;
+        minLatency = Math.min(minLatency, avgLatency);
+        int min = Math.min(minConcurrentNumber, maxConcurrentNumber);
+
+        int newLimit;
+        if (avgLatency <= minLatency * latencyTolerance) {
+            newLimit = Math.min(limit + 1, maxConcurrentNumber);
+        } else {
+            newLimit = Math.max((int) (limit * decreaseFactor), min);
+        }
+        if (newLimit == limit) {
+            return;
+        }
+        LOGGER.logInfo(String.format(
+                "active thread count was changed. [%d] -> [%d] "
+              + "average latency(ms) = [%.3f], minimum latency(ms) = [%.3f], throughput(records/sec) = [%.1f]",
+                limit, newLimit,
+                avgLatency / 1000000.0, minLatency / 1000000.0,
+                windowCount * 1000000000.0 / elapsed));
+        limit = newLimit;
+        permitted.signalAll();
+    }
+
+    /**
+     * 現在の有効スレッド数を取得する。
+     *
+     * @return 現在の有効スレッド数
+     */
+    public int getCurrentConcurrentNumber() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //------------------------------------------------------------- Accessors
+    /**
+     * 有効スレッド数の最小値を設定する。
+     * <p/>
+     * デフォルト値は1である。
+     *
+     * @param minConcurrentNumber 有効スレッド数の最小値
+     */
+    public void setMinConcurrentNumber(int minConcurrentNumber) {
+        if (minConcurrentNumber < 1) {
+            throw new IllegalArgumentException(
+                    "minConcurrentNumber must be greater than or equal to 1.");
+        }
+        this.minConcurrentNumber = minConcurrentNumber;
+    }
+
+    /**
+     * 有効スレッド数の初期値を設定する。
+     * <p/>
+     * 設定を省略した場合は最小値から開始する。
+     *
+     * @param initialConcurrentNumber 有効スレッド数の初期値
+     */
+    public void setInitialConcurrentNumber(int initialConcurrentNumber) {
+        this.initialConcurrentNumber = initialConcurrentNumber;
+    }
+
+    /**
+     * 有効スレッド数の調整間隔(単位:msec)を設定する。
+     * <p/>
+     * デフォルト値は5000msecである。
+     *
+     * @param adjustInterval 調整間隔(単位:msec)
+     */
+    public void setAdjustInterval(long adjustInterval) {
+        if (adjustInterval <= 0) {
+            throw new IllegalArgumentException(
+                    "adjustInterval must be greater than 0.");
+        }
+        this.adjustInterval = adjustInterval;
+    }
+
+    /**
+     * 平均処理時間の許容倍率を設定する。
+     * <p/>
+     * 調整間隔内の平均処理時間が、観測した最小の平均処理時間にこの倍率を乗じた値を超えた場合、
+     * 有効スレッド数を減らす。デフォルト値は2.0である。
+     *
+     * @param latencyTolerance 平均処理時間の許容倍率
+     */
+    public void setLatencyTolerance(double latencyTolerance) {
+        if (latencyTolerance < 1.0) {
+            throw new IllegalArgumentException(
+                    "latencyTolerance must be greater than or equal to 1.0.");
+        }
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * 有効スレッド数の減少率を設定する。
+     * <p/>
+     * デフォルト値は0.75である。
+     *
+     * @param decreaseFactor 有効スレッド数の減少率(0より大きく1未満)
+     */
+    public void setDecreaseFactor(double decreaseFactor) {
+        if (decreaseFactor <= 0.0 || decreaseFactor >= 1.0) {
+            throw new IllegalArgumentException(
+                    "decreaseFactor must be greater than 0.0 and less than 1.0.");
+        }
+        this.decreaseFactor = decreaseFactor;
+    }
+}
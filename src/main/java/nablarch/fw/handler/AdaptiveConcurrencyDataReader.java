@@ -0,0 +1,91 @@
+package nablarch.fw.handler;
+
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+
+/**
+ * {@link AdaptiveConcurrencyController}による並行実行数の制御を行うデータリーダ。
+ * <p/>
+ * 各スレッドは、レコードを読み込んだ後に実行許可を取得し、レコードの処理が終わった時点で
+ * 実行許可の取得からの経過時間をレコードの処理時間として記録した上で実行許可を返却する。
+ * レコードの処理の終了は、{@link DataReadHandler}が後続ハンドラの処理を終えた時点とする。
+ * {@link DataReadHandler}を使用しない場合は、次のレコードを読み込む際に返却する。
+ * <p/>
+ * 委譲先のデータリーダの読み込みは、他のスレッドの処理を待つ場合がある。
+ * ({@link PartitionedDataReader}で、他のスレッドのレーンが上限まで埋まっている場合など)
+ * 実行許可を保持したまま待機するとデッドロックとなるため、次のレコードの読み込みは
+ * 実行許可を返却した状態で行う。
+ * なお、レコードの処理中に行われる次のレコードの有無の判定
+ * ({@link LoopHandler#isAboutToCommit(ExecutionContext)}など)では実行許可を返却しない。
+ *
+ * @param <TData> 読み込むデータの型
+ */
+class AdaptiveConcurrencyDataReader<TData> implements DataReader<TData> {
+
+    /** レコードの処理の終了時に実行許可を返却するため、本クラスのインスタンスを格納するリクエストスコープ変数名 */
+    static final String REQUEST_SCOPE_KEY = ExecutionContext.FW_PREFIX + "AdaptiveConcurrencyDataReader";
+
+    /** 委譲先のデータリーダ */
+    private final DataReader<TData> delegate;
+
+    /** 並行実行数の制御オブジェクト */
+    private final AdaptiveConcurrencyController controller;
+
+    /** 各スレッドが実行許可を取得した時刻(単位:nsec)。実行許可を保持していない場合はnull */
+    private final ThreadLocal<Long> acquiredAt = new ThreadLocal<Long>();
+
+    /**
+     * コンストラクタ。
+     *
+     * @param delegate 委譲先のデータリーダ
+     * @param controller 並行実行数の制御オブジェクト
+     */
+    AdaptiveConcurrencyDataReader(DataReader<TData> delegate, AdaptiveConcurrencyController controller) {
+        this.delegate = delegate;
+        this.controller = controller;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 保持している実行許可を返却し、委譲先のデータリーダから読み込んだ後、実行許可を取得する。
+     */
+    public TData read(ExecutionContext ctx) {
+        release();
+        TData data = delegate.read(ctx);
+        if (data == null) {
+            return null;
+        }
+        try {
+            controller.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for a permit to process.", e);
+        }
+        acquiredAt.set(System.nanoTime());
+        return data;
+    }
+
+    /** {@inheritDoc} */
+    public boolean hasNext(ExecutionContext ctx) {
+        return delegate.hasNext(ctx);
+    }
+
+    /** {@inheritDoc} */
+    public void close(ExecutionContext ctx) {
+        delegate.close(ctx);
+    }
+
+    /**
+     * カレントスレッドが実行許可を保持している場合は、処理時間を記録した上で返却する。
+     */
+    void release() {
+        Long start = acquiredAt.get();
+        if (start == null) {
+            return;
+        }
+        acquiredAt.remove();
+        controller.record(System.nanoTime() - start);
+        controller.release();
+    }
+}
@@ -0,0 +1,172 @@
+package nablarch.fw.handler;
+
+import java.util.Random;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+
+/**
+ * {@link ProcessResidentHandler}のデータ監視間隔を、処理対象データの有無に応じて変化させるクラス。
+ * <p/>
+ * 処理対象データが存在した場合は、待機せずに次の処理を開始する。
+ * 処理対象データが存在しない場合は、最小間隔から開始して、データが存在しない状態が続く度に
+ * 待機時間を倍率分延ばしていき、最大間隔に達した後は最大間隔で待機する。
+ * <p/>
+ * 複数の常駐プロセスが同じタイミングでデータベースに問い合わせることがないよう、
+ * 待機時間には揺らぎ(ジッタ)を加える。
+ * 待機時間の基準値が変化した場合は、変化後の値をINFOレベルでログ出力する。
+ * <p/>
+ * 処理対象データの有無は、{@link DataReadHandler}がデータを読み込んだか否かで判定する。
+ * また、本クラスは状態を持つため、複数の{@link ProcessResidentHandler}で共有しないこと。
+ * <p/>
+ * 以下は、最小100ms、最大30秒の範囲で監視間隔を変化させる場合の設定例である。
+ * <pre>
+ * &lt;component class="nablarch.fw.handler.ProcessResidentHandler">
+ *   &lt;property name="adaptivePollingInterval">
+ *     &lt;component class="nablarch.fw.handler.AdaptivePollingInterval">
+ *       &lt;property name="minInterval" value="100" />
+ *       &lt;property name="maxInterval" value="30000" />
+ *     &lt;/component>
+ *   &lt;/property>
+ * &lt;/component>
+ * </pre>
+ *
+ * @see ProcessResidentHandler#setAdaptivePollingInterval(AdaptivePollingInterval)
+ */
+public class AdaptivePollingInterval {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(AdaptivePollingInterval.class);
+
+    /** 最小間隔(単位:msec) */
+    private long minInterval = 100;
+
+    /** 最大間隔(単位:msec) */
+    private long maxInterval = 60000;
+
+    /** データが存在しなかった場合に間隔を延ばす倍率 */
+    private double multiplier = 2.0;
+
+    /** 待機時間に加える揺らぎの割合 */
+    private double jitterRatio = 0.2;
+
+    /** 揺らぎの生成に使用する乱数 */
+    private final Random random;
+
+    /** 現在の待機時間の基準値(単位:msec) */
+    private long currentInterval = 0;
+
+    /**
+     * コンストラクタ。
+     */
+    public AdaptivePollingInterval() {
+        this(new Random());
+    }
+
+    /**
+     * コンストラクタ。
+     *
+     * @param random 揺らぎの生成に使用する乱数
+     */
+    AdaptivePollingInterval(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * 次の処理までの待機時間を求める。
+     *
+     * @param dataFound 直前の処理で処理対象データが存在した場合は{@code true}
+     * @return 待機時間(単位:msec)
+     */
+    public long next(boolean dataFound) {
+        long interval;
+        if (dataFound) {
+            interval = 0;
+        } else if (currentInterval == 0) {
+            interval = minInterval;
+        } else {
+            interval = (long) Math.min((double) maxInterval, currentInterval * multiplier);
+        }
+        if (interval != currentInterval) {
+            LOGGER.logInfo(String.format("DATA WATCH INTERVAL WAS CHANGED = [%dms]", interval));
+            currentInterval = interval;
+        }
+        return applyJitter(interval);
+    }
+
+    /**
+     * 待機時間に揺らぎを加える。
+     *
+     * @param interval 待機時間の基準値(単位:msec)
+     * @return 揺らぎを加えた待機時間(単位:msec)
+     */
+    private long applyJitter(long interval) {
+        if (interval <= 0 || jitterRatio <= 0) {
+            return interval;
+        }
+        double delta = interval * jitterRatio * (random.nextDouble() * 2 - 1);
+        return Math.max(1L, Math.round(interval + delta));
+    }
+
+    /**
+     * 最小間隔(単位:msec)を設定する。
+     * <p/>
+     * 処理対象データが存在しなくなった直後の待機時間となる。
+     * 設定を省略した場合は100msとなる。
+     *
+     * @param minInterval 最小間隔(単位:msec)
+     */
+    public void setMinInterval(long minInterval) {
+        if (minInterval <= 0) {
+            throw new IllegalArgumentException(
+                    "min interval must be greater than 0. specified value is:" + minInterval);
+        }
+        this.minInterval = minInterval;
+    }
+
+    /**
+     * 最大間隔(単位:msec)を設定する。
+     * <p/>
+     * 設定を省略した場合は60000msとなる。
+     *
+     * @param maxInterval 最大間隔(単位:msec)
+     */
+    public void setMaxInterval(long maxInterval) {
+        if (maxInterval <= 0) {
+            throw new IllegalArgumentException(
+                    "max interval must be greater than 0. specified value is:" + maxInterval);
+        }
+        this.maxInterval = maxInterval;
+    }
+
+    /**
+     * データが存在しなかった場合に間隔を延ばす倍率を設定する。
+     * <p/>
+     * 設定を省略した場合は2.0となる。
+     *
+     * @param multiplier 倍率(1.0以上)
+     */
+    public void setMultiplier(double multiplier) {
+        if (multiplier < 1.0) {
+            throw new IllegalArgumentException(
+                    "multiplier must be 1.0 or more. specified value is:" + multiplier);
+        }
+        this.multiplier = multiplier;
+    }
+
+    /**
+     * 待機時間に加える揺らぎの割合を設定する。
+     * <p/>
+     * 待機時間は、基準値に対して±(基準値×割合)の範囲で変動する。
+     * 設定を省略した場合は0.2となる。0を設定した場合は揺らぎを加えない。
+     *
+     * @param jitterRatio 揺らぎの割合(0以上1以下)
+     */
+    public void setJitterRatio(double jitterRatio) {
+        if (jitterRatio < 0 || jitterRatio > 1) {
+            throw new IllegalArgumentException(
+                    "jitter ratio must be between 0 and 1. specified value is:" + jitterRatio);
+        }
+        this.jitterRatio = jitterRatio;
+    }
+}
@@ -0,0 +1,58 @@
+package nablarch.fw.handler;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * {@link LoopHandler}の処理位置(チェックポイント)を永続化するインタフェース。
+ * <p/>
+ * チェックポイントは、データリーダから読み込んでコミット済みとなったレコード件数である。
+ * {@link LoopHandler}は、コミットの直前に{@link #save(String, long)}を呼び出すため、
+ * 本インタフェースの実装は{@link LoopHandler}が管理するトランザクションと同じデータベース接続
+ * ({@code DbConnectionContext#getConnection()}で取得する接続)を使用すること。
+ * これにより、業務処理の更新とチェックポイントの更新が同一トランザクションで確定する。
+ * <p/>
+ * 以下に、チェックポイントを保持するテーブルを使用した実装例を示す。
+ * <pre>
+ * {@code
+ * public class DbCheckpointStore implements CheckpointStore {
+ *     public Long load(String checkpointId) {
+ *         SqlPStatement statement = DbConnectionContext.getConnection().prepareStatement(
+ *                 "SELECT POSITION FROM BATCH_CHECKPOINT WHERE CHECKPOINT_ID = ?");
+ *         statement.setString(1, checkpointId);
+ *         SqlResultSet rs = statement.retrieve();
+ *         return rs.isEmpty() ? null : rs.get(0).getLong("POSITION");
+ *     }
+ *
+ *     public void save(String checkpointId, long position) {
+ *         // CHECKPOINT_IDに対応するレコードを更新(存在しない場合は登録)する。
+ *     }
+ * }
+ * }
+ * </pre>
+ *
+ * @see LoopHandler#setCheckpointStore(CheckpointStore)
+ */
+@Published(tag = "architect")
+public interface CheckpointStore {
+
+    /** 全てのレコードの処理が完了したことを表すチェックポイント */
+    long COMPLETED = -1L;
+
+    /**
+     * チェックポイントを取得する。
+     *
+     * @param checkpointId チェックポイントID
+     * @return チェックポイント(保存されていない場合は{@code null})
+     */
+    Long load(String checkpointId);
+
+    /**
+     * チェックポイントを保存する。
+     * <p/>
+     * 本メソッドは{@link LoopHandler}のトランザクション内で呼び出される。
+     *
+     * @param checkpointId チェックポイントID
+     * @param position コミット済みのレコード件数(全てのレコードの処理が完了した場合は{@link #COMPLETED})
+     */
+    void save(String checkpointId, long position);
+}
@@ -0,0 +1,307 @@
+package nablarch.fw.handler;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.handler.retry.RetryUtil;
+import nablarch.fw.results.ServiceUnavailable;
+
+/**
+ * 後続処理が依存するデータベースや外部サービスの障害時に、後続ハンドラの呼び出しを遮断するハンドラ。
+ * <p/>
+ * 本ハンドラは、以下の3つの状態を持つ。
+ * <pre>
+ * ----------+----------------------------------------------------------------------
+ * CLOSED    | 後続ハンドラを呼び出す(通常の状態)。
+ *           | 障害を表す例外が連続して{@link #setFailureThreshold(int)}回発生した場合は、OPENに遷移する。
+ * ----------+----------------------------------------------------------------------
+ * OPEN      | 後続ハンドラを呼び出さずに、{@link ServiceUnavailable}を送出する。
+ *           | {@link #setWaitWhileOpen(boolean)}に{@code true}を設定した場合は、
+ *           | 例外を送出せずにOPENが終了するまで待機する。
+ *           | OPENに遷移してから{@link #setOpenDuration(long)}で設定した時間が経過した場合は、HALF_OPENに遷移する。
+ * ----------+----------------------------------------------------------------------
+ * HALF_OPEN | 1件のリクエストに限り、試行として後続ハンドラを呼び出す。
+ *           | 試行が成功した場合はCLOSEDに、障害を表す例外が発生した場合はOPENに遷移する。
+ *           | 試行中の他のリクエストは、OPENと同様に扱う。
+ * ----------+----------------------------------------------------------------------
+ * </pre>
+ * 障害を表す例外は、リトライ可能な例外({@link RetryUtil#isRetryable(Throwable)})と
+ * {@link ServiceUnavailable}である。
+ * それ以外の例外は、後続ハンドラの処理が依存先に到達したものとみなし、成功として扱う。
+ * いずれの例外も、本ハンドラは捕捉した例外をそのまま再送出する。
+ * <p/>
+ * OPEN中に送出する{@link ServiceUnavailable}は、{@link ProcessResidentHandler}や
+ * {@link RequestThreadLoopHandler}により一定時間待機した上で再度処理されるため、
+ * 障害中に{@link RetryHandler}のリトライを消費し続けることはない。
+ * このため、本ハンドラは{@link ProcessResidentHandler}や{@link RequestThreadLoopHandler}の後続に配置する。
+ * <p/>
+ * 状態の遷移はログに出力する。
+ * また、現在の状態や障害の発生状況は{@link #getState()}などで取得できるため、監視に使用することができる。
+ * <p/>
+ * 以下は、本ハンドラの設定例である。
+ * <pre>
+ * &lt;component name="circuitBreakerHandler" class="nablarch.fw.handler.CircuitBreakerHandler">
+ *   &lt;property name="failureThreshold" value="5" />
+ *   &lt;property name="openDuration" value="30000" />
+ * &lt;/component>
+ * </pre>
+ */
+public class CircuitBreakerHandler implements Handler<Object, Object> {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(CircuitBreakerHandler.class);
+
+    /**
+     * 状態。
+     */
+    public enum State {
+        /** 後続ハンドラを呼び出す状態 */
+        CLOSED,
+        /** 後続ハンドラの呼び出しを遮断する状態 */
+        OPEN,
+        /** 試行として1件のリクエストのみ後続ハンドラを呼び出す状態 */
+        HALF_OPEN
+    }
+
+    /** OPENに遷移する連続障害回数 */
+    private int failureThreshold = 5;
+
+    /** OPENを継続する時間(単位:msec) */
+    private long openDuration = 30000;
+
+    /** OPEN中に例外を送出せずに待機するか否か */
+    private boolean waitWhileOpen = false;
+
+    /** 現在の状態 */
+    private State state = State.CLOSED;
+
+    /** 連続障害回数 */
+    private int consecutiveFailureCount = 0;
+
+    /** OPENに遷移した時刻(単位:nsec) */
+    private long openedAt;
+
+    /** HALF_OPENで試行中のリクエストが存在するか否か */
+    private boolean trialInProgress = false;
+
+    /** OPENに遷移した回数 */
+    private long openCount = 0;
+
+    /** {@inheritDoc} */
+    public Object handle(Object data, ExecutionContext context) {
+        boolean trial = acquire();
+        Object result;
+        try {
+            result = context.handleNext(data);
+        } catch (RuntimeException e) {
+            if (isFailure(e)) {
+                onFailure(trial);
+            } else {
+                onSuccess(trial);
+            }
+            throw e;
+        } catch (Error e) {
+            releaseTrial(trial);
+            throw e;
+        }
+        onSuccess(trial);
+        return result;
+    }
+
+    /**
+     * 後続ハンドラの呼び出し可否を判定する。
+     * <p/>
+     * 呼び出しができない場合は、{@link ServiceUnavailable}を送出するか、呼び出しが可能になるまで待機する。
+     *
+     * @return HALF_OPENの試行として呼び出す場合は{@code true}
+     */
+    private synchronized boolean acquire() {
+        while (true) {
+            long waitNanos;
+            if (state == State.CLOSED) {
+                return false;
+            }
+            if (state == State.OPEN) {
+                waitNanos = TimeUnit.MILLISECONDS.toNanos(openDuration) - (System.nanoTime() - openedAt);
+                if (waitNanos <= 0) {
+                    transit(State.HALF_OPEN);
+                    LOGGER.logInfo("circuit breaker is half-open. a trial request will be processed.");
+                    continue;
+                }
+            } else {
+                if (!trialInProgress) {
+                    trialInProgress = true;
+                    return true;
+                }
+                // 試行の完了まで待機する(完了時に通知される)。
+                waitNanos = 0;
+            }
+            if (!waitWhileOpen) {
+                ServiceUnavailable unavailable = new ServiceUnavailable("circuit breaker is " + state + '.');
+                unavailable.setRetryAfter(new Date(System.currentTimeMillis()
+                        + TimeUnit.NANOSECONDS.toMillis(Math.max(waitNanos, 0))));
+                throw unavailable;
+            }
+            try {
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                } else {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * 障害を表す例外か否かを判定する。
+     *
+     * @param e 後続ハンドラで発生した例外
+     * @return 障害を表す例外の場合は{@code true}
+     */
+    private boolean isFailure(RuntimeException e) {
+        return e instanceof ServiceUnavailable || RetryUtil.isRetryable(e);
+    }
+
+    /**
+     * 後続ハンドラが成功した場合の状態遷移を行う。
+     *
+     * @param trial HALF_OPENの試行として呼び出した場合は{@code true}
+     */
+    private synchronized void onSuccess(boolean trial) {
+        if (trial) {
+            trialInProgress = false;
+            transit(State.CLOSED);
+            LOGGER.logInfo("circuit breaker was closed because the trial request succeeded.");
+        }
+        if (state == State.CLOSED) {
+            consecutiveFailureCount = 0;
+        }
+    }
+
+    /**
+     * 後続ハンドラで障害を表す例外が発生した場合の状態遷移を行う。
+     * <p/>
+     * OPENに遷移した後に完了したリクエストの障害は計数しない。
+     *
+     * @param trial HALF_OPENの試行として呼び出した場合は{@code true}
+     */
+    private synchronized void onFailure(boolean trial) {
+        if (trial) {
+            trialInProgress = false;
+            open();
+            LOGGER.logWarn("circuit breaker was opened again because the trial request failed.");
+        } else if (state == State.CLOSED && ++consecutiveFailureCount >= failureThreshold) {
+            open();
+            LOGGER.logWarn("circuit breaker was opened. consecutive failure count = ["
+                    + consecutiveFailureCount + ']');
+        }
+    }
+
+    /**
+     * HALF_OPENの試行を、状態を変更せずに終了する。
+     *
+     * @param trial HALF_OPENの試行として呼び出した場合は{@code true}
+     */
+    private synchronized void releaseTrial(boolean trial) {
+        if (trial) {
+            trialInProgress = false;
+            notifyAll();
+        }
+    }
+
+    /**
+     * OPENに遷移する。
+     */
+    private void open() {
+        openedAt = System.nanoTime();
+        openCount++;
+        transit(State.OPEN);
+    }
+
+    /**
+     * 状態を遷移し、待機中のスレッドに通知する。
+     *
+     * @param next 遷移後の状態
+     */
+    private void transit(State next) {
+        state = next;
+        notifyAll();
+    }
+
+    /**
+     * 現在の状態を取得する。
+     *
+     * @return 現在の状態
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 現在の連続障害回数を取得する。
+     *
+     * @return 連続障害回数
+     */
+    public synchronized int getConsecutiveFailureCount() {
+        return consecutiveFailureCount;
+    }
+
+    /**
+     * OPENに遷移した回数を取得する。
+     *
+     * @return OPENに遷移した回数
+     */
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+
+    /**
+     * OPENに遷移する連続障害回数を設定する。
+     * <p/>
+     * デフォルトは5回。
+     *
+     * @param failureThreshold 連続障害回数
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException(
+                    "failure threshold must be greater than 0. specified value is:" + failureThreshold);
+        }
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * OPENを継続する時間(単位:msec)を設定する。
+     * <p/>
+     * この時間が経過した後、HALF_OPENに遷移して試行を行う。デフォルトは30秒。
+     *
+     * @param openDuration OPENを継続する時間(単位:msec)
+     */
+    public void setOpenDuration(long openDuration) {
+        if (openDuration <= 0) {
+            throw new IllegalArgumentException(
+                    "open duration must be greater than 0. specified value is:" + openDuration);
+        }
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * OPEN中に、例外を送出せずに後続ハンドラを呼び出せるようになるまで待機するか否かを設定する。
+     * <p/>
+     * {@code true}を設定した場合は、OPENが終了するまで(HALF_OPENで他のリクエストが試行中の場合は試行が完了するまで)
+     * 呼び出し元のスレッドを待機させる。
+     * デフォルトは{@code false}({@link ServiceUnavailable}を送出する)。
+     *
+     * @param waitWhileOpen 待機する場合は{@code true}
+     */
+    public void setWaitWhileOpen(boolean waitWhileOpen) {
+        this.waitWhileOpen = waitWhileOpen;
+    }
+}
@@ -0,0 +1,52 @@
+package nablarch.fw.handler;
+
+/**
+ * 未コミットのレコード件数がコミット間隔に達した場合にコミットする{@link CommitPolicy}実装クラス。
+ * <p/>
+ * {@link LoopHandler#setCommitInterval(int)}を設定した場合のデフォルトの判定方式である。
+ */
+public class CommitIntervalPolicy implements CommitPolicy {
+
+    /** コミット間隔 */
+    private int commitInterval;
+
+    /**
+     * デフォルトコンストラクタ。
+     */
+    public CommitIntervalPolicy() {
+    }
+
+    /**
+     * コンストラクタ。
+     *
+     * @param commitInterval コミット間隔
+     */
+    public CommitIntervalPolicy(int commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * この実装ではサイズを使用しないため、常に0を返す。
+     */
+    public long estimateSize(Object data) {
+        return 0;
+    }
+
+    /** {@inheritDoc} */
+    public boolean shouldCommit(Status status) {
+        return commitInterval <= 1 || status.getCount() >= commitInterval;
+    }
+
+    /**
+     * コミット間隔を設定する。
+     * <p/>
+     * 0以下の値を設定した場合や、設定を省略した場合のコミット間隔は1となる。
+     *
+     * @param commitInterval コミット間隔
+     */
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+}
@@ -0,0 +1,100 @@
+package nablarch.fw.handler;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * {@link LoopHandler}がトランザクションをコミットするか否かを判定するインタフェース。
+ * <p/>
+ * {@link LoopHandler}は、1レコードの処理が終わる度に、そのレコードを含む未コミットの処理状況
+ * ({@link Status})を引数に{@link #shouldCommit(Status)}を呼び出し、
+ * {@code true}が返された場合にコミットを行う。
+ * <p/>
+ * {@link LoopHandler#isAboutToCommit(nablarch.fw.ExecutionContext)}による事前判定と
+ * 実際のコミット判定を一致させるため、本インタフェースの実装は同じ処理状況に対して
+ * 常に同じ結果を返すこと。
+ * また、本インタフェースの実装は複数スレッドから同時に呼び出されるため、状態を持たないこと。
+ *
+ * @see LoopHandler#setCommitPolicy(CommitPolicy)
+ * @see CommitIntervalPolicy
+ * @see ThresholdCommitPolicy
+ */
+@Published(tag = "architect")
+public interface CommitPolicy {
+
+    /**
+     * レコードのサイズ(バイト数)を見積もる。
+     * <p/>
+     * 見積もった値は{@link Status#getPayloadSize()}に累積される。
+     * 判定にサイズを使用しない場合は0を返すこと。
+     *
+     * @param data 処理したレコード
+     * @return 見積もったバイト数
+     */
+    long estimateSize(Object data);
+
+    /**
+     * コミットを行うか否かを判定する。
+     *
+     * @param status 現在のレコードを含む未コミットの処理状況
+     * @return コミットを行う場合は{@code true}
+     */
+    boolean shouldCommit(Status status);
+
+    /**
+     * 未コミットの処理状況。
+     */
+    @Published(tag = "architect")
+    final class Status {
+
+        /** 未コミットのレコード件数 */
+        private final long count;
+
+        /** 前回のコミットから現在のレコードの処理開始までの経過時間(単位:msec) */
+        private final long elapsedTime;
+
+        /** 未コミットのレコードのサイズ合計(単位:byte) */
+        private final long payloadSize;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param count 未コミットのレコード件数
+         * @param elapsedTime 前回のコミットから現在のレコードの処理開始までの経過時間(単位:msec)
+         * @param payloadSize 未コミットのレコードのサイズ合計(単位:byte)
+         */
+        public Status(long count, long elapsedTime, long payloadSize) {
+            this.count = count;
+            this.elapsedTime = elapsedTime;
+            this.payloadSize = payloadSize;
+        }
+
+        /**
+         * 未コミットのレコード件数を取得する。
+         *
+         * @return 未コミットのレコード件数
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 前回のコミット(初回は処理開始)から、現在のレコードの処理開始までの経過時間を取得する。
+         * <p/>
+         * 事前判定と実際の判定が一致するよう、レコードの処理開始時点の値を使用する。
+         *
+         * @return 経過時間(単位:msec)
+         */
+        public long getElapsedTime() {
+            return elapsedTime;
+        }
+
+        /**
+         * 未コミットのレコードのサイズ合計を取得する。
+         *
+         * @return 未コミットのレコードのサイズ合計(単位:byte)
+         */
+        public long getPayloadSize() {
+            return payloadSize;
+        }
+    }
+}
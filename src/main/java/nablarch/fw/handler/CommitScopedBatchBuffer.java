@@ -0,0 +1,163 @@
+package nablarch.fw.handler;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * {@link LoopHandler}のトランザクションの範囲で、更新対象のレコードを溜め込むバッファ。
+ * <p/>
+ * 業務アクションは、レコード毎にSQLを実行する代わりに、{@link #add(BatchWriter, Object)}で
+ * 更新対象のレコードを本バッファに登録する。
+ * 登録されたレコードは、{@link LoopHandler}がトランザクションをコミットする直前に
+ * {@link BatchWriter}毎にまとめて書き込まれる({@link #flush()})。
+ * これにより、{@link BatchWriter}の実装でJDBCのバッチ更新を使用すれば、
+ * コミット間隔分のレコードを1回のバッチ実行で書き込むことができる。
+ * <p/>
+ * コミットが行われるか否かは{@link LoopHandler#isAboutToCommit(nablarch.fw.ExecutionContext)}で判定できる。
+ * 同メソッドが{@code true}を返す場合、現在のレコードの処理後に本バッファの内容が書き込まれる。
+ * <p/>
+ * トランザクションがロールバックされた場合、バッファに残っているレコードは破棄される。
+ * <p/>
+ * 以下に、{@link BatchWriter}の実装例を示す。
+ * <pre>
+ * {@code
+ * public class InsertWriter implements CommitScopedBatchBuffer.BatchWriter<Person> {
+ *     public void write(List<Person> records) {
+ *         ParameterizedSqlPStatement statement = DbConnectionContext.getConnection()
+ *                 .prepareParameterizedSqlStatementBySqlId("INSERT_PERSON");
+ *         for (Person person : records) {
+ *             statement.addBatchObject(person);
+ *         }
+ *         statement.executeBatch();
+ *     }
+ * }
+ * }
+ * </pre>
+ * 業務アクションからは以下のように使用する。
+ * <pre>
+ * {@code
+ * LoopHandler.getBatchBuffer(ctx).add(insertWriter, person);
+ * }
+ * </pre>
+ *
+ * @see LoopHandler#getBatchBuffer(nablarch.fw.ExecutionContext)
+ */
+@Published(tag = "architect")
+public class CommitScopedBatchBuffer {
+
+    /**
+     * バッファに溜め込んだレコードをまとめて書き込むインタフェース。
+     * <p/>
+     * 本インタフェースの実装は、{@link LoopHandler}のトランザクション内で呼び出される。
+     * 書き込み時に例外が送出された場合、トランザクションはロールバックされる。
+     *
+     * @param <T> レコードの型
+     */
+    @Published(tag = "architect")
+    public interface BatchWriter<T> {
+
+        /**
+         * レコードをまとめて書き込む。
+         *
+         * @param records 書き込むレコード(登録順)
+         */
+        void write(List<T> records);
+    }
+
+    /** 書き込みオブジェクト毎のレコード(書き込みオブジェクトの登録順) */
+    private final Map<BatchWriter<?>, List<Object>> buffers = new IdentityHashMap<BatchWriter<?>, List<Object>>();
+
+    /** 書き込みオブジェクトの登録順 */
+    private final List<BatchWriter<?>> writers = new ArrayList<BatchWriter<?>>();
+
+    /** 書き込みオブジェクト毎のレコード件数の上限(0以下の場合は上限なし) */
+    private final int maxBatchSize;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param maxBatchSize 書き込みオブジェクト毎のレコード件数の上限(0以下の場合は上限なし)
+     */
+    public CommitScopedBatchBuffer(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * レコードをバッファに登録する。
+     * <p/>
+     * 書き込みオブジェクト毎のレコード件数が上限に達した場合は、
+     * コミットを待たずにその書き込みオブジェクトのレコードを書き込む。
+     *
+     * @param writer 書き込みオブジェクト
+     * @param record レコード
+     * @param <T> レコードの型
+     */
+    public <T> void add(BatchWriter<T> writer, T record) {
+        if (writer == null) {
+            throw new IllegalArgumentException("writer must not be null.");
+        }
+        List<Object> records = buffers.get(writer);
+        if (records == null) {
+            records = new ArrayList<Object>();
+            buffers.put(writer, records);
+            writers.add(writer);
+        }
+        records.add(record);
+        if (maxBatchSize > 0 && records.size() >= maxBatchSize) {
+            write(writer, records);
+        }
+    }
+
+    /**
+     * バッファに溜め込んだレコードを書き込む。
+     * <p/>
+     * 書き込みは、書き込みオブジェクトが最初に登録された順に行う。
+     * 書き込みが完了したレコードはバッファから取り除く。
+     */
+    public void flush() {
+        for (BatchWriter<?> writer : writers) {
+            List<Object> records = buffers.get(writer);
+            if (!records.isEmpty()) {
+                write(writer, records);
+            }
+        }
+    }
+
+    /**
+     * バッファに溜め込んだレコードを破棄する。
+     */
+    public void clear() {
+        buffers.clear();
+        writers.clear();
+    }
+
+    /**
+     * バッファに溜め込まれている未書き込みのレコード件数を返す。
+     *
+     * @return 未書き込みのレコード件数
+     */
+    public int size() {
+        int size = 0;
+        for (List<Object> records : buffers.values()) {
+            size += records.size();
+        }
+        return size;
+    }
+
+    /**
+     * 書き込みオブジェクトを使用してレコードを書き込み、バッファから取り除く。
+     *
+     * @param writer 書き込みオブジェクト
+     * @param records レコード
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void write(BatchWriter writer, List<Object> records) {
+        List<Object> copy = new ArrayList<Object>(records);
+        records.clear();
+        writer.write(copy);
+    }
+}
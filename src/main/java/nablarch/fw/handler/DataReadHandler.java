@@ -1,10 +1,15 @@
 package nablarch.fw.handler;
 
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import nablarch.common.handler.threadcontext.ExecutionIdAttribute;
 import nablarch.common.handler.threadcontext.ThreadContextAttribute;
 import nablarch.core.ThreadContext;
 import nablarch.core.log.Logger;
 import nablarch.core.log.LoggerManager;
+import nablarch.fw.DataReader;
 import nablarch.fw.DataReader.NoMoreRecord;
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.Handler;
@@ -20,6 +25,9 @@ import nablarch.fw.TransactionEventCallback;
  * <br/>
  * データが存在しない場合(読み込んだデータがnull)の場合は、
  * 後続のハンドラに処理は移譲せずに{@link NoMoreRecord}を返却する。
+ * <p/>
+ * {@link #setChunkSize(int)}に2以上の値を設定した場合は、最大でその件数のデータをまとめて読み込み、
+ * 読み込んだデータを格納した{@link java.util.List}をリクエストとして後続のハンドラに処理を委譲する。
  *
  * @author hisaaki sioiri
  */
@@ -29,23 +37,35 @@ public class DataReadHandler implements Handler<Object, Result> {
     private static final Logger LOGGER = LoggerManager.get(
             DataReadHandler.class);
 
+    /**
+     * {@link LoopHandler}による分割再実行中であることを示すリクエストスコープ変数名。
+     * <p/>
+     * 再実行するレコードは読み込み済みであるため、分割再実行中は読み込み回数の上限と、
+     * 読み込み件数の計数(進捗状況やJava Flight Recorderのイベントを含む)の対象外とする。
+     */
+    static final String REPLAY_FLAG_KEY = ExecutionContext.FW_PREFIX + "DataReadHandler_replay";
+
     /** {@inheritDoc} */
     public Result handle(Object o, ExecutionContext context) {
 
-        if (maxCount > 0) {
-            synchronized (this) {
-                countUp(context);
-            }
+        boolean replaying = context.getRequestScopedVar(REPLAY_FLAG_KEY) != null;
+        Object event = replaying ? null : FlightRecorderEvent.DATA_READ.begin();
+        long startTime = (progressReporter != null) ? System.nanoTime() : 0L;
+        if (maxCount > 0 && !replaying) {
+            limitReader(context);
         }
         boolean isNextRecord = context.hasNextData();
         if (!isNextRecord) {
             return new NoMoreRecord();
         }
-        Object requestData = context.readNextData();
+        Object requestData = (chunkSize > 1) ? readChunk(context) : context.readNextData();
         if (requestData == null) {
             return new NoMoreRecord();
         }
-        
+        if (!replaying) {
+            countRead(context, requestData);
+        }
+
         // 入力データごとに実行時IDを発番する。
         ThreadContext.setExecutionId(
                 (String) this.executionIdAttribute.getValue(o, context)
@@ -63,6 +83,79 @@ public class DataReadHandler implements Handler<Object, Result> {
         } catch (Error e) {
             writeWarnLog(requestData, e);
             throw e;
+        } finally {
+            FlightRecorderEvent.DATA_READ.commit(event, context);
+            if (progressReporter != null && !replaying) {
+                progressReporter.recordProcessed(
+                        requestData instanceof RecordChunk ? ((RecordChunk) requestData).size() : 1, startTime);
+            }
+            releasePermit(context);
+        }
+    }
+
+    /**
+     * {@link MultiThreadExecutionHandler}で並行実行数を制御している場合に、
+     * レコードの処理の終了に伴って実行許可を返却する。
+     *
+     * @param context 実行コンテキスト
+     */
+    private static void releasePermit(ExecutionContext context) {
+        AdaptiveConcurrencyDataReader<?> adaptiveReader =
+                context.getRequestScopedVar(AdaptiveConcurrencyDataReader.REQUEST_SCOPE_KEY);
+        if (adaptiveReader != null) {
+            adaptiveReader.release();
+        }
+    }
+
+    /**
+     * 読み込んだデータ件数を、{@link ProcessResidentHandler}が用意した計数領域に加算する。
+     *
+     * @param context 実行コンテキスト
+     * @param requestData 読み込んだデータ
+     */
+    private static void countRead(ExecutionContext context, Object requestData) {
+        AtomicLong counter = context.getSessionScopedVar(ProcessResidentHandler.READ_COUNTER_KEY);
+        if (counter != null) {
+            counter.addAndGet(requestData instanceof RecordChunk ? ((RecordChunk) requestData).size() : 1);
+        }
+    }
+
+    /**
+     * 最大でチャンクサイズ分のデータを読み込む。
+     *
+     * @param context 実行コンテキスト
+     * @return 読み込んだデータ(1件も読み込めなかった場合は{@code null})
+     */
+    private RecordChunk readChunk(ExecutionContext context) {
+        RecordChunk chunk = new RecordChunk(chunkSize);
+        while (chunk.size() < chunkSize && context.hasNextData()) {
+            Object data = context.readNextData();
+            if (data == null) {
+                break;
+            }
+            chunk.add(data);
+        }
+        return chunk.isEmpty() ? null : chunk;
+    }
+
+    /**
+     * チャンク単位で読み込んだデータ。
+     * <p/>
+     * 後続のハンドラには{@link java.util.List}として渡される。
+     * {@link LoopHandler}は、本クラスのインスタンスを要素数分のレコードとして計数する。
+     */
+    static final class RecordChunk extends ArrayList<Object> {
+
+        /** シリアルバージョンUID */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param chunkSize チャンクサイズ
+         */
+        RecordChunk(int chunkSize) {
+            super(chunkSize);
         }
     }
 
@@ -77,33 +170,104 @@ public class DataReadHandler implements Handler<Object, Result> {
     }
 
     /**
-     * データ読み込み回数を計数し、上限を超えていれば、
-     * 実行コンテキスト上のリーダを削除する。
+     * データ読み込み回数を計数し、上限を超えていなければ読み込みを許可する。
+     * <p/>
+     * 計数はロックを使用せずに行い、複数スレッドから同時に呼び出された場合も
+     * 読み込みが許可される回数は上限回数と一致する。
+     *
+     * @return 読み込みを許可する場合は{@code true}
+     */
+    private boolean countUp() {
+        while (true) {
+            int current = readCount.get();
+            if (current >= maxCount) {
+                return false;
+            }
+            if (readCount.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 実行コンテキスト上のデータリーダを、読み込み回数の上限に達した時点で
+     * 終端となるデータリーダでラップする。
+     * <p/>
+     * これにより、データリーダ自体を削除することなく、上限に達した後は
+     * {@link ExecutionContext#hasNextData()}が全てのスレッドで{@code false}を返すようになる。
      *
      * @param context 実行コンテキスト
      */
-    private void countUp(ExecutionContext context) {
-        readCount++;
-        if (readCount > maxCount) {
-            // 最大件数に達した場合は、DataReaderオブジェクトにnullを設定する。
-            // これにより、次レコードの読み込み時に存在なしとして処理が終了する。
-            context.setDataReaderFactory(null);
-            context.setDataReader(null);
+    @SuppressWarnings("unchecked")
+    private void limitReader(ExecutionContext context) {
+        DataReader<Object> reader = context.getDataReader();
+        if (reader == null
+                || (reader instanceof CountLimitedDataReader && ((CountLimitedDataReader) reader).owner == this)) {
+            return;
+        }
+        context.setDataReader(new CountLimitedDataReader(reader));
+    }
+
+    /**
+     * 読み込み回数が上限に達した場合に終端となるデータリーダ。
+     */
+    private final class CountLimitedDataReader implements DataReader<Object> {
+
+        /** このデータリーダを作成したハンドラ */
+        private final DataReadHandler owner = DataReadHandler.this;
+
+        /** 委譲先のデータリーダ */
+        private final DataReader<Object> delegate;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param delegate 委譲先のデータリーダ
+         */
+        private CountLimitedDataReader(DataReader<Object> delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p/>
+         * 読み込み回数が上限に達している場合は、読み込みを行わずに{@code null}を返す。
+         */
+        public Object read(ExecutionContext ctx) {
+            if (!countUp()) {
+                return null;
+            }
+            return delegate.read(ctx);
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p/>
+         * 読み込み回数が上限に達している場合は{@code false}を返す。
+         */
+        public boolean hasNext(ExecutionContext ctx) {
+            return readCount.get() < maxCount && delegate.hasNext(ctx);
+        }
+
+        /** {@inheritDoc} */
+        public void close(ExecutionContext ctx) {
+            delegate.close(ctx);
         }
     }
 
     /** データ読み込み回数 */
-    private int readCount = 0;
+    private final AtomicInteger readCount = new AtomicInteger();
 
     /**
      * データ読み込みの上限回数を指定する。
      * <p/>
-     * 上限に達した段階で、実行コンテキスト上のreaderを除去する。
-     * それ以降は、ExecutionContext#hanNextData() の結果は常にfalseを返す。
+     * 上限に達した段階で、それ以降は ExecutionContext#hasNextData() の結果は常にfalseを返す。
      * デフォルトの設定値は0 (=無制限)
      * <p/>
-     * なお、この値に正数を指定している場合は、読み込み回数のカウントアップの際に
-     * 同期処理が行われる。
+     * なお、この値に正数を指定している場合は、実行コンテキスト上のデータリーダを
+     * 読み込み回数の上限に達した時点で終端となるデータリーダでラップする。
+     * 読み込み回数の計数はロックを使用せずに行うため、複数スレッドで本ハンドラを共有しても
+     * 読み込み回数が上限を超えることはない。
      *
      * @param maxCount データ読み込みの上限回数。
      * 0もしくは負数を設定した場合は無制限。
@@ -116,6 +280,52 @@ public class DataReadHandler implements Handler<Object, Result> {
 
     /** データ読み込みの上限回数。 */
     private int maxCount = 0;
+
+    /**
+     * 1回の処理で読み込むデータの件数を設定する。
+     * <p/>
+     * 2以上の値を設定した場合は、最大でその件数のデータを読み込み、
+     * 読み込んだデータを格納した{@link java.util.List}をリクエストとして後続のハンドラに渡す。
+     * これにより、ハンドラキューの実行に伴うオーバヘッドを複数レコードで分け合うことができ、
+     * 業務アクションでは複数レコードをまとめて処理する(一括更新を行うなど)ことができる。
+     * <p/>
+     * この場合、後続の業務アクションは{@link java.util.List}を入力データとして受け取るように実装すること。
+     * また、以下の点に注意すること。
+     * <ul>
+     * <li>実行時IDは、読み込んだデータ毎ではなくチャンク毎に発番される。</li>
+     * <li>{@link TransactionEventCallback}には、チャンク({@link java.util.List})が渡される。</li>
+     * <li>{@link LoopHandler}のコミット間隔やチェックポイントは、チャンク内のレコード件数で計数される。</li>
+     * </ul>
+     * デフォルトの設定値は1 (=1件ずつ読み込む)
+     *
+     * @param chunkSize 1回の処理で読み込むデータの件数。1以下を設定した場合は1件ずつ読み込む。
+     * @return このオブジェクト自体
+     */
+    public DataReadHandler setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /** 1回の処理で読み込むデータの件数 */
+    private int chunkSize = 1;
+
+    /**
+     * 進捗状況の記録先を設定する。
+     * <p/>
+     * 設定した場合、読み込んだデータの件数と、後続ハンドラを含む処理時間を記録する。
+     * デフォルトでは記録しない。
+     *
+     * @param progressReporter 進捗状況の記録先
+     * @return このオブジェクト自体
+     * @see ProgressReporter
+     */
+    public DataReadHandler setProgressReporter(ProgressReporter progressReporter) {
+        this.progressReporter = progressReporter;
+        return this;
+    }
+
+    /** 進捗状況の記録先 */
+    private ProgressReporter progressReporter;
     
     
     /**
@@ -0,0 +1,56 @@
+package nablarch.fw.handler;
+
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.ExecutionContext;
+
+/**
+ * データリーダの準備に要した時間を累積するクラス。
+ * <p/>
+ * 実行コンテキストのセッションスコープに{@link #SESSION_SCOPE_KEY}で本オブジェクトを格納した場合、
+ * {@link ExecutionHandler}を継承したハンドラ({@link MultiThreadExecutionHandler}など)が
+ * データリーダを準備する度に、その処理時間が加算される。
+ * <p/>
+ * 起動クラスは、本オブジェクトを参照することで、本処理の時間からデータリーダの準備時間を分離して記録できる。
+ */
+@Published(tag = "architect")
+public final class DataReaderPreparationTime {
+
+    /** 本オブジェクトを格納するセッションスコープのキー */
+    public static final String SESSION_SCOPE_KEY = DataReaderPreparationTime.class.getName();
+
+    /** 累積した処理時間(単位:msec) */
+    private long millis = 0;
+
+    /**
+     * 処理時間を加算する。
+     *
+     * @param millis 処理時間(単位:msec)
+     */
+    public synchronized void add(long millis) {
+        this.millis += millis;
+    }
+
+    /**
+     * 累積した処理時間を取得する。
+     *
+     * @return 処理時間(単位:msec)
+     */
+    public synchronized long get() {
+        return millis;
+    }
+
+    /**
+     * 実行コンテキストのセッションスコープに格納された本オブジェクトに、処理時間を加算する。
+     * <p/>
+     * 本オブジェクトが格納されていない場合は何もしない。
+     *
+     * @param context 実行コンテキスト
+     * @param millis 処理時間(単位:msec)
+     */
+    public static void add(ExecutionContext context, long millis) {
+        DataReaderPreparationTime time = context.getSessionScopedVar(SESSION_SCOPE_KEY);
+        if (time != null) {
+            time.add(millis);
+        }
+    }
+}
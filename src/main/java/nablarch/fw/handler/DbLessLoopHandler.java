@@ -4,9 +4,6 @@ import nablarch.fw.ExecutionContext;
 import nablarch.fw.Handler;
 import nablarch.fw.Result;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * トランザクション制御をせず処理するループ制御ハンドラークラス。
  * <p/>
@@ -17,13 +14,14 @@ import java.util.List;
  */
 public class DbLessLoopHandler implements Handler<Object, Result> {
 
-    @SuppressWarnings("rawtypes")
     @Override
     public Result handle(Object data, ExecutionContext context) {
-        List<Handler> snapshot = new ArrayList<Handler>();
-        snapshot.addAll(context.getHandlerQueue());
+        if (latencyRegistry != null) {
+            latencyRegistry.instrument(context);
+        }
+        HandlerQueueSnapshot snapshot = new HandlerQueueSnapshot(context);
         do {
-            restoreHandlerQueue(context, snapshot)
+            snapshot.restore(context)
                     .handleNext(data);
 
             // 正常終了時は最後に読み込んだデータオブジェクトをクリアする
@@ -48,20 +46,21 @@ public class DbLessLoopHandler implements Handler<Object, Result> {
         return !context.hasNextData();
     }
 
-
     /**
-     * ハンドラキューの内容を、ループ開始前の状態に戻す。
-     * 
-     * @param context  実行コンテキスト
-     * @param snapshot ハンドラキューのスナップショット
-     * @return 実行コンテキスト(引数と同じインスタンス)
+     * ハンドラ毎の処理時間の記録先を設定する。
+     * <p/>
+     * 設定した場合、後続ハンドラ毎の処理時間を記録する。
+     * デフォルトでは記録しない。
+     *
+     * @param latencyRegistry ハンドラ毎の処理時間の記録先
+     * @return このハンドラ自体
+     * @see HandlerLatencyRegistry
      */
-    @SuppressWarnings("rawtypes")
-    private ExecutionContext restoreHandlerQueue(ExecutionContext context,
-                                                 List<Handler> snapshot) {
-        List<Handler> queue = context.getHandlerQueue();
-        queue.clear();
-        queue.addAll(snapshot);
-        return context;
+    public DbLessLoopHandler setLatencyRegistry(HandlerLatencyRegistry latencyRegistry) {
+        this.latencyRegistry = latencyRegistry;
+        return this;
     }
+
+    /** ハンドラ毎の処理時間の記録先 */
+    private HandlerLatencyRegistry latencyRegistry;
 }
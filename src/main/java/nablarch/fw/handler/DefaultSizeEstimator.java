@@ -0,0 +1,36 @@
+package nablarch.fw.handler;
+
+import java.util.Map;
+
+import nablarch.core.dataformat.DataRecord;
+
+/**
+ * デフォルトの{@link SizeEstimator}実装。
+ * <p/>
+ * バイト配列は配列長、文字列はUTF-16で表した場合のバイト数(文字数の2倍)を見積りとする。
+ * {@link Map}({@link DataRecord}を含む)は各値の見積りの合計を見積りとする。
+ * それ以外のオブジェクトは、文字列表現をUTF-16で表した場合のバイト数(文字数の2倍)を見積りとする。
+ */
+public class DefaultSizeEstimator implements SizeEstimator {
+
+    /** {@inheritDoc} */
+    public long estimate(Object data) {
+        if (data == null) {
+            return 0;
+        }
+        if (data instanceof byte[]) {
+            return ((byte[]) data).length;
+        }
+        if (data instanceof CharSequence) {
+            return ((CharSequence) data).length() * 2L;
+        }
+        if (data instanceof Map) {
+            long size = 0;
+            for (Object value : ((Map<?, ?>) data).values()) {
+                size += estimate(value);
+            }
+            return size;
+        }
+        return String.valueOf(data).length() * 2L;
+    }
+}
@@ -155,11 +155,28 @@ extends Handler<TData, TResult> {
          *    取得できなかった場合は、後続のハンドラの中でデータリーダファクトリを実装
          *    したものを走査し、そのファクトリが生成したデータリーダを取得する。
          *
+         * データリーダの準備に要した時間は、{@link DataReaderPreparationTime}に記録する。
+         *
          * @param data    入力データ
          * @param context 実行コンテキスト
          *
          */
         public void prepareDataReader(Object data, ExecutionContext context) {
+            long start = System.currentTimeMillis();
+            try {
+                prepareDataReaderInternal(data, context);
+            } finally {
+                DataReaderPreparationTime.add(context, System.currentTimeMillis() - start);
+            }
+        }
+
+        /**
+         * 後続処理で使用するデータリーダを準備する。
+         *
+         * @param data    入力データ
+         * @param context 実行コンテキスト
+         */
+        private void prepareDataReaderInternal(Object data, ExecutionContext context) {
             // データリーダが取得できれば何もしない。
             if (context.getDataReader() != null) {
                 return;
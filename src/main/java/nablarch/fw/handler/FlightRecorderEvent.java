@@ -0,0 +1,260 @@
+package nablarch.fw.handler;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.ThreadContext;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.fw.ExecutionContext;
+
+/**
+ * Java Flight Recorder(JFR)のイベント。
+ * <p/>
+ * 実行環境がJFRをサポートしている場合、{@code jdk.jfr.EventFactory}を使用してイベントを定義し、
+ * 記録中のJFRにイベントを出力する。
+ * 実行環境がJFRをサポートしていない場合や、イベントが記録対象でない場合は何もしない。
+ * <p/>
+ * イベントの開始時刻、処理時間及びスレッドはJFRにより記録される。
+ * 各イベントは、JFRのイベントカテゴリ"Nablarch"に分類され、リクエストパスをフィールドに持つ。
+ */
+final class FlightRecorderEvent {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(FlightRecorderEvent.class);
+
+    /** リクエストパスを保持するセッションスコープ変数名(起動オプション) */
+    private static final String REQUEST_PATH_KEY = "requestPath";
+
+    /** {@link DataReadHandler}による1レコードの読み込みと後続ハンドラの処理 */
+    static final FlightRecorderEvent DATA_READ = new FlightRecorderEvent(
+            "nablarch.DataRead", "Data Read", "Reading and processing of a record by DataReadHandler");
+
+    /** {@link LoopHandler}によるコミット */
+    static final FlightRecorderEvent COMMIT = new FlightRecorderEvent(
+            "nablarch.Commit", "Commit", "Commit by LoopHandler",
+            "recordCount", long.class);
+
+    /** {@link RetryHandler}によるリトライの準備 */
+    static final FlightRecorderEvent RETRY = new FlightRecorderEvent(
+            "nablarch.Retry", "Retry", "Preparation of a retry by RetryHandler",
+            "retryCount", int.class,
+            "exception", String.class);
+
+    /** {@link ProcessResidentHandler}による1回分の後続ハンドラの処理 */
+    static final FlightRecorderEvent RESIDENT_POLL = new FlightRecorderEvent(
+            "nablarch.ResidentPoll", "Resident Poll", "One polling cycle of ProcessResidentHandler");
+
+    /** {@link MultiThreadExecutionHandler}によるスレッドプールの各処理 */
+    static final FlightRecorderEvent THREAD_POOL = new FlightRecorderEvent(
+            "nablarch.ThreadPool", "Thread Pool", "Lifecycle step of the thread pool of MultiThreadExecutionHandler",
+            "step", String.class,
+            "concurrentNumber", int.class);
+
+    /** イベントの名前 */
+    private final String name;
+
+    /** イベントを生成する{@code jdk.jfr.EventFactory}(JFRが使用できない場合は{@code null}) */
+    private final Object factory;
+
+    /** イベントが記録対象か否かを判定する{@code jdk.jfr.EventType} */
+    private final Object eventType;
+
+    /** {@code jdk.jfr.EventType#isEnabled()} */
+    private final Method isEnabled;
+
+    /** {@code jdk.jfr.EventFactory#newEvent()} */
+    private final Method newEvent;
+
+    /** {@code jdk.jfr.Event#begin()} */
+    private final Method begin;
+
+    /** {@code jdk.jfr.Event#end()} */
+    private final Method end;
+
+    /** {@code jdk.jfr.Event#commit()} */
+    private final Method commit;
+
+    /** {@code jdk.jfr.Event#set(int, Object)} */
+    private final Method set;
+
+    /**
+     * コンストラクタ。
+     * <p/>
+     * 追加のフィールドは、フィールド名と型を交互に指定する。
+     * フィールドは、リクエストパスの後に指定順に定義される。
+     *
+     * @param name イベントの名前
+     * @param label イベントのラベル
+     * @param description イベントの説明
+     * @param fields 追加のフィールド(フィールド名と型の組)
+     */
+    private FlightRecorderEvent(String name, String label, String description, Object... fields) {
+        this.name = name;
+        Object factory = null;
+        Object eventType = null;
+        Method isEnabled = null;
+        Method newEvent = null;
+        Method begin = null;
+        Method end = null;
+        Method commit = null;
+        Method set = null;
+        try {
+            Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+
+            List<Object> annotations = Arrays.asList(
+                    annotation("jdk.jfr.Name", name),
+                    annotation("jdk.jfr.Label", label),
+                    annotation("jdk.jfr.Description", description),
+                    annotation("jdk.jfr.Category", new String[] {"Nablarch"}));
+            List<Object> valueDescriptors = new ArrayList<Object>();
+            valueDescriptors.add(valueDescriptor(String.class, REQUEST_PATH_KEY));
+            for (int i = 0; i < fields.length; i += 2) {
+                valueDescriptors.add(valueDescriptor((Class<?>) fields[i + 1], (String) fields[i]));
+            }
+
+            factory = eventFactoryClass.getMethod("create", List.class, List.class)
+                                       .invoke(null, annotations, valueDescriptors);
+            eventType = eventFactoryClass.getMethod("getEventType").invoke(factory);
+            isEnabled = eventTypeClass.getMethod("isEnabled");
+            newEvent = eventFactoryClass.getMethod("newEvent");
+            begin = eventClass.getMethod("begin");
+            end = eventClass.getMethod("end");
+            commit = eventClass.getMethod("commit");
+            set = eventClass.getMethod("set", int.class, Object.class);
+        } catch (ClassNotFoundException e) {
+            factory = null;
+        } catch (Exception e) {
+            LOGGER.logDebug("failed to define flight recorder event. name = [" + name + ']', e);
+            factory = null;
+        } catch (LinkageError e) {
+            LOGGER.logDebug("failed to define flight recorder event. name = [" + name + ']', e);
+            factory = null;
+        }
+        this.factory = factory;
+        this.eventType = eventType;
+        this.isEnabled = isEnabled;
+        this.newEvent = newEvent;
+        this.begin = begin;
+        this.end = end;
+        this.commit = commit;
+        this.set = set;
+    }
+
+    /**
+     * {@code jdk.jfr.AnnotationElement}を生成する。
+     *
+     * @param annotationType アノテーションのクラス名
+     * @param value アノテーションの値
+     * @return {@code jdk.jfr.AnnotationElement}
+     * @throws Exception 生成に失敗した場合
+     */
+    private static Object annotation(String annotationType, Object value) throws Exception {
+        Constructor<?> constructor = Class.forName("jdk.jfr.AnnotationElement")
+                                          .getConstructor(Class.class, Object.class);
+        return constructor.newInstance(Class.forName(annotationType), value);
+    }
+
+    /**
+     * {@code jdk.jfr.ValueDescriptor}を生成する。
+     *
+     * @param type フィールドの型
+     * @param name フィールド名
+     * @return {@code jdk.jfr.ValueDescriptor}
+     * @throws Exception 生成に失敗した場合
+     */
+    private static Object valueDescriptor(Class<?> type, String name) throws Exception {
+        Constructor<?> constructor = Class.forName("jdk.jfr.ValueDescriptor")
+                                          .getConstructor(Class.class, String.class, List.class);
+        return constructor.newInstance(type, name,
+                Collections.singletonList(annotation("jdk.jfr.Label", name)));
+    }
+
+    /**
+     * イベントの名前を取得する。
+     *
+     * @return イベントの名前
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * イベントを出力できるか否かを判定する。
+     *
+     * @return 実行環境がJFRをサポートしている場合は{@code true}
+     */
+    boolean isAvailable() {
+        return factory != null;
+    }
+
+    /**
+     * イベントの計測を開始する。
+     * <p/>
+     * JFRが使用できない場合や、イベントが記録対象でない場合は{@code null}を返す。
+     *
+     * @return イベント
+     */
+    Object begin() {
+        if (factory == null) {
+            return null;
+        }
+        try {
+            if (!(Boolean) isEnabled.invoke(eventType)) {
+                return null;
+            }
+            Object event = newEvent.invoke(factory);
+            begin.invoke(event);
+            return event;
+        } catch (Exception e) {
+            LOGGER.logDebug("failed to begin flight recorder event. name = [" + name + ']', e);
+            return null;
+        }
+    }
+
+    /**
+     * イベントの計測を終了し、JFRに出力する。
+     * <p/>
+     * イベントが{@code null}の場合は何もしない。
+     *
+     * @param event {@link #begin()}で取得したイベント
+     * @param context 実行コンテキスト
+     * @param values 追加のフィールドの値(定義順)
+     */
+    void commit(Object event, ExecutionContext context, Object... values) {
+        if (event == null) {
+            return;
+        }
+        try {
+            end.invoke(event);
+            set.invoke(event, 0, requestPathOf(context));
+            for (int i = 0; i < values.length; i++) {
+                set.invoke(event, i + 1, values[i]);
+            }
+            commit.invoke(event);
+        } catch (Exception e) {
+            LOGGER.logDebug("failed to commit flight recorder event. name = [" + name + ']', e);
+        }
+    }
+
+    /**
+     * リクエストパスを取得する。
+     * <p/>
+     * 起動オプションのリクエストパスを使用し、設定されていない場合はリクエストIDを使用する。
+     *
+     * @param context 実行コンテキスト
+     * @return リクエストパス
+     */
+    private static String requestPathOf(ExecutionContext context) {
+        Map<String, Object> sessionScope = context.getSessionScopeMap();
+        Object requestPath = sessionScope.get(REQUEST_PATH_KEY);
+        return (requestPath instanceof String) ? (String) requestPath : ThreadContext.getRequestId();
+    }
+}
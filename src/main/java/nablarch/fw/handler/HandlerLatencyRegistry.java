@@ -0,0 +1,455 @@
+package nablarch.fw.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.log.Logger;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.HandlerWrapper;
+
+/**
+ * ハンドラ毎の呼び出し回数と処理時間を集計するクラス。
+ * <p/>
+ * {@link LoopHandler}、{@link DbLessLoopHandler}及び{@link RequestThreadLoopHandler}に本クラスを設定すると、
+ * 各ハンドラは後続ハンドラの呼び出し毎の処理時間を計測し、本クラスに記録する。
+ * また、{@link LoopHandler}はコミットの処理時間を記録する。
+ * 集計結果は{@link MultiThreadExecutionHandler}に本クラスを設定することで、処理終了時にログに出力される。
+ * <p/>
+ * 処理時間は、各ハンドラの処理時間から後続ハンドラの処理時間を除いた時間(自身の処理時間)を記録する。
+ * ただし、ハンドラが実行時に追加したハンドラ(ディスパッチされた業務アクションなど)は計測対象とならず、
+ * その処理時間は追加したハンドラの処理時間に含まれる。
+ * <p/>
+ * 処理時間は2のべき乗(単位:nsec)を境界とするヒストグラムで集計するため、
+ * パーセンタイル値は該当する区間の上限値となる。
+ * 記録はスレッド毎の記録先に対して行い、集計結果の取得時にマージする。
+ * 記録先のロックは記録するスレッドと集計結果を取得するスレッドの間でのみ競合し、
+ * 記録するスレッド同士で競合することはない。
+ * <p/>
+ * 以下は、本クラスの設定例である。
+ * <pre>
+ * &lt;component name="handlerLatencyRegistry" class="nablarch.fw.handler.HandlerLatencyRegistry" />
+ *
+ * &lt;list name="handlerQueue">
+ *   &lt;component class="nablarch.fw.handler.MultiThreadExecutionHandler">
+ *     &lt;property name="latencyRegistry" ref="handlerLatencyRegistry" />
+ *   &lt;/component>
+ *   &lt;component class="nablarch.fw.handler.LoopHandler">
+ *     &lt;property name="latencyRegistry" ref="handlerLatencyRegistry" />
+ *     &lt;!-- その他の設定は省略 -->
+ *   &lt;/component>
+ *   &lt;!-- 後続ハンドラは省略 -->
+ * &lt;/list>
+ * </pre>
+ */
+@Published(tag = "architect")
+public class HandlerLatencyRegistry {
+
+    /** 集計値のインデックス(呼び出し回数) */
+    private static final int COUNT = 0;
+
+    /** 集計値のインデックス(処理時間の合計) */
+    private static final int TOTAL = 1;
+
+    /** 集計値のインデックス(処理時間の最大値) */
+    private static final int MAX = 2;
+
+    /** 集計値のインデックス(ヒストグラムの先頭) */
+    private static final int HISTOGRAM = 3;
+
+    /** ヒストグラムの区間数 */
+    private static final int BUCKETS = 64;
+
+    /** スレッド毎の記録先。{@link #reset()}で切り替える */
+    private volatile PerThreadAccumulator<Recorder> recorders = newRecorders();
+
+    /**
+     * 実行コンテキスト上の後続ハンドラを、処理時間を計測するハンドラでラップする。
+     * <p/>
+     * ラップ済みのハンドラはそのままとする。
+     *
+     * @param context 実行コンテキスト
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void instrument(ExecutionContext context) {
+        List<Handler> queue = context.getHandlerQueue();
+        for (int i = 0; i < queue.size(); i++) {
+            Handler handler = queue.get(i);
+            if (!(handler instanceof TimedHandler)) {
+                queue.set(i, new TimedHandler(handler, this));
+            }
+        }
+    }
+
+    /**
+     * 処理時間を記録する。
+     *
+     * @param name 計測対象の名前
+     * @param nanos 処理時間(単位:nsec)
+     */
+    void record(String name, long nanos) {
+        Recorder recorder = recorder();
+        recorder.add(name, nanos);
+        recorder.addToCaller(nanos);
+    }
+
+    /**
+     * 現在のスレッドの記録先を取得する。
+     *
+     * @return 記録先
+     */
+    private Recorder recorder() {
+        return recorders.get();
+    }
+
+    /**
+     * 集計結果を破棄する。
+     */
+    public void reset() {
+        recorders = newRecorders();
+    }
+
+    /**
+     * スレッド毎の記録先を生成する。
+     *
+     * @return スレッド毎の記録先
+     */
+    private static PerThreadAccumulator<Recorder> newRecorders() {
+        return new PerThreadAccumulator<Recorder>() {
+            @Override
+            protected Recorder create() {
+                return new Recorder();
+            }
+        };
+    }
+
+    /**
+     * ハンドラの集計結果を取得する。
+     *
+     * @param handlerClass ハンドラのクラス
+     * @return 集計結果(記録されていない場合は{@code null})
+     */
+    public Statistics getStatistics(Class<?> handlerClass) {
+        return getStatistics(handlerClass.getName());
+    }
+
+    /**
+     * 集計結果を取得する。
+     *
+     * @param name 計測対象の名前(ハンドラの場合はクラス名)
+     * @return 集計結果(記録されていない場合は{@code null})
+     */
+    public Statistics getStatistics(String name) {
+        for (Statistics statistics : getAllStatistics()) {
+            if (statistics.getName().equals(name)) {
+                return statistics;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 全ての集計結果を、処理時間の合計の降順で取得する。
+     * <p/>
+     * 記録中のスレッドが存在する場合、そのスレッドの直近の記録は含まれない場合がある。
+     *
+     * @return 集計結果
+     */
+    public List<Statistics> getAllStatistics() {
+        Map<String, long[]> merged = new HashMap<String, long[]>();
+        for (Recorder recorder : recorders.all()) {
+            for (Map.Entry<String, long[]> entry : recorder.snapshot().entrySet()) {
+                long[] values = merged.get(entry.getKey());
+                if (values == null) {
+                    merged.put(entry.getKey(), entry.getValue());
+                    continue;
+                }
+                long[] other = entry.getValue();
+                values[COUNT] += other[COUNT];
+                values[TOTAL] += other[TOTAL];
+                values[MAX] = Math.max(values[MAX], other[MAX]);
+                for (int i = HISTOGRAM; i < values.length; i++) {
+                    values[i] += other[i];
+                }
+            }
+        }
+        List<Statistics> result = new ArrayList<Statistics>();
+        for (Map.Entry<String, long[]> entry : merged.entrySet()) {
+            result.add(new Statistics(entry.getKey(), entry.getValue()));
+        }
+        Collections.sort(result, new Comparator<Statistics>() {
+            public int compare(Statistics o1, Statistics o2) {
+                long t1 = o1.getTotalNanos();
+                long t2 = o2.getTotalNanos();
+                return (t1 > t2) ? -1 : ((t1 == t2) ? o1.getName().compareTo(o2.getName()) : 1);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 集計結果をログ出力用の表形式の文字列で取得する。
+     *
+     * @return 集計結果
+     */
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder("handler latency summary (excluding subsequent handlers).");
+        for (Statistics statistics : getAllStatistics()) {
+            sb.append(Logger.LS)
+              .append("\tname = [").append(statistics.getName()).append(']')
+              .append(" count = [").append(statistics.getCount()).append(']')
+              .append(" total(ms) = [").append(statistics.getTotalNanos() / 1000000L).append(']')
+              .append(" average(us) = [").append(micros(statistics.getAverageNanos())).append(']')
+              .append(" 50%(us) = [").append(micros(statistics.getPercentileNanos(50))).append(']')
+              .append(" 99%(us) = [").append(micros(statistics.getPercentileNanos(99))).append(']')
+              .append(" max(us) = [").append(micros(statistics.getMaxNanos())).append(']');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 処理時間をマイクロ秒単位の文字列に変換する。
+     *
+     * @param nanos 処理時間(単位:nsec)
+     * @return マイクロ秒単位の文字列
+     */
+    private static String micros(long nanos) {
+        return String.format("%.1f", nanos / 1000.0);
+    }
+
+    /**
+     * 処理時間に対応するヒストグラムの区間を返す。
+     * <p/>
+     * 区間iは、2^(i-1)以上2^i未満の処理時間を表す。(区間0は0以下)
+     *
+     * @param nanos 処理時間(単位:nsec)
+     * @return 区間
+     */
+    private static int bucketOf(long nanos) {
+        return (nanos <= 0L) ? 0 : (Long.SIZE - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /**
+     * 集計結果。
+     */
+    @Published(tag = "architect")
+    public static final class Statistics {
+
+        /** 計測対象の名前 */
+        private final String name;
+
+        /** 集計値 */
+        private final long[] values;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param name 計測対象の名前
+         * @param values 集計値
+         */
+        private Statistics(String name, long[] values) {
+            this.name = name;
+            this.values = values;
+        }
+
+        /**
+         * 計測対象の名前を取得する。
+         *
+         * @return 計測対象の名前
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 呼び出し回数を取得する。
+         *
+         * @return 呼び出し回数
+         */
+        public long getCount() {
+            return values[COUNT];
+        }
+
+        /**
+         * 処理時間の合計を取得する。
+         *
+         * @return 処理時間の合計(単位:nsec)
+         */
+        public long getTotalNanos() {
+            return values[TOTAL];
+        }
+
+        /**
+         * 処理時間の平均を取得する。
+         *
+         * @return 処理時間の平均(単位:nsec)
+         */
+        public long getAverageNanos() {
+            return (values[COUNT] == 0L) ? 0L : values[TOTAL] / values[COUNT];
+        }
+
+        /**
+         * 処理時間の最大値を取得する。
+         *
+         * @return 処理時間の最大値(単位:nsec)
+         */
+        public long getMaxNanos() {
+            return values[MAX];
+        }
+
+        /**
+         * 処理時間のパーセンタイル値を取得する。
+         * <p/>
+         * ヒストグラムの区間の上限値(最大値を超える場合は最大値)を返す。
+         *
+         * @param percentile パーセンタイル(0より大きく100以下)
+         * @return パーセンタイル値(単位:nsec)
+         */
+        public long getPercentileNanos(double percentile) {
+            long threshold = (long) Math.ceil(values[COUNT] * percentile / 100.0);
+            long cumulative = 0L;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += values[HISTOGRAM + i];
+                if (cumulative >= threshold && cumulative > 0L) {
+                    return (i == 0) ? 0L : Math.min((1L << i) - 1L, values[MAX]);
+                }
+            }
+            return values[MAX];
+        }
+    }
+
+    /**
+     * 処理時間を計測するハンドラ。
+     */
+    @SuppressWarnings("rawtypes")
+    static final class TimedHandler implements HandlerWrapper<Object, Object> {
+
+        /** 計測対象のハンドラ */
+        private final Handler delegate;
+
+        /** 計測対象の名前 */
+        private final String name;
+
+        /** 記録先 */
+        private final HandlerLatencyRegistry registry;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param delegate 計測対象のハンドラ
+         * @param registry 記録先
+         */
+        TimedHandler(Handler delegate, HandlerLatencyRegistry registry) {
+            this.delegate = delegate;
+            this.name = delegate.getClass().getName();
+            this.registry = registry;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object handle(Object data, ExecutionContext context) {
+            Recorder recorder = registry.recorder();
+            recorder.enter();
+            long start = System.nanoTime();
+            try {
+                return delegate.handle(data, context);
+            } finally {
+                recorder.exit(name, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public List<Object> getDelegates(Object data, ExecutionContext context) {
+            return Collections.<Object>singletonList(delegate);
+        }
+    }
+
+    /**
+     * スレッド毎の記録先。
+     * <p/>
+     * 記録は所有するスレッドのみが行う。
+     * 集計結果の取得時に他のスレッドから参照されるため、集計値へのアクセスは同期する。
+     */
+    private static final class Recorder {
+
+        /** 計測対象毎の集計値 */
+        private final Map<String, long[]> values = new HashMap<String, long[]>();
+
+        /** 呼び出し階層毎の、後続ハンドラの処理時間の合計 */
+        private long[] callees = new long[8];
+
+        /** 呼び出し階層の深さ */
+        private int depth;
+
+        /** ハンドラの呼び出しを開始する。 */
+        void enter() {
+            depth++;
+            if (depth == callees.length) {
+                long[] extended = new long[callees.length * 2];
+                System.arraycopy(callees, 0, extended, 0, callees.length);
+                callees = extended;
+            }
+            callees[depth] = 0L;
+        }
+
+        /**
+         * ハンドラの呼び出しを終了し、後続ハンドラの処理時間を除いた処理時間を記録する。
+         *
+         * @param name 計測対象の名前
+         * @param elapsed 後続ハンドラを含む処理時間(単位:nsec)
+         */
+        void exit(String name, long elapsed) {
+            long self = elapsed - callees[depth];
+            depth--;
+            addToCaller(elapsed);
+            add(name, self);
+        }
+
+        /**
+         * 呼び出し元のハンドラの、後続ハンドラの処理時間に加算する。
+         *
+         * @param nanos 処理時間(単位:nsec)
+         */
+        void addToCaller(long nanos) {
+            callees[depth] += nanos;
+        }
+
+        /**
+         * 処理時間を集計する。
+         *
+         * @param name 計測対象の名前
+         * @param nanos 処理時間(単位:nsec)
+         */
+        synchronized void add(String name, long nanos) {
+            long[] v = values.get(name);
+            if (v == null) {
+                v = new long[HISTOGRAM + BUCKETS];
+                values.put(name, v);
+            }
+            v[COUNT]++;
+            v[TOTAL] += nanos;
+            if (nanos > v[MAX]) {
+                v[MAX] = nanos;
+            }
+            v[HISTOGRAM + bucketOf(nanos)]++;
+        }
+
+        /**
+         * 集計値のコピーを取得する。
+         *
+         * @return 集計値
+         */
+        synchronized Map<String, long[]> snapshot() {
+            Map<String, long[]> copy = new HashMap<String, long[]>();
+            for (Map.Entry<String, long[]> entry : values.entrySet()) {
+                copy.put(entry.getKey(), entry.getValue().clone());
+            }
+            return copy;
+        }
+    }
+}
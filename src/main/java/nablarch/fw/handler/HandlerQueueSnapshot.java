@@ -0,0 +1,58 @@
+package nablarch.fw.handler;
+
+import java.util.List;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+
+/**
+ * ハンドラキューのスナップショット。
+ * <p/>
+ * 後続ハンドラを繰り返し呼び出すハンドラが、呼び出しの度にハンドラキューの内容を
+ * ループ開始前の状態に戻すために使用する。
+ * <p/>
+ * {@link #restore(ExecutionContext)}は、ハンドラキューを一旦空にして全要素を追加し直すのではなく、
+ * 各要素をスナップショットの内容で上書きし、過不足分のみを末尾で追加・削除する。
+ * ハンドラキューの容量はループ開始前の要素数以上に確保済みであるため、
+ * 復元の度に配列の生成やハンドラキューの拡張が行われることはない。
+ */
+@SuppressWarnings("rawtypes")
+final class HandlerQueueSnapshot {
+
+    /** ループ開始前のハンドラキューの内容 */
+    private final Handler[] handlers;
+
+    /**
+     * 実行コンテキストのハンドラキューの現在の内容を保持するスナップショットを生成する。
+     *
+     * @param context 実行コンテキスト
+     */
+    HandlerQueueSnapshot(ExecutionContext context) {
+        List<Handler> queue = context.getHandlerQueue();
+        handlers = queue.toArray(new Handler[queue.size()]);
+    }
+
+    /**
+     * ハンドラキューの内容を、スナップショットを取得した時点の状態に戻す。
+     *
+     * @param context 実行コンテキスト
+     * @return 実行コンテキスト(引数と同じインスタンス)
+     */
+    @SuppressWarnings("unchecked")
+    ExecutionContext restore(ExecutionContext context) {
+        List<Handler> queue = context.getHandlerQueue();
+        int size = queue.size();
+        for (int i = 0; i < handlers.length; i++) {
+            if (i < size) {
+                queue.set(i, handlers[i]);
+            } else {
+                queue.add(handlers[i]);
+            }
+        }
+        // 後続ハンドラにより追加されたハンドラが残っている場合は、末尾から削除する。
+        for (int i = size - 1; i >= handlers.length; i--) {
+            queue.remove(i);
+        }
+        return context;
+    }
+}
@@ -1,20 +1,29 @@
 package nablarch.fw.handler;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import nablarch.core.ThreadContext;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
 import nablarch.core.log.app.CommitLogger;
 import nablarch.core.transaction.Transaction;
 import nablarch.core.transaction.TransactionContext;
 import nablarch.core.transaction.TransactionExecutor;
 import nablarch.core.transaction.TransactionFactory;
 import nablarch.core.util.StringUtil;
+import nablarch.fw.DataReader;
 import nablarch.fw.DataReader.NoMoreRecord;
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.Handler;
 import nablarch.fw.Result;
 import nablarch.fw.Result.Success;
 import nablarch.fw.TransactionEventCallback;
+import nablarch.fw.handler.retry.RetryUtil;
+import nablarch.fw.launcher.ProcessAbnormalEnd;
+import nablarch.fw.results.ServiceUnavailable;
 
 /**
  * ループ制御ハンドラークラス。
@@ -24,9 +33,18 @@ import nablarch.fw.TransactionEventCallback;
  * <p/>
  * また、本ハンドラではトランザクション制御もあわせて行う。
  * トランザクションは、指定間隔({@link #setCommitInterval(int)}毎にコミット処理を行う。
+ * 件数以外の条件(経過時間やデータサイズ)でコミットする場合は、{@link #setCommitPolicy(CommitPolicy)}を設定する。
  * 後続ハンドラから例外が送出された場合には、未コミットのトランザクションを全てロールバックし、例外を再送出する。
+ * ただし、{@link #setBisectingRecovery(boolean)}を有効にした場合は、未コミットのレコードを半分ずつに分割して再実行し、
+ * 例外の原因となったレコードのみを{@link TransactionEventCallback#transactionAbnormalEnd}に渡してスキップする。
  * <p/>
  * 本ハンドラの事前ハンドラとして、{@link nablarch.common.handler.DbConnectionManagementHandler}を登録すること。
+ * <p/>
+ * {@link #setCheckpointStore(CheckpointStore)}を設定した場合は、コミットと同一トランザクションで処理位置を保存し、
+ * 再実行時にはコミット済みのレコードを読み飛ばしてから処理を開始する。
+ * <p/>
+ * 業務アクションは、{@link #getBatchBuffer(ExecutionContext)}で取得したバッファに更新対象のレコードを登録することで、
+ * コミット直前にまとめて書き込むことができる。詳細は{@link CommitScopedBatchBuffer}を参照。
  *
  * @author Hisaaki Sioiri
  * @see NoMoreRecord
@@ -34,16 +52,39 @@ import nablarch.fw.TransactionEventCallback;
  * @see TransactionContext
  * @see TransactionFactory
  * @see TransactionExecutor
+ * @see CommitScopedBatchBuffer
  */
 public class LoopHandler extends TransactionEventCallback.Provider<Object>
 implements Handler<Object, Result> {
 
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(LoopHandler.class);
+
+    /** 再実行時に使用する、コミットを行わない判定方式 */
+    private static final CommitPolicy REPLAY_POLICY = new CommitPolicy() {
+        public long estimateSize(Object data) {
+            return 0;
+        }
+        public boolean shouldCommit(Status status) {
+            return false;
+        }
+    };
+
     /** コミットログ出力オブジェクト */
     private CommitLogger commitLogger;
 
-    /** コミット実施予告フラグを保持するリクエストスコープ変数名 */
+    /** コミット実施予告の判定オブジェクトを保持するリクエストスコープ変数名 */
     private static final String IS_ABOUT_TO_COMMIT_FLAG_KEY = ExecutionContext.FW_PREFIX + "LoopHandler_is_about_to_commit";
 
+    /** 再実行時に読み飛ばす件数を保持するセッションスコープ変数名の接頭辞 */
+    private static final String CHECKPOINT_PLAN_KEY_PREFIX = ExecutionContext.FW_PREFIX + "LoopHandler_checkpoint_plan_";
+
+    /** コミット単位のバッチバッファを保持するリクエストスコープ変数名 */
+    private static final String BATCH_BUFFER_KEY = ExecutionContext.FW_PREFIX + "LoopHandler_batch_buffer";
+
+    /** コミットの処理時間を記録する際の名前 */
+    static final String COMMIT_LATENCY_NAME = LoopHandler.class.getName() + "#commit";
+
     /**
      * {@inheritDoc}
      * この実装では、特定の条件を満たすまで、以降のハンドラキューの内容を
@@ -55,6 +96,9 @@ implements Handler<Object, Result> {
 
         commitLogger = context.getSessionScopedVar(
                 CommitLogger.SESSION_SCOPE_KEY);
+        if (latencyRegistry != null) {
+            latencyRegistry.instrument(context);
+        }
 
         // トランザクションの生成
         Transaction transaction = transactionFactory.getTransaction(
@@ -69,37 +113,11 @@ implements Handler<Object, Result> {
         } finally {
             // トランザクションを削除する。
             TransactionContext.removeTransaction(transactionName);
+            context.setRequestScopedVar(BATCH_BUFFER_KEY, null);
         }
         return new Success();
     }
 
-    /**
-     * トランザクションをコミットする。
-     * <p/>
-     * 以下の条件に合致する場合にコミット処理を行う。
-     * <ul>
-     * <li>未コミット件数が、コミット間隔と一致した場合</li>
-     * <li>これ以上処理するデータが存在しない場合</li>
-     * </ul>
-     *
-     * @param transaction トランザクションオブジェクト
-     * @param count 処理件数
-     * @param context 実行コンテキスト
-     * @return 未コミットの処理件数
-     */
-    private long commit(Transaction transaction, long count,
-            ExecutionContext context) {
-        if (commitInterval <= 1 || count >= commitInterval
-                || (!context.hasNextData() && count != 0L)) {
-            transaction.commit();
-            if (commitLogger != null) {
-                commitLogger.increment(count);
-            }
-            return 0;
-        }
-        return count;
-    }
-
     /**
      * エラー発生時のコールバック処理。
      *
@@ -141,22 +159,6 @@ implements Handler<Object, Result> {
                 TransactionEventCallback.REQUEST_DATA_REQUEST_SCOPE_KEY);
     }
 
-    /**
-     * ハンドラキューの内容を、ループ開始前の状態に戻す。
-     *
-     * @param context 実行コンテキスト
-     * @param snapshot ハンドラキューのスナップショット
-     * @return 実行コンテキスト(引数と同じインスタンス)
-     */
-    @SuppressWarnings("rawtypes")
-    private ExecutionContext restoreHandlerQueue(ExecutionContext context,
-            List<Handler> snapshot) {
-        List<Handler> queue = context.getHandlerQueue();
-        queue.clear();
-        queue.addAll(snapshot);
-        return context;
-    }
-
     /**
      * 現在の処理終了後にループを止める場合にtrueを返す。
      * <p/>
@@ -223,6 +225,225 @@ implements Handler<Object, Result> {
     /** コミット間隔 */
     private int commitInterval;
 
+    /**
+     * コミットを行うか否かの判定方式を設定する。
+     * <p/>
+     * 設定した場合、{@link #setCommitInterval(int)}の設定値は使用しない。
+     * 設定を省略した場合は、コミット間隔を設定した{@link CommitIntervalPolicy}を使用する。
+     *
+     * @param commitPolicy コミットを行うか否かの判定方式
+     * @return このハンドラ自体
+     */
+    public LoopHandler setCommitPolicy(CommitPolicy commitPolicy) {
+        this.commitPolicy = commitPolicy;
+        return this;
+    }
+
+    /** コミットを行うか否かの判定方式 */
+    private CommitPolicy commitPolicy;
+
+    /**
+     * 例外発生時に、未コミットのレコードを分割して再実行することで回復を試みるか否かを設定する。
+     * <p/>
+     * 有効にした場合、後続ハンドラもしくはコミット処理で例外が発生すると、ロールバックした上で
+     * 未コミットのレコードを半分ずつに分割して再実行し、例外の原因となったレコードを特定する。
+     * 正常に処理できたレコードはコミットし、単独で処理しても例外となったレコードは
+     * {@link TransactionEventCallback#transactionAbnormalEnd}を呼び出した上でスキップして処理を継続する。
+     * <p/>
+     * 以下の場合は回復を行わず、従来通り例外を再送出する。
+     * <ul>
+     * <li>未コミットのレコードが1件以下の場合</li>
+     * <li>データリーダからの読み込みなど、レコードの処理を開始する前に例外が発生した場合</li>
+     * <li>{@link ProcessAbnormalEnd}、{@link ProcessStopHandler.ProcessStop}、
+     *     {@link ServiceUnavailable}及びリトライ可能な例外が発生した場合</li>
+     * <li>分割した全てのレコードが単独で処理しても例外となった場合</li>
+     * <li>分割した全てのレコードが正常に処理できた場合(正常に処理できたレコードはコミットする)</li>
+     * </ul>
+     * 再実行は{@link DataReadHandler}が実行コンテキストのデータリーダから読み込むことを前提とする。
+     * また、未コミットのレコードを保持するため、コミット間隔分のレコードがメモリ上に保持される。
+     * デフォルトは無効である。
+     *
+     * @param bisectingRecovery 分割再実行による回復を行う場合は{@code true}
+     * @return このハンドラ自体
+     */
+    public LoopHandler setBisectingRecovery(boolean bisectingRecovery) {
+        this.bisectingRecovery = bisectingRecovery;
+        return this;
+    }
+
+    /** 分割再実行による回復を行うか否か */
+    private boolean bisectingRecovery = false;
+
+    /**
+     * チェックポイントの保存先を設定する。
+     * <p/>
+     * 設定した場合、コミットの直前にコミット済みのレコード件数をチェックポイントとして保存し、
+     * 全てのレコードの処理が完了した時点で完了を表すチェックポイントを保存する。
+     * 前回の実行が途中で終了していた場合は、チェックポイントの件数分のレコードを
+     * データリーダから読み飛ばしてから処理を開始する。
+     * 読み飛ばしは件数で行うため、データリーダは実行毎に同じ順序でレコードを返す必要がある。
+     * <p/>
+     * {@link MultiThreadExecutionHandler}配下で複数スレッドで処理する場合は、スレッド毎にチェックポイントを保存する。
+     * 各スレッドが処理するレコードを実行毎に一定とするため、{@link MultiThreadExecutionHandler}に
+     * 振り分けキー取得オブジェクトを設定し、並行実行スレッド数を変えずに再実行すること。
+     * 振り分けを行わずに複数スレッドで処理する場合は{@link IllegalStateException}を送出する。
+     * <p/>
+     * 分割再実行による回復中は、再実行したレコードをコミットする度に、先頭から処理が確定したレコードの件数を
+     * チェックポイントとして保存する。単独で処理しても例外となったレコードのスキップは、
+     * 後続のレコードの再実行(または回復の完了)と同一トランザクションで確定する。
+     * このため、回復中に異常終了した場合は、処理が確定していないレコードから再実行される。
+     *
+     * @param checkpointStore チェックポイントの保存先
+     * @return このハンドラ自体
+     */
+    public LoopHandler setCheckpointStore(CheckpointStore checkpointStore) {
+        this.checkpointStore = checkpointStore;
+        return this;
+    }
+
+    /** チェックポイントの保存先 */
+    private CheckpointStore checkpointStore;
+
+    /**
+     * チェックポイントIDを設定する。
+     * <p/>
+     * 設定を省略した場合はリクエストIDを使用する。
+     * 複数スレッドで処理する場合は、末尾に"#"とスレッド毎のレーン番号を付加したものをチェックポイントIDとする。
+     *
+     * @param checkpointId チェックポイントID
+     * @return このハンドラ自体
+     */
+    public LoopHandler setCheckpointId(String checkpointId) {
+        this.checkpointId = checkpointId;
+        return this;
+    }
+
+    /** チェックポイントID */
+    private String checkpointId;
+
+    /**
+     * チェックポイントIDを返す。
+     *
+     * @param baseId 基底のチェックポイントID
+     * @param lane レーン番号
+     * @param laneCount レーン数
+     * @return チェックポイントID
+     */
+    private static String checkpointIdOf(String baseId, int lane, int laneCount) {
+        return laneCount == 1 ? baseId : baseId + '#' + lane;
+    }
+
+    /**
+     * 指定されたレーンの再実行時に読み飛ばすレコード件数を取得する。
+     * <p/>
+     * 読み飛ばす件数は、最初に呼び出された時点で全てのレーンのチェックポイントから決定し、
+     * 各スレッドで共有するセッションスコープに保持する。
+     * 全てのレーンが完了している場合(前回の実行が正常終了している場合)は、読み飛ばしを行わない。
+     * 一度取得したレーンの件数は0に戻すため、同一の実行コンテキストで繰り返し実行した場合も
+     * 読み飛ばしは最初の1回のみ行われる。
+     *
+     * @param context 実行コンテキスト
+     * @param baseId 基底のチェックポイントID
+     * @param lane レーン番号
+     * @param laneCount レーン数
+     * @return 読み飛ばすレコード件数(レーンの全てのレコードを読み飛ばす場合は{@link CheckpointStore#COMPLETED})
+     */
+    private synchronized long takeRestartPosition(ExecutionContext context, String baseId, int lane, int laneCount) {
+        String key = CHECKPOINT_PLAN_KEY_PREFIX + baseId;
+        long[] plan = context.getSessionScopedVar(key);
+        if (plan == null || plan.length != laneCount) {
+            plan = new long[laneCount];
+            boolean allCompleted = true;
+            for (int i = 0; i < laneCount; i++) {
+                Long position = checkpointStore.load(checkpointIdOf(baseId, i, laneCount));
+                plan[i] = (position == null) ? 0 : position;
+                allCompleted &= (position != null && position == CheckpointStore.COMPLETED);
+            }
+            if (allCompleted) {
+                Arrays.fill(plan, 0);
+            }
+            context.setSessionScopedVar(key, plan);
+        }
+        long position = plan[lane];
+        plan[lane] = 0;
+        return position;
+    }
+
+    /**
+     * バッチバッファに溜め込むレコード件数の上限を設定する。
+     * <p/>
+     * 上限は{@link CommitScopedBatchBuffer.BatchWriter}毎の件数であり、
+     * 上限に達した場合はコミットを待たずにその時点までのレコードを書き込む。
+     * コミット間隔が大きい場合に、バッファが使用するメモリ量を抑えるために使用する。
+     * なお、0以下の値を設定した場合や、設定を省略した場合は上限なしとなる。
+     *
+     * @param maxBatchSize バッチバッファに溜め込むレコード件数の上限
+     * @return このハンドラ自体
+     */
+    public LoopHandler setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /** バッチバッファに溜め込むレコード件数の上限 */
+    private int maxBatchSize;
+
+    /**
+     * ハンドラ毎の処理時間の記録先を設定する。
+     * <p/>
+     * 設定した場合、後続ハンドラ毎の処理時間と、コミットの処理時間を記録する。
+     * コミットの処理時間は、本ハンドラのクラス名に"#commit"を付加した名前で記録する。
+     * デフォルトでは記録しない。
+     *
+     * @param latencyRegistry ハンドラ毎の処理時間の記録先
+     * @return このハンドラ自体
+     * @see HandlerLatencyRegistry
+     */
+    public LoopHandler setLatencyRegistry(HandlerLatencyRegistry latencyRegistry) {
+        this.latencyRegistry = latencyRegistry;
+        return this;
+    }
+
+    /** ハンドラ毎の処理時間の記録先 */
+    private HandlerLatencyRegistry latencyRegistry;
+
+    /**
+     * 進捗状況の記録先を設定する。
+     * <p/>
+     * 設定した場合、コミットしたレコードの件数を記録する。
+     * デフォルトでは記録しない。
+     *
+     * @param progressReporter 進捗状況の記録先
+     * @return このハンドラ自体
+     * @see ProgressReporter
+     */
+    public LoopHandler setProgressReporter(ProgressReporter progressReporter) {
+        this.progressReporter = progressReporter;
+        return this;
+    }
+
+    /** 進捗状況の記録先 */
+    private ProgressReporter progressReporter;
+
+    /**
+     * 現在のトランザクションのコミット直前に書き込まれるバッチバッファを取得する。
+     * <p/>
+     * バッファに登録したレコードは、{@link #isAboutToCommit(ExecutionContext)}が
+     * {@code true}を返すレコードの処理後、コミット直前に書き込まれる。
+     *
+     * @param ctx 実行コンテキスト
+     * @return バッチバッファ
+     * @throws IllegalStateException 本ハンドラの後続ハンドラ以外から呼び出された場合
+     */
+    public static CommitScopedBatchBuffer getBatchBuffer(ExecutionContext ctx) {
+        CommitScopedBatchBuffer batchBuffer = ctx.getRequestScopedVar(BATCH_BUFFER_KEY);
+        if (batchBuffer == null) {
+            throw new IllegalStateException(
+                    "batch buffer is not available. LoopHandler must be placed before the caller.");
+        }
+        return batchBuffer;
+    }
+
     /**
      * 現在のリクエストループの業務アクション実行後にLoopHandlerによるコミットが行われるか否か。
      *
@@ -232,13 +453,160 @@ implements Handler<Object, Result> {
      * @return 業務アクション実行後にコミットが行われる場合は true
      */
     public static final boolean isAboutToCommit(ExecutionContext ctx) {
-        Boolean isAboutToCommit = ctx.getRequestScopedVar(LoopHandler.IS_ABOUT_TO_COMMIT_FLAG_KEY);
-        if (isAboutToCommit == null) {
-            isAboutToCommit = true;
-        }
+        CommitForecast forecast = ctx.getRequestScopedVar(LoopHandler.IS_ABOUT_TO_COMMIT_FLAG_KEY);
+        boolean isAboutToCommit = (forecast == null) || forecast.isAboutToCommit(ctx);
         return isAboutToCommit || !ctx.getDataReader().hasNext(ctx);
     }
 
+    /**
+     * 処理中のレコードの処理後にコミットが行われるか否かを判定するクラス。
+     * <p/>
+     * 処理中のレコードを含めた未コミットの処理状況で{@link CommitPolicy}の判定を行うことで、
+     * レコードの処理後に{@link LoopHandler}が行う判定と同じ結果を得る。
+     */
+    private static final class CommitForecast {
+
+        /** コミットを行うか否かの判定方式 */
+        private final CommitPolicy policy;
+
+        /** 処理中のレコードを含まない未コミットの処理状況 */
+        private final CommitPolicy.Status committed;
+
+        /** 処理中のレコードの処理開始時点の経過時間(単位:msec) */
+        private final long elapsedTime;
+
+        /** 見積り済みのレコードのサイズ */
+        private Long recordSize;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param policy コミットを行うか否かの判定方式
+         * @param committed 処理中のレコードを含まない未コミットの処理状況
+         * @param elapsedTime 処理中のレコードの処理開始時点の経過時間(単位:msec)
+         */
+        private CommitForecast(CommitPolicy policy, CommitPolicy.Status committed, long elapsedTime) {
+            this.policy = policy;
+            this.committed = committed;
+            this.elapsedTime = elapsedTime;
+        }
+
+        /**
+         * 処理中のレコードの処理後にコミットが行われるか否かを判定する。
+         *
+         * @param ctx 実行コンテキスト
+         * @return コミットが行われる場合は{@code true}
+         */
+        private boolean isAboutToCommit(ExecutionContext ctx) {
+            return policy.shouldCommit(statusWith(currentData(ctx)));
+        }
+
+        /**
+         * 処理中のレコードを含めた未コミットの処理状況を返す。
+         * <p/>
+         * 処理中のレコードが{@link DataReadHandler}によりチャンク単位で読み込まれたものである場合は、
+         * チャンク内のレコード件数とサイズを加算する。
+         *
+         * @param data 処理中のレコード
+         * @return 処理中のレコードを含めた未コミットの処理状況
+         */
+        private CommitPolicy.Status statusWith(Object data) {
+            if (data instanceof DataReadHandler.RecordChunk) {
+                List<?> chunk = (List<?>) data;
+                if (recordSize == null) {
+                    long size = 0;
+                    for (Object record : chunk) {
+                        size += policy.estimateSize(record);
+                    }
+                    recordSize = size;
+                }
+                return new CommitPolicy.Status(
+                        committed.getCount() + chunk.size(), elapsedTime, committed.getPayloadSize() + recordSize);
+            }
+            if (recordSize == null) {
+                recordSize = policy.estimateSize(data);
+            }
+            return new CommitPolicy.Status(
+                    committed.getCount() + 1, elapsedTime, committed.getPayloadSize() + recordSize);
+        }
+    }
+
+    /**
+     * 処理中のレコードを取得する。
+     * <p/>
+     * {@link DataReadHandler}によりチャンク単位で読み込まれた場合はチャンクを、
+     * それ以外の場合は最後に読み込んだデータを返す。
+     *
+     * @param ctx 実行コンテキスト
+     * @return 処理中のレコード
+     */
+    private static Object currentData(ExecutionContext ctx) {
+        Object transactionData = getTransactionData(ctx);
+        if (transactionData instanceof DataReadHandler.RecordChunk) {
+            return transactionData;
+        }
+        return ctx.getLastReadData();
+    }
+
+    /**
+     * 分割再実行時に、保持しておいたレコードを順に返すデータリーダ。
+     */
+    private static final class ReplayDataReader implements DataReader<Object> {
+
+        /** 再実行するレコード */
+        private final List<Object> records;
+
+        /** 次に返すレコードの位置 */
+        private int index = 0;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param records 再実行するレコード
+         */
+        private ReplayDataReader(List<Object> records) {
+            this.records = records;
+        }
+
+        /** {@inheritDoc} */
+        public Object read(ExecutionContext ctx) {
+            return hasNext(ctx) ? records.get(index++) : null;
+        }
+
+        /** {@inheritDoc} */
+        public boolean hasNext(ExecutionContext ctx) {
+            return index < records.size();
+        }
+
+        /** {@inheritDoc} */
+        public void close(ExecutionContext ctx) {
+            // 元のデータリーダは呼び出し元で閉じるため、なにもしない。
+        }
+    }
+
+    /**
+     * 単独で処理しても例外となったレコード。
+     */
+    private static final class FailedRecord {
+
+        /** レコード */
+        private final Object data;
+
+        /** 発生した例外 */
+        private final RuntimeException error;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param data レコード
+         * @param error 発生した例外
+         */
+        private FailedRecord(Object data, RuntimeException error) {
+            this.data = data;
+            this.error = error;
+        }
+    }
+
     /**
      * トランザクション実行クラス。
      */
@@ -254,6 +622,37 @@ implements Handler<Object, Result> {
         @SuppressWarnings("rawtypes")
         private final List<TransactionEventCallback> listeners;
 
+        /** コミット単位のバッチバッファ */
+        private final CommitScopedBatchBuffer batchBuffer = new CommitScopedBatchBuffer(maxBatchSize);
+
+        /** コミットを行うか否かの判定方式 */
+        private final CommitPolicy policy =
+                (commitPolicy != null) ? commitPolicy : new CommitIntervalPolicy(commitInterval);
+
+        /** 前回のコミット時刻(単位:nsec) */
+        private long lastCommitTime;
+
+        /** ループ開始前のハンドラキューのスナップショット */
+        private HandlerQueueSnapshot snapshot;
+
+        /** 未コミットのレコード(分割再実行による回復が有効な場合のみ保持する) */
+        private final List<Object> uncommitted = new ArrayList<Object>();
+
+        /** 最後に未コミットのレコードに加えたトランザクションデータ */
+        private Object lastUncommitted;
+
+        /** 分割再実行で最後に例外が発生した際のトランザクションデータ */
+        private Object lastReplayFailure;
+
+        /** 単独で処理しても例外となったレコードのうち、スキップが確定していないもの */
+        private final List<FailedRecord> unresolvedFailures = new ArrayList<FailedRecord>();
+
+        /** このスレッドのチェックポイントID */
+        private String checkpointName;
+
+        /** コミット済みのレコード件数 */
+        private long checkpointPosition;
+
         /**
          * コンストラクタ。
          * @param transaction トランザクションオブジェクト
@@ -273,48 +672,397 @@ implements Handler<Object, Result> {
             this.listeners = listeners;
         }
 
-        @SuppressWarnings("rawtypes")
         @Override
         protected Void doInTransaction(Transaction transaction) {
 
-            List<Handler> snapshot = new ArrayList<Handler>();
-            snapshot.addAll(context.getHandlerQueue());
+            snapshot = new HandlerQueueSnapshot(context);
 
-            long executeCount = 0;
-            context.setRequestScopedVar(IS_ABOUT_TO_COMMIT_FLAG_KEY, false);
+            CommitPolicy.Status status = new CommitPolicy.Status(0, 0, 0);
+            lastCommitTime = System.nanoTime();
+            context.setRequestScopedVar(BATCH_BUFFER_KEY, batchBuffer);
+            if (checkpointStore != null) {
+                restart();
+            }
 
             do {
-                // トランザクションデータ格納部をnull初期化
-                context.setRequestScopedVar(
-                        TransactionEventCallback.REQUEST_DATA_REQUEST_SCOPE_KEY, null);
-                // 今回のループ実行後にコミットを行う場合は、コミット実施予告フラグをtrueに設定する。
-                context.setRequestScopedVar(
-                    IS_ABOUT_TO_COMMIT_FLAG_KEY,
-                    (commitInterval <= 1 || executeCount == commitInterval - 1)
-                );
-                Object result = restoreHandlerQueue(context, snapshot)
-                        .handleNext(data);
+                try {
+                    status = processNext(transaction, status);
+                } catch (RuntimeException e) {
+                    Object failedData = getTransactionData(context);
+                    if (!shouldRecover(e, failedData)) {
+                        throw e;
+                    }
+                    recover(transaction, e, failedData);
+                    status = new CommitPolicy.Status(0, 0, 0);
+                }
+            } while (!shouldStop(context));
+            // 処理すべきデータが残った状態でループを終了する場合も、未コミットのレコードをコミットする。
+            commit(transaction, status, true);
+            // 未コミットのレコードがない場合も、バッファの内容はTransactionExecutorによる最後のコミットの前に書き込む。
+            batchBuffer.flush();
+            if (checkpointStore != null && !context.hasNextData()) {
+                // 完了を表すチェックポイントは、TransactionExecutorによる最後のコミットで確定する。
+                checkpointStore.save(checkpointName, CheckpointStore.COMPLETED);
+            }
+            return null;
+        }
+
+        /**
+         * チェックポイントに従い、前回の実行でコミット済みのレコードを読み飛ばす。
+         */
+        private void restart() {
+            Integer laneCount = context.getRequestScopedVar(MultiThreadExecutionHandler.LANE_COUNT_KEY);
+            Integer lane = context.getRequestScopedVar(MultiThreadExecutionHandler.LANE_KEY);
+            int lanes = (laneCount == null) ? 1 : laneCount;
+            if (lane == null) {
+                if (lanes > 1) {
+                    throw new IllegalStateException(
+                            "checkpoint requires records to be partitioned when processed by multiple threads. "
+                          + "set partitionKeyExtractor to MultiThreadExecutionHandler.");
+                }
+                lane = 0;
+            }
+            String baseId = (checkpointId != null) ? checkpointId : ThreadContext.getRequestId();
+            if (StringUtil.isNullOrEmpty(baseId)) {
+                throw new IllegalStateException(
+                        "checkpointId is not specified and request id is not set to ThreadContext.");
+            }
+            checkpointName = checkpointIdOf(baseId, lane, lanes);
+
+            long position = takeRestartPosition(context, baseId, lane, lanes);
+            long skipped = 0;
+            while ((position == CheckpointStore.COMPLETED || skipped < position) && context.hasNextData()) {
+                context.readNextData();
+                skipped++;
+            }
+            context.clearLastReadData();
+            checkpointPosition = skipped;
+            if (position != 0) {
+                LOGGER.logInfo("restarted from checkpoint. checkpoint id = [" + checkpointName
+                        + "], skipped record count = [" + skipped + ']');
+            }
+        }
+
+        /**
+         * チェックポイントを保存する。
+         *
+         * @param count 今回コミットするレコード件数
+         */
+        private void saveCheckpoint(long count) {
+            if (checkpointStore == null || count == 0L) {
+                return;
+            }
+            checkpointPosition += count;
+            checkpointStore.save(checkpointName, checkpointPosition);
+        }
+
+        /**
+         * 後続ハンドラに1レコード分の処理を委譲し、必要に応じてコミットする。
+         *
+         * @param transaction トランザクションオブジェクト
+         * @param status 未コミットの処理状況
+         * @return 処理後の未コミットの処理状況
+         */
+        private CommitPolicy.Status processNext(Transaction transaction, CommitPolicy.Status status) {
+            // トランザクションデータ格納部をnull初期化
+            context.setRequestScopedVar(
+                    TransactionEventCallback.REQUEST_DATA_REQUEST_SCOPE_KEY, null);
+            // 今回のループ実行後にコミットを行うか否かを判定できるよう、判定に必要な状態を設定する。
+            CommitForecast forecast = new CommitForecast(policy, status, elapsedMillis());
+            context.setRequestScopedVar(IS_ABOUT_TO_COMMIT_FLAG_KEY, forecast);
+            Object result = snapshot.restore(context)
+                    .handleNext(data);
+
+            if (!(result instanceof NoMoreRecord)) {
+                Object transactionData = getTransactionData(context);
+                if (transactionData != null) {
+                    // トランザクションデータが正常に存在していた場合は、
+                    // 正常終了のコールバックを呼び出す
+                    callNormalEndHandlers(listeners, transactionData, context);
+                    if (bisectingRecovery) {
+                        addUncommitted(transactionData);
+                    }
+                }
+                status = forecast.statusWith(currentData(context));
+            }
+            status = commit(transaction, status, false);
+            // 正常終了時は最後に読み込んだデータオブジェクトをクリアする
+            context.clearLastReadData();
+            return status;
+        }
+
+        /**
+         * 発生した例外に対して、未コミットのレコードの分割再実行による回復を行うか否かを判定する。
+         * <p/>
+         * 以下の場合は回復を行わない。
+         * <ul>
+         * <li>分割再実行による回復が無効な場合</li>
+         * <li>未コミットのレコードが1件以下の場合(分割の余地がないため)</li>
+         * <li>例外発生時に処理していたレコードが分からない場合
+         *     (データリーダからの読み込みで例外が発生した場合など。再実行しても原因のレコードを特定できないため)</li>
+         * <li>プロセスの停止を要求する例外やリトライ可能な例外など、レコード起因ではない例外の場合</li>
+         * </ul>
+         * 回復を行う場合は、例外発生時に処理していたレコードを未コミットのレコードに加える。
+         *
+         * @param e 発生した例外
+         * @param failedData 例外発生時に処理していたレコード
+         * @return 回復を行う場合は{@code true}
+         */
+        private boolean shouldRecover(RuntimeException e, Object failedData) {
+            if (!bisectingRecovery) {
+                return false;
+            }
+            if (failedData != null && failedData != lastUncommitted) {
+                addUncommitted(failedData);
+            }
+            if (failedData == null
+                    || uncommitted.size() < 2
+                    || e instanceof ProcessAbnormalEnd
+                    || e instanceof ProcessStopHandler.ProcessStop
+                    || e instanceof ServiceUnavailable
+                    || RetryUtil.isRetryable(e)) {
+                uncommitted.clear();
+                lastUncommitted = null;
+                return false;
+            }
+            return true;
+        }
 
-                if (!(result instanceof NoMoreRecord)) {
+        /**
+         * トランザクションデータを未コミットのレコードに加える。
+         * <p/>
+         * チャンク単位で読み込まれたトランザクションデータは、レコード単位に展開して加える。
+         * 分割再実行時には、展開したレコードが{@link DataReadHandler}により再びチャンクにまとめられる。
+         *
+         * @param transactionData トランザクションデータ
+         */
+        private void addUncommitted(Object transactionData) {
+            if (transactionData instanceof DataReadHandler.RecordChunk) {
+                uncommitted.addAll((List<?>) transactionData);
+            } else {
+                uncommitted.add(transactionData);
+            }
+            lastUncommitted = transactionData;
+        }
+
+        /**
+         * 未コミットのレコードを半分ずつに分割して再実行し、例外の原因となったレコードを特定する。
+         * <p/>
+         * 正常に処理できたレコードはコミットし、単独で処理しても例外が発生するレコードは、
+         * ワーニングログを出力した上で{@link TransactionEventCallback#transactionAbnormalEnd}を呼び出す。
+         * <p/>
+         * 全てのレコードが単独で処理しても例外となった場合は、レコード起因の例外ではないと判断し、
+         * 最初に発生した例外を再送出する。
+         * また、全てのレコードが正常に処理できた場合も、例外の原因を特定できなかったため、
+         * 正常に処理できたレコードをコミットした上で最初に発生した例外を再送出する。
+         * <p/>
+         * 単独で処理しても例外となったレコードのスキップは、後続のレコードの再実行と同一トランザクションで確定し、
+         * チェックポイントには先頭から処理が確定したレコードの件数を保存する。
+         * <p/>
+         * 再実行中は{@link DataReadHandler#REPLAY_FLAG_KEY}を設定し、
+         * 読み込み回数の上限や読み込み件数の計数が重複して行われないようにする。
+         *
+         * @param transaction トランザクションオブジェクト
+         * @param e 最初に発生した例外
+         * @param failedData 最初に例外が発生した際に処理していたレコード
+         */
+        private void recover(Transaction transaction, RuntimeException e, Object failedData) {
+            batchBuffer.clear();
+            transaction.rollback();
+
+            List<Object> records = new ArrayList<Object>(uncommitted);
+            uncommitted.clear();
+            lastUncommitted = null;
+            unresolvedFailures.clear();
+            LOGGER.logInfo("transaction was rolled back. start recovery by bisection. record count = ["
+                    + records.size() + ']');
+
+            List<FailedRecord> failedRecords = new ArrayList<FailedRecord>();
+            DataReader<?> originalReader = context.getDataReader();
+            context.setRequestScopedVar(DataReadHandler.REPLAY_FLAG_KEY, Boolean.TRUE);
+            try {
+                int mid = records.size() / 2;
+                bisect(transaction, records.subList(0, mid), failedRecords);
+                bisect(transaction, records.subList(mid, records.size()), failedRecords);
+            } finally {
+                context.setRequestScopedVar(DataReadHandler.REPLAY_FLAG_KEY, null);
+                context.setDataReader(originalReader);
+                context.clearLastReadData();
+            }
+
+            if (failedRecords.isEmpty() || failedRecords.size() == records.size()) {
+                // 全てのレコードが正常に処理できた場合は、正常終了のコールバックを呼び出し済みのため、
+                // 異常終了のコールバックは呼び出さない。
+                context.setRequestScopedVar(TransactionEventCallback.REQUEST_DATA_REQUEST_SCOPE_KEY,
+                        failedRecords.isEmpty() ? null : failedData);
+                throw e;
+            }
+            int count = resolveFailures();
+            batchBuffer.flush();
+            saveCheckpoint(count);
+            transaction.commit();
+            LOGGER.logInfo("recovery by bisection was completed. skipped record count = ["
+                    + failedRecords.size() + ']');
+            lastCommitTime = System.nanoTime();
+        }
+
+        /**
+         * レコードを再実行し、例外が発生した場合は半分に分割して再帰的に再実行する。
+         *
+         * @param transaction トランザクションオブジェクト
+         * @param records 再実行するレコード
+         * @param failedRecords 単独で処理しても例外となったレコードの格納先
+         */
+        private void bisect(Transaction transaction, List<Object> records, List<FailedRecord> failedRecords) {
+            if (records.isEmpty()) {
+                return;
+            }
+            RuntimeException error = replay(transaction, records);
+            if (error == null) {
+                return;
+            }
+            if (records.size() == 1) {
+                // チャンク単位で読み込まれた場合に、後続ハンドラに渡された形式(要素数1のチャンク)で扱う。
+                Object failedData = (lastReplayFailure instanceof DataReadHandler.RecordChunk)
+                        ? lastReplayFailure : records.get(0);
+                FailedRecord failed = new FailedRecord(failedData, error);
+                failedRecords.add(failed);
+                unresolvedFailures.add(failed);
+                return;
+            }
+            int mid = records.size() / 2;
+            bisect(transaction, records.subList(0, mid), failedRecords);
+            bisect(transaction, records.subList(mid, records.size()), failedRecords);
+        }
+
+        /**
+         * レコードを1トランザクションで再実行する。
+         * <p/>
+         * 全てのレコードが正常に処理できた場合は、スキップが確定していないレコードの
+         * {@link TransactionEventCallback#transactionAbnormalEnd}を呼び出した上でコミットし、
+         * 例外が発生した場合はロールバックする。
+         *
+         * @param transaction トランザクションオブジェクト
+         * @param records 再実行するレコード
+         * @return 発生した例外(正常に処理できた場合は{@code null})
+         */
+        private RuntimeException replay(Transaction transaction, List<Object> records) {
+            ReplayDataReader reader = new ReplayDataReader(records);
+            context.setDataReader(reader);
+            try {
+                // チャンク単位で読み込まれる場合は、1回の処理で複数のレコードが読み込まれる。
+                for (int i = 0; i < records.size() && reader.hasNext(context); i++) {
+                    context.setRequestScopedVar(
+                            TransactionEventCallback.REQUEST_DATA_REQUEST_SCOPE_KEY, null);
+                    // 再実行時は、再実行するレコードの最後でのみコミットを行う。
+                    context.setRequestScopedVar(IS_ABOUT_TO_COMMIT_FLAG_KEY,
+                            new CommitForecast(REPLAY_POLICY, new CommitPolicy.Status(0, 0, 0), 0));
+                    snapshot.restore(context).handleNext(data);
                     Object transactionData = getTransactionData(context);
                     if (transactionData != null) {
-                        // トランザクションデータが正常に存在していた場合は、
-                        // 正常終了のコールバックを呼び出す
                         callNormalEndHandlers(listeners, transactionData, context);
                     }
-                    executeCount++;
+                    context.clearLastReadData();
                 }
-                executeCount = commit(transaction, executeCount, context);
-                // 正常終了時は最後に読み込んだデータオブジェクトをクリアする
-                context.clearLastReadData();
-            } while (!shouldStop(context));
-            commit(transaction, executeCount, context);
+                batchBuffer.flush();
+            } catch (RuntimeException e) {
+                lastReplayFailure = getTransactionData(context);
+                batchBuffer.clear();
+                transaction.rollback();
+                return e;
+            }
+            int skipped = resolveFailures();
+            batchBuffer.flush();
+            // 分割は処理順序どおりに行われるため、ここまでのレコードは全て処理が確定する。
+            saveCheckpoint(skipped + records.size());
+            transaction.commit();
+            if (commitLogger != null) {
+                commitLogger.increment(records.size());
+            }
+            if (progressReporter != null) {
+                progressReporter.recordCommit(records.size());
+            }
             return null;
         }
 
+        /**
+         * スキップが確定していないレコードについて、ワーニングログを出力した上で
+         * {@link TransactionEventCallback#transactionAbnormalEnd}を呼び出す。
+         * <p/>
+         * 呼び出し後のコミットは呼び出し元で行う。
+         *
+         * @return スキップしたレコード件数
+         */
+        private int resolveFailures() {
+            for (FailedRecord failed : unresolvedFailures) {
+                LOGGER.logWarn("record was skipped because it failed even when processed alone."
+                        + Logger.LS + '\t' + "input data = " + failed.data, failed.error);
+                context.setRequestScopedVar(
+                        TransactionEventCallback.REQUEST_DATA_REQUEST_SCOPE_KEY, failed.data);
+                callAbnormalEndHandlers(listeners, failed.error, failed.data, context);
+            }
+            int count = unresolvedFailures.size();
+            unresolvedFailures.clear();
+            return count;
+        }
+
+        /**
+         * トランザクションをコミットする。
+         * <p/>
+         * 以下の条件に合致する場合にコミット処理を行う。
+         * <ul>
+         * <li>{@link CommitPolicy}がコミットを行うと判定した場合</li>
+         * <li>これ以上処理するデータが存在しない場合</li>
+         * <li>ループを終了する場合</li>
+         * </ul>
+         * コミットの直前に、バッチバッファに溜め込まれたレコードを書き込む。
+         *
+         * @param transaction トランザクションオブジェクト
+         * @param status 未コミットの処理状況
+         * @param last ループを終了する場合は{@code true}
+         * @return コミット後の未コミットの処理状況
+         */
+        private CommitPolicy.Status commit(Transaction transaction, CommitPolicy.Status status, boolean last) {
+            long count = status.getCount();
+            if (policy.shouldCommit(status)
+                    || ((last || !context.hasNextData()) && count != 0L)) {
+                Object event = FlightRecorderEvent.COMMIT.begin();
+                long commitStartTime = System.nanoTime();
+                batchBuffer.flush();
+                saveCheckpoint(count);
+                transaction.commit();
+                if (latencyRegistry != null) {
+                    latencyRegistry.record(COMMIT_LATENCY_NAME, System.nanoTime() - commitStartTime);
+                }
+                FlightRecorderEvent.COMMIT.commit(event, context, count);
+                if (commitLogger != null) {
+                    commitLogger.increment(count);
+                }
+                if (progressReporter != null) {
+                    progressReporter.recordCommit(count);
+                }
+                lastCommitTime = System.nanoTime();
+                uncommitted.clear();
+                lastUncommitted = null;
+                return new CommitPolicy.Status(0, 0, 0);
+            }
+            return status;
+        }
+
+        /**
+         * 前回のコミットからの経過時間を返す。
+         *
+         * @return 経過時間(単位:msec)
+         */
+        private long elapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastCommitTime);
+        }
+
         @Override
         protected void onError(Transaction transaction,
                 Throwable throwable) {
+            // ロールバックされるトランザクションで登録されたレコードは書き込まない。
+            batchBuffer.clear();
             super.onError(transaction, throwable);
             errorCallback(transaction, throwable, context, listeners);
         }
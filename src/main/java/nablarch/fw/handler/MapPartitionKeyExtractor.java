@@ -0,0 +1,48 @@
+package nablarch.fw.handler;
+
+import java.util.Map;
+
+/**
+ * {@link Map}形式の入力データ({@link nablarch.core.dataformat.DataRecord}や
+ * {@code SqlRow}など)から、
+ * 指定した項目の値を振り分けキーとして取得する{@link PartitionKeyExtractor}実装クラス。
+ * <p/>
+ * 以下は、口座番号毎に振り分ける場合の設定例である。
+ * <pre>
+ * &lt;component class="nablarch.fw.handler.MultiThreadExecutionHandler">
+ *   &lt;property name="concurrentNumber" value="16" />
+ *   &lt;property name="partitionKeyExtractor">
+ *     &lt;component class="nablarch.fw.handler.MapPartitionKeyExtractor">
+ *       &lt;property name="keyName" value="accountNumber" />
+ *     &lt;/component>
+ *   &lt;/property>
+ * &lt;/component>
+ * </pre>
+ */
+public class MapPartitionKeyExtractor implements PartitionKeyExtractor {
+
+    /** 振り分けキーとする項目名 */
+    private String keyName;
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 入力データが{@link Map}でない場合は{@link IllegalArgumentException}を送出する。
+     */
+    public Object extractKey(Object data) {
+        if (!(data instanceof Map)) {
+            throw new IllegalArgumentException(
+                    "input data must be an instance of java.util.Map. data = [" + data + ']');
+        }
+        return ((Map<?, ?>) data).get(keyName);
+    }
+
+    /**
+     * 振り分けキーとする項目名を設定する。
+     *
+     * @param keyName 振り分けキーとする項目名
+     */
+    public void setKeyName(String keyName) {
+        this.keyName = keyName;
+    }
+}
@@ -2,12 +2,15 @@ package nablarch.fw.handler;
 
 import static nablarch.core.log.Logger.LS;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -18,6 +21,7 @@ import nablarch.core.log.Logger;
 import nablarch.core.log.LoggerManager;
 import nablarch.core.log.app.CommitLogger;
 import nablarch.core.log.app.FailureLogUtil;
+import nablarch.fw.DataReader;
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.Result;
 import nablarch.fw.Result.MultiStatus;
@@ -35,12 +39,42 @@ import nablarch.fw.Result.MultiStatus;
  * このハンドラでは、全てのスレッドで単一のデータリーダインスタンスを共有する。
  * 従って、データリーダがアクセスするリソースに対する同期制御は各データリーダ側
  * で担保されている必要がある。
+ * <p/>
+ * 仮想スレッドの使用({@link #setUseVirtualThreads(boolean)})を有効にした場合、
+ * 実行環境が仮想スレッドをサポートしていれば、後続処理を各タスク毎に作成する仮想スレッド上で実行する。
+ * 後続処理を行うタスクは並行実行スレッド数分だけ作成されるため、同時に実行されるスレッド数は
+ * スレッドプールを使用する場合と同じく並行実行スレッド数となる。
+ * 実行環境が仮想スレッドをサポートしていない場合は、通常のスレッドプールを使用する。
+ * <p/>
+ * 振り分けキー取得オブジェクト({@link #setPartitionKeyExtractor(PartitionKeyExtractor)})を
+ * 設定した場合は、データリーダを{@link PartitionedDataReader}でラップし、
+ * 入力データを振り分けキーのハッシュ値に応じて各スレッドに振り分ける。
+ * これにより、同じ振り分けキーを持つデータの処理順序を保ちつつ、
+ * 異なる振り分けキーを持つデータを並行して処理することができる。
+ * <p/>
+ * 並行実行数制御オブジェクト({@link #setAdaptiveConcurrencyController(AdaptiveConcurrencyController)})を
+ * 設定した場合は、並行実行スレッド数を上限として、レコードの処理時間とスループットに応じて
+ * 同時にレコードを処理するスレッド数を動的に増減させる。
+ * <p/>
+ * 先読み件数({@link #setPrefetchSize(int)})を設定した場合は、データリーダを
+ * {@link PrefetchDataReader}でラップし、専用の読み込みスレッド上で入力データを先読みする。
+ * これにより、各スレッドはデータリーダの同期制御やI/O待ちによって直列化されることなく、
+ * 先読み済みのデータを処理することができる。
  *
  * @author Iwauo Tajima
  */
 public class MultiThreadExecutionHandler
 implements ExecutionHandler<Object, MultiStatus, MultiThreadExecutionHandler> {
 
+    /**
+     * 各スレッドに割り当てたレーン番号を保持するリクエストスコープ変数名。
+     * 各スレッドが処理するレコードが実行毎に一定となる場合(振り分けを行う場合もしくは1スレッドの場合)のみ設定する。
+     */
+    static final String LANE_KEY = ExecutionContext.FW_PREFIX + "MultiThreadExecutionHandler_lane";
+
+    /** レーン数(並行実行スレッド数)を保持するリクエストスコープ変数名 */
+    static final String LANE_COUNT_KEY = ExecutionContext.FW_PREFIX + "MultiThreadExecutionHandler_lane_count";
+
     //------------------------------------------------------------- Settings
     /** 並行実行スレッド数 (デフォルト: 1スレッド) */
     private int concurrentNumber = 1;
@@ -51,9 +85,33 @@ implements ExecutionHandler<Object, MultiStatus, MultiThreadExecutionHandler> {
     /** コミットログ */
     private CommitLogger commitLogger;
 
+    /** 先読みする最大件数 (デフォルト: 0 = 先読みしない) */
+    private int prefetchSize = 0;
+
+    /** 先読みする最大バイト数 (デフォルト: 0 = 無制限) */
+    private long prefetchBytes = 0;
+
+    /** 先読みデータのサイズ見積りオブジェクト */
+    private SizeEstimator prefetchSizeEstimator = null;
+
+    /** 振り分けキーの取得オブジェクト (デフォルト: null = 振り分けを行わない) */
+    private PartitionKeyExtractor partitionKeyExtractor = null;
+
+    /** 並行実行数の制御オブジェクト (デフォルト: null = 並行実行数を固定する) */
+    private AdaptiveConcurrencyController adaptiveConcurrencyController = null;
+
+    /** ハンドラ毎の処理時間の記録先 (デフォルト: null = 集計結果を出力しない) */
+    private HandlerLatencyRegistry latencyRegistry = null;
+
+    /** 進捗状況の記録先 (デフォルト: null = 進捗状況を出力しない) */
+    private ProgressReporter progressReporter = null;
+
     //-------------------------------------------------- Internal structure
+    /** 仮想スレッドを使用するか否か (デフォルト: 使用しない) */
+    private boolean useVirtualThreads = false;
+
     /** スレッド実行管理モジュール */
-    private ThreadPoolExecutor taskExecutor = null;
+    private ExecutorService taskExecutor = null;
 
     /** スレッド実行状況監視モジュール */
     private CompletionService<Result> taskStatus = null;
@@ -93,6 +151,19 @@ implements ExecutionHandler<Object, MultiStatus, MultiThreadExecutionHandler> {
 
         // 後続処理で使用するデータリーダを準備する。
         support.prepareDataReader(data, context);
+        if (progressReporter != null) {
+            // 総件数の見込みは、データリーダをラップする前に取得する。
+            progressReporter.start(context);
+        }
+        if (prefetchSize > 0) {
+            enablePrefetch(context);
+        }
+        PartitionedDataReader<Object> partitionedReader = enablePartitioning(context);
+        AdaptiveConcurrencyDataReader<Object> adaptiveReader = enableAdaptiveConcurrency(context);
+
+        if (latencyRegistry != null) {
+            latencyRegistry.reset();
+        }
 
         if (commitLogger != null) {
             commitLogger.initialize();
@@ -102,19 +173,27 @@ implements ExecutionHandler<Object, MultiStatus, MultiThreadExecutionHandler> {
         }
 
         // スレッドプールを初期化する。
+        Object event = FlightRecorderEvent.THREAD_POOL.begin();
         initializeThreadPool();
 
         for (int i = 0; i < concurrentNumber; i++) {
             taskTracker.add(
-                taskStatus.submit(createTaskFor(data, context))
+                taskStatus.submit(createTaskFor(data, context, partitionedReader, adaptiveReader, i))
             );
         }
+        FlightRecorderEvent.THREAD_POOL.commit(event, context, "initialize", concurrentNumber);
 
         MultiStatus results = new MultiStatus();
         Throwable error = null; // 処理実行中に送出された元例外
         try {
-            for (int i = 0; i < concurrentNumber; i++) {
-                results.addResults(taskStatus.take().get());
+            event = FlightRecorderEvent.THREAD_POOL.begin();
+            try {
+                for (int i = 0; i < concurrentNumber; i++) {
+                    results.addResults(taskStatus.take().get());
+                }
+            } finally {
+                // 子スレッドが異常終了した場合も、それまでの実行時間を記録する。
+                FlightRecorderEvent.THREAD_POOL.commit(event, context, "execute", concurrentNumber);
             }
             terminate(context); //正常終了
 
@@ -213,6 +292,12 @@ implements ExecutionHandler<Object, MultiStatus, MultiThreadExecutionHandler> {
                 if (commitLogger != null) {
                     commitLogger.terminate();
                 }
+                if (latencyRegistry != null) {
+                    LOGGER.logInfo(latencyRegistry.getSummary());
+                }
+                if (progressReporter != null) {
+                    progressReporter.finish();
+                }
                 // 終端処理用コールバックを呼び出す。
                 support.callPostExecution(listeners, results, context);
 
@@ -230,6 +315,79 @@ implements ExecutionHandler<Object, MultiStatus, MultiThreadExecutionHandler> {
         return results;
     }
 
+    /**
+     * 実行コンテキスト上のデータリーダを{@link PrefetchDataReader}でラップする。
+     *
+     * @param context 実行コンテキスト
+     */
+    private void enablePrefetch(ExecutionContext context) {
+        DataReader<Object> reader = context.getDataReader();
+        if (reader == null || reader instanceof PrefetchDataReader) {
+            return;
+        }
+        PrefetchDataReader<Object> prefetchReader = new PrefetchDataReader<Object>(reader)
+                .setBufferSize(prefetchSize)
+                .setBufferBytes(prefetchBytes);
+        if (prefetchSizeEstimator != null) {
+            prefetchReader.setSizeEstimator(prefetchSizeEstimator);
+        }
+        context.setDataReader(prefetchReader);
+    }
+
+    /**
+     * 振り分けキー取得オブジェクトが設定されている場合、
+     * 実行コンテキスト上のデータリーダを{@link PartitionedDataReader}でラップする。
+     *
+     * @param context 実行コンテキスト
+     * @return ラップしたデータリーダ(振り分けを行わない場合は{@code null})
+     */
+    private PartitionedDataReader<Object> enablePartitioning(ExecutionContext context) {
+        if (partitionKeyExtractor == null) {
+            return null;
+        }
+        DataReader<Object> reader = context.getDataReader();
+        if (reader instanceof PartitionedDataReader) {
+            return (PartitionedDataReader<Object>) reader;
+        }
+        PartitionedDataReader<Object> partitionedReader = new PartitionedDataReader<Object>(
+                reader, partitionKeyExtractor, concurrentNumber);
+        context.setDataReader(partitionedReader);
+        return partitionedReader;
+    }
+
+    /**
+     * 並行実行数の制御オブジェクトが設定されている場合、
+     * 実行コンテキスト上のデータリーダを{@link AdaptiveConcurrencyDataReader}でラップする。
+     *
+     * @param context 実行コンテキスト
+     * @return ラップしたデータリーダ(並行実行数の制御を行わない場合は{@code null})
+     */
+    private AdaptiveConcurrencyDataReader<Object> enableAdaptiveConcurrency(ExecutionContext context) {
+        if (adaptiveConcurrencyController == null) {
+            return null;
+        }
+        adaptiveConcurrencyController.initialize(concurrentNumber);
+        AdaptiveConcurrencyDataReader<Object> adaptiveReader = new AdaptiveConcurrencyDataReader<Object>(
+                context.<Object>getDataReader(), adaptiveConcurrencyController);
+        context.setDataReader(adaptiveReader);
+        return adaptiveReader;
+    }
+
+    /**
+     * 使用中のデータリーダを閉じ、現在実行中の全てのスレッドに対して停止要求をかける。
+     * <p/>
+     * 停止処理に要した時間は、Java Flight Recorderのイベントとして出力する。
+     * @param context 実行コンテキスト
+     */
+    private void terminate(ExecutionContext context) {
+        Object event = FlightRecorderEvent.THREAD_POOL.begin();
+        try {
+            shutdownThreadPool(context);
+        } finally {
+            FlightRecorderEvent.THREAD_POOL.commit(event, context, "terminate", concurrentNumber);
+        }
+    }
+
     /**
      * 使用中のデータリーダを閉じ、現在実行中の全てのスレッドに対して停止要求をかける。
      * <p/>
@@ -237,7 +395,7 @@ implements ExecutionHandler<Object, MultiStatus, MultiThreadExecutionHandler> {
      * その内容をログに出力する。
      * @param context 実行コンテキスト
      */
-    private void terminate(ExecutionContext context) {
+    private void shutdownThreadPool(ExecutionContext context) {
         context.closeReader();
         if (taskExecutor.isShutdown()) {
             return;
@@ -298,38 +456,89 @@ implements ExecutionHandler<Object, MultiStatus, MultiThreadExecutionHandler> {
      * また、タスクキューの上限は設けないので、
      * タスク追加の時点で拒否されたり、ブロックされたりすることは無い。
      *
+     * 仮想スレッドの使用が有効、かつ実行環境が仮想スレッドをサポートしている場合は、
+     * タスク毎に仮想スレッドを作成する実行管理モジュールを使用する。
+     * タスクは並行実行スレッド数分だけ作成されるため、同時に実行されるスレッド数はスレッドプールと変わらない。
+     *
      * なお、本ハンドラが複数回実行された場合、前回実行時に作成したスレッドプールが
      * アクティブであるかをチェックし、もしそうであれば再作成せずに流用する。
      */
     private void initializeThreadPool() {
         if (taskExecutor == null || taskExecutor.isTerminated()) {
-            taskExecutor = new ThreadPoolExecutor(
-                concurrentNumber,                     // 通常プールサイズ
-                concurrentNumber,                     // 最大プールサイズ
-                Long.MAX_VALUE, TimeUnit.NANOSECONDS, // 余剰スレッドの維持期間
-                new LinkedBlockingQueue<Runnable>()   // ワーキングタスクキュー(上限なし)
-            );
-        } else {
-            taskExecutor.purge(); // 念のため
+            ExecutorService virtualThreadExecutor = useVirtualThreads
+                                                  ? createVirtualThreadExecutor()
+                                                  : null;
+            if (virtualThreadExecutor != null) {
+                taskExecutor = virtualThreadExecutor;
+            } else {
+                taskExecutor = new ThreadPoolExecutor(
+                    concurrentNumber,                     // 通常プールサイズ
+                    concurrentNumber,                     // 最大プールサイズ
+                    Long.MAX_VALUE, TimeUnit.NANOSECONDS, // 余剰スレッドの維持期間
+                    new LinkedBlockingQueue<Runnable>()   // ワーキングタスクキュー(上限なし)
+                );
+            }
+        } else if (taskExecutor instanceof ThreadPoolExecutor) {
+            ((ThreadPoolExecutor) taskExecutor).purge(); // 念のため
         }
         taskStatus  = new ExecutorCompletionService<Result>(taskExecutor);
         taskTracker = new ArrayList<Future<Result>>();
     }
 
+    /**
+     * タスク毎に仮想スレッドを作成する実行管理モジュールを生成する。
+     * <p/>
+     * 実行環境が仮想スレッドをサポートしていない場合は{@code null}を返す。
+     *
+     * @return 仮想スレッドを使用する実行管理モジュール
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (Exception e) {
+            LOGGER.logInfo(
+                "virtual threads are not available on this runtime. "
+              + "platform threads are used instead."
+            );
+            return null;
+        }
+    }
+
     /**
      * 実行コンテキストのクローンを作成し、そのコンテキストを使用して
      * 後続処理を行うタスクを作成する。
      *
+     * 振り分けを行う場合は、タスクを実行するスレッドにレーンを割り当てる。
+     * また、並行実行数の制御を行う場合は、タスクの終了時にスレッドが保持する実行許可を返却する。
+     *
      * @param data 入力データオブジェクト
      * @param context 実行コンテキスト
+     * @param partitionedReader 振り分けを行うデータリーダ(振り分けを行わない場合は{@code null})
+     * @param adaptiveReader 並行実行数を制御するデータリーダ(制御を行わない場合は{@code null})
+     * @param lane タスクに割り当てるレーン番号
      * @return タスク
      */
     private Callable<Result> createTaskFor(final Object data,
-                                           final ExecutionContext context) {
+                                           final ExecutionContext context,
+                                           final PartitionedDataReader<Object> partitionedReader,
+                                           final AdaptiveConcurrencyDataReader<Object> adaptiveReader,
+                                           final int lane) {
         final ExecutionContext clonedContext = context.copy();
+        // 各スレッドが処理するレコードが実行毎に一定となる場合のみ、レーン番号を後続ハンドラに公開する。
+        clonedContext.setRequestScopedVar(LANE_COUNT_KEY, concurrentNumber);
+        if (partitionedReader != null || concurrentNumber == 1) {
+            clonedContext.setRequestScopedVar(LANE_KEY, lane);
+        }
+        if (adaptiveReader != null) {
+            clonedContext.setRequestScopedVar(AdaptiveConcurrencyDataReader.REQUEST_SCOPE_KEY, adaptiveReader);
+        }
         return new Callable<Result>() {
             @Override
             public Result call() throws Exception {
+                if (partitionedReader != null) {
+                    partitionedReader.bindLane(lane);
+                }
                 try {
                     return clonedContext.handleNext(data);
                 } catch (RuntimeException e) {
@@ -338,6 +547,13 @@ implements ExecutionHandler<Object, MultiStatus, MultiThreadExecutionHandler> {
                 } catch (Error e) {
                     setDataOnException(e, context, clonedContext);
                     throw e;
+                } finally {
+                    if (partitionedReader != null) {
+                        partitionedReader.unbindLane();
+                    }
+                    if (adaptiveReader != null) {
+                        adaptiveReader.release();
+                    }
                 }
             }
             private void setDataOnException(Throwable e, ExecutionContext parent, ExecutionContext child) {
@@ -386,6 +602,133 @@ implements ExecutionHandler<Object, MultiStatus, MultiThreadExecutionHandler> {
         this.commitLogger = commitLogger;
     }
 
+    /**
+     * 後続処理を仮想スレッド上で実行するか否かを設定する。
+     * <p/>
+     * {@code true}を設定した場合、実行環境が仮想スレッドをサポートしていれば、
+     * 後続処理をタスク毎に作成する仮想スレッド上で実行する。
+     * この場合も、同時に後続処理を実行するスレッド数は並行実行スレッド数となる。
+     * 実行環境が仮想スレッドをサポートしていない場合は、従来通りスレッドプールを使用する。
+     * <p/>
+     * デフォルト値は{@code false}である。
+     *
+     * @param useVirtualThreads 仮想スレッドを使用する場合は{@code true}
+     * @return このハンドラ自体
+     */
+    public MultiThreadExecutionHandler setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+        return this;
+    }
+
+    /**
+     * 入力データを先読みする最大件数を設定する。
+     * <p/>
+     * 1以上の値を設定した場合、データリーダを{@link PrefetchDataReader}でラップし、
+     * 専用の読み込みスレッド上で指定件数まで入力データを先読みする。
+     * デフォルト値は0(先読みしない)である。
+     *
+     * @param prefetchSize 先読みする最大件数
+     * @return このハンドラ自体
+     */
+    public MultiThreadExecutionHandler setPrefetchSize(int prefetchSize) {
+        this.prefetchSize = prefetchSize;
+        return this;
+    }
+
+    /**
+     * 入力データを先読みする最大バイト数を設定する。
+     * <p/>
+     * 先読み済みデータの見積りバイト数の合計がこの値に達した場合、
+     * 読み込みスレッドは業務処理がデータを取り出すまで待機する。
+     * 本設定は{@link #setPrefetchSize(int)}に1以上の値を設定した場合のみ有効である。
+     * デフォルト値は0(無制限)である。
+     *
+     * @param prefetchBytes 先読みする最大バイト数
+     * @return このハンドラ自体
+     */
+    public MultiThreadExecutionHandler setPrefetchBytes(long prefetchBytes) {
+        this.prefetchBytes = prefetchBytes;
+        return this;
+    }
+
+    /**
+     * 先読みデータのバイト数の見積りに使用するオブジェクトを設定する。
+     * <p/>
+     * 設定を省略した場合は{@link DefaultSizeEstimator}を使用する。
+     *
+     * @param prefetchSizeEstimator 先読みデータのサイズ見積りオブジェクト
+     * @return このハンドラ自体
+     */
+    public MultiThreadExecutionHandler setPrefetchSizeEstimator(SizeEstimator prefetchSizeEstimator) {
+        this.prefetchSizeEstimator = prefetchSizeEstimator;
+        return this;
+    }
+
+    /**
+     * 入力データの振り分けキーを取得するオブジェクトを設定する。
+     * <p/>
+     * 本設定を行った場合、入力データは振り分けキーのハッシュ値に応じて
+     * 並行実行スレッドのいずれかに固定的に振り分けられ、
+     * 同じ振り分けキーを持つデータは同一スレッド上で読み込み順に処理される。
+     * デフォルトでは振り分けを行わない。
+     *
+     * @param partitionKeyExtractor 振り分けキーの取得オブジェクト
+     * @return このハンドラ自体
+     */
+    public MultiThreadExecutionHandler setPartitionKeyExtractor(PartitionKeyExtractor partitionKeyExtractor) {
+        this.partitionKeyExtractor = partitionKeyExtractor;
+        return this;
+    }
+
+    /**
+     * 並行実行数を動的に制御するオブジェクトを設定する。
+     * <p/>
+     * 本設定を行った場合、並行実行スレッド数分のスレッドを起動した上で、
+     * 同時にレコードを処理するスレッド数を並行実行スレッド数の範囲内で動的に増減させる。
+     * デフォルトでは並行実行数の制御を行わない。
+     *
+     * @param adaptiveConcurrencyController 並行実行数の制御オブジェクト
+     * @return このハンドラ自体
+     */
+    public MultiThreadExecutionHandler setAdaptiveConcurrencyController(
+            AdaptiveConcurrencyController adaptiveConcurrencyController) {
+        this.adaptiveConcurrencyController = adaptiveConcurrencyController;
+        return this;
+    }
+
+    /**
+     * ハンドラ毎の処理時間の記録先を設定する。
+     * <p/>
+     * 本設定を行った場合、処理開始時に記録先の集計結果を破棄し、処理終了時に集計結果をログに出力する。
+     * 処理時間の記録は、後続のループ制御ハンドラに同じ記録先を設定することで行われる。
+     * デフォルトでは集計結果を出力しない。
+     *
+     * @param latencyRegistry ハンドラ毎の処理時間の記録先
+     * @return このハンドラ自体
+     * @see HandlerLatencyRegistry
+     */
+    public MultiThreadExecutionHandler setLatencyRegistry(HandlerLatencyRegistry latencyRegistry) {
+        this.latencyRegistry = latencyRegistry;
+        return this;
+    }
+
+    /**
+     * 進捗状況の記録先を設定する。
+     * <p/>
+     * 本設定を行った場合、処理開始時に記録先の集計を開始し、処理終了時に最終的な進捗状況をログに出力する。
+     * 処理中の進捗状況は、後続の{@link LoopHandler}及び{@link DataReadHandler}に同じ記録先を設定することで、
+     * 一定間隔毎にログに出力される。
+     * デフォルトでは進捗状況を出力しない。
+     *
+     * @param progressReporter 進捗状況の記録先
+     * @return このハンドラ自体
+     * @see ProgressReporter
+     */
+    public MultiThreadExecutionHandler setProgressReporter(ProgressReporter progressReporter) {
+        this.progressReporter = progressReporter;
+        return this;
+    }
+
     /** ロガー */
     private static final Logger
         LOGGER = LoggerManager.get(MultiThreadExecutionHandler.class);
@@ -0,0 +1,24 @@
+package nablarch.fw.handler;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 入力データから振り分けキーを取得するインタフェース。
+ * <p/>
+ * {@link MultiThreadExecutionHandler}で振り分けキーによる並行実行を行う場合に使用する。
+ * 同じ振り分けキーを持つデータは、常に同じスレッドで読み込み順に処理される。
+ *
+ * @see MultiThreadExecutionHandler#setPartitionKeyExtractor(PartitionKeyExtractor)
+ * @see PartitionedDataReader
+ */
+@Published(tag = "architect")
+public interface PartitionKeyExtractor {
+
+    /**
+     * 入力データから振り分けキーを取得する。
+     *
+     * @param data 入力データ
+     * @return 振り分けキー({@code null}を返した場合は先頭のスレッドに振り分けられる)
+     */
+    Object extractKey(Object data);
+}
@@ -0,0 +1,256 @@
+package nablarch.fw.handler;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+
+/**
+ * 入力データを振り分けキー毎に固定のレーンへ振り分けるデータリーダ。
+ * <p/>
+ * 本クラスは、委譲先のデータリーダから読み込んだデータの振り分けキーを
+ * {@link PartitionKeyExtractor}で取得し、そのハッシュ値に応じたレーンのキューに格納する。
+ * 各スレッドは、{@link #bindLane(int)}で自スレッドに割り当てたレーンのキューからのみ
+ * データを取得するため、同じ振り分けキーを持つデータは常に同じスレッドで読み込み順に処理される。
+ * <p/>
+ * 自レーンのキューが空のスレッドは、委譲先のデータリーダから次のデータを読み込み、
+ * 該当するレーンへ振り分ける。委譲先のデータリーダへのアクセスは本クラス内で同期化される。
+ * <p/>
+ * 振り分け済みで未処理のデータ件数が上限({@link #setBufferSize(int)})に達している場合、
+ * 新たなデータの読み込みは他のスレッドがデータを取り出すまで待機する。
+ *
+ * @param <TData> 読み込むデータの型
+ * @see MultiThreadExecutionHandler#setPartitionKeyExtractor(PartitionKeyExtractor)
+ */
+public class PartitionedDataReader<TData> implements DataReader<TData> {
+
+    /** 委譲先のデータリーダ */
+    private final DataReader<TData> delegate;
+
+    /** 振り分けキーの取得オブジェクト */
+    private final PartitionKeyExtractor keyExtractor;
+
+    /** 各レーンのキュー */
+    private final List<LinkedList<TData>> lanes;
+
+    /** 各スレッドに割り当てられたレーン */
+    private final ThreadLocal<Integer> boundLane = new ThreadLocal<Integer>();
+
+    /** 振り分け済みで未処理のデータ件数の上限 */
+    private int bufferSize = 1000;
+
+    /** 振り分け済みで未処理のデータ件数 */
+    private int bufferedCount = 0;
+
+    /** 委譲先のデータリーダが終端に達したか否か */
+    private boolean exhausted = false;
+
+    /** キューへのアクセスを制御するロック */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** キューの状態が変化したことを通知する条件 */
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * コンストラクタ。
+     *
+     * @param delegate 委譲先のデータリーダ
+     * @param keyExtractor 振り分けキーの取得オブジェクト
+     * @param laneCount レーン数
+     */
+    public PartitionedDataReader(DataReader<TData> delegate,
+                                 PartitionKeyExtractor keyExtractor,
+                                 int laneCount) {
+        if (delegate == null || keyExtractor == null) {
+            throw new IllegalArgumentException("delegate and keyExtractor must not be null.");
+        }
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("laneCount must be greater than or equal to 1.");
+        }
+        this.delegate = delegate;
+        this.keyExtractor = keyExtractor;
+        this.lanes = new ArrayList<LinkedList<TData>>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            lanes.add(new LinkedList<TData>());
+        }
+    }
+
+    /**
+     * カレントスレッドにレーンを割り当てる。
+     *
+     * @param lane レーン番号(0から始まる)
+     */
+    public void bindLane(int lane) {
+        if (lane < 0 || lane >= lanes.size()) {
+            throw new IllegalArgumentException(
+                    "lane must be between 0 and " + (lanes.size() - 1) + ". lane = [" + lane + ']');
+        }
+        boundLane.set(lane);
+    }
+
+    /**
+     * カレントスレッドへのレーンの割り当てを解除する。
+     */
+    public void unbindLane() {
+        boundLane.remove();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * カレントスレッドに割り当てられたレーンからデータを1件取り出して返す。
+     * レーンが空の場合は、該当するデータが振り分けられるまで委譲先のデータリーダから読み込みを行う。
+     *
+     * @throws IllegalStateException カレントスレッドにレーンが割り当てられていない場合
+     */
+    public TData read(ExecutionContext ctx) {
+        LinkedList<TData> lane = lanes.get(currentLane());
+        lock.lock();
+        try {
+            if (!fill(lane, ctx)) {
+                return null;
+            }
+            bufferedCount--;
+            changed.signalAll();
+            return lane.removeFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * カレントスレッドに割り当てられたレーンに処理すべきデータが存在する場合は{@code true}を返す。
+     * レーンが空の場合は、該当するデータが振り分けられるか、
+     * 委譲先のデータリーダが終端に達するまで読み込みを行う。
+     * <p/>
+     * カレントスレッドにレーンが割り当てられていない場合は、
+     * いずれかのレーンもしくは委譲先のデータリーダにデータが残っていれば{@code true}を返す。
+     */
+    public boolean hasNext(ExecutionContext ctx) {
+        Integer lane = boundLane.get();
+        lock.lock();
+        try {
+            if (lane == null) {
+                return bufferedCount > 0 || (!exhausted && delegate.hasNext(ctx));
+            }
+            return fill(lanes.get(lane), ctx);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 委譲先のデータリーダを閉じる。
+     */
+    public void close(ExecutionContext ctx) {
+        lock.lock();
+        try {
+            exhausted = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        delegate.close(ctx);
+    }
+
+    /**
+     * 指定されたレーンにデータが格納されるまで、委譲先のデータリーダからの読み込みと振り分けを行う。
+     * <p/>
+     * ロックを取得した状態で呼び出すこと。
+     *
+     * @param lane 対象のレーン
+     * @param ctx 実行コンテキスト
+     * @return レーンにデータが格納された場合は{@code true}、データが存在しない場合は{@code false}
+     */
+    private boolean fill(LinkedList<TData> lane, ExecutionContext ctx) {
+        while (lane.isEmpty()) {
+            if (exhausted) {
+                return false;
+            }
+            if (bufferedCount >= bufferSize) {
+                awaitChange();
+                continue;
+            }
+            if (!delegate.hasNext(ctx)) {
+                exhausted = true;
+                changed.signalAll();
+                return false;
+            }
+            TData data = delegate.read(ctx);
+            if (data == null) {
+                exhausted = true;
+                changed.signalAll();
+                return false;
+            }
+            lanes.get(laneOf(keyExtractor.extractKey(data))).addLast(data);
+            bufferedCount++;
+        }
+        return true;
+    }
+
+    /**
+     * キューの状態が変化するまで待機する。
+     */
+    private void awaitChange() {
+        try {
+            changed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for partitioned data.", e);
+        }
+    }
+
+    /**
+     * 振り分けキーに対応するレーン番号を返す。
+     *
+     * @param key 振り分けキー
+     * @return レーン番号
+     */
+    private int laneOf(Object key) {
+        if (key == null) {
+            return 0;
+        }
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return (h & Integer.MAX_VALUE) % lanes.size();
+    }
+
+    /**
+     * カレントスレッドに割り当てられたレーン番号を返す。
+     *
+     * @return レーン番号
+     */
+    private int currentLane() {
+        Integer lane = boundLane.get();
+        if (lane == null) {
+            throw new IllegalStateException(
+                    "no lane is bound to the current thread. thread = [" + Thread.currentThread().getName() + ']');
+        }
+        return lane;
+    }
+
+    /**
+     * 振り分け済みで未処理のデータ件数の上限を設定する。
+     * <p/>
+     * デフォルト値は1000件である。
+     *
+     * @param bufferSize 振り分け済みで未処理のデータ件数の上限
+     * @return このオブジェクト自体
+     */
+    public PartitionedDataReader<TData> setBufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException(
+                    "bufferSize must be greater than or equal to 1.");
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+}
@@ -0,0 +1,57 @@
+package nablarch.fw.handler;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * スレッド毎の記録先を保持するクラス。
+ * <p/>
+ * 各スレッドは{@link #get()}で自スレッド専用の記録先を取得して記録を行い、
+ * 集計時は{@link #all()}で全スレッドの記録先を参照して合算する。
+ * 記録先は各スレッドの初回の取得時に{@link #create()}で生成する。
+ * <p/>
+ * 記録先への記録と参照の間の同期は、記録先の実装で行うこと。
+ * 集計結果を破棄する場合は、本クラスのインスタンスを新たに生成して切り替える。
+ * 切り替え前に取得された記録先への記録は、切り替え後の集計には含まれない。
+ *
+ * @param <T> 記録先の型
+ */
+abstract class PerThreadAccumulator<T> {
+
+    /** スレッド毎の記録先 */
+    private final ThreadLocal<T> local = new ThreadLocal<T>();
+
+    /** 全スレッドの記録先 */
+    private final Queue<T> all = new ConcurrentLinkedQueue<T>();
+
+    /**
+     * カレントスレッドの記録先を取得する。未だ生成していない場合は生成する。
+     *
+     * @return 記録先
+     */
+    T get() {
+        T accumulator = local.get();
+        if (accumulator == null) {
+            accumulator = create();
+            local.set(accumulator);
+            all.add(accumulator);
+        }
+        return accumulator;
+    }
+
+    /**
+     * 全スレッドの記録先を取得する。
+     *
+     * @return 記録先
+     */
+    Iterable<T> all() {
+        return all;
+    }
+
+    /**
+     * 記録先を生成する。
+     *
+     * @return 記録先
+     */
+    protected abstract T create();
+}
@@ -0,0 +1,413 @@
+package nablarch.fw.handler;
+
+import java.util.LinkedList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+
+/**
+ * 元となるデータリーダの読み込みを専用スレッド上で先行して行うデータリーダ。
+ * <p/>
+ * 本クラスは、委譲先のデータリーダから読み込んだデータを専用の読み込みスレッド上で
+ * 有界キューに格納し、{@link #hasNext(ExecutionContext)} および
+ * {@link #read(ExecutionContext)} の呼び出しに対してキューから応答する。
+ * これにより、入力処理のI/O待ちと業務処理とが並行して行われ、
+ * 各スレッドはキューが空の場合にのみ待機することになる。
+ * <p/>
+ * キューの上限は、件数({@link #setBufferSize(int)})と
+ * 見積りバイト数({@link #setBufferBytes(long)})のいずれかで制限する。
+ * 上限に達した場合、読み込みスレッドはキューに空きができるまで待機する。
+ * <p/>
+ * 委譲先のデータリーダは読み込みスレッドからのみアクセスされるため、
+ * 委譲先の同期制御は不要となる。
+ * {@link #close(ExecutionContext)}による委譲先のクローズも、読み込みスレッドが開始されている場合は
+ * 読み込みスレッドの終了時に読み込みスレッド上で行うため、読み込み中のデータリーダが閉じられることはない。
+ * <p/>
+ * ただし、委譲先データリーダの {@code read} / {@code hasNext} に渡される実行コンテキストは、
+ * 最初に本リーダにアクセスしたスレッドの実行コンテキストとなる点に注意すること。
+ * このため、他のスレッドが自身の実行コンテキストに設定したリクエストスコープ変数等は、
+ * 委譲先のデータリーダから参照できない。
+ * また、最初にアクセスしたスレッドの実行コンテキストは、読み込みスレッドが終了するまで参照され続ける。
+ * 委譲先のデータリーダは、読み込み時に実行コンテキストの状態に依存しないものとすること。
+ *
+ * @param <TData> 読み込むデータの型
+ * @see MultiThreadExecutionHandler#setPrefetchSize(int)
+ */
+public class PrefetchDataReader<TData> implements DataReader<TData> {
+
+    /** 終端を表すマーカ */
+    private static final Object END_OF_DATA = new Object();
+
+    /** 委譲先のデータリーダ */
+    private final DataReader<TData> delegate;
+
+    /** 先読みする最大件数 */
+    private int bufferSize = 1000;
+
+    /** 先読みする最大バイト数(0以下の場合は無制限) */
+    private long bufferBytes = 0;
+
+    /** データサイズの見積りオブジェクト */
+    private SizeEstimator sizeEstimator = new DefaultSizeEstimator();
+
+    /** 先読みしたデータを格納するキュー */
+    private final LinkedList<Object> buffer = new LinkedList<Object>();
+
+    /** キューに格納されたデータのサイズ(バイト数) */
+    private final LinkedList<Long> bufferedSizes = new LinkedList<Long>();
+
+    /** キューに格納されたデータの合計バイト数 */
+    private long bufferedBytes = 0;
+
+    /** キューへのアクセスを制御するロック */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** キューが空でなくなったことを通知する条件 */
+    private final Condition notEmpty = lock.newCondition();
+
+    /** キューに空きができたことを通知する条件 */
+    private final Condition notFull = lock.newCondition();
+
+    /** 読み込みスレッド */
+    private Thread producer = null;
+
+    /** 読み込みスレッドで発生した例外 */
+    private Throwable producerError = null;
+
+    /** クローズ要求が行われたか否か */
+    private volatile boolean closed = false;
+
+    /** 読み込みスレッドが終了したか否か */
+    private boolean producerExited = false;
+
+    /** クローズ要求時に渡された実行コンテキスト */
+    private ExecutionContext closeContext = null;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param delegate 委譲先のデータリーダ
+     */
+    public PrefetchDataReader(DataReader<TData> delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate must not be null.");
+        }
+        this.delegate = delegate;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * キューからデータを1件取り出して返す。
+     * キューが空の場合は、読み込みスレッドがデータを格納するか、
+     * 委譲先のデータが終端に達するまで待機する。
+     */
+    @SuppressWarnings("unchecked")
+    public TData read(ExecutionContext ctx) {
+        lock.lock();
+        try {
+            Object head = awaitHead(ctx);
+            if (head == END_OF_DATA) {
+                return null;
+            }
+            buffer.removeFirst();
+            bufferedBytes -= bufferedSizes.removeFirst();
+            notFull.signal();
+            return (TData) head;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * キューが空の場合は、読み込みスレッドがデータを格納するか、
+     * 委譲先のデータが終端に達するまで待機する。
+     */
+    public boolean hasNext(ExecutionContext ctx) {
+        lock.lock();
+        try {
+            return awaitHead(ctx) != END_OF_DATA;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 読み込みスレッドに停止を要求し、委譲先のデータリーダを閉じる。
+     * <p/>
+     * 読み込みスレッドが実行中の場合は、読み込みスレッドに割り込みを行い、その終了を待機する。
+     * 委譲先のデータリーダは、読み込みスレッドの終了時に読み込みスレッド上で閉じられる。
+     * 待機中に割り込まれた場合は、委譲先のクローズを読み込みスレッドに任せて復帰する。
+     * <p/>
+     * 読み込みスレッドが開始されていないか、既に終了している場合は、本メソッド内で閉じる。
+     * いずれの場合も、委譲先のデータリーダには本メソッドに渡された実行コンテキストを渡す。
+     */
+    public void close(ExecutionContext ctx) {
+        boolean closeHere;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeContext = ctx;
+            closeHere = (producer == null || producerExited);
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (closeHere) {
+            delegate.close(ctx);
+            return;
+        }
+        producer.interrupt();
+        try {
+            producer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * キューの先頭要素を参照する。キューが空の場合は格納されるまで待機する。
+     * <p/>
+     * ロックを取得した状態で呼び出すこと。
+     *
+     * @param ctx 実行コンテキスト
+     * @return キューの先頭要素(終端に達した場合は{@link #END_OF_DATA})
+     */
+    private Object awaitHead(ExecutionContext ctx) {
+        if (producer == null && !closed) {
+            startProducer(ctx);
+        }
+        while (buffer.isEmpty()) {
+            if (producerError != null) {
+                throw rethrow(producerError);
+            }
+            if (closed) {
+                return END_OF_DATA;
+            }
+            try {
+                notEmpty.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(
+                        "interrupted while waiting for prefetched data.", e);
+            }
+        }
+        return buffer.getFirst();
+    }
+
+    /**
+     * 読み込みスレッドを開始する。
+     *
+     * @param ctx 委譲先のデータリーダに渡す実行コンテキスト
+     */
+    private void startProducer(final ExecutionContext ctx) {
+        producer = new Thread(new Runnable() {
+            public void run() {
+                produce(ctx);
+            }
+        }, "prefetch-" + delegate.getClass().getSimpleName());
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    /**
+     * 委譲先のデータリーダからデータを読み込み、キューに格納する。
+     * <p/>
+     * 終了時にクローズ要求が行われていた場合は、委譲先のデータリーダを閉じる。
+     *
+     * @param ctx 実行コンテキスト
+     */
+    private void produce(ExecutionContext ctx) {
+        try {
+            prefetch(ctx);
+        } finally {
+            ExecutionContext context;
+            lock.lock();
+            try {
+                producerExited = true;
+                context = closed ? closeContext : null;
+            } finally {
+                lock.unlock();
+            }
+            if (context != null) {
+                delegate.close(context);
+            }
+        }
+    }
+
+    /**
+     * クローズ要求が行われるか終端に達するまで、委譲先のデータリーダからデータを読み込み、キューに格納する。
+     *
+     * @param ctx 実行コンテキスト
+     */
+    private void prefetch(ExecutionContext ctx) {
+        try {
+            while (!closed && delegate.hasNext(ctx)) {
+                TData data = delegate.read(ctx);
+                if (data == null) {
+                    break;
+                }
+                if (!offer(data, estimateSize(data))) {
+                    return;
+                }
+            }
+            offer(END_OF_DATA, 0);
+        } catch (RuntimeException e) {
+            fail(e);
+        } catch (Error e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * キューにデータを格納する。キューが上限に達している場合は空きができるまで待機する。
+     * <p/>
+     * なお、キューが空の場合は、データサイズがバイト数の上限を超えていても格納する。
+     *
+     * @param data 格納するデータ
+     * @param size データのサイズ(バイト数)
+     * @return 格納できた場合は{@code true}、クローズ要求により中断された場合は{@code false}
+     */
+    private boolean offer(Object data, long size) {
+        lock.lock();
+        try {
+            while (!closed && isFull(size)) {
+                try {
+                    notFull.await();
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+            if (closed) {
+                return false;
+            }
+            buffer.addLast(data);
+            bufferedSizes.addLast(size);
+            bufferedBytes += size;
+            notEmpty.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * キューが上限に達しているか否かを判定する。
+     *
+     * @param size 追加しようとしているデータのサイズ(バイト数)
+     * @return 上限に達している場合は{@code true}
+     */
+    private boolean isFull(long size) {
+        if (buffer.isEmpty()) {
+            return false;
+        }
+        if (buffer.size() >= bufferSize) {
+            return true;
+        }
+        return bufferBytes > 0 && bufferedBytes + size > bufferBytes;
+    }
+
+    /**
+     * 読み込みスレッドで発生した例外を保持し、待機中のスレッドに通知する。
+     *
+     * @param e 発生した例外
+     */
+    private void fail(Throwable e) {
+        LOGGER.logWarn("an error occurred while prefetching data.", e);
+        lock.lock();
+        try {
+            producerError = e;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 読み込みスレッドで発生した例外を、呼び出し元のスレッドで再送出する。
+     *
+     * @param e 読み込みスレッドで発生した例外
+     * @return この値が返却されることはない
+     */
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        throw (Error) e;
+    }
+
+    /**
+     * 先読みする最大件数を設定する。
+     * <p/>
+     * デフォルト値は1000件である。
+     *
+     * @param bufferSize 先読みする最大件数
+     * @return このオブジェクト自体
+     */
+    public PrefetchDataReader<TData> setBufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException(
+                    "bufferSize must be greater than or equal to 1.");
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * データのバイト数を見積もる。
+     * <p/>
+     * 先読みする最大バイト数を設定していない場合は、見積りを行わずに0を返す。
+     *
+     * @param data データ
+     * @return 見積もったバイト数
+     */
+    private long estimateSize(TData data) {
+        if (bufferBytes <= 0) {
+            return 0;
+        }
+        return sizeEstimator.estimate(data);
+    }
+
+    /**
+     * 先読みする最大バイト数を設定する。
+     * <p/>
+     * 各データのバイト数は{@link SizeEstimator}による見積り値とする。
+     * 0以下の値を設定した場合は無制限となる。(デフォルトは無制限)
+     *
+     * @param bufferBytes 先読みする最大バイト数
+     * @return このオブジェクト自体
+     */
+    public PrefetchDataReader<TData> setBufferBytes(long bufferBytes) {
+        this.bufferBytes = bufferBytes;
+        return this;
+    }
+
+    /**
+     * データサイズの見積りに使用する{@link SizeEstimator}を設定する。
+     * <p/>
+     * 設定を省略した場合は{@link DefaultSizeEstimator}を使用する。
+     *
+     * @param sizeEstimator データサイズの見積りオブジェクト
+     * @return このオブジェクト自体
+     */
+    public PrefetchDataReader<TData> setSizeEstimator(SizeEstimator sizeEstimator) {
+        this.sizeEstimator = sizeEstimator;
+        return this;
+    }
+
+    /** ロガー */
+    private static final Logger
+        LOGGER = LoggerManager.get(PrefetchDataReader.class);
+}
@@ -2,6 +2,7 @@ package nablarch.fw.handler;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import nablarch.core.log.Logger;
 import nablarch.core.log.LoggerManager;
@@ -41,6 +42,12 @@ import nablarch.fw.launcher.ProcessAbnormalEnd;
  *                              | 待機時間(データ監視間隔)は、{@link #setDataWatchInterval(int)}によって設定した時間(ms)となる。
  *                              | 設定を省略した場合のデータ監視間隔は1000msとなる。
  *                              |
+ *                              | {@link #setWakeupSource(WakeupSource)}で起床要求の通知元を設定した場合は、
+ *                              | 待機中に起床要求があった時点で待機を中断し、後続ハンドラに処理を委譲する。
+ *                              |
+ *                              | {@link #setAdaptivePollingInterval(AdaptivePollingInterval)}を設定した場合は、
+ *                              | データ監視間隔に代えて、処理対象データの有無に応じて変化する間隔で待機する。
+ *                              |
  *                              | なお、本ハンドラはサービス閉塞中例外({@link ServiceUnavailable})が発生した場合は、
  *                              | 一定時間待機後に後続ハンドラを呼び出す仕様となっている。
  *                              | このため、本ハンドラの後続ハンドラに{@link nablarch.common.handler.ServiceAvailabilityCheckHandler}を設定することにより、
@@ -80,6 +87,20 @@ public class ProcessResidentHandler implements Handler<Object, Object> {
     /** データの監視間隔。 */
     private int dataWatchInterval = 1000;
 
+    /** 起床要求の通知元。 */
+    private WakeupSource wakeupSource;
+
+    /** 処理対象データの有無に応じて変化するデータ監視間隔。 */
+    private AdaptivePollingInterval adaptivePollingInterval;
+
+    /**
+     * 1回の後続ハンドラの呼び出しで読み込まれたデータ件数を、セッションスコープに格納する際のキー。
+     * <p/>
+     * {@link DataReadHandler}は、データを読み込む度にこのキーに格納された件数を加算する。
+     * 本ハンドラの処理を終える際に、セッションスコープから削除する。
+     */
+    static final String READ_COUNTER_KEY = ExecutionContext.FW_PREFIX + "ProcessResidentHandler_readCounter";
+
     /** 正常にプロセスを停止する例外のリスト。 */
     private final List<Class<? extends RuntimeException>> normalEndExceptions =
             new ArrayList<Class<? extends RuntimeException>>() {
@@ -100,66 +121,98 @@ public class ProcessResidentHandler implements Handler<Object, Object> {
     public Object handle(Object data, ExecutionContext context) {
 
         // データ監視間隔をログ出力
-        LOGGER.logInfo(String.format("DATA WATCH INTERVAL = [%dms]",
-                dataWatchInterval));
-
-        @SuppressWarnings("rawtypes")
-        List<Handler> snapshot = new ArrayList<Handler>();
+        if (adaptivePollingInterval == null) {
+            LOGGER.logInfo(String.format("DATA WATCH INTERVAL = [%dms]",
+                    dataWatchInterval));
+        }
+        AtomicLong readCounter = new AtomicLong();
 
         // スナップショットの取得
-        snapshot.addAll(context.getHandlerQueue());
+        HandlerQueueSnapshot snapshot = new HandlerQueueSnapshot(context);
 
         Object result = new Success();
-        while (true) {
-            long executeTime = 0;
-            long start = System.currentTimeMillis();
-            try {
-                context.setDataReader(null);
-                context.setDataReaderFactory(null);
-                result = restoreHandlerQueue(context, snapshot).handleNext(
-                        data);
-            } catch (ServiceUnavailable e) {
-                // サービス閉局中の場合は何もしない
-                if (LOGGER.isTraceEnabled()) {
-                    LOGGER.logTrace(
-                            "this process is asleep because the service "
-                                    + "temporarily unavailable.");
-                }
-            } catch (RuntimeException e) {
-                if (RetryUtil.isRetryable(e)) {
-                    // リトライ可能例外の場合は、上位のハンドラに処理を委譲するため、
-                    // 補足した例外を再送出する。
-                    throw e;
-                } else if (isProcessAbnormalEnd(e)) {
-                    // プロセスを異常終了する場合
-                    throw e;
-                } else if (isProcessNormalEnd(e)) {
-                    // プロセスを正常終了する場合
-                    LOGGER.logInfo("stop the resident process.", e);
-                    break;
-                }
+        try {
+            while (true) {
+                long executeTime = 0;
+                long start = System.currentTimeMillis();
+                Object event = FlightRecorderEvent.RESIDENT_POLL.begin();
+                try {
+                    context.setDataReader(null);
+                    context.setDataReaderFactory(null);
+                    if (adaptivePollingInterval != null) {
+                        readCounter.set(0);
+                        context.setSessionScopedVar(READ_COUNTER_KEY, readCounter);
+                    }
+                    result = snapshot.restore(context).handleNext(data);
+                } catch (ServiceUnavailable e) {
+                    // サービス閉局中の場合は何もしない
+                    if (LOGGER.isTraceEnabled()) {
+                        LOGGER.logTrace(
+                                "this process is asleep because the service "
+                                        + "temporarily unavailable.");
+                    }
+                } catch (RuntimeException e) {
+                    if (RetryUtil.isRetryable(e)) {
+                        // リトライ可能例外の場合は、上位のハンドラに処理を委譲するため、
+                        // 補足した例外を再送出する。
+                        throw e;
+                    } else if (isProcessAbnormalEnd(e)) {
+                        // プロセスを異常終了する場合
+                        throw e;
+                    } else if (isProcessNormalEnd(e)) {
+                        // プロセスを正常終了する場合
+                        LOGGER.logInfo("stop the resident process.", e);
+                        break;
+                    }
 
-                // 上記に該当しない例外の場合は、障害通知ログを出力する。
-                if (e instanceof ServiceError) {
-                    ((ServiceError) e).writeLog(context);
-                } else {
-                    FailureLogUtil.logFatal(e, context.getDataProcessedWhenThrown(e), null);
+                    // 上記に該当しない例外の場合は、障害通知ログを出力する。
+                    if (e instanceof ServiceError) {
+                        ((ServiceError) e).writeLog(context);
+                    } else {
+                        FailureLogUtil.logFatal(e, context.getDataProcessedWhenThrown(e), null);
+                    }
+                    // リトライ可能例外として再送出し、リトライハンドラ側で継続判断を行なう。
+                    throw new RetryableException(e);
+                } finally {
+                    // 例外によりループを抜ける場合も、監視処理の実行時間を記録する。
+                    FlightRecorderEvent.RESIDENT_POLL.commit(event, context);
+                }
+                executeTime = System.currentTimeMillis() - start;
+                try {
+                    // 監視間隔(ms)から、実行時間を引いた時間分待機する。
+                    long interval = (adaptivePollingInterval == null)
+                            ? dataWatchInterval
+                            : adaptivePollingInterval.next(readCounter.get() > 0);
+                    long currentSleepTime = interval - executeTime;
+                    waitForNextExecution(currentSleepTime <= 0 ? 1 : currentSleepTime);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
                 }
-                // リトライ可能例外として再送出し、リトライハンドラ側で継続判断を行なう。
-                throw new RetryableException(e);
-            }
-            executeTime = System.currentTimeMillis() - start;
-            try {
-                // 監視間隔(ms)から、実行時間を引いた時間分待機する。
-                long currentSleepTime = dataWatchInterval - executeTime;
-                Thread.sleep(currentSleepTime <= 0 ? 1 : currentSleepTime);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
             }
+        } finally {
+            context.getSessionScopeMap().remove(READ_COUNTER_KEY);
         }
         return result;
     }
 
+    /**
+     * 次の後続ハンドラの呼び出しまで待機する。
+     * <p/>
+     * 起床要求の通知元が設定されている場合は、起床要求があった時点で待機を中断する。
+     *
+     * @param sleepTime 待機時間(ms)
+     * @throws InterruptedException 待機中に割り込まれた場合
+     */
+    private void waitForNextExecution(long sleepTime) throws InterruptedException {
+        if (wakeupSource == null) {
+            Thread.sleep(sleepTime);
+            return;
+        }
+        if (wakeupSource.await(sleepTime) && LOGGER.isTraceEnabled()) {
+            LOGGER.logTrace("this process was woken up by wakeup source.");
+        }
+    }
+
     /**
      * プロセスを異常終了させるか否か。
      *
@@ -210,6 +263,35 @@ public class ProcessResidentHandler implements Handler<Object, Object> {
         this.dataWatchInterval = dataWatchInterval;
     }
 
+    /**
+     * 起床要求の通知元を設定する。
+     * <p/>
+     * 設定した場合は、データ監視間隔の待機中に起床要求があった時点で待機を中断し、
+     * 後続ハンドラに処理を委譲する。
+     * これにより、データ監視間隔を長く設定して待機中のデータベースへの問い合わせを抑えつつ、
+     * データの到着時には即座に処理を開始することができる。
+     * <p/>
+     * 設定を省略した場合は、データ監視間隔分待機する。
+     *
+     * @param wakeupSource 起床要求の通知元
+     */
+    public void setWakeupSource(WakeupSource wakeupSource) {
+        this.wakeupSource = wakeupSource;
+    }
+
+    /**
+     * 処理対象データの有無に応じて変化するデータ監視間隔を設定する。
+     * <p/>
+     * 設定した場合は、{@link #setDataWatchInterval(int)}で設定したデータ監視間隔に代えて、
+     * 本オブジェクトが求めた間隔で待機する。
+     * 処理対象データの有無は、後続の{@link DataReadHandler}がデータを読み込んだか否かで判定する。
+     *
+     * @param adaptivePollingInterval 処理対象データの有無に応じて変化するデータ監視間隔
+     */
+    public void setAdaptivePollingInterval(AdaptivePollingInterval adaptivePollingInterval) {
+        this.adaptivePollingInterval = adaptivePollingInterval;
+    }
+
     /**
      * 処理を正常に終了させる例外クラスを設定する。
      *
@@ -232,22 +314,5 @@ public class ProcessResidentHandler implements Handler<Object, Object> {
         this.abnormalEndExceptions.addAll(
                 ObjectUtil.createExceptionsClassList(abnormalEndExceptions));
     }
-
-
-    /**
-     * ハンドラキューの内容を、ループ開始前の状態に戻す。
-     *
-     * @param context 実行コンテキスト
-     * @param snapshot ハンドラキューのスナップショット
-     * @return 実行コンテキスト(引数と同じインスタンス)
-     */
-    @SuppressWarnings("rawtypes")
-    private ExecutionContext restoreHandlerQueue(ExecutionContext context,
-            List<Handler> snapshot) {
-        List<Handler> queue = context.getHandlerQueue();
-        queue.clear();
-        queue.addAll(snapshot);
-        return context;
-    }
 }
 
@@ -0,0 +1,291 @@
+package nablarch.fw.handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import nablarch.core.log.app.AppLogUtil;
+import nablarch.core.log.app.JsonLogFormatterSupport;
+import nablarch.core.log.basic.JsonLogObjectBuilder;
+import nablarch.core.text.json.BasicJsonSerializationManager;
+import nablarch.core.text.json.JsonSerializationManager;
+import nablarch.core.text.json.JsonSerializationSettings;
+import nablarch.core.util.StringUtil;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.handler.ProgressReporter.Progress;
+
+/**
+ * 進捗ログのメッセージをJSON形式でフォーマットするクラス。
+ * <p/>
+ * 総件数が分からない場合、総件数、進捗率及び残り時間の見込みは出力しない。
+ * <p/>
+ * 出力項目は、以下の設定例のように指定することで変更可能
+ * <pre>
+ * {@code
+ * progressLogFormatter.targets = label,processedCount,throughput,estimatedRemainingTime
+ * progressLogFormatter.label = BATCH PROGRESS
+ * }
+ * </pre>
+ */
+@Published(tag = "architect")
+public class ProgressJsonLogFormatter extends ProgressLogFormatter {
+
+    /** ラベルの項目名 */
+    private static final String TARGET_NAME_LABEL = "label";
+    /** 処理件数の項目名 */
+    private static final String TARGET_NAME_PROCESSED_COUNT = "processedCount";
+    /** コミット件数の項目名 */
+    private static final String TARGET_NAME_COMMITTED_COUNT = "committedCount";
+    /** 総件数の項目名 */
+    private static final String TARGET_NAME_TOTAL_COUNT = "totalCount";
+    /** 進捗率の項目名 */
+    private static final String TARGET_NAME_PROGRESS_RATE = "progressRate";
+    /** スループットの項目名 */
+    private static final String TARGET_NAME_THROUGHPUT = "throughput";
+    /** 1レコードあたりの処理時間の項目名 */
+    private static final String TARGET_NAME_AVERAGE_LATENCY = "averageLatency";
+    /** 経過時間の項目名 */
+    private static final String TARGET_NAME_ELAPSED_TIME = "elapsedTime";
+    /** 残り時間の見込みの項目名 */
+    private static final String TARGET_NAME_ESTIMATED_REMAINING_TIME = "estimatedRemainingTime";
+
+    /** 進捗ログの出力項目を取得する際に使用するプロパティ名 */
+    private static final String PROPS_PROGRESS_LOG_TARGETS = PROPS_PREFIX + "targets";
+
+    /** 進捗ログのラベルのプロパティ名 */
+    private static final String PROPS_PROGRESS_LOG_MSG_LABEL = PROPS_PREFIX + "label";
+
+    /** 進捗ログ出力項目のデフォルト値 */
+    private static final String DEFAULT_PROGRESS_LOG_TARGETS = "label,processedCount,committedCount,totalCount,"
+            + "progressRate,throughput,averageLatency,elapsedTime,estimatedRemainingTime";
+
+    /** デフォルトの進捗ログメッセージのラベル */
+    private static final String DEFAULT_PROGRESS_LOG_MSG_LABEL = "BATCH PROGRESS";
+
+    /** 進捗ログの出力項目 */
+    private List<JsonLogObjectBuilder<Progress>> progressLogMessageTargets;
+
+    /** 各種ログのJSONフォーマット支援オブジェクト */
+    private JsonLogFormatterSupport support;
+
+    /**
+     * コンストラクタ。
+     */
+    public ProgressJsonLogFormatter() {
+        initialize(AppLogUtil.getProps());
+    }
+
+    /**
+     * 初期化処理。
+     * @param props 各種ログ出力の設定情報
+     */
+    protected void initialize(Map<String, String> props) {
+        JsonSerializationSettings settings = new JsonSerializationSettings(props, PROPS_PREFIX, AppLogUtil.getFilePath());
+        JsonSerializationManager serializationManager = createSerializationManager(settings);
+        support = new JsonLogFormatterSupport(serializationManager, settings);
+
+        Map<String, JsonLogObjectBuilder<Progress>> objectBuilders = getObjectBuilders(props);
+
+        String label = props.get(PROPS_PROGRESS_LOG_MSG_LABEL);
+        objectBuilders.put(TARGET_NAME_LABEL, new LabelBuilder(label != null ? label : DEFAULT_PROGRESS_LOG_MSG_LABEL));
+        progressLogMessageTargets = getStructuredTargets(objectBuilders, props);
+    }
+
+    /**
+     * 変換処理に使用する{@link JsonSerializationManager}を生成する。
+     * @param settings 各種ログ出力の設定情報
+     * @return {@link JsonSerializationManager}
+     */
+    protected JsonSerializationManager createSerializationManager(JsonSerializationSettings settings) {
+        return new BasicJsonSerializationManager();
+    }
+
+    /**
+     * フォーマット対象のログ出力項目を取得する。
+     * @param props 各種ログ出力の設定情報
+     * @return フォーマット対象のログ出力項目
+     */
+    protected Map<String, JsonLogObjectBuilder<Progress>> getObjectBuilders(Map<String, String> props) {
+        Map<String, JsonLogObjectBuilder<Progress>> objectBuilders
+                = new HashMap<String, JsonLogObjectBuilder<Progress>>();
+
+        objectBuilders.put(TARGET_NAME_PROCESSED_COUNT, new ProcessedCountBuilder());
+        objectBuilders.put(TARGET_NAME_COMMITTED_COUNT, new CommittedCountBuilder());
+        objectBuilders.put(TARGET_NAME_TOTAL_COUNT, new TotalCountBuilder());
+        objectBuilders.put(TARGET_NAME_PROGRESS_RATE, new ProgressRateBuilder());
+        objectBuilders.put(TARGET_NAME_THROUGHPUT, new ThroughputBuilder());
+        objectBuilders.put(TARGET_NAME_AVERAGE_LATENCY, new AverageLatencyBuilder());
+        objectBuilders.put(TARGET_NAME_ELAPSED_TIME, new ElapsedTimeBuilder());
+        objectBuilders.put(TARGET_NAME_ESTIMATED_REMAINING_TIME, new EstimatedRemainingTimeBuilder());
+
+        return objectBuilders;
+    }
+
+    /**
+     * ログ出力項目を取得する。
+     * @param objectBuilders オブジェクトビルダー
+     * @param props 各種ログ出力の設定情報
+     * @return ログ出力項目
+     */
+    private List<JsonLogObjectBuilder<Progress>> getStructuredTargets(
+            Map<String, JsonLogObjectBuilder<Progress>> objectBuilders, Map<String, String> props) {
+
+        String targetsStr = props.get(PROPS_PROGRESS_LOG_TARGETS);
+        if (StringUtil.isNullOrEmpty(targetsStr)) {
+            targetsStr = DEFAULT_PROGRESS_LOG_TARGETS;
+        }
+
+        List<JsonLogObjectBuilder<Progress>> structuredTargets = new ArrayList<JsonLogObjectBuilder<Progress>>();
+
+        String[] targets = targetsStr.split(",");
+        Set<String> keys = new HashSet<String>(targets.length);
+        for (String target: targets) {
+            String key = target.trim();
+            if (!StringUtil.isNullOrEmpty(key) && !keys.contains(key)) {
+                keys.add(key);
+                if (objectBuilders.containsKey(key)) {
+                    structuredTargets.add(objectBuilders.get(key));
+                } else {
+                    throw new IllegalArgumentException(
+                            String.format("[%s] is unknown target. property name = [%s]",
+                                    key, PROPS_PROGRESS_LOG_TARGETS));
+                }
+            }
+        }
+
+        return structuredTargets;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getProgressLogMsg(Progress progress) {
+        return support.getStructuredMessage(progressLogMessageTargets, progress);
+    }
+
+    /**
+     * 出力項目(ラベル)を処理するクラス。
+     */
+    public static class LabelBuilder implements JsonLogObjectBuilder<Progress> {
+
+        private final String label;
+
+        /**
+         * コンストラクタ。
+         * @param label ラベル
+         */
+        public LabelBuilder(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public void build(Map<String, Object> structuredObject, Progress progress) {
+            structuredObject.put(TARGET_NAME_LABEL, label);
+        }
+    }
+
+    /**
+     * 出力項目(処理件数)を処理するクラス。
+     */
+    public static class ProcessedCountBuilder implements JsonLogObjectBuilder<Progress> {
+
+        @Override
+        public void build(Map<String, Object> structuredObject, Progress progress) {
+            structuredObject.put(TARGET_NAME_PROCESSED_COUNT, progress.getProcessedCount());
+        }
+    }
+
+    /**
+     * 出力項目(コミット件数)を処理するクラス。
+     */
+    public static class CommittedCountBuilder implements JsonLogObjectBuilder<Progress> {
+
+        @Override
+        public void build(Map<String, Object> structuredObject, Progress progress) {
+            structuredObject.put(TARGET_NAME_COMMITTED_COUNT, progress.getCommittedCount());
+        }
+    }
+
+    /**
+     * 出力項目(総件数)を処理するクラス。
+     * <p/>
+     * 総件数が分からない場合は、何も出力しない。
+     */
+    public static class TotalCountBuilder implements JsonLogObjectBuilder<Progress> {
+
+        @Override
+        public void build(Map<String, Object> structuredObject, Progress progress) {
+            if (progress.isTotalCountKnown()) {
+                structuredObject.put(TARGET_NAME_TOTAL_COUNT, progress.getTotalCount());
+            }
+        }
+    }
+
+    /**
+     * 出力項目(進捗率)を処理するクラス。
+     * <p/>
+     * 総件数が分からない場合は、何も出力しない。
+     */
+    public static class ProgressRateBuilder implements JsonLogObjectBuilder<Progress> {
+
+        @Override
+        public void build(Map<String, Object> structuredObject, Progress progress) {
+            if (progress.isTotalCountKnown()) {
+                structuredObject.put(TARGET_NAME_PROGRESS_RATE, progress.getProgressRate());
+            }
+        }
+    }
+
+    /**
+     * 出力項目(スループット)を処理するクラス。
+     */
+    public static class ThroughputBuilder implements JsonLogObjectBuilder<Progress> {
+
+        @Override
+        public void build(Map<String, Object> structuredObject, Progress progress) {
+            structuredObject.put(TARGET_NAME_THROUGHPUT, progress.getThroughput());
+        }
+    }
+
+    /**
+     * 出力項目(1レコードあたりの処理時間)を処理するクラス。
+     */
+    public static class AverageLatencyBuilder implements JsonLogObjectBuilder<Progress> {
+
+        @Override
+        public void build(Map<String, Object> structuredObject, Progress progress) {
+            structuredObject.put(TARGET_NAME_AVERAGE_LATENCY, progress.getAverageLatencyMicros());
+        }
+    }
+
+    /**
+     * 出力項目(経過時間)を処理するクラス。
+     */
+    public static class ElapsedTimeBuilder implements JsonLogObjectBuilder<Progress> {
+
+        @Override
+        public void build(Map<String, Object> structuredObject, Progress progress) {
+            structuredObject.put(TARGET_NAME_ELAPSED_TIME, progress.getElapsedMillis());
+        }
+    }
+
+    /**
+     * 出力項目(残り時間の見込み)を処理するクラス。
+     * <p/>
+     * 残り時間の見込みが分からない場合は、何も出力しない。
+     */
+    public static class EstimatedRemainingTimeBuilder implements JsonLogObjectBuilder<Progress> {
+
+        @Override
+        public void build(Map<String, Object> structuredObject, Progress progress) {
+            long remaining = progress.getEstimatedRemainingMillis();
+            if (remaining >= 0) {
+                structuredObject.put(TARGET_NAME_ESTIMATED_REMAINING_TIME, remaining);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package nablarch.fw.handler;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import nablarch.core.log.LogItem;
+import nablarch.core.log.LogUtil;
+import nablarch.core.log.app.AppLogUtil;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.handler.ProgressReporter.Progress;
+
+/**
+ * {@link ProgressReporter}で出力する進捗ログのメッセージをフォーマットするクラス。
+ * <p/>
+ * 総件数が分からない場合、総件数、進捗率及び残り時間の見込みは"-"を出力する。
+ */
+@Published(tag = "architect")
+public class ProgressLogFormatter {
+
+    /** プロパティ名のプレフィックス */
+    public static final String PROPS_PREFIX = "progressLogFormatter.";
+
+    /** 値が分からない場合に出力する文字列 */
+    private static final String UNKNOWN = "-";
+
+    /** 進捗ログのフォーマット定義 */
+    private static final String DEFAULT_PROGRESS_LOG_FORMAT = "@@@@ PROGRESS @@@@"
+            + " processed = [$processedCount$]"
+            + " committed = [$committedCount$]"
+            + " total = [$totalCount$]"
+            + " progress(%) = [$progressRate$]"
+            + " throughput(records/sec) = [$throughput$]"
+            + " average latency(us) = [$averageLatency$]"
+            + " elapsed(ms) = [$elapsedTime$]"
+            + " remaining(ms) = [$estimatedRemainingTime$]";
+
+    /** 進捗ログの出力項目 */
+    private final Map<String, LogItem<Progress>> progressLogItems = getProgressLogItems();
+
+    /**
+     * 進捗ログを生成する。
+     * <p/>
+     * {@link #getProgressLogFormat()}から取得したログフォーマットに従いログメッセージの生成を行う。
+     *
+     * @param progress 進捗状況
+     * @return 生成した進捗ログ
+     */
+    public String getProgressLogMsg(Progress progress) {
+        LogItem<Progress>[] items = LogUtil.createFormattedLogItems(
+                progressLogItems, getProgressLogFormat());
+        return LogUtil.formatMessage(items, progress);
+    }
+
+    /**
+     * 進捗ログのフォーマットを取得する。
+     * <p/>
+     * 設定ファイル(nablarch.core.log.app.AppLogUtil#getProps())にログフォーマットが指定されている場合は、
+     * そのフォーマットを返却する。
+     * 設定されていない場合には、デフォルトのフォーマットを使用する。
+     * <p/>
+     * デフォルトのフォーマットは、以下の設定例のようにフォーマット定義を行うことにより変更可能
+     * <pre>
+     * {@code
+     * progressLogFormatter.format = @@@@ PROGRESS @@@@ processed = [$processedCount$] remaining(ms) = [$estimatedRemainingTime$]
+     * }
+     * </pre>
+     *
+     * @return 進捗ログのフォーマット
+     */
+    protected String getProgressLogFormat() {
+        String overrideFormat = AppLogUtil.getProps().get(PROPS_PREFIX + "format");
+        if (overrideFormat == null) {
+            return DEFAULT_PROGRESS_LOG_FORMAT;
+        }
+        return overrideFormat;
+    }
+
+    /**
+     * 進捗ログ用のログ出力項目を生成する。
+     *
+     * @return 生成したログ出力項目
+     */
+    protected Map<String, LogItem<Progress>> getProgressLogItems() {
+        Map<String, LogItem<Progress>> logItem = new HashMap<String, LogItem<Progress>>();
+        logItem.put("$processedCount$", new ProcessedCount());
+        logItem.put("$committedCount$", new CommittedCount());
+        logItem.put("$totalCount$", new TotalCount());
+        logItem.put("$progressRate$", new ProgressRate());
+        logItem.put("$throughput$", new Throughput());
+        logItem.put("$averageLatency$", new AverageLatency());
+        logItem.put("$elapsedTime$", new ElapsedTime());
+        logItem.put("$estimatedRemainingTime$", new EstimatedRemainingTime());
+        return logItem;
+    }
+
+    /**
+     * 処理件数を取得する。
+     */
+    protected static class ProcessedCount implements LogItem<Progress> {
+        /** {@inheritDoc} */
+        public String get(Progress progress) {
+            return String.valueOf(progress.getProcessedCount());
+        }
+    }
+
+    /**
+     * コミット件数を取得する。
+     */
+    protected static class CommittedCount implements LogItem<Progress> {
+        /** {@inheritDoc} */
+        public String get(Progress progress) {
+            return String.valueOf(progress.getCommittedCount());
+        }
+    }
+
+    /**
+     * 総件数を取得する。
+     */
+    protected static class TotalCount implements LogItem<Progress> {
+        /** {@inheritDoc} */
+        public String get(Progress progress) {
+            return progress.isTotalCountKnown() ? String.valueOf(progress.getTotalCount()) : UNKNOWN;
+        }
+    }
+
+    /**
+     * 進捗率を取得する。
+     * <p/>
+     * 小数点以下1桁までを出力する。
+     */
+    protected static class ProgressRate implements LogItem<Progress> {
+        /** {@inheritDoc} */
+        public String get(Progress progress) {
+            return progress.isTotalCountKnown()
+                    ? String.format(Locale.ROOT, "%.1f", progress.getProgressRate()) : UNKNOWN;
+        }
+    }
+
+    /**
+     * スループットの移動平均を取得する。
+     * <p/>
+     * 小数点以下1桁までを出力する。
+     */
+    protected static class Throughput implements LogItem<Progress> {
+        /** {@inheritDoc} */
+        public String get(Progress progress) {
+            return String.format(Locale.ROOT, "%.1f", progress.getThroughput());
+        }
+    }
+
+    /**
+     * 1レコードあたりの処理時間の移動平均を取得する。
+     */
+    protected static class AverageLatency implements LogItem<Progress> {
+        /** {@inheritDoc} */
+        public String get(Progress progress) {
+            return String.valueOf(progress.getAverageLatencyMicros());
+        }
+    }
+
+    /**
+     * 経過時間を取得する。
+     */
+    protected static class ElapsedTime implements LogItem<Progress> {
+        /** {@inheritDoc} */
+        public String get(Progress progress) {
+            return String.valueOf(progress.getElapsedMillis());
+        }
+    }
+
+    /**
+     * 残り時間の見込みを取得する。
+     */
+    protected static class EstimatedRemainingTime implements LogItem<Progress> {
+        /** {@inheritDoc} */
+        public String get(Progress progress) {
+            long remaining = progress.getEstimatedRemainingMillis();
+            return remaining < 0 ? UNKNOWN : String.valueOf(remaining);
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package nablarch.fw.handler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+
+/**
+ * バッチ処理の進捗状況を定期的にログに出力するクラス。
+ * <p/>
+ * {@link DataReadHandler}及び{@link LoopHandler}に本クラスを設定すると、
+ * 各ハンドラはレコードの処理件数と処理時間、コミット件数を本クラスに記録する。
+ * 本クラスは、前回の出力から{@link #setReportInterval(long)}で指定した時間が経過した後の最初の記録時に、
+ * 以下の内容をログ(INFOレベル)に出力する。
+ * <ul>
+ *     <li>処理件数、コミット件数及び総件数</li>
+ *     <li>進捗率(総件数が分かる場合のみ)</li>
+ *     <li>スループット(件/秒)の移動平均</li>
+ *     <li>1レコードあたりの処理時間の移動平均</li>
+ *     <li>経過時間及び残り時間の見込み(総件数が分かる場合のみ)</li>
+ * </ul>
+ * 移動平均は、出力間隔毎の値の指数移動平均とする。
+ * 移動平均は進捗状況の出力時にのみ更新し、{@link #getProgress()}の呼び出しでは更新しない。
+ * <p/>
+ * 総件数は、{@link #setTotalCount(long)}で指定した値を使用する。
+ * 指定していない場合は、データリーダが{@link TotalCountAware}を実装していれば、その見込み件数を使用する。
+ * <p/>
+ * 集計の開始と終了時の出力は、{@link MultiThreadExecutionHandler}に本クラスを設定することで行われる。
+ * 処理件数などは、ロックを取得せずにスレッド毎のカウンタに加算し、出力時に合算する。
+ * <p/>
+ * ログのフォーマットは{@link #setLogFormatter(ProgressLogFormatter)}で変更できる。
+ * JSON形式で出力する場合は{@link ProgressJsonLogFormatter}を設定する。
+ * <p/>
+ * 以下は、本クラスの設定例である。
+ * <pre>
+ * &lt;component name="progressReporter" class="nablarch.fw.handler.ProgressReporter">
+ *   &lt;property name="reportInterval" value="60000" />
+ * &lt;/component>
+ *
+ * &lt;list name="handlerQueue">
+ *   &lt;component class="nablarch.fw.handler.MultiThreadExecutionHandler">
+ *     &lt;property name="progressReporter" ref="progressReporter" />
+ *   &lt;/component>
+ *   &lt;component class="nablarch.fw.handler.LoopHandler">
+ *     &lt;property name="progressReporter" ref="progressReporter" />
+ *     &lt;!-- その他の設定は省略 -->
+ *   &lt;/component>
+ *   &lt;component class="nablarch.fw.handler.DataReadHandler">
+ *     &lt;property name="progressReporter" ref="progressReporter" />
+ *   &lt;/component>
+ *   &lt;!-- 後続ハンドラは省略 -->
+ * &lt;/list>
+ * </pre>
+ */
+@Published(tag = "architect")
+public class ProgressReporter {
+
+    /**
+     * 処理対象の総件数の見込みを提供するデータリーダが実装するインタフェース。
+     */
+    public interface TotalCountAware {
+        /**
+         * 処理対象の総件数の見込みを取得する。
+         *
+         * @param context 実行コンテキスト
+         * @return 総件数の見込み(分からない場合は負数)
+         */
+        long getTotalCountHint(ExecutionContext context);
+    }
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(ProgressReporter.class);
+
+    /** カウンタのインデックス(処理件数) */
+    private static final int PROCESSED = 0;
+
+    /** カウンタのインデックス(処理時間の合計) */
+    private static final int LATENCY = 1;
+
+    /** カウンタのインデックス(コミット件数) */
+    private static final int COMMITTED = 2;
+
+    /** 指数移動平均の平滑化係数 */
+    private static final double SMOOTHING_FACTOR = 0.3;
+
+    /** デフォルトの出力間隔(単位:msec) */
+    private static final long DEFAULT_REPORT_INTERVAL = 60000;
+
+    /** 出力間隔(単位:msec) */
+    private long reportInterval = DEFAULT_REPORT_INTERVAL;
+
+    /** 設定された総件数(負数の場合はデータリーダから取得する) */
+    private long configuredTotalCount = -1;
+
+    /** ログのフォーマッタ */
+    private ProgressLogFormatter logFormatter = new ProgressLogFormatter();
+
+    /** 現在の集計対象 */
+    private volatile Generation generation = new Generation();
+
+    /** 次回の出力時刻(単位:nsec) */
+    private final AtomicLong nextReportTime = new AtomicLong(
+            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEFAULT_REPORT_INTERVAL));
+
+    /**
+     * 進捗状況の出力間隔を設定する。
+     * <p/>
+     * デフォルトは60000(1分)。
+     *
+     * @param reportInterval 出力間隔(単位:msec)
+     * @return このオブジェクト自体
+     */
+    public ProgressReporter setReportInterval(long reportInterval) {
+        this.reportInterval = reportInterval;
+        nextReportTime.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(reportInterval));
+        return this;
+    }
+
+    /**
+     * 処理対象の総件数を設定する。
+     * <p/>
+     * 設定した場合、データリーダから取得する見込み件数より優先する。
+     *
+     * @param totalCount 処理対象の総件数
+     * @return このオブジェクト自体
+     */
+    public ProgressReporter setTotalCount(long totalCount) {
+        this.configuredTotalCount = totalCount;
+        return this;
+    }
+
+    /**
+     * ログのフォーマッタを設定する。
+     * <p/>
+     * デフォルトは{@link ProgressLogFormatter}。
+     *
+     * @param logFormatter ログのフォーマッタ
+     * @return このオブジェクト自体
+     */
+    public ProgressReporter setLogFormatter(ProgressLogFormatter logFormatter) {
+        this.logFormatter = logFormatter;
+        return this;
+    }
+
+    /**
+     * 集計を開始する。
+     * <p/>
+     * それまでの集計結果は破棄する。
+     * 総件数が設定されていない場合は、実行コンテキスト上のデータリーダから総件数の見込みを取得する。
+     *
+     * @param context 実行コンテキスト
+     */
+    public void start(ExecutionContext context) {
+        long totalCount = configuredTotalCount;
+        if (totalCount < 0) {
+            DataReader<?> reader = context.getDataReader();
+            if (reader instanceof TotalCountAware) {
+                totalCount = ((TotalCountAware) reader).getTotalCountHint(context);
+            }
+        }
+        start(totalCount);
+    }
+
+    /**
+     * 集計を開始する。
+     *
+     * @param totalCount 総件数(分からない場合は負数)
+     */
+    private synchronized void start(long totalCount) {
+        long now = System.nanoTime();
+        generation = new Generation(now, totalCount < 0 ? -1 : totalCount);
+        nextReportTime.set(now + TimeUnit.MILLISECONDS.toNanos(reportInterval));
+    }
+
+    /**
+     * 集計を終了し、最終的な進捗状況をログに出力する。
+     */
+    public void finish() {
+        report(System.nanoTime());
+    }
+
+    /**
+     * レコードの処理を記録する。
+     *
+     * @param records 処理したレコード件数
+     * @param startTime 処理の開始時刻(単位:nsec)
+     */
+    void recordProcessed(int records, long startTime) {
+        long now = System.nanoTime();
+        Counter counter = counter();
+        counter.add(PROCESSED, records);
+        counter.add(LATENCY, now - startTime);
+        reportIfDue(now);
+    }
+
+    /**
+     * コミットを記録する。
+     *
+     * @param records コミットしたレコード件数
+     */
+    void recordCommit(long records) {
+        counter().add(COMMITTED, records);
+        reportIfDue(System.nanoTime());
+    }
+
+    /**
+     * 出力時刻に達している場合は、進捗状況をログに出力する。
+     * <p/>
+     * 複数スレッドから同時に呼び出された場合は、いずれか1つのスレッドのみが出力する。
+     *
+     * @param now 現在時刻(単位:nsec)
+     */
+    private void reportIfDue(long now) {
+        long next = nextReportTime.get();
+        if (now - next < 0) {
+            return;
+        }
+        if (nextReportTime.compareAndSet(next, now + TimeUnit.MILLISECONDS.toNanos(reportInterval))) {
+            report(now);
+        }
+    }
+
+    /**
+     * 進捗状況をログに出力する。
+     *
+     * @param now 現在時刻(単位:nsec)
+     */
+    private void report(long now) {
+        Progress progress = update(now);
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.logInfo(logFormatter.getProgressLogMsg(progress));
+        }
+    }
+
+    /**
+     * 現在の進捗状況を取得する。
+     * <p/>
+     * 処理件数とコミット件数は現時点の値とし、スループットと処理時間は直近の出力時点の移動平均とする。
+     * 本メソッドの呼び出しは移動平均を更新しない。
+     *
+     * @return 進捗状況
+     */
+    public synchronized Progress getProgress() {
+        Generation current = generation;
+        return toProgress(current, sum(current), System.nanoTime());
+    }
+
+    /**
+     * カウンタを合算し、移動平均を更新した進捗状況を取得する。
+     *
+     * @param now 現在時刻(単位:nsec)
+     * @return 進捗状況
+     */
+    private synchronized Progress update(long now) {
+        Generation current = generation;
+        long[] totals = sum(current);
+        long processed = totals[PROCESSED];
+        long latency = totals[LATENCY];
+
+        long elapsed = now - current.lastUpdateTime;
+        long processedDelta = processed - current.lastProcessed;
+        if (elapsed > 0 && processedDelta > 0) {
+            double throughput = processedDelta * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            double averageLatency = (latency - current.lastLatency) / (double) processedDelta;
+            if (current.throughput < 0) {
+                current.throughput = throughput;
+                current.averageLatency = averageLatency;
+            } else {
+                current.throughput = SMOOTHING_FACTOR * throughput + (1 - SMOOTHING_FACTOR) * current.throughput;
+                current.averageLatency = SMOOTHING_FACTOR * averageLatency
+                        + (1 - SMOOTHING_FACTOR) * current.averageLatency;
+            }
+            current.lastUpdateTime = now;
+            current.lastProcessed = processed;
+            current.lastLatency = latency;
+        }
+        return toProgress(current, totals, now);
+    }
+
+    /**
+     * 全スレッドのカウンタを合算する。
+     *
+     * @param current 集計対象の世代
+     * @return カウンタのインデックス毎の合計値
+     */
+    private static long[] sum(Generation current) {
+        long[] totals = new long[Counter.SIZE];
+        for (Counter counter : current.counters.all()) {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += counter.get(i);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * 合算したカウンタと現在の移動平均から進捗状況を生成する。
+     *
+     * @param current 集計対象の世代
+     * @param totals カウンタのインデックス毎の合計値
+     * @param now 現在時刻(単位:nsec)
+     * @return 進捗状況
+     */
+    private static Progress toProgress(Generation current, long[] totals, long now) {
+        return new Progress(totals[PROCESSED], totals[COMMITTED], current.totalCount,
+                TimeUnit.NANOSECONDS.toMillis(now - current.startTime),
+                Math.max(current.throughput, 0), (long) Math.max(current.averageLatency / 1000, 0));
+    }
+
+    /**
+     * 現在のスレッドのカウンタを取得する。
+     *
+     * @return カウンタ
+     */
+    private Counter counter() {
+        return generation.counters.get();
+    }
+
+    /**
+     * 進捗状況。
+     */
+    @Published(tag = "architect")
+    public static final class Progress {
+
+        /** 処理件数 */
+        private final long processedCount;
+
+        /** コミット件数 */
+        private final long committedCount;
+
+        /** 総件数 */
+        private final long totalCount;
+
+        /** 経過時間(単位:msec) */
+        private final long elapsedMillis;
+
+        /** スループット(件/秒)の移動平均 */
+        private final double throughput;
+
+        /** 1レコードあたりの処理時間の移動平均(単位:usec) */
+        private final long averageLatencyMicros;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param processedCount 処理件数
+         * @param committedCount コミット件数
+         * @param totalCount 総件数(分からない場合は負数)
+         * @param elapsedMillis 経過時間(単位:msec)
+         * @param throughput スループット(件/秒)の移動平均
+         * @param averageLatencyMicros 1レコードあたりの処理時間の移動平均(単位:usec)
+         */
+        public Progress(long processedCount, long committedCount, long totalCount,
+                long elapsedMillis, double throughput, long averageLatencyMicros) {
+            this.processedCount = processedCount;
+            this.committedCount = committedCount;
+            this.totalCount = totalCount;
+            this.elapsedMillis = elapsedMillis;
+            this.throughput = throughput;
+            this.averageLatencyMicros = averageLatencyMicros;
+        }
+
+        /**
+         * 処理件数を取得する。
+         *
+         * @return 処理件数
+         */
+        public long getProcessedCount() {
+            return processedCount;
+        }
+
+        /**
+         * コミット件数を取得する。
+         *
+         * @return コミット件数
+         */
+        public long getCommittedCount() {
+            return committedCount;
+        }
+
+        /**
+         * 総件数を取得する。
+         *
+         * @return 総件数(分からない場合は負数)
+         */
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * 総件数が分かるか否かを判定する。
+         *
+         * @return 総件数が分かる場合は{@code true}
+         */
+        public boolean isTotalCountKnown() {
+            return totalCount >= 0;
+        }
+
+        /**
+         * 進捗率を取得する。
+         *
+         * @return 進捗率(単位:%、総件数が分からない場合は負数)
+         */
+        public double getProgressRate() {
+            if (!isTotalCountKnown()) {
+                return -1;
+            }
+            if (totalCount == 0) {
+                return 100;
+            }
+            return Math.min(processedCount * 100.0 / totalCount, 100);
+        }
+
+        /**
+         * 経過時間を取得する。
+         *
+         * @return 経過時間(単位:msec)
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * スループットの移動平均を取得する。
+         *
+         * @return スループット(件/秒)
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        /**
+         * 1レコードあたりの処理時間の移動平均を取得する。
+         *
+         * @return 1レコードあたりの処理時間(単位:usec)
+         */
+        public long getAverageLatencyMicros() {
+            return averageLatencyMicros;
+        }
+
+        /**
+         * 残り時間の見込みを取得する。
+         * <p/>
+         * 残り件数をスループットの移動平均で除した値とする。
+         *
+         * @return 残り時間の見込み(単位:msec、総件数またはスループットが分からない場合は負数)
+         */
+        public long getEstimatedRemainingMillis() {
+            if (!isTotalCountKnown() || throughput <= 0) {
+                return -1;
+            }
+            long remaining = Math.max(totalCount - processedCount, 0);
+            return (long) (remaining * 1000 / throughput);
+        }
+    }
+
+    /**
+     * スレッド毎のカウンタ。
+     * <p/>
+     * 更新は所有するスレッドのみが行うため、比較交換を行わずに値を書き込む。
+     */
+    private static final class Counter {
+
+        /** カウンタの数 */
+        static final int SIZE = 3;
+
+        /** カウンタの値 */
+        private final AtomicLongArray values = new AtomicLongArray(SIZE);
+
+        /**
+         * カウンタに加算する。
+         *
+         * @param index カウンタのインデックス
+         * @param delta 加算する値
+         */
+        void add(int index, long delta) {
+            values.lazySet(index, values.get(index) + delta);
+        }
+
+        /**
+         * カウンタの値を取得する。
+         *
+         * @param index カウンタのインデックス
+         * @return カウンタの値
+         */
+        long get(int index) {
+            return values.get(index);
+        }
+    }
+
+    /**
+     * 集計対象の世代。
+     * <p/>
+     * {@link #start(ExecutionContext)}は世代を切り替えることで集計結果を破棄する。
+     * 移動平均に関する値は、{@link #update(long)}の中でのみ更新する。
+     */
+    private static final class Generation {
+
+        /** スレッド毎のカウンタ */
+        private final PerThreadAccumulator<Counter> counters = new PerThreadAccumulator<Counter>() {
+            @Override
+            protected Counter create() {
+                return new Counter();
+            }
+        };
+
+        /** 集計の開始時刻(単位:nsec) */
+        private final long startTime;
+
+        /** 総件数(分からない場合は-1) */
+        private final long totalCount;
+
+        /** 移動平均の前回の更新時刻(単位:nsec) */
+        private long lastUpdateTime;
+
+        /** 移動平均の前回の更新時の処理件数 */
+        private long lastProcessed;
+
+        /** 移動平均の前回の更新時の処理時間の合計(単位:nsec) */
+        private long lastLatency;
+
+        /** スループット(件/秒)の移動平均(未算出の場合は負数) */
+        private double throughput = -1;
+
+        /** 1レコードあたりの処理時間の移動平均(単位:nsec) */
+        private double averageLatency;
+
+        /**
+         * 集計を開始していない状態の世代を生成する。
+         * <p/>
+         * 開始時刻は生成時点とし、総件数は分からないものとする。
+         */
+        Generation() {
+            this(System.nanoTime(), -1);
+        }
+
+        /**
+         * コンストラクタ。
+         *
+         * @param startTime 集計の開始時刻(単位:nsec)
+         * @param totalCount 総件数(分からない場合は-1)
+         */
+        Generation(long startTime, long totalCount) {
+            this.startTime = startTime;
+            this.totalCount = totalCount;
+            this.lastUpdateTime = startTime;
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package nablarch.fw.handler;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import nablarch.core.dataformat.DataRecord;
 import nablarch.core.util.annotation.Published;
@@ -18,6 +23,11 @@ import nablarch.fw.Result;
  * </pre>
  * 
  * なお、メソッド名の一致判定において大文字小文字は同一視される。
+ * <p/>
+ * 委譲先のメソッドは、委譲対象のクラスとレコードタイプ名の組み合わせ毎に1度だけ解決し、
+ * 以降はキャッシュしたメソッドを使用する。
+ * 一致するメソッドが存在しない場合はキャッシュせず、都度解決を行う。
+ * キャッシュは委譲対象のクラスを弱参照で保持するため、クラスローダのアンロードを妨げない。
  * 
  * @author Iwauo Tajima
  */
@@ -33,12 +43,44 @@ public class RecordTypeBinding extends MethodBinding<DataRecord, Result> {
         }
     }
     
+    /**
+     * 委譲対象のクラス毎の、レコードタイプ名と委譲先メソッドのキャッシュ。
+     * <p/>
+     * 委譲先メソッドは委譲対象のクラスを強参照するため、値も弱参照で保持する。
+     * 値は、キャッシュを使用する{@link RecordTypeBinding}が存在する間のみ保持される。
+     * アクセスする際は、このオブジェクトで同期を取ること。
+     */
+    private static final Map<Class<?>, WeakReference<ConcurrentMap<String, Method>>> METHOD_CACHE =
+            new WeakHashMap<Class<?>, WeakReference<ConcurrentMap<String, Method>>>();
+
+    /** 委譲対象のクラスに対応する委譲先メソッドのキャッシュ */
+    private final ConcurrentMap<String, Method> methodCache;
+
     /**
      * コンストラクタ
      * @param delegate 処理委譲対象のオブジェクト
      */
     public RecordTypeBinding(Object delegate) {
         super(delegate);
+        methodCache = methodCacheOf(delegate.getClass());
+    }
+
+    /**
+     * 委譲対象のクラスに対応する委譲先メソッドのキャッシュを取得する。
+     *
+     * @param delegateClass 委譲対象のクラス
+     * @return 委譲先メソッドのキャッシュ
+     */
+    private static ConcurrentMap<String, Method> methodCacheOf(Class<?> delegateClass) {
+        synchronized (METHOD_CACHE) {
+            WeakReference<ConcurrentMap<String, Method>> ref = METHOD_CACHE.get(delegateClass);
+            ConcurrentMap<String, Method> cache = (ref == null) ? null : ref.get();
+            if (cache == null) {
+                cache = new ConcurrentHashMap<String, Method>();
+                METHOD_CACHE.put(delegateClass, new WeakReference<ConcurrentMap<String, Method>>(cache));
+            }
+            return cache;
+        }
     }
 
     /** {@inheritDoc}
@@ -47,7 +89,16 @@ public class RecordTypeBinding extends MethodBinding<DataRecord, Result> {
      */
     @Override
     protected Method getMethodBoundTo(DataRecord record, ExecutionContext ctx) {
-        String methodName = "do" + record.getRecordType();
-        return getHandleMethod(methodName);
+        String recordType = record.getRecordType();
+        Method method = (recordType == null) ? null : methodCache.get(recordType);
+        if (method != null) {
+            return method;
+        }
+        String methodName = "do" + recordType;
+        method = getHandleMethod(methodName);
+        if (method != null && recordType != null) {
+            methodCache.put(recordType, method);
+        }
+        return method;
     }
 }
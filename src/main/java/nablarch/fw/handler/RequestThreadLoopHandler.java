@@ -1,8 +1,12 @@
 package nablarch.fw.handler;
 
+import java.util.Map;
+
 import nablarch.core.log.Logger;
 import nablarch.core.log.LoggerManager;
 import nablarch.core.log.app.FailureLogUtil;
+import nablarch.fw.DataReader;
+import nablarch.fw.DataReaderFactory;
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.Handler;
 import nablarch.fw.Result;
@@ -28,6 +32,10 @@ import nablarch.fw.results.ServiceUnavailable;
  * 1つのリクエスト処理がエラーとなっても他のリクエスト処理はそのまま継続しなければならない。
  * このため、本ハンドラで捕捉した例外は、プロセス正常停止要求や致命的な一部の例外を除き
  * リトライ可能例外{@link RetryableException}として再送出する。
+ * <p/>
+ * 後続ハンドラには、リクエスト毎に本ハンドラに渡された実行コンテキストのコピーを渡す。
+ * {@link #setReuseContext(boolean)}に{@code true}を設定した場合は、スレッド毎に1つのコピーを
+ * リクエスト毎に初期化して再利用する。
  * 
  * @author Iwauo Tajima
  */
@@ -39,12 +47,30 @@ public class RequestThreadLoopHandler implements Handler<Object, Object> {
      */
     private int serviceUnavailabilityRetryInterval = 1000;
 
+    /** 後続ハンドラに渡す実行コンテキストを再利用するか否か */
+    private boolean reuseContext = false;
+
+    /** ハンドラ毎の処理時間の記録先 */
+    private HandlerLatencyRegistry latencyRegistry;
+
     /** {@inheritDoc} */
     public Result handle(Object data, ExecutionContext ctx) {
         Result result = null;
+        ReusableContext reusable = null;
+        if (latencyRegistry != null) {
+            latencyRegistry.instrument(ctx);
+        }
         while (ctx.hasNextData()) {
             try {
-                ExecutionContext clonedCtx = ctx.copy();
+                ExecutionContext clonedCtx;
+                if (reuseContext) {
+                    if (reusable == null) {
+                        reusable = new ReusableContext(ctx);
+                    }
+                    clonedCtx = reusable.reset();
+                } else {
+                    clonedCtx = ctx.copy();
+                }
                 result = clonedCtx.handleNext(data);
                 
             // サービス閉局エラー発生時:
@@ -148,6 +174,75 @@ public class RequestThreadLoopHandler implements Handler<Object, Object> {
         }
         return result;
     }
+
+    /**
+     * リクエスト毎に初期化して再利用する実行コンテキスト。
+     * <p/>
+     * 初期化後の状態は、元の実行コンテキストの{@link ExecutionContext#copy()}で生成した
+     * 実行コンテキストと同じとなる。
+     * リクエストスコープは初期化の度に空になるため、リクエストスコープの変数が
+     * 後続のリクエストに引き継がれることはない。
+     * 同様に、データリーダとデータリーダファクトリも初期化の度に元の実行コンテキストのものに戻す。
+     * ただし、元の実行コンテキストのデータリーダファクトリは取得できないため、
+     * 元の実行コンテキストからデータリーダを取得するデータリーダファクトリを設定する。
+     */
+    private static final class ReusableContext {
+
+        /** 元の実行コンテキスト */
+        private final ExecutionContext parent;
+
+        /** 再利用する実行コンテキスト */
+        private final ExecutionContext child;
+
+        /** 再利用する実行コンテキストのハンドラキューの初期状態 */
+        private final HandlerQueueSnapshot snapshot;
+
+        /** 再利用するリクエストスコープ */
+        private final Map<String, Object> requestScope;
+
+        /** 元の実行コンテキストからデータリーダを取得するデータリーダファクトリ */
+        private final DataReaderFactory<Object> readerFactory;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param parent 元の実行コンテキスト
+         */
+        private ReusableContext(final ExecutionContext parent) {
+            this.parent = parent;
+            this.child = parent.copy();
+            this.snapshot = new HandlerQueueSnapshot(child);
+            this.requestScope = child.getRequestScopeMap();
+            this.readerFactory = new DataReaderFactory<Object>() {
+                public DataReader<Object> createReader(ExecutionContext ctx) {
+                    return parent.getDataReader();
+                }
+            };
+        }
+
+        /**
+         * 再利用する実行コンテキストを初期化する。
+         *
+         * @return 初期化した実行コンテキスト
+         */
+        private ExecutionContext reset() {
+            snapshot.restore(child);
+            // 後続ハンドラがリクエストスコープを差し替えた場合も、差し替え前のものを空にして使用する。
+            requestScope.clear();
+            child.setRequestScopeMap(requestScope);
+            child.setSessionScopeMap(parent.getSessionScopeMap());
+            child.setDataReader(parent.getDataReader());
+            // 後続ハンドラが設定したデータリーダファクトリを後続のリクエストに引き継がない。
+            child.setDataReaderFactory(readerFactory);
+            child.setMethodBinder(parent.getMethodBinder());
+            child.clearLastReadData();
+            child.setLastRecordNumber(0);
+            child.setProcessSucceeded(true);
+            child.setCurrentRequestObject(null);
+            return child;
+        }
+    }
+
     /**
      * 後続ハンドラから閉局中例外が送出された場合に、次のリクエスト処理を開始するまでに待機する時間を設定する。
      * 設定値が0以下の場合は、待機せずに即時リトライを行なう。
@@ -160,6 +255,42 @@ public class RequestThreadLoopHandler implements Handler<Object, Object> {
         serviceUnavailabilityRetryInterval = msec;
         return this;
     }
+
+    /**
+     * 後続ハンドラに渡す実行コンテキストを再利用するか否かを設定する。
+     * <p/>
+     * {@code true}を設定した場合は、リクエスト毎に実行コンテキストのコピーを生成せずに、
+     * スレッド毎に1つのコピーをリクエスト毎に初期化して再利用する。
+     * これにより、大量のリクエストを処理する場合の実行コンテキストの生成コストとGCの負荷を抑えることができる。
+     * 初期化ではリクエストスコープが空になるため、リクエストスコープの変数が後続のリクエストに引き継がれることはない。
+     * <p/>
+     * 後続ハンドラや業務アクションが、リクエストの処理完了後も実行コンテキストへの参照を保持し
+     * 使用する場合(別スレッドに処理を引き渡す場合など)は、{@code true}を設定してはならない。
+     * <p/>
+     * デフォルトの設定値は{@code false}である。
+     *
+     * @param reuseContext 実行コンテキストを再利用する場合は{@code true}
+     * @return このオブジェクト自体
+     */
+    public RequestThreadLoopHandler setReuseContext(boolean reuseContext) {
+        this.reuseContext = reuseContext;
+        return this;
+    }
+
+    /**
+     * ハンドラ毎の処理時間の記録先を設定する。
+     * <p/>
+     * 設定した場合、後続ハンドラ毎の処理時間を記録する。
+     * デフォルトでは記録しない。
+     *
+     * @param latencyRegistry ハンドラ毎の処理時間の記録先
+     * @return このオブジェクト自体
+     * @see HandlerLatencyRegistry
+     */
+    public RequestThreadLoopHandler setLatencyRegistry(HandlerLatencyRegistry latencyRegistry) {
+        this.latencyRegistry = latencyRegistry;
+        return this;
+    }
     
     /** ロガー */
     private static final Logger
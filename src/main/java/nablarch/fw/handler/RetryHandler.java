@@ -1,9 +1,5 @@
 package nablarch.fw.handler;
 
-import java.util.ArrayList;
-
-import java.util.List;
-
 import nablarch.core.log.Logger;
 import nablarch.core.log.LoggerManager;
 import nablarch.core.util.annotation.Published;
@@ -52,11 +48,9 @@ public class RetryHandler implements Handler<Object, Object> {
      * {@link #retryLimitExceededFailureCode}プロパティを使用して
      * {@link ProcessAbnormalEnd}を送出する。
      */
-    @SuppressWarnings("rawtypes")
     public Object handle(Object data, ExecutionContext context) {
 
-        List<Handler> snapshot = new ArrayList<Handler>();
-        snapshot.addAll(context.getHandlerQueue());
+        HandlerQueueSnapshot snapshot = new HandlerQueueSnapshot(context);
 
         RetryContext retryContext = retryContextFactory.createRetryContext();
 
@@ -73,16 +67,18 @@ public class RetryHandler implements Handler<Object, Object> {
                 }
 
                 if (retryContext.isRetryable()) { // リトライ可能な場合
+                    Object event = FlightRecorderEvent.RETRY.begin();
+                    int retryCount = retryContext.getCurrentRetryCount() + 1;
                     LOGGER.logWarn(
                             String.format("caught a exception to retry. start retry. retryCount[%s]",
-                                          retryContext.getCurrentRetryCount() + 1), e);
+                                          retryCount), e);
                     retryContext.prepareRetry();
-                    context.getHandlerQueue().clear();
-                    context.getHandlerQueue().addAll(snapshot);
+                    snapshot.restore(context);
 
                     if (destroyReader) {
                         destroyDataReader(context);
                     }
+                    FlightRecorderEvent.RETRY.commit(event, context, retryCount, e.getClass().getName());
                 } else { // リトライ上限の場合
                     LOGGER.logWarn(
                             String.format("retry process failed. retry limit was exceeded."), e);
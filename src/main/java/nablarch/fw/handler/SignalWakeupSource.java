@@ -0,0 +1,51 @@
+package nablarch.fw.handler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同一プロセス内からの通知を起床要求とする{@link WakeupSource}実装クラス。
+ * <p/>
+ * 処理対象データを登録する処理が同一プロセス内に存在する場合に使用する。
+ * データを登録した処理から{@link #signal()}を呼び出すことで、
+ * {@link ProcessResidentHandler}の待機を中断させることができる。
+ * <p/>
+ * 待機中以外に呼び出された{@link #signal()}は保持され、複数回呼び出された場合も1回の起床要求として扱う。
+ * <p/>
+ * 以下は、本クラスを使用する場合の設定例である。
+ * 起床要求を受け取れない場合に備え、データ監視間隔には十分に長い時間を設定する。
+ * <pre>
+ * &lt;component name="wakeupSource" class="nablarch.fw.handler.SignalWakeupSource" />
+ *
+ * &lt;component class="nablarch.fw.handler.ProcessResidentHandler">
+ *   &lt;property name="dataWatchInterval" value="60000" />
+ *   &lt;property name="wakeupSource" ref="wakeupSource" />
+ * &lt;/component>
+ * </pre>
+ */
+public class SignalWakeupSource implements WakeupSource {
+
+    /** 未処理の起床要求が存在するか否か */
+    private boolean signaled = false;
+
+    /**
+     * 起床要求を通知する。
+     */
+    public synchronized void signal() {
+        signaled = true;
+        notifyAll();
+    }
+
+    /** {@inheritDoc} */
+    public synchronized boolean await(long timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (!signaled) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        signaled = false;
+        return true;
+    }
+}
@@ -0,0 +1,20 @@
+package nablarch.fw.handler;
+
+/**
+ * データのサイズ(バイト数)を見積もるインタフェース。
+ * <p/>
+ * {@link PrefetchDataReader}による先読みデータの量の制限や、
+ * {@link ThresholdCommitPolicy}によるサイズ合計の判定に使用する。
+ *
+ * @see DefaultSizeEstimator
+ */
+public interface SizeEstimator {
+
+    /**
+     * データのサイズ(バイト数)を見積もる。
+     *
+     * @param data 読み込んだデータ
+     * @return 見積もったバイト数
+     */
+    long estimate(Object data);
+}
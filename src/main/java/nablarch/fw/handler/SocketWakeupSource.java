@@ -0,0 +1,135 @@
+package nablarch.fw.handler;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import nablarch.core.repository.disposal.Disposable;
+import nablarch.core.repository.initialization.Initializable;
+
+/**
+ * ループバックアドレスへのソケット接続を起床要求とする{@link WakeupSource}実装クラス。
+ * <p/>
+ * 処理対象データを登録する処理が別プロセスに存在する場合に使用する。
+ * データを登録したプロセスから、本クラスに設定したポートに接続する
+ * ({@link #ping(int)}を呼び出す)ことで、{@link ProcessResidentHandler}の待機を中断させることができる。
+ * <p/>
+ * ソケットは初期化時({@link #initialize()})に開き、{@link #dispose()}で閉じる。
+ * ソケットを開いた後、待機中以外に行われた接続はバックログに保持されるため、次回の待機で即座に復帰する。
+ * 初期化対象に登録していない場合は最初の待機時にソケットを開くため、
+ * それまでに行われた接続は拒否される点に注意すること。
+ * <p/>
+ * 以下は、本クラスを使用する場合の設定例である。
+ * 起床要求を受け取れない場合に備え、データ監視間隔には十分に長い時間を設定する。
+ * <pre>
+ * &lt;component name="wakeupSource" class="nablarch.fw.handler.SocketWakeupSource">
+ *   &lt;property name="port" value="${wakeup-port}" />
+ * &lt;/component>
+ *
+ * &lt;component class="nablarch.fw.handler.ProcessResidentHandler">
+ *   &lt;property name="dataWatchInterval" value="60000" />
+ *   &lt;property name="wakeupSource" ref="wakeupSource" />
+ * &lt;/component>
+ *
+ * &lt;component name="initializer" class="nablarch.core.repository.initialization.BasicApplicationInitializer">
+ *   &lt;property name="initializeList">
+ *     &lt;list>
+ *       &lt;component-ref name="wakeupSource" />
+ *     &lt;/list>
+ *   &lt;/property>
+ * &lt;/component>
+ * </pre>
+ */
+public class SocketWakeupSource implements WakeupSource, Initializable, Disposable {
+
+    /** 待ち受けるポート番号 */
+    private int port;
+
+    /** サーバソケット */
+    private ServerSocket serverSocket;
+
+    /**
+     * ソケットを開く。
+     * <p/>
+     * ソケットを開けない場合は{@link IllegalStateException}を送出する。
+     */
+    public void initialize() {
+        open();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * ソケットを開いていない場合は開く。
+     * ソケットを開けない場合は{@link IllegalStateException}を送出する。
+     */
+    public boolean await(long timeout) throws InterruptedException {
+        ServerSocket server = open();
+        try {
+            server.setSoTimeout((int) Math.min(Math.max(timeout, 1L), Integer.MAX_VALUE));
+            Socket socket = server.accept();
+            socket.close();
+            return true;
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to wait for wakeup request. port = [" + port + ']', e);
+        }
+    }
+
+    /**
+     * サーバソケットを取得する。未だ開いていない場合は開く。
+     *
+     * @return サーバソケット
+     */
+    private synchronized ServerSocket open() {
+        if (serverSocket == null) {
+            if (port <= 0) {
+                throw new IllegalStateException("port is not specified.");
+            }
+            try {
+                ServerSocket server = new ServerSocket();
+                server.bind(new InetSocketAddress(InetAddress.getByName(null), port));
+                serverSocket = server;
+            } catch (IOException e) {
+                throw new IllegalStateException("failed to open wakeup socket. port = [" + port + ']', e);
+            }
+        }
+        return serverSocket;
+    }
+
+    /**
+     * ソケットを閉じる。
+     *
+     * @throws IOException ソケットのクローズに失敗した場合
+     */
+    public synchronized void dispose() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+            serverSocket = null;
+        }
+    }
+
+    /**
+     * 待ち受けるポート番号を設定する。
+     *
+     * @param port ポート番号
+     */
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * 指定されたポートで待ち受けている{@link SocketWakeupSource}に起床要求を送る。
+     *
+     * @param port ポート番号
+     * @throws IOException 接続に失敗した場合
+     */
+    public static void ping(int port) throws IOException {
+        Socket socket = new Socket(InetAddress.getByName(null), port);
+        socket.close();
+    }
+}
@@ -0,0 +1,98 @@
+package nablarch.fw.handler;
+
+/**
+ * レコード件数、経過時間、サイズ合計のいずれかが閾値に達した場合にコミットする{@link CommitPolicy}実装クラス。
+ * <p/>
+ * 閾値は設定したもののみが判定に使用され、いずれか1つでも達した時点でコミットする。
+ * いずれの閾値も設定しない場合は、1レコード毎にコミットする。
+ * <p/>
+ * 経過時間は、前回のコミットから現在のレコードの処理開始までの時間で判定する。
+ * このため、閾値を超えた後に処理を開始したレコードの処理後にコミットが行われる。
+ * <p/>
+ * 以下は、1000件、30秒、10MBのいずれかに達した時点でコミットする場合の設定例である。
+ * <pre>
+ * &lt;component class="nablarch.fw.handler.LoopHandler">
+ *   &lt;property name="commitPolicy">
+ *     &lt;component class="nablarch.fw.handler.ThresholdCommitPolicy">
+ *       &lt;property name="commitInterval" value="1000" />
+ *       &lt;property name="commitTimeLimit" value="30000" />
+ *       &lt;property name="commitSizeLimit" value="10485760" />
+ *     &lt;/component>
+ *   &lt;/property>
+ * &lt;/component>
+ * </pre>
+ */
+public class ThresholdCommitPolicy implements CommitPolicy {
+
+    /** レコード件数の閾値(0以下の場合は判定しない) */
+    private long commitInterval = 0;
+
+    /** 経過時間の閾値(単位:msec。0以下の場合は判定しない) */
+    private long commitTimeLimit = 0;
+
+    /** サイズ合計の閾値(単位:byte。0以下の場合は判定しない) */
+    private long commitSizeLimit = 0;
+
+    /** レコードのサイズの見積りオブジェクト */
+    private SizeEstimator sizeEstimator = new DefaultSizeEstimator();
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * サイズ合計の閾値を設定していない場合は、見積りを行わずに0を返す。
+     */
+    public long estimateSize(Object data) {
+        if (commitSizeLimit <= 0) {
+            return 0;
+        }
+        return sizeEstimator.estimate(data);
+    }
+
+    /** {@inheritDoc} */
+    public boolean shouldCommit(Status status) {
+        if (commitInterval <= 0 && commitTimeLimit <= 0 && commitSizeLimit <= 0) {
+            return true;
+        }
+        return (commitInterval > 0 && status.getCount() >= commitInterval)
+            || (commitTimeLimit > 0 && status.getElapsedTime() >= commitTimeLimit)
+            || (commitSizeLimit > 0 && status.getPayloadSize() >= commitSizeLimit);
+    }
+
+    /**
+     * レコード件数の閾値を設定する。
+     *
+     * @param commitInterval レコード件数の閾値
+     */
+    public void setCommitInterval(long commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    /**
+     * 経過時間の閾値(単位:msec)を設定する。
+     *
+     * @param commitTimeLimit 経過時間の閾値(単位:msec)
+     */
+    public void setCommitTimeLimit(long commitTimeLimit) {
+        this.commitTimeLimit = commitTimeLimit;
+    }
+
+    /**
+     * サイズ合計の閾値(単位:byte)を設定する。
+     *
+     * @param commitSizeLimit サイズ合計の閾値(単位:byte)
+     */
+    public void setCommitSizeLimit(long commitSizeLimit) {
+        this.commitSizeLimit = commitSizeLimit;
+    }
+
+    /**
+     * レコードのサイズの見積りオブジェクトを設定する。
+     * <p/>
+     * 設定を省略した場合は{@link DefaultSizeEstimator}を使用する。
+     *
+     * @param sizeEstimator レコードのサイズの見積りオブジェクト
+     */
+    public void setSizeEstimator(SizeEstimator sizeEstimator) {
+        this.sizeEstimator = sizeEstimator;
+    }
+}
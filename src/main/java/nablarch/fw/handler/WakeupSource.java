@@ -0,0 +1,32 @@
+package nablarch.fw.handler;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * {@link ProcessResidentHandler}の待機を、処理対象データの到着などの起床要求により中断させるインタフェース。
+ * <p/>
+ * {@link ProcessResidentHandler}は、後続ハンドラの処理が終わる度に、
+ * データ監視間隔から処理時間を引いた時間を最大待機時間として{@link #await(long)}を呼び出す。
+ * 起床要求があった場合は、データ監視間隔の経過を待たずに次の処理を開始する。
+ * <p/>
+ * 待機中以外(後続ハンドラの処理中など)に発生した起床要求は破棄せずに保持し、
+ * 次回の{@link #await(long)}の呼び出しで即座に復帰すること。
+ *
+ * @see ProcessResidentHandler#setWakeupSource(WakeupSource)
+ * @see SignalWakeupSource
+ * @see SocketWakeupSource
+ */
+@Published(tag = "architect")
+public interface WakeupSource {
+
+    /**
+     * 起床要求を待機する。
+     * <p/>
+     * 起床要求があった場合、または最大待機時間が経過した場合に復帰する。
+     *
+     * @param timeout 最大待機時間(単位:msec)
+     * @return 起床要求により復帰した場合は{@code true}
+     * @throws InterruptedException 待機中に割り込まれた場合
+     */
+    boolean await(long timeout) throws InterruptedException;
+}
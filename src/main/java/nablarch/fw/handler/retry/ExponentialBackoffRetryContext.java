@@ -0,0 +1,162 @@
+package nablarch.fw.handler.retry;
+
+import java.util.Random;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * リトライ回数によりリトライ処理を制御し、リトライ毎の待機時間を指数関数的に延ばすクラス。
+ * <p/>
+ * n回目(0始まり)のリトライの待機時間は、0から min(最大間隔, 基準間隔×倍率<sup>n</sup>) までの一様乱数とする(フルジッタ)。
+ * 待機時間を乱数とすることで、障害発生時に複数のプロセスが同じタイミングでリトライすることを防ぐ。
+ *
+ * @see ExponentialBackoffRetryContextFactory
+ */
+@Published(tag = "architect")
+public class ExponentialBackoffRetryContext extends RetryContextSupport {
+
+    /**
+     * 現在時刻を提供するインタフェース。
+     */
+    @Published(tag = "architect")
+    public interface Clock {
+
+        /**
+         * 現在時刻を返す。
+         *
+         * @return 現在時刻(単位:msec)
+         */
+        long currentTimeMillis();
+    }
+
+    /**
+     * 待機処理を行うインタフェース。
+     */
+    @Published(tag = "architect")
+    public interface Sleeper {
+
+        /**
+         * 指定された時間だけ待機する。
+         *
+         * @param millis 待機時間(単位:msec)
+         * @throws InterruptedException 待機中に割り込まれた場合
+         */
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    /** システム時刻を使用する{@link Clock} */
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /** {@link Thread#sleep(long)}を使用する{@link Sleeper} */
+    public static final Sleeper THREAD_SLEEPER = new Sleeper() {
+        public void sleep(long millis) throws InterruptedException {
+            Thread.sleep(millis);
+        }
+    };
+
+    /** リトライ回数 */
+    private final int retryCount;
+
+    /** 基準間隔(単位:msec) */
+    private final long baseInterval;
+
+    /** 最大間隔(単位:msec) */
+    private final long maxInterval;
+
+    /** 倍率 */
+    private final double multiplier;
+
+    /** 待機時間の算出に使用する乱数 */
+    private final Random random;
+
+    /** 現在時刻の提供元 */
+    private final Clock clock;
+
+    /** 待機処理 */
+    private final Sleeper sleeper;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param retryCount リトライ回数
+     * @param maxRetryTime 最長リトライ時間(単位:msec)
+     * @param baseInterval 基準間隔(単位:msec)
+     * @param maxInterval 最大間隔(単位:msec)
+     * @param multiplier 倍率
+     * @param random 待機時間の算出に使用する乱数
+     * @param clock 現在時刻の提供元
+     * @param sleeper 待機処理
+     */
+    protected ExponentialBackoffRetryContext(int retryCount, long maxRetryTime,
+            long baseInterval, long maxInterval, double multiplier,
+            Random random, Clock clock, Sleeper sleeper) {
+        super(maxRetryTime, 0);
+        this.retryCount = retryCount;
+        this.baseInterval = baseInterval;
+        this.maxInterval = maxInterval;
+        this.multiplier = multiplier;
+        this.random = random;
+        this.clock = clock;
+        this.sleeper = sleeper;
+        long worstCase = 0;
+        for (int i = 0; i < retryCount; i++) {
+            worstCase += upperBound(i);
+        }
+        // 最長リトライ時間が待機時間の合計の最大値以下の場合、リトライ中にリトライ状態がリセットされてしまうため。
+        assertMaxRetryTime(maxRetryTime, worstCase);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 現在のリトライ回数がリトライ回数プロパティより小さい場合はtrueを返す。
+     */
+    @Override
+    protected boolean onIsRetryable() {
+        return getCurrentRetryCount() < retryCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 0から min(最大間隔, 基準間隔×倍率<sup>現在のリトライ回数</sup>) までの一様乱数を返す。
+     */
+    @Override
+    protected long nextRetryInterval() {
+        long bound = upperBound(getCurrentRetryCount());
+        if (bound <= 0) {
+            return 0;
+        }
+        return (long) (random.nextDouble() * (bound + 1));
+    }
+
+    /**
+     * 指定されたリトライ回数における待機時間の上限を返す。
+     *
+     * @param count リトライ回数(0始まり)
+     * @return 待機時間の上限(単位:msec)
+     */
+    private long upperBound(int count) {
+        double bound = baseInterval;
+        for (int i = 0; i < count && bound < maxInterval; i++) {
+            bound *= multiplier;
+        }
+        return (long) Math.min(bound, (double) maxInterval);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected long currentTimeMillis() {
+        return clock.currentTimeMillis();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void sleep(long millis) throws InterruptedException {
+        sleeper.sleep(millis);
+    }
+}
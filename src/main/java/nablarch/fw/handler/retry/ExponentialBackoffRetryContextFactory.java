@@ -0,0 +1,138 @@
+package nablarch.fw.handler.retry;
+
+import java.util.Random;
+
+import nablarch.fw.handler.RetryHandler.RetryContext;
+import nablarch.fw.handler.retry.ExponentialBackoffRetryContext.Clock;
+import nablarch.fw.handler.retry.ExponentialBackoffRetryContext.Sleeper;
+
+/**
+ * {@link ExponentialBackoffRetryContext}を生成するクラス。
+ * <p/>
+ * リトライ毎の待機時間は、0から min(最大間隔, 基準間隔×倍率<sup>n</sup>) までの一様乱数となる(nは0始まりのリトライ回数)。
+ * このため、リトライ間隔(retryIntervals)プロパティは使用しない。
+ * <p/>
+ * 以下は、100msから始めて最大10秒まで待機時間を延ばしながら、10回までリトライする場合の設定例である。
+ * <pre>
+ * &lt;component class="nablarch.fw.handler.RetryHandler">
+ *   &lt;property name="retryContextFactory">
+ *     &lt;component class="nablarch.fw.handler.retry.ExponentialBackoffRetryContextFactory">
+ *       &lt;property name="retryCount" value="10" />
+ *       &lt;property name="baseInterval" value="100" />
+ *       &lt;property name="maxInterval" value="10000" />
+ *     &lt;/component>
+ *   &lt;/property>
+ * &lt;/component>
+ * </pre>
+ */
+public class ExponentialBackoffRetryContextFactory extends RetryContextFactorySupport {
+
+    /** リトライ回数 */
+    private int retryCount;
+
+    /** 基準間隔(単位:msec) */
+    private long baseInterval = 100;
+
+    /** 最大間隔(単位:msec) */
+    private long maxInterval = 30000;
+
+    /** 倍率 */
+    private double multiplier = 2.0;
+
+    /** 待機時間の算出に使用する乱数 */
+    private Random random = new Random();
+
+    /** 現在時刻の提供元 */
+    private Clock clock = ExponentialBackoffRetryContext.SYSTEM_CLOCK;
+
+    /** 待機処理 */
+    private Sleeper sleeper = ExponentialBackoffRetryContext.THREAD_SLEEPER;
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * {@link ExponentialBackoffRetryContext}を生成する。
+     */
+    public RetryContext createRetryContext() {
+        return new ExponentialBackoffRetryContext(retryCount, maxRetryTime,
+                baseInterval, maxInterval, multiplier, random, clock, sleeper);
+    }
+
+    /**
+     * リトライ回数を設定する。
+     * @param retryCount リトライ回数
+     */
+    public void setRetryCount(int retryCount) {
+        this.retryCount = retryCount;
+    }
+
+    /**
+     * 基準間隔(単位:msec)を設定する。
+     * <p/>
+     * 1回目のリトライの待機時間の上限となる。デフォルトは100ms。
+     *
+     * @param baseInterval 基準間隔(単位:msec)
+     */
+    public void setBaseInterval(long baseInterval) {
+        this.baseInterval = baseInterval;
+    }
+
+    /**
+     * 最大間隔(単位:msec)を設定する。
+     * <p/>
+     * 待機時間の上限はこの値を超えない。デフォルトは30秒。
+     *
+     * @param maxInterval 最大間隔(単位:msec)
+     */
+    public void setMaxInterval(long maxInterval) {
+        this.maxInterval = maxInterval;
+    }
+
+    /**
+     * リトライ毎に待機時間の上限を延ばす倍率を設定する。
+     * <p/>
+     * デフォルトは2.0。
+     *
+     * @param multiplier 倍率(1.0以上)
+     */
+    public void setMultiplier(double multiplier) {
+        if (multiplier < 1.0) {
+            throw new IllegalArgumentException(
+                    "multiplier must be 1.0 or more. specified value is:" + multiplier);
+        }
+        this.multiplier = multiplier;
+    }
+
+    /**
+     * 待機時間の算出に使用する乱数を設定する。
+     * <p/>
+     * 主にテストで使用する。
+     *
+     * @param random 乱数
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * 現在時刻の提供元を設定する。
+     * <p/>
+     * 主にテストで使用する。デフォルトはシステム時刻を使用する。
+     *
+     * @param clock 現在時刻の提供元
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * 待機処理を設定する。
+     * <p/>
+     * 主にテストで使用する。デフォルトは{@link Thread#sleep(long)}を使用する。
+     *
+     * @param sleeper 待機処理
+     */
+    public void setSleeper(Sleeper sleeper) {
+        this.sleeper = sleeper;
+    }
+}
@@ -77,7 +77,7 @@ public abstract class RetryContextSupport implements RetryContext {
      */
     public boolean isRetryable() {
         if (startTime != null) {
-            long elapsedTime = System.currentTimeMillis() - startTime;
+            long elapsedTime = currentTimeMillis() - startTime;
             if (LOGGER.isTraceEnabled()) {
                 LOGGER.logTrace(
                     String.format("startTime = [%s], maxRetryTime = [%s], elapsedTime = [%s]",
@@ -103,7 +103,7 @@ public abstract class RetryContextSupport implements RetryContext {
      * 下記の処理を行う。
      * 
      *   リトライ開始時間が設定されていなければ設定する。
-     *   リトライ間隔(単位:msec)プロパティの値が0より大きい場合は、指定された時間だけ待機する。
+     *   リトライ間隔({@link #nextRetryInterval()}の値)が0より大きい場合は、指定された時間だけ待機する。
      *   待機中にInterruptedExceptionを捕捉した場合は、WARNレベルのログ出力のみ行い、
      *   呼び出し元に制御を返す。
      *   現在のリトライ回数をカウントアップする。
@@ -112,11 +112,12 @@ public abstract class RetryContextSupport implements RetryContext {
      */
     public void prepareRetry() {
         if (startTime == null) {
-            startTime = System.currentTimeMillis();
+            startTime = currentTimeMillis();
         }
-        if (0 < retryIntervals) {
+        long interval = nextRetryInterval();
+        if (0 < interval) {
             try {
-                Thread.sleep(retryIntervals);
+                sleep(interval);
             } catch (InterruptedException e) {
                 LOGGER.logWarn("interrupted while waiting for retry.", e);
             }
@@ -124,6 +125,41 @@ public abstract class RetryContextSupport implements RetryContext {
         currentRetryCount++;
     }
 
+    /**
+     * 次のリトライまでの待機時間を返す。
+     * <p/>
+     * デフォルト実装では、リトライ間隔(単位:msec)プロパティの値を返す。
+     * リトライ毎に待機時間を変化させる場合は、本メソッドをオーバライドすること。
+     *
+     * @return 待機時間(単位:msec)
+     */
+    protected long nextRetryInterval() {
+        return retryIntervals;
+    }
+
+    /**
+     * 現在時刻を返す。
+     * <p/>
+     * デフォルト実装では、{@link System#currentTimeMillis()}の値を返す。
+     *
+     * @return 現在時刻(単位:msec)
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * 指定された時間だけ待機する。
+     * <p/>
+     * デフォルト実装では、{@link Thread#sleep(long)}を使用する。
+     *
+     * @param millis 待機時間(単位:msec)
+     * @throws InterruptedException 待機中に割り込まれた場合
+     */
+    protected void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
     /**
      * {@inheritDoc}
      * <p/>
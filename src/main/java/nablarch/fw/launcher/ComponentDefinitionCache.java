@@ -0,0 +1,228 @@
+package nablarch.fw.launcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.di.ComponentDefinition;
+import nablarch.core.repository.di.ComponentDefinitionLoader;
+import nablarch.core.repository.di.DiContainer;
+import nablarch.core.repository.di.config.DuplicateDefinitionPolicy;
+import nablarch.core.repository.di.config.xml.XmlComponentDefinitionLoader;
+import nablarch.core.util.FileUtil;
+
+/**
+ * コンポーネント設定ファイルから読み込んだコンポーネント定義を、同一JVM内で再利用するためのキャッシュ。
+ * <p/>
+ * キャッシュは、コンポーネント設定ファイル、インポートしたコンポーネント設定ファイル、
+ * 及び環境設定ファイルの内容のダイジェストで管理し、いずれかのファイルが変更された場合は再度読み込む。
+ * ディレクトリを指定したインポートや環境設定ファイルの読み込みを含む場合は、
+ * 対象のファイルを特定できないためキャッシュしない。
+ * <p/>
+ * キャッシュするのはコンポーネント定義のみであり、コンポーネントはコンテナ毎に生成される。
+ *
+ * @see LauncherDaemon
+ */
+final class ComponentDefinitionCache {
+
+    /** ロガー。 */
+    private static final Logger LOGGER = LoggerManager.get(ComponentDefinitionCache.class);
+
+    /** コンポーネント設定ファイルのパスと、キャッシュしたコンポーネント定義 */
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * 指定されたコンポーネント設定ファイルを読み込む{@link ComponentDefinitionLoader}を取得する。
+     *
+     * @param configFilePath コンポーネント設定ファイルのパス
+     * @return キャッシュを使用する{@link ComponentDefinitionLoader}
+     */
+    ComponentDefinitionLoader getLoader(final String configFilePath) {
+        return new ComponentDefinitionLoader() {
+            public List<ComponentDefinition> load(DiContainer container) {
+                return ComponentDefinitionCache.this.load(configFilePath, container);
+            }
+        };
+    }
+
+    /**
+     * コンポーネント定義を読み込む。
+     * <p/>
+     * 有効なキャッシュが存在する場合は、キャッシュしたコンポーネント定義を返す。
+     * この場合、後続でコンテナが採番するIDと重複しないように、キャッシュしたコンポーネント定義のIDまで採番を進める。
+     *
+     * @param configFilePath コンポーネント設定ファイルのパス
+     * @param container コンテナ
+     * @return コンポーネント定義
+     */
+    synchronized List<ComponentDefinition> load(String configFilePath, DiContainer container) {
+        String digest = digest(configFilePath);
+        Entry entry = entries.get(configFilePath);
+        if (digest != null && entry != null && entry.digest.equals(digest)) {
+            while (container.generateId() < entry.maxId) {
+                // キャッシュしたコンポーネント定義のIDを使用済みとする。
+            }
+            LOGGER.logDebug("component definitions were loaded from cache. diConfig = [" + configFilePath + ']');
+            return new ArrayList<ComponentDefinition>(entry.definitions);
+        }
+        List<ComponentDefinition> definitions = new XmlComponentDefinitionLoader(
+                configFilePath, DuplicateDefinitionPolicy.OVERRIDE).load(container);
+        if (digest == null) {
+            entries.remove(configFilePath);
+        } else {
+            entries.put(configFilePath, new Entry(digest, definitions));
+        }
+        return definitions;
+    }
+
+    /**
+     * コンポーネント設定ファイルと、そこから参照される全てのファイルの内容のダイジェストを算出する。
+     *
+     * @param configFilePath コンポーネント設定ファイルのパス
+     * @return ダイジェスト(参照されるファイルを特定できない場合は{@code null})
+     */
+    private static String digest(String configFilePath) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+        if (!update(digest, configFilePath, new HashSet<String>())) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * コンポーネント設定ファイルの内容をダイジェストに追加する。
+     * インポートしたコンポーネント設定ファイルは再帰的に、環境設定ファイルはその内容を追加する。
+     *
+     * @param digest ダイジェスト
+     * @param configFilePath コンポーネント設定ファイルのパス
+     * @param visited 追加済みのコンポーネント設定ファイルのパス
+     * @return 参照される全てのファイルを追加できた場合は{@code true}
+     */
+    private static boolean update(MessageDigest digest, String configFilePath, Set<String> visited) {
+        if (!visited.add(configFilePath)) {
+            return true;
+        }
+        byte[] content = read(configFilePath);
+        if (content == null) {
+            return false;
+        }
+        digest.update(configFilePath.getBytes());
+        digest.update(content);
+
+        final List<String> imports = new ArrayList<String>();
+        final List<String> configFiles = new ArrayList<String>();
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.newSAXParser().parse(new ByteArrayInputStream(content), new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    // ディレクトリが指定された場合(ワイルドカードを使用した読み込み)はnullとし、キャッシュの対象外とする。
+                    String file = (attributes.getValue("dir") == null) ? attributes.getValue("file") : null;
+                    if ("import".equals(localName)) {
+                        imports.add(file);
+                    } else if ("config-file".equals(localName)) {
+                        configFiles.add(file);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            return false;
+        }
+        for (String configFile : configFiles) {
+            byte[] values = (configFile == null) ? null : read(configFile);
+            if (values == null) {
+                return false;
+            }
+            digest.update(configFile.getBytes());
+            digest.update(values);
+        }
+        for (String imported : imports) {
+            if (imported == null || !update(digest, imported, visited)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ファイルの内容を読み込む。
+     *
+     * @param path ファイルのパス
+     * @return ファイルの内容(読み込めない場合は{@code null})
+     */
+    private static byte[] read(String path) {
+        InputStream in = null;
+        try {
+            in = FileUtil.getResource(path);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            // ファイルが存在しない場合
+            return null;
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
+    }
+
+    /** キャッシュしたコンポーネント定義。 */
+    private static final class Entry {
+
+        /** ファイルの内容のダイジェスト */
+        private final String digest;
+
+        /** コンポーネント定義 */
+        private final List<ComponentDefinition> definitions;
+
+        /** コンポーネント定義のIDの最大値 */
+        private final int maxId;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param digest ファイルの内容のダイジェスト
+         * @param definitions コンポーネント定義
+         */
+        private Entry(String digest, List<ComponentDefinition> definitions) {
+            this.digest = digest;
+            this.definitions = new ArrayList<ComponentDefinition>(definitions);
+            int max = 0;
+            for (ComponentDefinition definition : definitions) {
+                max = Math.max(max, definition.getId());
+            }
+            this.maxId = max;
+        }
+    }
+}
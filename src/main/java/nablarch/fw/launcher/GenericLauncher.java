@@ -5,6 +5,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
 import nablarch.core.log.app.ApplicationSettingLogUtil;
 import nablarch.core.log.app.FailureLogUtil;
 import nablarch.core.log.app.LogInitializationHelper;
@@ -14,6 +16,8 @@ import nablarch.core.repository.di.DiContainer;
 import nablarch.core.repository.di.config.DuplicateDefinitionPolicy;
 import nablarch.core.repository.di.config.xml.XmlComponentDefinitionLoader;
 import nablarch.core.util.annotation.Published;
+import nablarch.fw.launcher.LaunchPhaseTimings.Phase;
+import nablarch.fw.launcher.logging.LauncherLogUtil;
 
 /**
  * 汎用のプログラム起動クラス。
@@ -28,9 +32,15 @@ public class GenericLauncher {
     /** {@link ProcessLifecycle}実装クラスを取得するためのキー */
     public static final String PROCESS_LIFECYCLE_KEY = "processLifecycle";
 
+    /** ロガー。 */
+    private static final Logger LOGGER = LoggerManager.get(GenericLauncher.class);
+
     /** コマンドライン引数 */
     protected final CommandLine commandLine;
 
+    /** フェーズ毎の処理時間 */
+    private final LaunchPhaseTimings phaseTimings = new LaunchPhaseTimings();
+
      /**
      * mainメソッド。
      *
@@ -52,10 +62,17 @@ public class GenericLauncher {
 
     /**
      * アプリケーションを起動する。
+     * <p/>
+     * 終了時には、フェーズ毎の処理時間をログに出力する
+     * (詳細は、{@link LauncherLogUtil#getPhaseTimesLogMsg(LaunchPhaseTimings)}を参照)。
+     * {@link ProcessLifecycle}の初期化処理と本処理は本処理のフェーズ、終了処理は終了処理のフェーズとして記録する。
      */
     public void launch() {
+        long phaseStartTime = System.currentTimeMillis();
         initializeLog();
+        phaseStartTime = endPhase(Phase.LOG_INITIALIZATION, phaseStartTime);
         initializeRepository();
+        phaseStartTime = endPhase(Phase.DI_LOADING, phaseStartTime);
         final ProcessLifecycle lifecycle = getProcessLifecycle();
         lifecycle.setCommandLine(commandLine);
         try {
@@ -68,10 +85,38 @@ public class GenericLauncher {
             });
             lifecycle.execute();
         } finally {
-            lifecycle.terminate();
+            phaseStartTime = endPhase(Phase.PROCESSING, phaseStartTime);
+            try {
+                lifecycle.terminate();
+            } finally {
+                endPhase(Phase.DISPOSAL, phaseStartTime);
+                LOGGER.logInfo(LauncherLogUtil.getPhaseTimesLogMsg(phaseTimings));
+            }
         }
     }
 
+    /**
+     * フェーズの処理時間を記録する。
+     *
+     * @param phase 終了したフェーズ
+     * @param phaseStartTime フェーズの開始時刻
+     * @return 次のフェーズの開始時刻
+     */
+    private long endPhase(Phase phase, long phaseStartTime) {
+        long now = System.currentTimeMillis();
+        phaseTimings.add(phase, now - phaseStartTime);
+        return now;
+    }
+
+    /**
+     * フェーズ毎の処理時間を取得する。
+     *
+     * @return フェーズ毎の処理時間
+     */
+    protected LaunchPhaseTimings getPhaseTimings() {
+        return phaseTimings;
+    }
+
     /** 各種ログの初期化を行う。 */
     protected void initializeLog() {
         FailureLogUtil.initialize();
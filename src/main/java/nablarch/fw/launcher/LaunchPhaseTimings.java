@@ -0,0 +1,74 @@
+package nablarch.fw.launcher;
+
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.ExecutionContext;
+
+/**
+ * 起動から終了までの各フェーズの処理時間を保持するクラス。
+ * <p/>
+ * {@link Main}及び{@link GenericLauncher}が各フェーズの処理時間を記録し、
+ * {@link nablarch.fw.launcher.logging.LauncherLogFormatter}がログに出力する。
+ * <p/>
+ * {@link Main}で実行する場合、本オブジェクトはセッションスコープに{@link #SESSION_SCOPE_KEY}で格納される。
+ * データリーダの準備時間は、{@link nablarch.fw.handler.MultiThreadExecutionHandler}が
+ * データリーダを準備した場合に、{@link nablarch.fw.handler.DataReaderPreparationTime}を介して記録される。
+ */
+@Published(tag = "architect")
+public final class LaunchPhaseTimings {
+
+    /** 本オブジェクトを格納するセッションスコープのキー */
+    public static final String SESSION_SCOPE_KEY = LaunchPhaseTimings.class.getName();
+
+    /** フェーズ */
+    public enum Phase {
+        /** ログの初期化 */
+        LOG_INITIALIZATION,
+        /** コンポーネント設定ファイルの読み込み */
+        DI_LOADING,
+        /** データリーダの準備 */
+        READER_PREPARATION,
+        /** 本処理(データリーダの準備を除く) */
+        PROCESSING,
+        /** 終了処理(廃棄処理) */
+        DISPOSAL
+    }
+
+    /** フェーズ毎の処理時間(単位:msec) */
+    private final long[] times = new long[Phase.values().length];
+
+    /**
+     * フェーズの処理時間を加算する。
+     *
+     * @param phase フェーズ
+     * @param millis 処理時間(単位:msec)
+     */
+    public synchronized void add(Phase phase, long millis) {
+        times[phase.ordinal()] += millis;
+    }
+
+    /**
+     * フェーズの処理時間を取得する。
+     *
+     * @param phase フェーズ
+     * @return 処理時間(単位:msec)
+     */
+    public synchronized long get(Phase phase) {
+        return times[phase.ordinal()];
+    }
+
+    /**
+     * 実行コンテキストのセッションスコープに格納された本オブジェクトに、フェーズの処理時間を加算する。
+     * <p/>
+     * 本オブジェクトが格納されていない場合は何もしない。
+     *
+     * @param context 実行コンテキスト
+     * @param phase フェーズ
+     * @param millis 処理時間(単位:msec)
+     */
+    public static void add(ExecutionContext context, Phase phase, long millis) {
+        LaunchPhaseTimings timings = context.getSessionScopedVar(SESSION_SCOPE_KEY);
+        if (timings != null) {
+            timings.add(phase, millis);
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package nablarch.fw.launcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+
+import nablarch.core.ThreadContext;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.StringUtil;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.launcher.logging.LauncherLogUtil;
+
+/**
+ * JVMを常駐させ、ループバックアドレスのソケット経由で受け付けたバッチを実行するクラス。
+ * <p/>
+ * 短時間で終了するバッチを多数実行する場合、バッチ毎のJVMの起動、クラスのロード、コンポーネント設定ファイルの読み込み等が
+ * 処理時間の大半を占めることがある。
+ * 本クラスを常駐させ、{@link LauncherDaemonClient}からバッチの実行を依頼することで、
+ * ウォームアップ済みのJVM上でバッチを実行できる。
+ * <p/>
+ * 依頼されたバッチは、受け付けた順に1件ずつ{@link Main#execute(CommandLine)}で実行し、
+ * その終了コードを依頼元に返す。
+ * バッチの実行前後では{@link SystemRepository}と{@link ThreadContext}をクリアするため、
+ * 前回実行したバッチの状態は引き継がれない。
+ * ただし、コンポーネント設定ファイルから読み込んだコンポーネント定義はキャッシュし、
+ * 設定ファイルが変更されていない限り再利用する(コンポーネントはバッチ毎に生成する)。
+ * <p/>
+ * 起動コマンドの例を以下に示す。
+ * <pre>
+ * java nablarch.fw.launcher.LauncherDaemon -port 7070 -tokenFile ./launcher-daemon.token
+ * </pre>
+ * 依頼を受け付けるのは、ループバックアドレスへの接続のみである。
+ * <p/>
+ * ループバックアドレスには同一ホストの全てのユーザが接続できるため、依頼元の認証に共有鍵(トークン)を使用する。
+ * 本クラスは、起動時にランダムなトークンを生成し、{@code -tokenFile}オプションで指定されたファイルに書き込む。
+ * ファイルは、書き込む前に所有者のみが読み書きできる権限に変更する。
+ * 依頼元はこのファイルからトークンを読み込んで送信する必要があるため、
+ * デーモンと同じユーザ(もしくはファイルの所有者が読み込みを許可したユーザ)のみがバッチの実行を依頼できる。
+ * トークンが一致しない依頼は、応答を返さずに切断する。
+ * トークンファイルは、{@link #stop()}の呼び出し時に削除する。
+ * <p/>
+ * また、依頼元が応答しない場合に後続の依頼を受け付けられなくなることを防ぐため、
+ * 依頼の受信には読み込みタイムアウト({@link #setReadTimeout(int)})を設定する。
+ * 受信した引数の数が上限を超える場合や、依頼の処理中に実行時例外が発生した場合は、
+ * ワーニングログを出力して当該依頼のみを破棄し、後続の依頼の受け付けを継続する。
+ * <p/>
+ * 本クラスは、JVMのシャットダウン時にソケットを閉じて終了する。
+ *
+ * @see LauncherDaemonClient
+ */
+@Published(tag = "architect")
+public class LauncherDaemon {
+
+    /** ロガー。 */
+    private static final Logger LOGGER = LoggerManager.get(LauncherDaemon.class);
+
+    /**
+     * コマンドラインが不正な場合の終了コード。
+     * <p/>
+     * {@link Main#main(String...)}では、{@link CommandLine}の生成時に送出された例外が捕捉されずに
+     * JVMが終了するため、その場合と同じ終了コードとする。
+     */
+    private static final int INVALID_COMMAND_LINE = 1;
+
+    /** 1件の依頼で受け付ける引数の数の上限 */
+    static final int MAX_ARGUMENT_COUNT = 1024;
+
+    /** トークンのバイト数 */
+    private static final int TOKEN_LENGTH = 32;
+
+    /** トークンファイルの文字コード */
+    private static final Charset TOKEN_CHARSET = Charset.forName("UTF-8");
+
+    /** 待ち受けるポート番号 */
+    private final int port;
+
+    /** トークンファイル */
+    private final File tokenFile;
+
+    /** 依頼元の認証に使用するトークン */
+    private byte[] token;
+
+    /** 依頼を受信する際の読み込みタイムアウト(単位:msec) */
+    private int readTimeout = 30000;
+
+    /** サーバソケット */
+    private ServerSocket serverSocket;
+
+    /** コンポーネント定義のキャッシュ */
+    private final ComponentDefinitionCache definitionCache = new ComponentDefinitionCache();
+
+    /** 停止が要求されたか否か */
+    private volatile boolean stopped = false;
+
+    /**
+     * メインメソッド。
+     * <p/>
+     * {@code -port}オプションで指定されたポートで、バッチの実行依頼の受け付けを開始する。
+     * トークンは{@code -tokenFile}オプションで指定されたファイルに書き込む。
+     *
+     * @param args コマンドライン引数
+     * @throws IOException ソケットを開けなかった場合、もしくはトークンファイルに書き込めなかった場合
+     */
+    public static void main(String... args) throws IOException {
+        Map<String, String> opts = new CommandLineParser().parse(args).getOpts();
+        String port = opts.get("port");
+        if (StringUtil.isNullOrEmpty(port)) {
+            throw new IllegalArgumentException("port option must be specified.");
+        }
+        String tokenFile = opts.get("tokenFile");
+        if (StringUtil.isNullOrEmpty(tokenFile)) {
+            throw new IllegalArgumentException("tokenFile option must be specified.");
+        }
+        LauncherLogUtil.initialize();
+        final LauncherDaemon daemon = new LauncherDaemon(Integer.parseInt(port), new File(tokenFile));
+        daemon.open();
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                daemon.stop();
+            }
+        });
+        daemon.run();
+    }
+
+    /**
+     * コンストラクタ。
+     *
+     * @param port 待ち受けるポート番号(0の場合は空いているポートを使用する)
+     * @param tokenFile トークンを書き込むファイル
+     */
+    public LauncherDaemon(int port, File tokenFile) {
+        if (tokenFile == null) {
+            throw new IllegalArgumentException("tokenFile must not be null.");
+        }
+        this.port = port;
+        this.tokenFile = tokenFile;
+    }
+
+    /**
+     * 依頼を受信する際の読み込みタイムアウトを設定する。
+     * <p/>
+     * 接続後、指定した時間内に依頼元から受信できなかった場合は、その依頼を破棄する。
+     * バッチの実行時間は含まない。
+     * デフォルト値は30000(30秒)である。
+     *
+     * @param readTimeout 読み込みタイムアウト(単位:msec)
+     * @return このオブジェクト自体
+     */
+    public LauncherDaemon setReadTimeout(int readTimeout) {
+        if (readTimeout < 1) {
+            throw new IllegalArgumentException("readTimeout must be greater than or equal to 1.");
+        }
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    /**
+     * サーバソケットを開く。
+     * <p/>
+     * ソケットを開く前に、トークンを生成してトークンファイルに書き込む。
+     *
+     * @return 待ち受けているポート番号
+     * @throws IOException ソケットを開けなかった場合、もしくはトークンファイルに書き込めなかった場合
+     */
+    public synchronized int open() throws IOException {
+        if (serverSocket == null) {
+            token = writeToken(tokenFile);
+            ServerSocket server = new ServerSocket();
+            server.bind(new InetSocketAddress(InetAddress.getByName(null), port));
+            serverSocket = server;
+            LOGGER.logInfo("launcher daemon started. port = [" + server.getLocalPort() + ']');
+        }
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * {@link #stop()}が呼び出されるまで、バッチの実行依頼を受け付ける。
+     * <p/>
+     * サーバソケットを開いていない場合は、本メソッド内で開く。
+     *
+     * @throws IOException ソケットを開けなかった場合
+     */
+    public void run() throws IOException {
+        ServerSocket server;
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            open();
+            server = serverSocket;
+        }
+        while (!stopped) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (stopped) {
+                    break;
+                }
+                throw e;
+            }
+            try {
+                serve(socket);
+            } catch (IOException e) {
+                LOGGER.logWarn("failed to communicate with launcher daemon client.", e);
+            } catch (RuntimeException e) {
+                LOGGER.logWarn("failed to process launcher daemon request.", e);
+            } finally {
+                closeQuietly(socket);
+            }
+        }
+        LOGGER.logInfo("launcher daemon stopped.");
+    }
+
+    /**
+     * バッチの実行依頼の受け付けを停止する。
+     * <p/>
+     * 実行中のバッチがある場合、そのバッチの終了を待たずに復帰する。
+     * トークンファイルは削除する。
+     */
+    public void stop() {
+        stopped = true;
+        ServerSocket server;
+        synchronized (this) {
+            server = serverSocket;
+            serverSocket = null;
+        }
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                LOGGER.logWarn("failed to close launcher daemon socket.", e);
+            }
+            if (!tokenFile.delete()) {
+                LOGGER.logWarn("failed to delete launcher daemon token file. file = [" + tokenFile + ']');
+            }
+        }
+    }
+
+    /**
+     * 1件の実行依頼を処理する。
+     * <p/>
+     * 依頼元からトークンと引数を受信してバッチを実行し、終了コードを送信する。
+     * トークンが一致しない場合は、バッチを実行せずに復帰する。
+     *
+     * @param socket 依頼元と接続したソケット
+     * @throws IOException 通信に失敗した場合、もしくは受信した引数の数が不正な場合
+     */
+    private void serve(Socket socket) throws IOException {
+        socket.setSoTimeout(readTimeout);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        byte[] received = in.readUTF().getBytes(TOKEN_CHARSET);
+        if (!MessageDigest.isEqual(token, received)) {
+            LOGGER.logWarn("request with an invalid token was rejected. remote address = ["
+                    + socket.getRemoteSocketAddress() + ']');
+            return;
+        }
+        int argCount = in.readInt();
+        if (argCount < 0 || argCount > MAX_ARGUMENT_COUNT) {
+            throw new IOException("invalid argument count was received. count = [" + argCount
+                    + "], max = [" + MAX_ARGUMENT_COUNT + ']');
+        }
+        String[] args = new String[argCount];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readUTF();
+        }
+        int exitCode = execute(args);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeInt(exitCode);
+        out.flush();
+    }
+
+    /**
+     * バッチを実行する。
+     * <p/>
+     * 実行前後で{@link SystemRepository}と{@link ThreadContext}をクリアし、
+     * {@link Main#main(String...)}と同様に開始ログ、終了ログ及びフェーズ毎の処理時間ログを出力する。
+     * バッチは、コンポーネント定義のキャッシュを使用して実行する。
+     *
+     * @param args バッチのコマンドライン引数
+     * @return 終了コード
+     */
+    protected int execute(String[] args) {
+        SystemRepository.clear();
+        ThreadContext.clear();
+        try {
+            CommandLine commandLine;
+            try {
+                commandLine = new CommandLine(args);
+            } catch (RuntimeException e) {
+                LOGGER.logWarn("invalid command line was submitted to launcher daemon.", e);
+                return INVALID_COMMAND_LINE;
+            }
+            LOGGER.logInfo(LauncherLogUtil.getStartLogMsg(commandLine));
+            LaunchPhaseTimings timings = new LaunchPhaseTimings();
+            long executeStartTime = System.currentTimeMillis();
+            int exitCode = Main.execute(commandLine, definitionCache, timings);
+            long executeEndTime = System.currentTimeMillis();
+            LOGGER.logInfo(LauncherLogUtil.getEndLogMsg(exitCode,
+                    executeEndTime - executeStartTime));
+            LOGGER.logInfo(LauncherLogUtil.getPhaseTimesLogMsg(timings));
+            return exitCode;
+        } finally {
+            SystemRepository.clear();
+            ThreadContext.clear();
+        }
+    }
+
+    /**
+     * 指定されたポートで待ち受けている{@link LauncherDaemon}にバッチの実行を依頼し、終了を待つ。
+     *
+     * @param port ポート番号
+     * @param tokenFile {@link LauncherDaemon}が書き込んだトークンファイル
+     * @param args バッチのコマンドライン引数
+     * @return 終了コード
+     * @throws IOException 通信に失敗した場合、トークンファイルを読み込めなかった場合、
+     *                     もしくはトークンが一致せずに切断された場合
+     */
+    public static int submit(int port, File tokenFile, String... args) throws IOException {
+        String token = readToken(tokenFile);
+        Socket socket = new Socket(InetAddress.getByName(null), port);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeUTF(token);
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            return in.readInt();
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * トークンを生成し、所有者のみが読み書きできる権限に変更したファイルに書き込む。
+     *
+     * @param file トークンファイル
+     * @return 生成したトークン
+     * @throws IOException トークンファイルに書き込めなかった場合
+     */
+    private static byte[] writeToken(File file) throws IOException {
+        byte[] random = new byte[TOKEN_LENGTH];
+        new SecureRandom().nextBytes(random);
+        StringBuilder hex = new StringBuilder(TOKEN_LENGTH * 2);
+        for (byte b : random) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        byte[] token = hex.toString().getBytes(TOKEN_CHARSET);
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException("failed to delete old token file. file = [" + file + ']');
+        }
+        if (!file.createNewFile()
+                || !file.setReadable(false, false) || !file.setWritable(false, false)
+                || !file.setReadable(true, true) || !file.setWritable(true, true)) {
+            throw new IOException("failed to create token file readable only by owner. file = [" + file + ']');
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(token);
+        } finally {
+            out.close();
+        }
+        return token;
+    }
+
+    /**
+     * トークンファイルからトークンを読み込む。
+     *
+     * @param file トークンファイル
+     * @return トークン
+     * @throws IOException トークンファイルを読み込めなかった場合
+     */
+    private static String readToken(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[TOKEN_LENGTH * 2];
+            int length = 0;
+            int read;
+            while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) != -1) {
+                length += read;
+            }
+            return new String(buffer, 0, length, TOKEN_CHARSET);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * ソケットを閉じる。クローズ時の例外は無視する。
+     *
+     * @param socket ソケット
+     */
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // nop
+        }
+    }
+}
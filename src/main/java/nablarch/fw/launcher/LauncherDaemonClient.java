@@ -0,0 +1,74 @@
+package nablarch.fw.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 常駐している{@link LauncherDaemon}にバッチの実行を依頼するクラス。
+ * <p/>
+ * {@code -daemonPort}オプションで{@link LauncherDaemon}のポート番号を、
+ * {@code -daemonTokenFile}オプションで{@link LauncherDaemon}がトークンを書き込んだファイルを指定し、
+ * それ以外の引数は{@link Main}の起動時と同じものを指定する。
+ * トークンファイルを読み込めるユーザのみが、バッチの実行を依頼できる。
+ * バッチの終了後、{@link Main}で実行した場合と同じ終了コードでJVMを終了する。
+ * <p/>
+ * 起動コマンドの例を以下に示す。
+ * <pre>
+ * java nablarch.fw.launcher.LauncherDaemonClient   \
+ *     -daemonPort  7070                             \
+ *     -daemonTokenFile ./launcher-daemon.token      \
+ *     -diConfig    file:./batch-config.xml          \
+ *     -requestPath admin.DataUnloadBatchAction/BC0012 \
+ *     -userId      testUser
+ * </pre>
+ *
+ * @see LauncherDaemon
+ */
+@Published(tag = "architect")
+public final class LauncherDaemonClient {
+
+    /** ポート番号を指定するオプション */
+    private static final String PORT_OPTION = "-daemonPort";
+
+    /** トークンファイルを指定するオプション */
+    private static final String TOKEN_FILE_OPTION = "-daemonTokenFile";
+
+    /** 隠蔽コンストラクタ。 */
+    private LauncherDaemonClient() {
+    }
+
+    /**
+     * メインメソッド。
+     *
+     * @param args コマンドライン引数
+     * @throws IOException {@link LauncherDaemon}との通信に失敗した場合
+     */
+    public static void main(String... args) throws IOException {
+        List<String> jobArgs = new ArrayList<String>(Arrays.asList(args));
+        int port = Integer.parseInt(takeOption(jobArgs, PORT_OPTION));
+        File tokenFile = new File(takeOption(jobArgs, TOKEN_FILE_OPTION));
+        System.exit(LauncherDaemon.submit(port, tokenFile, jobArgs.toArray(new String[jobArgs.size()])));
+    }
+
+    /**
+     * 引数から指定されたオプションの値を取り出し、オプションとその値を引数から取り除く。
+     *
+     * @param args 引数
+     * @param option オプション名
+     * @return オプションの値
+     */
+    private static String takeOption(List<String> args, String option) {
+        int index = args.indexOf(option);
+        if (index < 0 || index + 1 >= args.size()) {
+            throw new IllegalArgumentException(option.substring(1) + " option must be specified.");
+        }
+        String value = args.get(index + 1);
+        args.subList(index, index + 2).clear();
+        return value;
+    }
+}
@@ -24,7 +24,9 @@ import nablarch.fw.Handler;
 import nablarch.fw.HandlerQueueManager;
 import nablarch.fw.Result;
 import nablarch.fw.StandaloneExecutionContext;
+import nablarch.fw.handler.DataReaderPreparationTime;
 import nablarch.fw.handler.RecordTypeBinding;
+import nablarch.fw.launcher.LaunchPhaseTimings.Phase;
 import nablarch.fw.launcher.logging.LauncherLogUtil;
 
 /**
@@ -79,10 +81,29 @@ public class Main extends HandlerQueueManager<Main>
     /** ロガー。 */
     private static final Logger LOGGER = LoggerManager.get(Main.class);
 
+    /** コンポーネント定義のキャッシュ(キャッシュを使用しない場合は{@code null}) */
+    private final ComponentDefinitionCache definitionCache;
+
     /** ハンドラ({@link Handler})キュー */
     @SuppressWarnings("rawtypes")
     private List<Handler> handlerQueue = new ArrayList<Handler>();
 
+    /**
+     * コンストラクタ。
+     */
+    public Main() {
+        this(null);
+    }
+
+    /**
+     * コンポーネント定義のキャッシュを使用するコンストラクタ。
+     *
+     * @param definitionCache コンポーネント定義のキャッシュ
+     */
+    Main(ComponentDefinitionCache definitionCache) {
+        this.definitionCache = definitionCache;
+    }
+
     @SuppressWarnings("rawtypes")
     @Override
     public List<Handler> getHandlerQueue() {
@@ -97,7 +118,8 @@ public class Main extends HandlerQueueManager<Main>
      * <li>起動時</li>
      * 起動オプションや、起動引数(詳細は、{@link LauncherLogUtil#getStartLogMsg(CommandLine)}を参照)
      * <li>終了時</li>
-     * 終了コードや処理時間(詳細は、{@link LauncherLogUtil#getEndLogMsg(int, long)}を参照})
+     * 終了コードや処理時間(詳細は、{@link LauncherLogUtil#getEndLogMsg(int, long)}を参照})、
+     * 及びフェーズ毎の処理時間(詳細は、{@link LauncherLogUtil#getPhaseTimesLogMsg(LaunchPhaseTimings)}を参照})
      * </ul>
      * 及び処理終了時
      *
@@ -105,15 +127,19 @@ public class Main extends HandlerQueueManager<Main>
      */
     public static void main(String... args) {
         CommandLine commandLine = new CommandLine(args);
+        LaunchPhaseTimings timings = new LaunchPhaseTimings();
+        long logInitializationStartTime = System.currentTimeMillis();
         LauncherLogUtil.initialize();
+        timings.add(Phase.LOG_INITIALIZATION, System.currentTimeMillis() - logInitializationStartTime);
         LOGGER.logInfo(LauncherLogUtil.getStartLogMsg(commandLine));
 
         long executeStartTime = System.currentTimeMillis();
-        int exitCode = execute(commandLine);
+        int exitCode = execute(commandLine, null, timings);
         long executeEndTime = System.currentTimeMillis();
 
         LOGGER.logInfo(LauncherLogUtil.getEndLogMsg(exitCode,
                 executeEndTime - executeStartTime));
+        LOGGER.logInfo(LauncherLogUtil.getPhaseTimesLogMsg(timings));
         System.exit(exitCode);
     }
 
@@ -121,16 +147,35 @@ public class Main extends HandlerQueueManager<Main>
      * {@inheritDoc}
      * この実装では、ハンドラキューに後続処理を委譲し、その処理結果から
      * このプロセスの終了コードを算出して返す。
+     * <p/>
+     * 各フェーズの処理時間は、セッションスコープの{@link LaunchPhaseTimings}に記録する。
+     * 実行コンテキストに{@link LaunchPhaseTimings}が設定されていない場合は、新たに生成して設定する。
+     * データリーダの準備時間は、セッションスコープに設定した{@link DataReaderPreparationTime}から取得する。
      */
     public Integer handle(CommandLine commandLine, ExecutionContext context) {
 
+        LaunchPhaseTimings timings = context.getSessionScopedVar(LaunchPhaseTimings.SESSION_SCOPE_KEY);
+        if (timings == null) {
+            timings = new LaunchPhaseTimings();
+            context.setSessionScopedVar(LaunchPhaseTimings.SESSION_SCOPE_KEY, timings);
+        }
+        DataReaderPreparationTime readerPreparationTime = new DataReaderPreparationTime();
+        context.setSessionScopedVar(DataReaderPreparationTime.SESSION_SCOPE_KEY, readerPreparationTime);
+        Phase phase = Phase.LOG_INITIALIZATION;
+        long phaseStartTime = System.currentTimeMillis();
+
         Object result;
         FailureLogUtil.initialize();
         try {
             initializeLog();
+            phaseStartTime = endPhase(timings, phase, phaseStartTime);
+            phase = Phase.DI_LOADING;
+
             setupExecutionContext(commandLine, context);
 
             outputAppSettingsLog();
+            phaseStartTime = endPhase(timings, phase, phaseStartTime);
+            phase = Phase.PROCESSING;
 
             result = context.handleNext(commandLine);
 
@@ -146,10 +191,21 @@ public class Main extends HandlerQueueManager<Main>
             FailureLogUtil.logFatal(e, null, null, new Object[0]);
             return UNKNOWN_ERROR;
         } finally {
+            long disposalStartTime = System.currentTimeMillis();
+            long elapsed = disposalStartTime - phaseStartTime;
+            if (phase == Phase.PROCESSING) {
+                // 本処理中に記録されたデータリーダの準備時間を除く
+                long readerPreparation = readerPreparationTime.get();
+                timings.add(Phase.READER_PREPARATION, readerPreparation);
+                elapsed -= readerPreparation;
+            }
+            timings.add(phase, elapsed);
+
             ApplicationDisposer disposer = SystemRepository.get("disposer");
             if (disposer != null) {
                 disposer.dispose();
             }
+            timings.add(Phase.DISPOSAL, System.currentTimeMillis() - disposalStartTime);
         }
 
         if (result instanceof Integer) {
@@ -169,6 +225,20 @@ public class Main extends HandlerQueueManager<Main>
         return 0;
     }
 
+    /**
+     * フェーズの処理時間を記録する。
+     *
+     * @param timings フェーズ毎の処理時間
+     * @param phase 終了したフェーズ
+     * @param phaseStartTime フェーズの開始時刻
+     * @return 次のフェーズの開始時刻
+     */
+    private static long endPhase(LaunchPhaseTimings timings, Phase phase, long phaseStartTime) {
+        long now = System.currentTimeMillis();
+        timings.add(phase, now - phaseStartTime);
+        return now;
+    }
+
     /** 既定のエラーコード */
     private static final int UNKNOWN_ERROR = 127;
 
@@ -182,8 +252,22 @@ public class Main extends HandlerQueueManager<Main>
      */
     @Published(tag = "architect")
     public static int execute(CommandLine commandLine) {
-        Main launcher = new Main();
+        return execute(commandLine, null, new LaunchPhaseTimings());
+    }
+
+    /**
+     * コンポーネント定義のキャッシュを使用してバッチを実行する。
+     *
+     * @param commandLine 起動オプション
+     * @param definitionCache コンポーネント定義のキャッシュ(キャッシュを使用しない場合は{@code null})
+     * @param timings 各フェーズの処理時間を記録するオブジェクト
+     * @return 終了コード
+     */
+    static int execute(CommandLine commandLine, ComponentDefinitionCache definitionCache,
+            LaunchPhaseTimings timings) {
+        Main launcher = new Main(definitionCache);
         ExecutionContext ctx = new StandaloneExecutionContext();
+        ctx.setSessionScopedVar(LaunchPhaseTimings.SESSION_SCOPE_KEY, timings);
         return launcher.handle(commandLine, ctx);
     }
 
@@ -229,15 +313,19 @@ public class Main extends HandlerQueueManager<Main>
 
     /**
      * コンポーネント設定ファイルの設定にしたがって、システムリポジトリの初期化を行う。
+     * <p/>
+     * コンポーネント定義のキャッシュが設定されている場合は、キャッシュを使用して読み込む。
      *
      * @param configFilePath コンポーネント設定ファイルのパス
      */
     protected void setUpSystemRepository(String configFilePath) {
         DiContainer container = new DiContainer(
-                new XmlComponentDefinitionLoader(
-                        configFilePath
-                        , DuplicateDefinitionPolicy.OVERRIDE
-                )
+                definitionCache != null
+                        ? definitionCache.getLoader(configFilePath)
+                        : new XmlComponentDefinitionLoader(
+                                configFilePath
+                                , DuplicateDefinitionPolicy.OVERRIDE
+                        )
         );
         SystemRepository.load(container);
     }
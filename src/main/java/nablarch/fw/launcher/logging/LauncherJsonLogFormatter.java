@@ -9,6 +9,8 @@ import nablarch.core.text.json.JsonSerializationSettings;
 import nablarch.core.util.StringUtil;
 import nablarch.core.util.annotation.Published;
 import nablarch.fw.launcher.CommandLine;
+import nablarch.fw.launcher.LaunchPhaseTimings;
+import nablarch.fw.launcher.LaunchPhaseTimings.Phase;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -35,31 +37,52 @@ public class LauncherJsonLogFormatter extends LauncherLogFormatter {
     private static final String TARGET_NAME_EXIT_CODE = "exitCode";
     /** 処理時間の項目名 */
     private static final String TARGET_NAME_EXECUTE_TIME = "executeTime";
+    /** ログの初期化時間の項目名 */
+    private static final String TARGET_NAME_LOG_INITIALIZATION_TIME = "logInitializationTime";
+    /** コンポーネント設定ファイルの読み込み時間の項目名 */
+    private static final String TARGET_NAME_DI_LOADING_TIME = "diLoadingTime";
+    /** データリーダの準備時間の項目名 */
+    private static final String TARGET_NAME_READER_PREPARATION_TIME = "readerPreparationTime";
+    /** 本処理の処理時間の項目名 */
+    private static final String TARGET_NAME_PROCESSING_TIME = "processingTime";
+    /** 終了処理の処理時間の項目名 */
+    private static final String TARGET_NAME_DISPOSAL_TIME = "disposalTime";
 
     /** 開始ログの出力項目を取得する際に使用するプロパティ名 */
     private static final String PROPS_START_LOG_TARGETS = PROPS_PREFIX + "startTargets";
     /** 終了ログの出力項目を取得する際に使用するプロパティ名 */
     private static final String PROPS_END_LOG_TARGETS = PROPS_PREFIX + "endTargets";
+    /** フェーズ毎の処理時間ログの出力項目を取得する際に使用するプロパティ名 */
+    private static final String PROPS_PHASE_TIMES_LOG_TARGETS = PROPS_PREFIX + "phaseTimesTargets";
 
     /** 開始ログのラベルのプロパティ名 */
     private static final String PROPS_START_LOG_MSG_LABEL = PROPS_PREFIX + "startLogMsgLabel";
     /** 終了ログのラベルのプロパティ名 */
     private static final String PROPS_END_LOG_MSG_LABEL = PROPS_PREFIX + "endLogMsgLabel";
+    /** フェーズ毎の処理時間ログのラベルのプロパティ名 */
+    private static final String PROPS_PHASE_TIMES_LOG_MSG_LABEL = PROPS_PREFIX + "phaseTimesLogMsgLabel";
 
     /** 開始ログ出力項目のデフォルト値 */
     private static final String DEFAULT_START_LOG_TARGETS = "label,commandLineOptions,commandLineArguments";
     /** 終了ログ出力項目のデフォルト値 */
     private static final String DEFAULT_END_LOG_TARGETS = "label,exitCode,executeTime";
+    /** フェーズ毎の処理時間ログ出力項目のデフォルト値 */
+    private static final String DEFAULT_PHASE_TIMES_LOG_TARGETS
+            = "label,logInitializationTime,diLoadingTime,readerPreparationTime,processingTime,disposalTime";
 
     /** デフォルトの開始ログメッセージのラベル */
     private static final String DEFAULT_START_LOG_MSG_LABEL = "BATCH BEGIN";
     /** デフォルトの州力ログメッセージのラベル */
     private static final String DEFAULT_END_LOG_MSG_LABEL = "BATCH END";
+    /** デフォルトのフェーズ毎の処理時間ログメッセージのラベル */
+    private static final String DEFAULT_PHASE_TIMES_LOG_MSG_LABEL = "BATCH PHASE TIMES";
 
     /** 開始ログの出力項目 */
     private List<JsonLogObjectBuilder<LauncherLogContext>> startLogMessageTargets;
     /** 終了ログの出力項目 */
     private List<JsonLogObjectBuilder<LauncherLogContext>> endLogMessageTargets;
+    /** フェーズ毎の処理時間ログの出力項目 */
+    private List<JsonLogObjectBuilder<LauncherLogContext>> phaseTimesLogMessageTargets;
 
 
     /** 各種ログのJSONフォーマット支援オブジェクト */
@@ -90,6 +113,11 @@ public class LauncherJsonLogFormatter extends LauncherLogFormatter {
         String endMessageLogLabel = getProp(props, PROPS_END_LOG_MSG_LABEL, DEFAULT_END_LOG_MSG_LABEL);
         objectBuilders.put(TARGET_NAME_LABEL, new LabelBuilder(endMessageLogLabel));
         endLogMessageTargets = getStructuredTargets(objectBuilders, props, PROPS_END_LOG_TARGETS, DEFAULT_END_LOG_TARGETS);
+
+        String phaseTimesMessageLogLabel = getProp(props, PROPS_PHASE_TIMES_LOG_MSG_LABEL, DEFAULT_PHASE_TIMES_LOG_MSG_LABEL);
+        objectBuilders.put(TARGET_NAME_LABEL, new LabelBuilder(phaseTimesMessageLogLabel));
+        phaseTimesLogMessageTargets = getStructuredTargets(
+                objectBuilders, props, PROPS_PHASE_TIMES_LOG_TARGETS, DEFAULT_PHASE_TIMES_LOG_TARGETS);
     }
 
     /**
@@ -127,6 +155,16 @@ public class LauncherJsonLogFormatter extends LauncherLogFormatter {
         objectBuilders.put(TARGET_NAME_COMMAND_LINE_ARGUMENTS, new CommandLineArgumentsBuilder());
         objectBuilders.put(TARGET_NAME_EXIT_CODE, new ExitCodeBuilder());
         objectBuilders.put(TARGET_NAME_EXECUTE_TIME, new ExecuteTimeBuilder());
+        objectBuilders.put(TARGET_NAME_LOG_INITIALIZATION_TIME,
+                new PhaseTimeBuilder(TARGET_NAME_LOG_INITIALIZATION_TIME, Phase.LOG_INITIALIZATION));
+        objectBuilders.put(TARGET_NAME_DI_LOADING_TIME,
+                new PhaseTimeBuilder(TARGET_NAME_DI_LOADING_TIME, Phase.DI_LOADING));
+        objectBuilders.put(TARGET_NAME_READER_PREPARATION_TIME,
+                new PhaseTimeBuilder(TARGET_NAME_READER_PREPARATION_TIME, Phase.READER_PREPARATION));
+        objectBuilders.put(TARGET_NAME_PROCESSING_TIME,
+                new PhaseTimeBuilder(TARGET_NAME_PROCESSING_TIME, Phase.PROCESSING));
+        objectBuilders.put(TARGET_NAME_DISPOSAL_TIME,
+                new PhaseTimeBuilder(TARGET_NAME_DISPOSAL_TIME, Phase.DISPOSAL));
 
         return objectBuilders;
     }
@@ -191,6 +229,16 @@ public class LauncherJsonLogFormatter extends LauncherLogFormatter {
         return support.getStructuredMessage(endLogMessageTargets, context);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPhaseTimesLogMsg(LaunchPhaseTimings timings) {
+        LauncherLogContext context = new LauncherLogContext();
+        context.setPhaseTimings(timings);
+        return support.getStructuredMessage(phaseTimesLogMessageTargets, context);
+    }
+
     /**
      * 出力項目(ラベル)を処理するクラス。
      */
@@ -255,4 +303,36 @@ public class LauncherJsonLogFormatter extends LauncherLogFormatter {
             structuredObject.put(TARGET_NAME_EXECUTE_TIME, context.getExecuteTime());
         }
     }
+
+    /**
+     * 出力項目(フェーズの処理時間)を処理するクラス。
+     * <p/>
+     * フェーズ毎の処理時間を出力するログ以外で使用した場合は、何も出力しない。
+     */
+    public static class PhaseTimeBuilder implements JsonLogObjectBuilder<LauncherLogContext> {
+
+        /** 項目名 */
+        private final String targetName;
+
+        /** フェーズ */
+        private final Phase phase;
+
+        /**
+         * コンストラクタ。
+         * @param targetName 項目名
+         * @param phase フェーズ
+         */
+        public PhaseTimeBuilder(String targetName, Phase phase) {
+            this.targetName = targetName;
+            this.phase = phase;
+        }
+
+        @Override
+        public void build(Map<String, Object> structuredObject, LauncherLogContext context) {
+            LaunchPhaseTimings timings = context.getPhaseTimings();
+            if (timings != null) {
+                structuredObject.put(targetName, timings.get(phase));
+            }
+        }
+    }
 }
@@ -10,6 +10,8 @@ import nablarch.core.log.app.AppLogUtil;
 import nablarch.core.util.StringUtil;
 import nablarch.core.util.annotation.Published;
 import nablarch.fw.launcher.CommandLine;
+import nablarch.fw.launcher.LaunchPhaseTimings;
+import nablarch.fw.launcher.LaunchPhaseTimings.Phase;
 
 /**
  * {@link nablarch.fw.launcher.Main}で出力するログメッセージをフォーマットするクラス。
@@ -35,12 +37,23 @@ public class LauncherLogFormatter {
     private static final String DEFAULT_END_LOG_FORMAT = "@@@@ END @@@@"
             + " exit code = [$exitCode$] execute time(ms) = [$executeTime$]";
 
+    /** フェーズ毎の処理時間ログのフォーマット定義 */
+    private static final String DEFAULT_PHASE_TIMES_LOG_FORMAT = "@@@@ PHASE TIMES @@@@"
+            + " log initialization(ms) = [$logInitializationTime$]"
+            + " di loading(ms) = [$diLoadingTime$]"
+            + " reader preparation(ms) = [$readerPreparationTime$]"
+            + " processing(ms) = [$processingTime$]"
+            + " disposal(ms) = [$disposalTime$]";
+
     /** 開始ログの出力項目 */
     private final Map<String, LogItem<LauncherLogContext>> startLogItems = getStartLogItems();
 
     /** 終了ログの出力項目 */
     private final Map<String, LogItem<LauncherLogContext>> endLogItems = getEndLogItems();
 
+    /** フェーズ毎の処理時間ログの出力項目 */
+    private final Map<String, LogItem<LauncherLogContext>> phaseTimesLogItems = getPhaseTimesLogItems();
+
     /**
      * 開始ログを生成する。
      * <p/>
@@ -76,6 +89,22 @@ public class LauncherLogFormatter {
         return LogUtil.formatMessage(items, context);
     }
 
+    /**
+     * フェーズ毎の処理時間ログを生成する。
+     * <p/>
+     * {@link #getPhaseTimesLogFormat()}から取得したログフォーマットに従いログメッセージの生成を行う。
+     *
+     * @param timings フェーズ毎の処理時間
+     * @return 生成したフェーズ毎の処理時間ログ
+     */
+    public String getPhaseTimesLogMsg(LaunchPhaseTimings timings) {
+        LogItem<LauncherLogContext>[] items = LogUtil.createFormattedLogItems(
+                phaseTimesLogItems, getPhaseTimesLogFormat());
+        LauncherLogContext context = new LauncherLogContext();
+        context.setPhaseTimings(timings);
+        return LogUtil.formatMessage(items, context);
+    }
+
     /**
      * 開始ログのフォーマットを取得する。
      * <p/>
@@ -125,6 +154,21 @@ public class LauncherLogFormatter {
         return logItem;
     }
 
+    /**
+     * フェーズ毎の処理時間ログ用のログ出力項目を生成する。
+     *
+     * @return 生成したログ出力項目
+     */
+    protected Map<String, LogItem<LauncherLogContext>> getPhaseTimesLogItems() {
+        Map<String, LogItem<LauncherLogContext>> logItem = new HashMap<String, LogItem<LauncherLogContext>>();
+        logItem.put("$logInitializationTime$", new PhaseTime(Phase.LOG_INITIALIZATION));
+        logItem.put("$diLoadingTime$", new PhaseTime(Phase.DI_LOADING));
+        logItem.put("$readerPreparationTime$", new PhaseTime(Phase.READER_PREPARATION));
+        logItem.put("$processingTime$", new PhaseTime(Phase.PROCESSING));
+        logItem.put("$disposalTime$", new PhaseTime(Phase.DISPOSAL));
+        return logItem;
+    }
+
     /**
      * 終了ログのフォーマットを取得する。
      * <p/>
@@ -151,6 +195,32 @@ public class LauncherLogFormatter {
         return overrideFormat;
     }
 
+    /**
+     * フェーズ毎の処理時間ログのフォーマットを取得する。
+     * <p/>
+     * 設定ファイル(nablarch.core.log.app.AppLogUtil#getProps())にログフォーマットが指定されている場合は、
+     * そのフォーマットを返却する。
+     * 設定されていない場合には、デフォルトのフォーマットを使用する。
+     * <p/>
+     * デフォルトのフォーマットは、以下の設定例のようにフォーマット定義を行うことにより変更可能
+     * <pre>
+     * {@code
+     * launcherLogFormatter.phaseTimesFormat = @@@@ PHASE TIMES @@@@ di loading(ms) = [$diLoadingTime$]
+     * }
+     * </pre>
+     *
+     * @return フェーズ毎の処理時間ログのフォーマット
+     */
+    protected String getPhaseTimesLogFormat() {
+        String overrideFormat = AppLogUtil.getProps().get(
+                PROPS_PREFIX + "phaseTimesFormat");
+
+        if (overrideFormat == null) {
+            return DEFAULT_PHASE_TIMES_LOG_FORMAT;
+        }
+        return overrideFormat;
+    }
+
     /**
      * バッチ実行ログコンテキスト
      *
@@ -167,6 +237,9 @@ public class LauncherLogFormatter {
         /** 実行時間 */
         private long executeTime;
 
+        /** フェーズ毎の処理時間 */
+        private LaunchPhaseTimings phaseTimings;
+
         /**
          * コマンドラインを取得する。
          *
@@ -220,6 +293,24 @@ public class LauncherLogFormatter {
         protected void setExecuteTime(long executeTime) {
             this.executeTime = executeTime;
         }
+
+        /**
+         * フェーズ毎の処理時間を取得する。
+         *
+         * @return フェーズ毎の処理時間
+         */
+        protected LaunchPhaseTimings getPhaseTimings() {
+            return phaseTimings;
+        }
+
+        /**
+         * フェーズ毎の処理時間を設定する。
+         *
+         * @param phaseTimings フェーズ毎の処理時間
+         */
+        protected void setPhaseTimings(LaunchPhaseTimings phaseTimings) {
+            this.phaseTimings = phaseTimings;
+        }
     }
 
     /**
@@ -340,5 +431,35 @@ public class LauncherLogFormatter {
             return String.valueOf(context.getExecuteTime());
         }
     }
-}
 
+    /**
+     * フェーズの処理時間を取得する。
+     */
+    protected static class PhaseTime implements LogItem<LauncherLogContext> {
+
+        /** フェーズ */
+        private final Phase phase;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param phase フェーズ
+         */
+        public PhaseTime(Phase phase) {
+            this.phase = phase;
+        }
+
+        /**
+         * フェーズの処理時間を取得する。
+         * <p/>
+         * {@link LauncherLogContext#getPhaseTimings()}
+         * から取得したフェーズ毎の処理時間のうち、本オブジェクトのフェーズの処理時間を返却する。
+         *
+         * @param context ログの出力項目の取得に使用するコンテキスト
+         * @return フェーズの処理時間
+         */
+        public String get(LauncherLogContext context) {
+            return String.valueOf(context.getPhaseTimings().get(phase));
+        }
+    }
+}
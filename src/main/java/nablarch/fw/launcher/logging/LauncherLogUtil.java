@@ -6,6 +6,7 @@ import nablarch.core.log.LogUtil;
 import nablarch.core.log.app.AppLogUtil;
 import nablarch.core.util.ObjectUtil;
 import nablarch.fw.launcher.CommandLine;
+import nablarch.fw.launcher.LaunchPhaseTimings;
 
 /**
  * {@link nablarch.fw.launcher.Main}でのログ出力をサポートするユーティリティクラス。
@@ -74,4 +75,14 @@ public final class LauncherLogUtil {
     public static String getEndLogMsg(int exitCode, long executeTime) {
         return getLogFormatter().getEndLogMsg(exitCode, executeTime);
     }
+
+    /**
+     * フェーズ毎の処理時間ログのメッセージを生成し返却する。
+     *
+     * @param timings フェーズ毎の処理時間
+     * @return 生成したログメッセージ
+     */
+    public static String getPhaseTimesLogMsg(LaunchPhaseTimings timings) {
+        return getLogFormatter().getPhaseTimesLogMsg(timings);
+    }
 }
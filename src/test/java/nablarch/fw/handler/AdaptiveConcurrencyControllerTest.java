@@ -0,0 +1,257 @@
+package nablarch.fw.handler;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+import nablarch.test.support.log.app.OnMemoryLogWriter;
+
+/**
+ * {@link AdaptiveConcurrencyController}のテスト。
+ */
+public class AdaptiveConcurrencyControllerTest {
+
+    @Before
+    public void setUp() {
+        OnMemoryLogWriter.clear();
+    }
+
+    /** 処理時間が安定している間は有効スレッド数が1ずつ増加し、最大値で止まること。 */
+    @Test
+    public void testAdditiveIncrease() throws Exception {
+        AdaptiveConcurrencyController sut = new AdaptiveConcurrencyController();
+        sut.setMinConcurrentNumber(2);
+        sut.setAdjustInterval(1);
+        sut.initialize(4);
+        assertThat(sut.getCurrentConcurrentNumber(), is(2));
+
+        for (int i = 0; i < 5; i++) {
+            TimeUnit.MILLISECONDS.sleep(2);
+            sut.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertThat(sut.getCurrentConcurrentNumber(), is(4));
+
+        List<String> logs = OnMemoryLogWriter.getMessages("writer.appLog");
+        assertTrue(contains(logs, "adaptive concurrency control started. active thread count = [2] (min = [2], max = [4])"));
+        assertTrue(contains(logs, "active thread count was changed. [2] -> [3]"));
+        assertTrue(contains(logs, "active thread count was changed. [3] -> [4]"));
+    }
+
+    /** 処理時間が許容範囲を超えた場合は有効スレッド数が減少し、最小値で止まること。 */
+    @Test
+    public void testMultiplicativeDecrease() throws Exception {
+        AdaptiveConcurrencyController sut = new AdaptiveConcurrencyController();
+        sut.setMinConcurrentNumber(2);
+        sut.setInitialConcurrentNumber(8);
+        sut.setAdjustInterval(1);
+        sut.setDecreaseFactor(0.5);
+        sut.initialize(8);
+        assertThat(sut.getCurrentConcurrentNumber(), is(8));
+
+        TimeUnit.MILLISECONDS.sleep(2);
+        sut.record(TimeUnit.MILLISECONDS.toNanos(10));
+        assertThat("最大値のため変化しない", sut.getCurrentConcurrentNumber(), is(8));
+
+        TimeUnit.MILLISECONDS.sleep(2);
+        sut.record(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(sut.getCurrentConcurrentNumber(), is(4));
+
+        TimeUnit.MILLISECONDS.sleep(2);
+        sut.record(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(sut.getCurrentConcurrentNumber(), is(2));
+
+        TimeUnit.MILLISECONDS.sleep(2);
+        sut.record(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat("最小値を下回らない", sut.getCurrentConcurrentNumber(), is(2));
+
+        assertTrue(contains(OnMemoryLogWriter.getMessages("writer.appLog"),
+                "active thread count was changed. [8] -> [4]"));
+    }
+
+    /** {@link MultiThreadExecutionHandler}に設定した場合、同時処理数が有効スレッド数に制限されること。 */
+    @Test
+    public void testMultiThreadExecutionHandler() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final AtomicInteger processed = new AtomicInteger();
+
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController();
+        controller.setMinConcurrentNumber(2);
+        controller.setAdjustInterval(60000);
+
+        MultiThreadExecutionHandler executor = new MultiThreadExecutionHandler()
+                .setConcurrentNumber(8)
+                .setAdaptiveConcurrencyController(controller);
+
+        ExecutionContext context = new ExecutionContext()
+                .setDataReader(new DataReader<Integer>() {
+                    private int count = 0;
+                    public synchronized Integer read(ExecutionContext ctx) {
+                        return count < 200 ? ++count : null;
+                    }
+                    public synchronized boolean hasNext(ExecutionContext ctx) {
+                        return count < 200;
+                    }
+                    public void close(ExecutionContext ctx) {
+                    }
+                })
+                .addHandler(executor)
+                .addHandler(new DbLessLoopHandler())
+                .addHandler(new DataReadHandler())
+                .addHandler(new Handler<Integer, Result>() {
+                    public Result handle(Integer data, ExecutionContext ctx) {
+                        int current = running.incrementAndGet();
+                        synchronized (peak) {
+                            peak.set(Math.max(peak.get(), current));
+                        }
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(1);
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        running.decrementAndGet();
+                        processed.incrementAndGet();
+                        return new Result.Success();
+                    }
+                });
+
+        Result.MultiStatus result = context.handleNext(null);
+
+        assertThat("スレッド毎の処理結果が返却されること", result.getResults().size(), is(8));
+        assertTrue(result.isSuccess());
+        assertThat(processed.get(), is(200));
+        assertTrue("同時処理数が有効スレッド数を超えないこと", peak.get() <= 2);
+    }
+
+    /**
+     * レコードの処理中に次のレコードの有無を判定しても、実行許可が返却されないこと。
+     * <p/>
+     * {@link LoopHandler#isAboutToCommit(ExecutionContext)}は業務アクションの中から
+     * データリーダの{@code hasNext}を呼び出すため、その時点で実行許可を返却してはならない。
+     */
+    @Test
+    public void testHasNextDuringRecord() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController();
+        controller.setMinConcurrentNumber(1);
+        controller.setInitialConcurrentNumber(1);
+        controller.setAdjustInterval(60000);
+
+        MultiThreadExecutionHandler executor = new MultiThreadExecutionHandler()
+                .setConcurrentNumber(4)
+                .setAdaptiveConcurrencyController(controller);
+
+        Result.MultiStatus result = new ExecutionContext()
+                .setDataReader(LoopHandlerTestSupport.reader(100))
+                .addHandler(executor)
+                .addHandler(new DbLessLoopHandler())
+                .addHandler(new DataReadHandler())
+                .addHandler(new Handler<Integer, Result>() {
+                    public Result handle(Integer data, ExecutionContext ctx) {
+                        ctx.getDataReader().hasNext(ctx);
+                        int current = running.incrementAndGet();
+                        synchronized (peak) {
+                            peak.set(Math.max(peak.get(), current));
+                        }
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(1);
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        running.decrementAndGet();
+                        return new Result.Success();
+                    }
+                })
+                .handleNext(null);
+
+        assertTrue(result.isSuccess());
+        assertThat("同時処理数が有効スレッド数を超えないこと", peak.get(), is(1));
+    }
+
+    /**
+     * 振り分けと併用した場合に、他のスレッドのレーンが上限まで埋まっていても
+     * デッドロックせずに全てのレコードが処理されること。
+     */
+    @Test(timeout = 30000)
+    public void testWithPartitioning() {
+        final AtomicInteger processed = new AtomicInteger();
+
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController();
+        controller.setMinConcurrentNumber(1);
+        controller.setInitialConcurrentNumber(1);
+        controller.setAdjustInterval(60000);
+
+        PartitionKeyExtractor extractor = new PartitionKeyExtractor() {
+            public Object extractKey(Object data) {
+                return data;
+            }
+        };
+        DataReader<Integer> reader = LoopHandlerTestSupport.reader(200);
+        MultiThreadExecutionHandler executor = new MultiThreadExecutionHandler()
+                .setConcurrentNumber(4)
+                .setPartitionKeyExtractor(extractor)
+                .setAdaptiveConcurrencyController(controller);
+
+        Result.MultiStatus result = new ExecutionContext()
+                .setDataReader(new PartitionedDataReader<Integer>(reader, extractor, 4).setBufferSize(2))
+                .addHandler(executor)
+                .addHandler(new DbLessLoopHandler())
+                .addHandler(new DataReadHandler())
+                .addHandler(new Handler<Integer, Result>() {
+                    public Result handle(Integer data, ExecutionContext ctx) {
+                        processed.incrementAndGet();
+                        return new Result.Success();
+                    }
+                })
+                .handleNext(null);
+
+        assertTrue(result.isSuccess());
+        assertThat(processed.get(), is(200));
+    }
+
+    /** 不正な設定値の場合は例外が送出されること。 */
+    @Test
+    public void testInvalidSettings() {
+        AdaptiveConcurrencyController sut = new AdaptiveConcurrencyController();
+        try {
+            sut.setMinConcurrentNumber(0);
+            throw new AssertionError();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("minConcurrentNumber must be greater than or equal to 1."));
+        }
+        try {
+            sut.setDecreaseFactor(1.0);
+            throw new AssertionError();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("decreaseFactor must be greater than 0.0 and less than 1.0."));
+        }
+        try {
+            sut.setLatencyTolerance(0.5);
+            throw new AssertionError();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("latencyTolerance must be greater than or equal to 1.0."));
+        }
+    }
+
+    private static boolean contains(List<String> logs, String expected) {
+        for (String log : logs) {
+            if (log.contains(expected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
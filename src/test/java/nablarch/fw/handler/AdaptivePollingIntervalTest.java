@@ -0,0 +1,164 @@
+package nablarch.fw.handler;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+import nablarch.fw.handler.ProcessStopHandler.ProcessStop;
+import nablarch.test.support.log.app.OnMemoryLogWriter;
+
+/**
+ * {@link AdaptivePollingInterval}及び{@link ProcessResidentHandler}との連携のテスト。
+ */
+public class AdaptivePollingIntervalTest {
+
+    @Before
+    public void setUp() {
+        OnMemoryLogWriter.clear();
+    }
+
+    /** データが存在しない間は最大間隔まで倍々に延び、データが存在した場合は待機しないこと。 */
+    @Test
+    public void testBackoff() {
+        AdaptivePollingInterval target = new AdaptivePollingInterval();
+        target.setMinInterval(100);
+        target.setMaxInterval(1000);
+        target.setJitterRatio(0);
+
+        List<Long> actual = new ArrayList<Long>();
+        for (boolean dataFound : new boolean[] {false, false, false, false, false, false, true, false}) {
+            actual.add(target.next(dataFound));
+        }
+        assertThat(actual, is(Arrays.asList(100L, 200L, 400L, 800L, 1000L, 1000L, 0L, 100L)));
+
+        // 間隔が変化した場合のみログ出力されること。
+        assertThat(intervalLogs(), is(Arrays.asList(
+                "[100ms]", "[200ms]", "[400ms]", "[800ms]", "[1000ms]", "[0ms]", "[100ms]")));
+    }
+
+    /** 待機時間に、設定した割合の範囲で揺らぎが加えられること。 */
+    @Test
+    public void testJitter() {
+        AdaptivePollingInterval target = new AdaptivePollingInterval(new Random(0));
+        target.setMinInterval(1000);
+        target.setMaxInterval(1000);
+        target.setJitterRatio(0.2);
+
+        boolean varied = false;
+        long first = target.next(false);
+        for (int i = 0; i < 100; i++) {
+            long interval = target.next(false);
+            assertTrue(String.valueOf(interval), interval >= 800 && interval <= 1200);
+            varied |= interval != first;
+        }
+        assertTrue(varied);
+        assertThat("揺らぎはログ出力の対象外であること", intervalLogs(), is(Arrays.asList("[1000ms]")));
+    }
+
+    /** 不正な設定値の場合は例外が送出されること。 */
+    @Test
+    public void testInvalidSettings() {
+        AdaptivePollingInterval target = new AdaptivePollingInterval();
+        try {
+            target.setMinInterval(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("min interval must be greater than 0. specified value is:0"));
+        }
+        try {
+            target.setMaxInterval(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("max interval must be greater than 0. specified value is:-1"));
+        }
+        try {
+            target.setMultiplier(0.5);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("multiplier must be 1.0 or more. specified value is:0.5"));
+        }
+        try {
+            target.setJitterRatio(1.5);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("jitter ratio must be between 0 and 1. specified value is:1.5"));
+        }
+    }
+
+    /**
+     * {@link ProcessResidentHandler}に設定した場合、{@link DataReadHandler}が
+     * データを読み込んだか否かに応じて監視間隔が変化すること。
+     */
+    @Test
+    public void testProcessResidentHandler() {
+        // 各回の処理で読み込むデータ件数
+        final int[] dataCounts = {2, 0, 0, 1, 0};
+        final int[] pass = {0};
+
+        AdaptivePollingInterval polling = new AdaptivePollingInterval();
+        polling.setMinInterval(10);
+        polling.setMaxInterval(30);
+        polling.setJitterRatio(0);
+        ProcessResidentHandler handler = new ProcessResidentHandler();
+        handler.setAdaptivePollingInterval(polling);
+
+        ExecutionContext context = new ExecutionContext();
+        context.addHandler(handler)
+                .addHandler(new Handler<Object, Result>() {
+                    public Result handle(Object data, ExecutionContext ctx) {
+                        if (pass[0] == dataCounts.length) {
+                            throw new ProcessStop(0);
+                        }
+                        final int size = dataCounts[pass[0]++];
+                        ctx.setDataReader(new DataReader<String>() {
+                            private int count = 0;
+                            public String read(ExecutionContext ctx) {
+                                return count < size ? String.valueOf(++count) : null;
+                            }
+                            public boolean hasNext(ExecutionContext ctx) {
+                                return count < size;
+                            }
+                            public void close(ExecutionContext ctx) {
+                            }
+                        });
+                        return ctx.handleNext(data);
+                    }
+                })
+                .addHandler(new DataReadHandler())
+                .addHandler(new Handler<String, Result>() {
+                    public Result handle(String data, ExecutionContext ctx) {
+                        return new Result.Success();
+                    }
+                })
+                .handleNext(null);
+
+        assertThat(pass[0], is(5));
+        assertThat(intervalLogs(), is(Arrays.asList("[10ms]", "[20ms]", "[0ms]", "[10ms]")));
+        assertThat("処理の終了後は読み込み件数がセッションスコープに残らないこと",
+                context.getSessionScopeMap().containsKey(ProcessResidentHandler.READ_COUNTER_KEY), is(false));
+    }
+
+    private static List<String> intervalLogs() {
+        List<String> result = new ArrayList<String>();
+        for (String log : OnMemoryLogWriter.getMessages("writer.appLog")) {
+            int index = log.indexOf("DATA WATCH INTERVAL WAS CHANGED = ");
+            if (index >= 0) {
+                result.add(log.substring(index + "DATA WATCH INTERVAL WAS CHANGED = ".length()).trim());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,228 @@
+package nablarch.fw.handler;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+import nablarch.fw.handler.CircuitBreakerHandler.State;
+import nablarch.fw.handler.retry.RetryableException;
+import nablarch.fw.results.ServiceUnavailable;
+import nablarch.test.support.log.app.OnMemoryLogWriter;
+
+/**
+ * {@link CircuitBreakerHandler}のテスト。
+ */
+public class CircuitBreakerHandlerTest {
+
+    /** 後続ハンドラが呼び出された回数 */
+    private int invoked = 0;
+
+    /** 後続ハンドラが送出する例外(nullの場合は正常終了) */
+    private RuntimeException error;
+
+    private CircuitBreakerHandler breaker;
+
+    @Before
+    public void setUp() {
+        OnMemoryLogWriter.clear();
+        breaker = new CircuitBreakerHandler();
+        breaker.setFailureThreshold(3);
+        breaker.setOpenDuration(100);
+    }
+
+    private Object execute() {
+        return new ExecutionContext()
+                .addHandler(breaker)
+                .addHandler(new Handler<Object, Result>() {
+                    public Result handle(Object data, ExecutionContext ctx) {
+                        invoked++;
+                        if (error != null) {
+                            throw error;
+                        }
+                        return new Result.Success();
+                    }
+                })
+                .handleNext(null);
+    }
+
+    private void executeExpecting(Class<? extends RuntimeException> expected) {
+        try {
+            execute();
+            fail();
+        } catch (RuntimeException e) {
+            assertThat(e.getClass().getName(), is(expected.getName()));
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** 障害を表す例外が連続して閾値に達した場合にOPENとなり、後続ハンドラが呼び出されなくなること。 */
+    @Test
+    public void testOpen() {
+        error = new RetryableException("db down");
+        executeExpecting(RetryableException.class);
+        executeExpecting(RetryableException.class);
+        assertThat(breaker.getState(), is(State.CLOSED));
+        assertThat(breaker.getConsecutiveFailureCount(), is(2));
+
+        error = new ServiceUnavailable("unavailable");
+        executeExpecting(ServiceUnavailable.class);
+        assertThat(breaker.getState(), is(State.OPEN));
+        assertThat(breaker.getOpenCount(), is(1L));
+        assertThat(invoked, is(3));
+
+        try {
+            execute();
+            fail();
+        } catch (ServiceUnavailable e) {
+            assertThat(e.getMessage(), is("circuit breaker is OPEN."));
+            assertTrue(e.getRetryAfter() != null);
+        }
+        assertThat("OPEN中は後続ハンドラが呼び出されないこと", invoked, is(3));
+        assertTrue(contains("circuit breaker was opened. consecutive failure count = [3]"));
+    }
+
+    /** 成功した場合や障害以外の例外の場合は、連続障害回数がリセットされること。 */
+    @Test
+    public void testResetFailureCount() {
+        error = new RetryableException("db down");
+        executeExpecting(RetryableException.class);
+        executeExpecting(RetryableException.class);
+        error = null;
+        execute();
+        assertThat(breaker.getConsecutiveFailureCount(), is(0));
+
+        error = new RetryableException("db down");
+        executeExpecting(RetryableException.class);
+        error = new IllegalArgumentException("application error");
+        executeExpecting(IllegalArgumentException.class);
+        assertThat(breaker.getConsecutiveFailureCount(), is(0));
+        assertThat(breaker.getState(), is(State.CLOSED));
+    }
+
+    /** OPENの継続時間経過後に試行が成功した場合はCLOSEDに、失敗した場合はOPENに戻ること。 */
+    @Test
+    public void testHalfOpen() {
+        error = new RetryableException("db down");
+        for (int i = 0; i < 3; i++) {
+            executeExpecting(RetryableException.class);
+        }
+        assertThat(breaker.getState(), is(State.OPEN));
+
+        // 試行が失敗した場合
+        sleep(150);
+        executeExpecting(RetryableException.class);
+        assertThat(invoked, is(4));
+        assertThat(breaker.getState(), is(State.OPEN));
+        assertThat(breaker.getOpenCount(), is(2L));
+        executeExpecting(ServiceUnavailable.class);
+        assertThat(invoked, is(4));
+
+        // 試行が成功した場合
+        sleep(150);
+        error = null;
+        execute();
+        assertThat(invoked, is(5));
+        assertThat(breaker.getState(), is(State.CLOSED));
+        assertTrue(contains("circuit breaker is half-open. a trial request will be processed."));
+        assertTrue(contains("circuit breaker was opened again because the trial request failed."));
+        assertTrue(contains("circuit breaker was closed because the trial request succeeded."));
+    }
+
+    /** OPEN中に待機する設定の場合は、例外を送出せずにOPENの終了まで待機してから試行すること。 */
+    @Test
+    public void testWaitWhileOpen() {
+        breaker.setWaitWhileOpen(true);
+        error = new RetryableException("db down");
+        for (int i = 0; i < 3; i++) {
+            executeExpecting(RetryableException.class);
+        }
+        error = null;
+        long start = System.nanoTime();
+        execute();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        assertThat(invoked, is(4));
+        assertThat(breaker.getState(), is(State.CLOSED));
+    }
+
+    /** HALF_OPENで試行中の場合、他のリクエストは後続ハンドラを呼び出さないこと。 */
+    @Test
+    public void testSingleTrial() throws Exception {
+        error = new RetryableException("db down");
+        for (int i = 0; i < 3; i++) {
+            executeExpecting(RetryableException.class);
+        }
+        sleep(150);
+
+        final Object[] otherResult = new Object[1];
+        error = null;
+        new ExecutionContext()
+                .addHandler(breaker)
+                .addHandler(new Handler<Object, Result>() {
+                    public Result handle(Object data, ExecutionContext ctx) {
+                        Thread other = new Thread() {
+                            @Override
+                            public void run() {
+                                try {
+                                    execute();
+                                    otherResult[0] = "invoked";
+                                } catch (ServiceUnavailable e) {
+                                    otherResult[0] = e.getMessage();
+                                }
+                            }
+                        };
+                        other.start();
+                        try {
+                            other.join();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return new Result.Success();
+                    }
+                })
+                .handleNext(null);
+        assertThat(otherResult[0], is((Object) "circuit breaker is HALF_OPEN."));
+        assertThat(breaker.getState(), is(State.CLOSED));
+    }
+
+    /** 不正な設定値の場合は例外が送出されること。 */
+    @Test
+    public void testInvalidSettings() {
+        try {
+            breaker.setFailureThreshold(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("failure threshold must be greater than 0. specified value is:0"));
+        }
+        try {
+            breaker.setOpenDuration(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("open duration must be greater than 0. specified value is:0"));
+        }
+    }
+
+    private static boolean contains(String expected) {
+        for (String log : OnMemoryLogWriter.getMessages("writer.appLog")) {
+            if (log.contains(expected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
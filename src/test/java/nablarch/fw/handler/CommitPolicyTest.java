@@ -0,0 +1,169 @@
+package nablarch.fw.handler;
+
+import static nablarch.fw.handler.LoopHandlerTestSupport.recordingTransactionFactory;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import nablarch.core.transaction.TransactionFactory;
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+
+/**
+ * {@link CommitPolicy}実装及び{@link LoopHandler}との連携のテスト。
+ */
+public class CommitPolicyTest {
+
+    /** 発生したイベントの記録 */
+    private final List<String> events = new ArrayList<String>();
+
+    /** コミットとロールバックを記録するトランザクションファクトリ */
+    private final TransactionFactory transactionFactory = recordingTransactionFactory(events);
+
+    /**
+     * 指定したデータを順に処理し、処理したデータとコミット予告の有無をイベントとして記録する。
+     * <p/>
+     * コミット予告があったデータは"*"を付けて記録する。
+     * 末尾のコミットは{@link nablarch.core.transaction.TransactionExecutor}によるもの。
+     */
+    private void execute(LoopHandler loopHandler, final long sleepMillis, final String... records) {
+        new ExecutionContext()
+                .setDataReader(new DataReader<String>() {
+                    private int index = 0;
+                    public String read(ExecutionContext ctx) {
+                        return index < records.length ? records[index++] : null;
+                    }
+                    public boolean hasNext(ExecutionContext ctx) {
+                        return index < records.length;
+                    }
+                    public void close(ExecutionContext ctx) {
+                    }
+                })
+                .addHandler(loopHandler.setTransactionFactory(transactionFactory))
+                .addHandler(new DataReadHandler())
+                .addHandler(new Handler<String, Result>() {
+                    public Result handle(String data, ExecutionContext ctx) {
+                        events.add(LoopHandler.isAboutToCommit(ctx) ? data + "*" : data);
+                        if (sleepMillis > 0) {
+                            try {
+                                TimeUnit.MILLISECONDS.sleep(sleepMillis);
+                            } catch (InterruptedException e) {
+                                throw new RuntimeException(e);
+                            }
+                        }
+                        return new Result.Success();
+                    }
+                })
+                .handleNext(null);
+    }
+
+    /** コミット間隔を設定した場合、従来通り件数でコミットされること。 */
+    @Test
+    public void testCommitInterval() {
+        execute(new LoopHandler().setCommitInterval(2), 0, "a", "b", "c", "d", "e");
+        assertThat(events, is(Arrays.asList(
+                "a", "b*", "commit", "c", "d*", "commit", "e*", "commit", "commit")));
+    }
+
+    /** {@link CommitIntervalPolicy}を設定した場合、コミット間隔を設定した場合と同じ動作となること。 */
+    @Test
+    public void testCommitIntervalPolicy() {
+        execute(new LoopHandler().setCommitPolicy(new CommitIntervalPolicy(3)), 0, "a", "b", "c", "d");
+        assertThat(events, is(Arrays.asList(
+                "a", "b", "c*", "commit", "d*", "commit", "commit")));
+    }
+
+    /** サイズ合計が閾値に達した場合にコミットされること。 */
+    @Test
+    public void testSizeLimit() {
+        ThresholdCommitPolicy policy = new ThresholdCommitPolicy();
+        policy.setCommitInterval(100);
+        policy.setCommitSizeLimit(10);
+        execute(new LoopHandler().setCommitPolicy(policy), 0, "ab", "cde", "f", "g", "hijklm", "n");
+        // 文字列は文字数の2倍で見積もられる。
+        assertThat(events, is(Arrays.asList(
+                "ab", "cde*", "commit", "f", "g", "hijklm*", "commit", "n*", "commit", "commit")));
+    }
+
+    /** 件数、サイズのうち、先に閾値に達したものでコミットされること。 */
+    @Test
+    public void testCountOrSize() {
+        ThresholdCommitPolicy policy = new ThresholdCommitPolicy();
+        policy.setCommitInterval(2);
+        policy.setCommitSizeLimit(20);
+        execute(new LoopHandler().setCommitPolicy(policy), 0, "a", "b", "0123456789", "c", "d");
+        assertThat(events, is(Arrays.asList(
+                "a", "b*", "commit", "0123456789*", "commit", "c", "d*", "commit", "commit")));
+    }
+
+    /** 前回のコミットからの経過時間が閾値に達した場合にコミットされること。 */
+    @Test
+    public void testTimeLimit() {
+        ThresholdCommitPolicy policy = new ThresholdCommitPolicy();
+        policy.setCommitInterval(100);
+        policy.setCommitTimeLimit(100);
+        execute(new LoopHandler().setCommitPolicy(policy), 60, "a", "b", "c", "d", "e", "f", "g");
+        // 処理開始時点の経過時間で判定するため、3件目(120ms経過時点で開始)の処理後にコミットされる。
+        assertThat(events, is(Arrays.asList(
+                "a", "b", "c*", "commit", "d", "e", "f*", "commit", "g*", "commit", "commit")));
+    }
+
+    /** チャンク単位で読み込む場合、チャンク内のレコード件数でコミット間隔が計数されること。 */
+    @Test
+    public void testChunkedRead() {
+        final String[] records = {"a", "b", "c", "d", "e", "f", "g"};
+        new ExecutionContext()
+                .setDataReader(new DataReader<String>() {
+                    private int index = 0;
+                    public String read(ExecutionContext ctx) {
+                        return index < records.length ? records[index++] : null;
+                    }
+                    public boolean hasNext(ExecutionContext ctx) {
+                        return index < records.length;
+                    }
+                    public void close(ExecutionContext ctx) {
+                    }
+                })
+                .addHandler(new LoopHandler().setCommitInterval(4).setTransactionFactory(transactionFactory))
+                .addHandler(new DataReadHandler().setChunkSize(2))
+                .addHandler(new Handler<List<String>, Result>() {
+                    public Result handle(List<String> data, ExecutionContext ctx) {
+                        events.add(LoopHandler.isAboutToCommit(ctx) ? data + "*" : data.toString());
+                        return new Result.Success();
+                    }
+                })
+                .handleNext(null);
+        assertThat(events, is(Arrays.asList(
+                "[a, b]", "[c, d]*", "commit", "[e, f]", "[g]*", "commit", "commit")));
+    }
+
+    /** 閾値を設定しない場合は、コミット間隔1と同様に1件毎にコミットされること。 */
+    @Test
+    public void testNoThreshold() {
+        execute(new LoopHandler().setCommitPolicy(new ThresholdCommitPolicy()), 0, "a", "b");
+        assertThat(events, is(Arrays.asList("a*", "commit", "b*", "commit", "commit", "commit")));
+    }
+
+    /** サイズの閾値を設定しない場合は、サイズの見積りが行われないこと。 */
+    @Test
+    public void testEstimateSizeWithoutSizeLimit() {
+        ThresholdCommitPolicy policy = new ThresholdCommitPolicy();
+        policy.setSizeEstimator(new SizeEstimator() {
+            public long estimate(Object data) {
+                throw new AssertionError("must not be called.");
+            }
+        });
+        assertThat(policy.estimateSize("abc"), is(0L));
+        policy.setCommitSizeLimit(1);
+        policy.setSizeEstimator(new DefaultSizeEstimator());
+        assertThat(policy.estimateSize("abc"), is(6L));
+    }
+}
@@ -0,0 +1,183 @@
+package nablarch.fw.handler;
+
+import static nablarch.fw.handler.LoopHandlerTestSupport.reader;
+import static nablarch.fw.handler.LoopHandlerTestSupport.recordingTransactionFactory;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import nablarch.core.transaction.TransactionFactory;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+
+/**
+ * {@link CommitScopedBatchBuffer}及び{@link LoopHandler}のバッチバッファ連携のテスト。
+ */
+public class CommitScopedBatchBufferTest {
+
+    /** 発生したイベントの記録 */
+    private final List<String> events = new ArrayList<String>();
+
+    /** コミットとロールバックを記録するトランザクションファクトリ */
+    private final TransactionFactory transactionFactory = recordingTransactionFactory(events);
+
+    /** 書き込んだレコードをイベントとして記録する書き込みオブジェクトを生成する。 */
+    private CommitScopedBatchBuffer.BatchWriter<Integer> writer(final String name) {
+        return new CommitScopedBatchBuffer.BatchWriter<Integer>() {
+            public void write(List<Integer> records) {
+                events.add(name + records);
+            }
+        };
+    }
+
+    /**
+     * コミットの直前にバッファの内容がまとめて書き込まれること。
+     * <p/>
+     * 末尾のコミットは{@link nablarch.core.transaction.TransactionExecutor}によるもの。
+     */
+    @Test
+    public void testFlushBeforeCommit() {
+        final CommitScopedBatchBuffer.BatchWriter<Integer> insert = writer("insert");
+        final CommitScopedBatchBuffer.BatchWriter<Integer> update = writer("update");
+        final List<Boolean> aboutToCommit = new ArrayList<Boolean>();
+
+        ExecutionContext context = new ExecutionContext()
+                .setDataReader(reader(5))
+                .addHandler(new LoopHandler().setTransactionFactory(transactionFactory).setCommitInterval(2))
+                .addHandler(new DataReadHandler())
+                .addHandler(new Handler<Integer, Result>() {
+                    public Result handle(Integer data, ExecutionContext ctx) {
+                        CommitScopedBatchBuffer buffer = LoopHandler.getBatchBuffer(ctx);
+                        buffer.add(insert, data);
+                        if (data % 2 == 1) {
+                            buffer.add(update, data * 10);
+                        }
+                        aboutToCommit.add(LoopHandler.isAboutToCommit(ctx));
+                        return new Result.Success();
+                    }
+                });
+        context.handleNext(null);
+
+        assertThat(events, is(Arrays.asList(
+                "insert[1, 2]", "update[10]", "commit",
+                "insert[3, 4]", "update[30]", "commit",
+                "insert[5]", "update[50]", "commit",
+                "commit")));
+        assertThat(aboutToCommit, is(Arrays.asList(false, true, false, true, true)));
+    }
+
+    /**
+     * 処理すべきデータが残った状態でループを終了する場合も、バッファの内容が書き込まれてコミットされ、
+     * 完了を表すチェックポイントは保存されないこと。
+     */
+    @Test
+    public void testFlushOnStop() {
+        final CommitScopedBatchBuffer.BatchWriter<Integer> insert = writer("insert");
+        final List<Long> positions = new ArrayList<Long>();
+        final List<Integer> processed = new ArrayList<Integer>();
+        LoopHandler loopHandler = new LoopHandler() {
+            @Override
+            public boolean shouldStop(ExecutionContext context) {
+                return processed.size() == 3 || super.shouldStop(context);
+            }
+        };
+        loopHandler.setTransactionFactory(transactionFactory)
+                .setCommitInterval(2)
+                .setCheckpointId("test")
+                .setCheckpointStore(new CheckpointStore() {
+                    public Long load(String checkpointId) {
+                        return null;
+                    }
+                    public void save(String checkpointId, long position) {
+                        positions.add(position);
+                    }
+                });
+
+        new ExecutionContext()
+                .setDataReader(reader(5))
+                .addHandler(loopHandler)
+                .addHandler(new DataReadHandler())
+                .addHandler(new Handler<Integer, Result>() {
+                    public Result handle(Integer data, ExecutionContext ctx) {
+                        LoopHandler.getBatchBuffer(ctx).add(insert, data);
+                        processed.add(data);
+                        return new Result.Success();
+                    }
+                })
+                .handleNext(null);
+
+        assertThat(events, is(Arrays.asList(
+                "insert[1, 2]", "commit",
+                "insert[3]", "commit",
+                "commit")));
+        assertThat(positions, is(Arrays.asList(2L, 3L)));
+    }
+
+    /** 件数の上限に達した場合は、コミットを待たずに書き込まれること。 */
+    @Test
+    public void testMaxBatchSize() {
+        final CommitScopedBatchBuffer.BatchWriter<Integer> insert = writer("insert");
+
+        ExecutionContext context = new ExecutionContext()
+                .setDataReader(reader(5))
+                .addHandler(new LoopHandler().setTransactionFactory(transactionFactory)
+                        .setCommitInterval(5).setMaxBatchSize(2))
+                .addHandler(new DataReadHandler())
+                .addHandler(new Handler<Integer, Result>() {
+                    public Result handle(Integer data, ExecutionContext ctx) {
+                        LoopHandler.getBatchBuffer(ctx).add(insert, data);
+                        return new Result.Success();
+                    }
+                });
+        context.handleNext(null);
+
+        assertThat(events, is(Arrays.asList("insert[1, 2]", "insert[3, 4]", "insert[5]", "commit", "commit")));
+    }
+
+    /** ロールバックされた場合は、バッファの内容が書き込まれずに破棄されること。 */
+    @Test
+    public void testDiscardOnRollback() {
+        final CommitScopedBatchBuffer.BatchWriter<Integer> insert = writer("insert");
+
+        ExecutionContext context = new ExecutionContext()
+                .setDataReader(reader(5))
+                .addHandler(new LoopHandler().setTransactionFactory(transactionFactory).setCommitInterval(2))
+                .addHandler(new DataReadHandler())
+                .addHandler(new Handler<Integer, Result>() {
+                    public Result handle(Integer data, ExecutionContext ctx) {
+                        LoopHandler.getBatchBuffer(ctx).add(insert, data);
+                        if (data == 3) {
+                            throw new IllegalStateException("error");
+                        }
+                        return new Result.Success();
+                    }
+                });
+        try {
+            context.handleNext(null);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("error"));
+        }
+
+        assertThat(events, is(Arrays.asList("insert[1, 2]", "commit", "rollback", "commit")));
+    }
+
+    /** {@link LoopHandler}の外から取得した場合は例外が送出されること。 */
+    @Test
+    public void testGetBatchBufferOutsideLoopHandler() {
+        try {
+            LoopHandler.getBatchBuffer(new ExecutionContext());
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(),
+                    is("batch buffer is not available. LoopHandler must be placed before the caller."));
+        }
+    }
+}
@@ -7,6 +7,7 @@ import nablarch.fw.ExecutionContext;
 import nablarch.fw.Handler;
 import nablarch.fw.Result;
 import nablarch.fw.Result.NotFound;
+import nablarch.fw.TransactionEventCallback;
 import nablarch.test.support.log.app.OnMemoryLogWriter;
 import org.hamcrest.Description;
 import org.hamcrest.TypeSafeMatcher;
@@ -17,6 +18,7 @@ import java.util.concurrent.*;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.*;
 
 /**
@@ -162,6 +164,95 @@ public class DataReadHandlerTest {
 
     }
 
+    /**
+     * 最大件数に達した場合、実行コンテキスト上のデータリーダは削除されずに、
+     * 終端に達したものとして扱われること。
+     */
+    @Test
+    public void testMaxCountKeepsDataReader() {
+        List<Handler<?, ?>> handlerQueue = new ArrayList<Handler<?, ?>>();
+        handlerQueue.add(
+                new Handler<String, Result>() {
+                    public Result handle(String request,
+                                         ExecutionContext context) {
+                        return new Result.Success(request);
+                    }
+                });
+
+        ExecutionContext context = new ExecutionContext();
+        context.setDataReader(new TestDataReader(createReadData(5)));
+
+        DataReadHandler target = new DataReadHandler();
+        target.setMaxCount(2);
+        for (int i = 1; i <= 2; i++) {
+            context.setHandlerQueue(handlerQueue);
+            assertThat(target.handle(null, context).getMessage(), is(String.valueOf(i)));
+        }
+
+        assertThat("データリーダは削除されないこと", context.getDataReader(), is(notNullValue()));
+        assertThat("上限に達した後は後続データなしとなること", context.hasNextData(), is(false));
+        context.setHandlerQueue(handlerQueue);
+        assertThat(target.handle(null, context), is(instanceOf(NotFound.class)));
+    }
+
+    /** チャンクサイズを指定した場合、読み込んだデータがリストにまとめて後続ハンドラに渡されること。 */
+    @Test
+    public void testChunkSize() {
+        final List<List<String>> received = new ArrayList<List<String>>();
+        List<Handler<?, ?>> handlerQueue = new ArrayList<Handler<?, ?>>();
+        handlerQueue.add(
+                new Handler<List<String>, Result>() {
+                    public Result handle(List<String> request, ExecutionContext context) {
+                        received.add(new ArrayList<String>(request));
+                        assertThat("トランザクションデータにはリストが設定されること",
+                                context.<Object>getRequestScopedVar(TransactionEventCallback.REQUEST_DATA_REQUEST_SCOPE_KEY),
+                                is((Object) request));
+                        return new Result.Success();
+                    }
+                });
+
+        ExecutionContext context = new ExecutionContext();
+        context.setDataReader(new TestDataReader(createReadData(7)));
+
+        DataReadHandler target = new DataReadHandler().setChunkSize(3);
+        for (int i = 0; i < 3; i++) {
+            context.setHandlerQueue(handlerQueue);
+            target.handle(null, context);
+        }
+        assertThat(received, is(Arrays.asList(
+                Arrays.asList("1", "2", "3"), Arrays.asList("4", "5", "6"), Arrays.asList("7"))));
+
+        context.setHandlerQueue(handlerQueue);
+        assertThat(target.handle(null, context), is(instanceOf(NotFound.class)));
+    }
+
+    /** チャンクサイズと最大件数を指定した場合、最大件数を超えて読み込まれないこと。 */
+    @Test
+    public void testChunkSizeWithMaxCount() {
+        final List<List<String>> received = new ArrayList<List<String>>();
+        List<Handler<?, ?>> handlerQueue = new ArrayList<Handler<?, ?>>();
+        handlerQueue.add(
+                new Handler<List<String>, Result>() {
+                    public Result handle(List<String> request, ExecutionContext context) {
+                        received.add(new ArrayList<String>(request));
+                        return new Result.Success();
+                    }
+                });
+
+        ExecutionContext context = new ExecutionContext();
+        context.setDataReader(new TestDataReader(createReadData(10)));
+
+        DataReadHandler target = new DataReadHandler().setChunkSize(3).setMaxCount(5);
+        for (int i = 0; i < 2; i++) {
+            context.setHandlerQueue(handlerQueue);
+            target.handle(null, context);
+        }
+        assertThat(received, is(Arrays.asList(
+                Arrays.asList("1", "2", "3"), Arrays.asList("4", "5"))));
+        context.setHandlerQueue(handlerQueue);
+        assertThat(target.handle(null, context), is(instanceOf(NotFound.class)));
+    }
+
     /**
      * 最大件数を指定した場合のテスト。
      * マルチスレッドのテスト
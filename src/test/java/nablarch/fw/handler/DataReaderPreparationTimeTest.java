@@ -0,0 +1,64 @@
+package nablarch.fw.handler;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import nablarch.fw.DataReader;
+import nablarch.fw.DataReaderFactory;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+
+/**
+ * {@link DataReaderPreparationTime}のテスト。
+ */
+public class DataReaderPreparationTimeTest {
+
+    /** データリーダの生成に時間を要するアクション。 */
+    private static class SlowFactoryAction implements Handler<Integer, Result>, DataReaderFactory<Integer> {
+
+        public DataReader<Integer> createReader(ExecutionContext ctx) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(100);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return LoopHandlerTestSupport.reader(3);
+        }
+
+        public Result handle(Integer data, ExecutionContext ctx) {
+            return new Result.Success();
+        }
+    }
+
+    /** セッションスコープに格納した場合、データリーダの準備時間が加算されること。 */
+    @Test
+    public void testRecordedByMultiThreadExecutionHandler() {
+        DataReaderPreparationTime time = new DataReaderPreparationTime();
+        ExecutionContext context = new ExecutionContext()
+                .addHandler(new MultiThreadExecutionHandler())
+                .addHandler(new DbLessLoopHandler())
+                .addHandler(new DataReadHandler())
+                .addHandler(new SlowFactoryAction());
+        context.setSessionScopedVar(DataReaderPreparationTime.SESSION_SCOPE_KEY, time);
+        context.handleNext(null);
+
+        assertTrue(String.valueOf(time.get()), time.get() >= 100);
+    }
+
+    /** セッションスコープに格納していない場合は何もしないこと。 */
+    @Test
+    public void testNotStored() {
+        DataReaderPreparationTime.add(new ExecutionContext(), 100);
+
+        DataReaderPreparationTime time = new DataReaderPreparationTime();
+        time.add(100);
+        time.add(50);
+        assertThat(time.get(), is(150L));
+    }
+}
@@ -0,0 +1,173 @@
+package nablarch.fw.handler;
+
+import static nablarch.fw.handler.LoopHandlerTestSupport.NOP_TRANSACTION_FACTORY;
+import static nablarch.fw.handler.LoopHandlerTestSupport.reader;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+
+/**
+ * {@link FlightRecorderEvent}のテスト。
+ * <p/>
+ * JFRのAPIはリフレクションを使用して呼び出す。
+ * 実行環境がJFRをサポートしていない場合、テストは実行しない。
+ */
+public class FlightRecorderEventTest {
+
+    /** 記録中のJFR({@code jdk.jfr.Recording}) */
+    private Object recording;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(FlightRecorderEvent.DATA_READ.isAvailable());
+        recording = Class.forName("jdk.jfr.Recording").newInstance();
+        enable(FlightRecorderEvent.DATA_READ);
+        enable(FlightRecorderEvent.COMMIT);
+        recording.getClass().getMethod("start").invoke(recording);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (recording != null) {
+            recording.getClass().getMethod("close").invoke(recording);
+        }
+    }
+
+    /** レコードの読み込みとコミットのイベントが、リクエストパスとともに出力されること。 */
+    @Test
+    public void testDataReadAndCommit() throws Exception {
+        ExecutionContext context = new ExecutionContext();
+        context.setSessionScopedVar("requestPath", "test/RP0001");
+        context.setDataReader(reader(5))
+               .addHandler(new LoopHandler()
+                       .setTransactionFactory(NOP_TRANSACTION_FACTORY)
+                       .setCommitInterval(2))
+               .addHandler(new DataReadHandler())
+               .addHandler(new Handler<Integer, Result>() {
+                   public Result handle(Integer data, ExecutionContext ctx) {
+                       return new Result.Success();
+                   }
+               })
+               .handleNext(null);
+
+        recording.getClass().getMethod("stop").invoke(recording);
+        List<Object> dataReads = events(FlightRecorderEvent.DATA_READ);
+        List<Object> commits = events(FlightRecorderEvent.COMMIT);
+        assertThat(dataReads.size(), is(5));
+        assertThat(get(dataReads.get(0), "requestPath"), is((Object) "test/RP0001"));
+        // 5件をコミット間隔2で処理するため、2件、2件、1件の3回のコミットが記録される。
+        assertThat(commits.size(), is(3));
+        assertThat(get(commits.get(0), "requestPath"), is((Object) "test/RP0001"));
+        assertThat(get(commits.get(0), "recordCount"), is((Object) 2L));
+        assertThat(get(commits.get(2), "recordCount"), is((Object) 1L));
+    }
+
+    /** 後続ハンドラで例外が発生した場合も、スレッドプールと常駐処理のイベントが出力されること。 */
+    @Test
+    public void testEventsOnFailure() throws Exception {
+        enable(FlightRecorderEvent.THREAD_POOL);
+        enable(FlightRecorderEvent.RESIDENT_POLL);
+        try {
+            new ExecutionContext()
+                    .setDataReader(reader(5))
+                    .addHandler(new MultiThreadExecutionHandler())
+                    .addHandler(new DbLessLoopHandler())
+                    .addHandler(new DataReadHandler())
+                    .addHandler(new Handler<Integer, Result>() {
+                        public Result handle(Integer data, ExecutionContext ctx) {
+                            throw new IllegalStateException("error");
+                        }
+                    })
+                    .handleNext(null);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("error"));
+        }
+        new ExecutionContext()
+                .addHandler(new ProcessResidentHandler())
+                .addHandler(new Handler<Object, Result>() {
+                    public Result handle(Object data, ExecutionContext ctx) {
+                        throw new ProcessStopHandler.ProcessStop(0);
+                    }
+                })
+                .handleNext(null);
+
+        recording.getClass().getMethod("stop").invoke(recording);
+        List<Object> steps = new ArrayList<Object>();
+        for (Object event : events(FlightRecorderEvent.THREAD_POOL)) {
+            steps.add(get(event, "step"));
+        }
+        assertThat(steps, is(Arrays.<Object>asList("initialize", "execute", "terminate")));
+        assertThat(events(FlightRecorderEvent.RESIDENT_POLL).size(), is(1));
+    }
+
+    /** 記録対象でないイベントは生成されないこと。 */
+    @Test
+    public void testNotEnabled() throws Exception {
+        recording.getClass().getMethod("disable", String.class)
+                 .invoke(recording, FlightRecorderEvent.RETRY.getName());
+        assertThat(FlightRecorderEvent.RETRY.begin(), is(nullValue()));
+        // nullを指定した場合は何もしないこと。
+        FlightRecorderEvent.RETRY.commit(null, new ExecutionContext(), 1, "test");
+    }
+
+    /**
+     * イベントを記録対象とする。
+     *
+     * @param event イベント
+     */
+    private void enable(FlightRecorderEvent event) throws Exception {
+        recording.getClass().getMethod("enable", String.class).invoke(recording, event.getName());
+    }
+
+    /**
+     * 記録したイベントのうち、指定したイベントを取得する。
+     *
+     * @param event イベント
+     * @return 記録したイベント({@code jdk.jfr.consumer.RecordedEvent})
+     */
+    private List<Object> events(FlightRecorderEvent event) throws Exception {
+        File file = File.createTempFile("flight-recorder-event-test", ".jfr");
+        file.deleteOnExit();
+        Object path = File.class.getMethod("toPath").invoke(file);
+        Class<?> pathClass = Class.forName("java.nio.file.Path");
+        recording.getClass().getMethod("dump", pathClass).invoke(recording, path);
+        List<?> all = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                                     .getMethod("readAllEvents", pathClass)
+                                     .invoke(null, path);
+        List<Object> result = new ArrayList<Object>();
+        for (Object recorded : all) {
+            Object type = recorded.getClass().getMethod("getEventType").invoke(recorded);
+            if (event.getName().equals(type.getClass().getMethod("getName").invoke(type))) {
+                result.add(recorded);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 記録したイベントのフィールドの値を取得する。
+     *
+     * @param recorded 記録したイベント
+     * @param name フィールド名
+     * @return 値
+     */
+    private static Object get(Object recorded, String name) throws Exception {
+        return recorded.getClass().getMethod("getValue", String.class).invoke(recorded, name);
+    }
+}
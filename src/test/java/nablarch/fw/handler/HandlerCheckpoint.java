@@ -0,0 +1,29 @@
+package nablarch.fw.handler;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * ハンドラテスト用チェックポイント
+ */
+@Entity
+@Table(name = "HANDLER_CHECKPOINT")
+public class HandlerCheckpoint {
+
+    public HandlerCheckpoint() {
+    }
+
+    public HandlerCheckpoint(String checkpointId, Long position) {
+        this.checkpointId = checkpointId;
+        this.position = position;
+    }
+
+    @Id
+    @Column(name = "CHECKPOINT_ID", length = 100, nullable = false)
+    public String checkpointId;
+
+    @Column(name = "POSITION", nullable = false)
+    public Long position;
+}
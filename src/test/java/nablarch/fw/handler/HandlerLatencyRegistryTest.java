@@ -0,0 +1,151 @@
+package nablarch.fw.handler;
+
+import static nablarch.fw.handler.LoopHandlerTestSupport.NOP_TRANSACTION_FACTORY;
+import static nablarch.fw.handler.LoopHandlerTestSupport.reader;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+import nablarch.fw.TransactionEventCallback;
+import nablarch.fw.handler.HandlerLatencyRegistry.Statistics;
+import nablarch.test.support.log.app.OnMemoryLogWriter;
+
+/**
+ * {@link HandlerLatencyRegistry}のテスト。
+ */
+public class HandlerLatencyRegistryTest {
+
+    private final HandlerLatencyRegistry registry = new HandlerLatencyRegistry();
+
+    /** 指定した時間待機するアクション。 */
+    public static class SleepAction implements Handler<Integer, Result>, TransactionEventCallback<Integer> {
+
+        private final long millis;
+
+        private final List<Integer> normalEnds = new ArrayList<Integer>();
+
+        SleepAction(long millis) {
+            this.millis = millis;
+        }
+
+        public Result handle(Integer data, ExecutionContext ctx) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(millis);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return new Result.Success();
+        }
+
+        public void transactionNormalEnd(Integer data, ExecutionContext ctx) {
+            normalEnds.add(data);
+        }
+
+        public void transactionAbnormalEnd(Throwable e, Integer data, ExecutionContext ctx) {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        OnMemoryLogWriter.clear();
+    }
+
+    /** 後続ハンドラ毎に、後続ハンドラの処理時間を除いた処理時間が記録されること。 */
+    @Test
+    public void testDbLessLoopHandler() {
+        new ExecutionContext()
+                .setDataReader(reader(3))
+                .addHandler(new DbLessLoopHandler().setLatencyRegistry(registry))
+                .addHandler(new DataReadHandler())
+                .addHandler(new SleepAction(20))
+                .handleNext(null);
+
+        Statistics action = registry.getStatistics(SleepAction.class);
+        Statistics reader = registry.getStatistics(DataReadHandler.class);
+        assertThat(action.getCount(), is(3L));
+        assertThat(reader.getCount(), is(3L));
+        assertTrue(action.getTotalNanos() >= TimeUnit.MILLISECONDS.toNanos(60));
+        assertTrue("後続ハンドラの処理時間は含まれないこと", reader.getTotalNanos() < action.getTotalNanos());
+        assertThat("処理時間の合計の降順で取得できること",
+                registry.getAllStatistics().get(0).getName(), is(SleepAction.class.getName()));
+    }
+
+    /** コミットの処理時間が記録され、後続ハンドラのコールバックが呼び出されること。 */
+    @Test
+    public void testLoopHandler() {
+        SleepAction action = new SleepAction(0);
+        new ExecutionContext()
+                .setDataReader(reader(5))
+                .addHandler(new LoopHandler()
+                        .setTransactionFactory(NOP_TRANSACTION_FACTORY)
+                        .setCommitInterval(2)
+                        .setLatencyRegistry(registry))
+                .addHandler(new DataReadHandler())
+                .addHandler(action)
+                .handleNext(null);
+
+        assertThat(registry.getStatistics(SleepAction.class).getCount(), is(5L));
+        // 5件をコミット間隔2で処理するため、2件、2件、1件の3回のコミットが記録される。
+        assertThat(registry.getStatistics(LoopHandler.COMMIT_LATENCY_NAME).getCount(), is(3L));
+        assertThat("ラップしたハンドラのコールバックが呼び出されること", action.normalEnds.size(), is(5));
+    }
+
+    /** 処理終了時に、集計結果がログに出力されること。 */
+    @Test
+    public void testMultiThreadExecutionHandler() {
+        new ExecutionContext()
+                .setDataReader(reader(10))
+                .addHandler(new MultiThreadExecutionHandler()
+                        .setConcurrentNumber(2)
+                        .setLatencyRegistry(registry))
+                .addHandler(new RequestThreadLoopHandler().setLatencyRegistry(registry))
+                .addHandler(new DataReadHandler())
+                .addHandler(new SleepAction(0))
+                .handleNext(null);
+
+        assertThat(registry.getStatistics(SleepAction.class).getCount(), is(10L));
+        List<String> logs = OnMemoryLogWriter.getMessages("writer.appLog");
+        assertThat(logs, hasItem(containsString("handler latency summary")));
+        assertThat(logs, hasItem(containsString("name = [" + SleepAction.class.getName() + "] count = [10]")));
+    }
+
+    /** パーセンタイル値はヒストグラムの区間の上限値となること。 */
+    @Test
+    public void testPercentile() {
+        for (int i = 0; i < 99; i++) {
+            registry.record("test", 100);
+        }
+        registry.record("test", 10000);
+
+        Statistics statistics = registry.getStatistics("test");
+        assertThat(statistics.getCount(), is(100L));
+        assertThat(statistics.getTotalNanos(), is(99L * 100 + 10000));
+        assertThat(statistics.getAverageNanos(), is(199L));
+        assertThat(statistics.getPercentileNanos(50), is(127L));
+        assertThat(statistics.getPercentileNanos(99), is(127L));
+        assertThat(statistics.getPercentileNanos(100), is(10000L));
+        assertThat(statistics.getMaxNanos(), is(10000L));
+    }
+
+    /** 集計結果を破棄できること。 */
+    @Test
+    public void testReset() {
+        registry.record("test", 100);
+        registry.reset();
+        assertThat(registry.getStatistics("test"), is(nullValue()));
+        assertTrue(registry.getAllStatistics().isEmpty());
+    }
+}
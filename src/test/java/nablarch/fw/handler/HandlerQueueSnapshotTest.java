@@ -0,0 +1,82 @@
+package nablarch.fw.handler;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+
+/**
+ * {@link HandlerQueueSnapshot}のテスト。
+ */
+@SuppressWarnings("rawtypes")
+public class HandlerQueueSnapshotTest {
+
+    private static Handler<Object, Result> handler() {
+        return new Handler<Object, Result>() {
+            public Result handle(Object data, ExecutionContext ctx) {
+                return new Result.Success();
+            }
+        };
+    }
+
+    private final Handler<Object, Result> h1 = handler();
+    private final Handler<Object, Result> h2 = handler();
+    private final Handler<Object, Result> h3 = handler();
+
+    /** 後続ハンドラの呼び出しにより消費されたハンドラキューが元に戻ること。 */
+    @Test
+    public void testRestoreConsumedQueue() {
+        ExecutionContext context = new ExecutionContext().addHandler(h1).addHandler(h2).addHandler(h3);
+        List<Handler> queue = context.getHandlerQueue();
+        HandlerQueueSnapshot snapshot = new HandlerQueueSnapshot(context);
+
+        context.getNextHandler();
+        context.getNextHandler();
+        assertThat(snapshot.restore(context), is(sameInstance(context)));
+        assertThat(context.getHandlerQueue(), is(Arrays.<Handler>asList(h1, h2, h3)));
+        assertThat("ハンドラキュー自体は置き換えられないこと", context.getHandlerQueue(), is(sameInstance(queue)));
+
+        // 全て消費された場合
+        context.getNextHandler();
+        context.getNextHandler();
+        context.getNextHandler();
+        snapshot.restore(context);
+        assertThat(context.getHandlerQueue(), is(Arrays.<Handler>asList(h1, h2, h3)));
+    }
+
+    /** 後続ハンドラによりハンドラが追加された場合も、元の状態に戻ること。 */
+    @Test
+    public void testRestoreExtendedQueue() {
+        ExecutionContext context = new ExecutionContext().addHandler(h1).addHandler(h2);
+        HandlerQueueSnapshot snapshot = new HandlerQueueSnapshot(context);
+
+        context.getNextHandler();
+        context.addHandler(h3).addHandler(h3).addHandler(h3);
+        snapshot.restore(context);
+        assertThat(context.getHandlerQueue(), is(Arrays.<Handler>asList(h1, h2)));
+    }
+
+    /** スナップショット取得後にハンドラキューを変更しても、スナップショットの内容は変わらないこと。 */
+    @Test
+    public void testSnapshotIsIndependent() {
+        ExecutionContext context = new ExecutionContext().addHandler(h1);
+        HandlerQueueSnapshot snapshot = new HandlerQueueSnapshot(context);
+
+        context.getHandlerQueue().set(0, h2);
+        snapshot.restore(context);
+        assertThat(context.getHandlerQueue(), is(Arrays.<Handler>asList(h1)));
+
+        ExecutionContext empty = new ExecutionContext();
+        new HandlerQueueSnapshot(empty).restore(empty.addHandler(h1));
+        assertThat(empty.getHandlerQueue(), is((List<Handler>) new ArrayList<Handler>()));
+    }
+}
@@ -0,0 +1,390 @@
+package nablarch.fw.handler;
+
+import static nablarch.fw.handler.LoopHandlerTestSupport.reader;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import nablarch.core.transaction.Transaction;
+import nablarch.core.transaction.TransactionFactory;
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+import nablarch.fw.TransactionEventCallback;
+import nablarch.fw.handler.retry.RetryableException;
+import nablarch.test.support.log.app.OnMemoryLogWriter;
+
+/**
+ * {@link LoopHandler#setBisectingRecovery(boolean)}のテスト。
+ */
+public class LoopHandlerBisectingRecoveryTest {
+
+    /** 未コミットの書き込み */
+    private final List<Integer> pending = new ArrayList<Integer>();
+
+    /** コミット済みの書き込み */
+    private final List<Integer> committed = new ArrayList<Integer>();
+
+    /** 異常終了コールバックに渡されたレコード */
+    private final List<Integer> abnormalEnds = new ArrayList<Integer>();
+
+    /** コミット時に書き込みを確定し、ロールバック時に破棄するトランザクションファクトリ */
+    private final TransactionFactory transactionFactory = new TransactionFactory() {
+        public Transaction getTransaction(String connectionName) {
+            return new Transaction() {
+                public void begin() {
+                }
+                public void commit() {
+                    committed.addAll(pending);
+                    pending.clear();
+                }
+                public void rollback() {
+                    pending.clear();
+                }
+            };
+        }
+    };
+
+    /** 指定したレコードで例外を送出し、それ以外は書き込みを行うアクション。 */
+    private class Action implements Handler<Integer, Result>, TransactionEventCallback<Integer> {
+
+        /** 例外を送出するレコード */
+        private final Set<Integer> poison;
+
+        /** 送出する例外 */
+        private final RuntimeException error;
+
+        Action(RuntimeException error, Integer... poison) {
+            this.error = error;
+            this.poison = new HashSet<Integer>(Arrays.asList(poison));
+        }
+
+        public Result handle(Integer data, ExecutionContext ctx) {
+            pending.add(data);
+            if (poison.contains(data)) {
+                throw error;
+            }
+            return new Result.Success();
+        }
+
+        public void transactionNormalEnd(Integer data, ExecutionContext ctx) {
+        }
+
+        public void transactionAbnormalEnd(Throwable e, Integer data, ExecutionContext ctx) {
+            abnormalEnds.add(data);
+        }
+    }
+
+    private void execute(LoopHandler loopHandler, int size, Handler<?, ?> action) {
+        new ExecutionContext()
+                .setDataReader(reader(size))
+                .addHandler(loopHandler.setTransactionFactory(transactionFactory))
+                .addHandler(new DataReadHandler())
+                .addHandler(action)
+                .handleNext(null);
+    }
+
+    private static List<Integer> sorted(List<Integer> list) {
+        List<Integer> result = new ArrayList<Integer>(list);
+        Collections.sort(result);
+        return result;
+    }
+
+    @Before
+    public void setUp() {
+        OnMemoryLogWriter.clear();
+    }
+
+    /** 例外の原因となったレコードのみがスキップされ、それ以外のレコードはコミットされること。 */
+    @Test
+    public void testIsolatePoisonRecord() {
+        execute(new LoopHandler().setCommitInterval(4).setBisectingRecovery(true), 10,
+                new Action(new IllegalStateException("poison"), 6));
+
+        assertThat(committed, is(Arrays.asList(1, 2, 3, 4, 5, 7, 8, 9, 10)));
+        assertThat(abnormalEnds, is(Arrays.asList(6)));
+
+        List<String> logs = OnMemoryLogWriter.getMessages("writer.appLog");
+        assertTrue(contains(logs, "transaction was rolled back. start recovery by bisection. record count = [2]"));
+        assertTrue(contains(logs, "record was skipped because it failed even when processed alone."));
+        assertTrue(contains(logs, "input data = 6"));
+        assertTrue(contains(logs, "recovery by bisection was completed. skipped record count = [1]"));
+    }
+
+    /** 同一のコミット単位に複数の原因レコードが存在する場合も、全て特定されること。 */
+    @Test
+    public void testMultiplePoisonRecords() {
+        execute(new LoopHandler().setCommitInterval(8).setBisectingRecovery(true), 8,
+                new Action(new IllegalStateException("poison"), 2, 7));
+
+        assertThat(sorted(committed), is(Arrays.asList(1, 3, 4, 5, 6, 8)));
+        assertThat(abnormalEnds, is(Arrays.asList(2, 7)));
+    }
+
+    /** コミット時の書き込みで例外が発生した場合も、原因レコードが特定されること。 */
+    @Test
+    public void testFailureOnCommit() {
+        final CommitScopedBatchBuffer.BatchWriter<Integer> writer = new CommitScopedBatchBuffer.BatchWriter<Integer>() {
+            public void write(List<Integer> records) {
+                if (records.contains(3)) {
+                    throw new IllegalStateException("batch update failed.");
+                }
+                pending.addAll(records);
+            }
+        };
+        execute(new LoopHandler().setCommitInterval(5).setBisectingRecovery(true), 5,
+                new Handler<Integer, Result>() {
+                    public Result handle(Integer data, ExecutionContext ctx) {
+                        LoopHandler.getBatchBuffer(ctx).add(writer, data);
+                        return new Result.Success();
+                    }
+                });
+
+        assertThat(sorted(committed), is(Arrays.asList(1, 2, 4, 5)));
+    }
+
+    /** 全てのレコードが単独でも例外となる場合は、最初の例外が再送出されること。 */
+    @Test
+    public void testAllRecordsFailed() {
+        final CommitScopedBatchBuffer.BatchWriter<Integer> writer = new CommitScopedBatchBuffer.BatchWriter<Integer>() {
+            public void write(List<Integer> records) {
+                throw new IllegalStateException("database is not available.");
+            }
+        };
+        try {
+            execute(new LoopHandler().setCommitInterval(3).setBisectingRecovery(true), 6,
+                    new Handler<Integer, Result>() {
+                        public Result handle(Integer data, ExecutionContext ctx) {
+                            LoopHandler.getBatchBuffer(ctx).add(writer, data);
+                            return new Result.Success();
+                        }
+                    });
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("database is not available."));
+        }
+        assertThat(committed.isEmpty(), is(true));
+    }
+
+    /** リトライ可能な例外の場合は回復を行わずに再送出されること。 */
+    @Test
+    public void testRetryableException() {
+        try {
+            execute(new LoopHandler().setCommitInterval(4).setBisectingRecovery(true), 10,
+                    new Action(new RetryableException("retry"), 6));
+            fail();
+        } catch (RetryableException e) {
+            assertThat(e.getMessage(), is("retry"));
+        }
+        assertThat(committed, is(Arrays.asList(1, 2, 3, 4)));
+        assertThat("従来通りの異常終了コールバックが呼ばれること", abnormalEnds, is(Arrays.asList(6)));
+    }
+
+    /** 無効な場合は、従来通りロールバックして例外が再送出されること。 */
+    @Test
+    public void testDisabled() {
+        try {
+            execute(new LoopHandler().setCommitInterval(4), 10,
+                    new Action(new IllegalStateException("poison"), 6));
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("poison"));
+        }
+        assertThat(committed, is(Arrays.asList(1, 2, 3, 4)));
+        assertThat(abnormalEnds, is(Arrays.asList(6)));
+    }
+
+    /**
+     * チャンク単位で読み込む場合も、例外の原因となったレコードのみがスキップされ、
+     * コールバックには要素数1のチャンクが渡されること。
+     */
+    @Test
+    public void testChunkedRead() {
+        final List<List<Integer>> abnormalEndChunks = new ArrayList<List<Integer>>();
+        final List<Integer> poison = Arrays.asList(5, 11);
+        class ChunkAction implements Handler<List<Integer>, Result>, TransactionEventCallback<List<Integer>> {
+            public Result handle(List<Integer> data, ExecutionContext ctx) {
+                pending.addAll(data);
+                for (Integer record : data) {
+                    if (poison.contains(record)) {
+                        throw new IllegalStateException("poison");
+                    }
+                }
+                return new Result.Success();
+            }
+            public void transactionNormalEnd(List<Integer> data, ExecutionContext ctx) {
+            }
+            public void transactionAbnormalEnd(Throwable e, List<Integer> data, ExecutionContext ctx) {
+                abnormalEndChunks.add(new ArrayList<Integer>(data));
+            }
+        }
+        new ExecutionContext()
+                .setDataReader(reader(12))
+                .addHandler(new LoopHandler()
+                        .setCommitInterval(6)
+                        .setBisectingRecovery(true)
+                        .setTransactionFactory(transactionFactory))
+                .addHandler(new DataReadHandler().setChunkSize(3))
+                .addHandler(new ChunkAction())
+                .handleNext(null);
+
+        assertThat(sorted(committed), is(Arrays.asList(1, 2, 3, 4, 6, 7, 8, 9, 10, 12)));
+        assertThat(abnormalEndChunks, is(Arrays.asList(Arrays.asList(5), Arrays.asList(11))));
+        List<String> logs = OnMemoryLogWriter.getMessages("writer.appLog");
+        assertTrue(contains(logs, "transaction was rolled back. start recovery by bisection. record count = [6]"));
+    }
+
+    /**
+     * データリーダからの読み込みで例外が発生した場合は、原因のレコードを特定できないため、
+     * 回復を行わずに例外が再送出されること。
+     */
+    @Test
+    public void testReadFailure() {
+        final DataReader<Integer> delegate = reader(10);
+        DataReader<Integer> failingReader = new DataReader<Integer>() {
+            public Integer read(ExecutionContext ctx) {
+                Integer data = delegate.read(ctx);
+                if (data == 7) {
+                    throw new IllegalStateException("read failed.");
+                }
+                return data;
+            }
+            public boolean hasNext(ExecutionContext ctx) {
+                return delegate.hasNext(ctx);
+            }
+            public void close(ExecutionContext ctx) {
+            }
+        };
+        try {
+            new ExecutionContext()
+                    .setDataReader(failingReader)
+                    .addHandler(new LoopHandler()
+                            .setCommitInterval(4)
+                            .setBisectingRecovery(true)
+                            .setTransactionFactory(transactionFactory))
+                    .addHandler(new DataReadHandler())
+                    .addHandler(new Action(new IllegalStateException("poison")))
+                    .handleNext(null);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("read failed."));
+        }
+        assertThat(committed, is(Arrays.asList(1, 2, 3, 4)));
+        assertThat(abnormalEnds.isEmpty(), is(true));
+    }
+
+    /**
+     * 再実行で全てのレコードが正常に処理できた場合は、コミットした上で最初の例外が再送出され、
+     * 異常終了のコールバックは呼び出されないこと。
+     */
+    @Test
+    public void testNoRecordFailedOnReplay() {
+        final RuntimeException error = new IllegalStateException("transient error");
+        Action action = new Action(error) {
+            private boolean failed = false;
+            @Override
+            public Result handle(Integer data, ExecutionContext ctx) {
+                pending.add(data);
+                if (data == 6 && !failed) {
+                    failed = true;
+                    throw error;
+                }
+                return new Result.Success();
+            }
+        };
+        try {
+            execute(new LoopHandler().setCommitInterval(4).setBisectingRecovery(true), 10, action);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e, is(error));
+        }
+        assertThat(committed, is(Arrays.asList(1, 2, 3, 4, 5, 6)));
+        assertThat(abnormalEnds.isEmpty(), is(true));
+    }
+
+    /**
+     * 再実行では、読み込み回数の上限と読み込み件数の計数が重複して行われないこと。
+     */
+    @Test
+    public void testReplayIsNotCountedAsRead() {
+        ProgressReporter reporter = new ProgressReporter();
+        new ExecutionContext()
+                .setDataReader(reader(10))
+                .addHandler(new LoopHandler()
+                        .setCommitInterval(4)
+                        .setBisectingRecovery(true)
+                        .setTransactionFactory(transactionFactory))
+                .addHandler(new DataReadHandler().setMaxCount(6).setProgressReporter(reporter))
+                .addHandler(new Action(new IllegalStateException("poison"), 6))
+                .handleNext(null);
+
+        assertThat("上限に達した後も再実行するレコードが処理されること", committed, is(Arrays.asList(1, 2, 3, 4, 5)));
+        assertThat(abnormalEnds, is(Arrays.asList(6)));
+        assertThat(reporter.getProgress().getProcessedCount(), is(6L));
+    }
+
+    /**
+     * 回復中は再実行したレコードのコミット毎に、先頭から処理が確定したレコードの件数がチェックポイントとして保存され、
+     * スキップしたレコードの異常終了コールバックは後続のレコードと同一トランザクションでコミットされること。
+     */
+    @Test
+    public void testCheckpointDuringRecovery() {
+        final List<Long> positions = new ArrayList<Long>();
+        CheckpointStore store = new CheckpointStore() {
+            public Long load(String checkpointId) {
+                return null;
+            }
+            public void save(String checkpointId, long position) {
+                positions.add(position);
+            }
+        };
+        // 4は最初の処理でのみ例外となり、2は再実行時にのみ例外となる。
+        Action action = new Action(new IllegalStateException("poison")) {
+            private int count = 0;
+            @Override
+            public Result handle(Integer data, ExecutionContext ctx) {
+                pending.add(data);
+                count++;
+                if ((data == 4 && count == 4) || (data == 2 && count > 4)) {
+                    throw new IllegalStateException("poison");
+                }
+                return new Result.Success();
+            }
+            @Override
+            public void transactionAbnormalEnd(Throwable e, Integer data, ExecutionContext ctx) {
+                super.transactionAbnormalEnd(e, data, ctx);
+                pending.add(-data);
+            }
+        };
+        execute(new LoopHandler()
+                .setCommitInterval(10)
+                .setBisectingRecovery(true)
+                .setCheckpointStore(store)
+                .setCheckpointId("test"), 6, action);
+
+        assertThat(committed, is(Arrays.asList(1, 3, 4, -2, 5, 6)));
+        assertThat(abnormalEnds, is(Arrays.asList(2)));
+        assertThat(positions, is(Arrays.asList(1L, 4L, 6L, CheckpointStore.COMPLETED)));
+    }
+
+    private static boolean contains(List<String> logs, String expected) {
+        for (String log : logs) {
+            if (log.contains(expected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,298 @@
+package nablarch.fw.handler;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import nablarch.common.handler.DbConnectionManagementHandler;
+import nablarch.core.db.connection.AppDbConnection;
+import nablarch.core.db.connection.DbConnectionContext;
+import nablarch.core.db.statement.SqlPStatement;
+import nablarch.core.db.statement.SqlResultSet;
+import nablarch.core.transaction.TransactionFactory;
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+import nablarch.test.support.SystemRepositoryResource;
+import nablarch.test.support.db.helper.DatabaseTestRunner;
+import nablarch.test.support.db.helper.VariousDbTestHelper;
+import nablarch.test.support.log.app.OnMemoryLogWriter;
+
+/**
+ * {@link LoopHandler#setCheckpointStore(CheckpointStore)}のテスト。
+ */
+@RunWith(DatabaseTestRunner.class)
+public class LoopHandlerCheckpointTest {
+
+    @Rule
+    public SystemRepositoryResource repositoryResource = new SystemRepositoryResource("nablarch/fw/handler/LoopHandlerTest.xml");
+
+    /** テーブルを使用するチェックポイントの保存先。 */
+    private static class DbCheckpointStore implements CheckpointStore {
+
+        public Long load(String checkpointId) {
+            SqlPStatement statement = DbConnectionContext.getConnection().prepareStatement(
+                    "SELECT POSITION FROM HANDLER_CHECKPOINT WHERE CHECKPOINT_ID = ?");
+            statement.setString(1, checkpointId);
+            SqlResultSet rs = statement.retrieve();
+            return rs.isEmpty() ? null : rs.get(0).getLong("POSITION");
+        }
+
+        public void save(String checkpointId, long position) {
+            AppDbConnection connection = DbConnectionContext.getConnection();
+            SqlPStatement update = connection.prepareStatement(
+                    "UPDATE HANDLER_CHECKPOINT SET POSITION = ? WHERE CHECKPOINT_ID = ?");
+            update.setLong(1, position);
+            update.setString(2, checkpointId);
+            if (update.executeUpdate() == 0) {
+                SqlPStatement insert = connection.prepareStatement(
+                        "INSERT INTO HANDLER_CHECKPOINT (CHECKPOINT_ID, POSITION) VALUES (?, ?)");
+                insert.setString(1, checkpointId);
+                insert.setLong(2, position);
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    /** 指定したレコードで例外を送出し、それ以外はテーブルに登録するアクション。 */
+    private static class InsertAction implements Handler<String, Result> {
+
+        /** 例外を送出するレコード */
+        private final String poison;
+
+        InsertAction(String poison) {
+            this.poison = poison;
+        }
+
+        public Result handle(String data, ExecutionContext ctx) {
+            SqlPStatement statement = DbConnectionContext.getConnection().prepareStatement(
+                    "INSERT INTO HANDLER_TEST_TABLE (COL1) VALUES (?)");
+            statement.setString(1, data);
+            statement.executeUpdate();
+            if (data.equals(poison)) {
+                throw new IllegalStateException("poison record. data = [" + data + ']');
+            }
+            return new Result.Success();
+        }
+    }
+
+    /** "00001"から指定件数までの文字列を返すデータリーダ。 */
+    private static DataReader<String> reader(final int size) {
+        return new DataReader<String>() {
+            private int count = 0;
+            public synchronized String read(ExecutionContext ctx) {
+                return count < size ? String.format("%05d", ++count) : null;
+            }
+            public synchronized boolean hasNext(ExecutionContext ctx) {
+                return count < size;
+            }
+            public void close(ExecutionContext ctx) {
+            }
+        };
+    }
+
+    /** データ自体を振り分けキーとする。 */
+    private static final PartitionKeyExtractor EXTRACTOR = new PartitionKeyExtractor() {
+        public Object extractKey(Object data) {
+            return data;
+        }
+    };
+
+    @BeforeClass
+    public static void beforeClass() {
+        VariousDbTestHelper.createTable(HandlerTestTable.class);
+        VariousDbTestHelper.createTable(HandlerCheckpoint.class);
+    }
+
+    @Before
+    public void setUp() {
+        VariousDbTestHelper.delete(HandlerTestTable.class);
+        VariousDbTestHelper.delete(HandlerCheckpoint.class);
+        OnMemoryLogWriter.clear();
+    }
+
+    private LoopHandler loopHandler(int commitInterval) {
+        TransactionFactory factory = repositoryResource.getComponent("jdbcTransactionFactory");
+        return new LoopHandler()
+                .setTransactionFactory(factory)
+                .setCommitInterval(commitInterval)
+                .setCheckpointStore(new DbCheckpointStore())
+                .setCheckpointId("checkpointTest");
+    }
+
+    private DbConnectionManagementHandler dbConnectionManagementHandler() {
+        return repositoryResource.getComponent("dbConnectionManagementHandler");
+    }
+
+    private Map<String, Long> checkpoints() throws SQLException {
+        Map<String, Long> result = new HashMap<String, Long>();
+        Connection connection = VariousDbTestHelper.getNativeConnection();
+        try {
+            ResultSet rs = connection.createStatement().executeQuery(
+                    "SELECT CHECKPOINT_ID, POSITION FROM HANDLER_CHECKPOINT");
+            while (rs.next()) {
+                result.put(rs.getString(1), rs.getLong(2));
+            }
+        } finally {
+            connection.close();
+        }
+        return result;
+    }
+
+    /** 異常終了後の再実行で、コミット済みのレコードが読み飛ばされること。 */
+    @Test
+    public void testRestart() throws Exception {
+        try {
+            new ExecutionContext()
+                    .setDataReader(reader(10))
+                    .addHandler(dbConnectionManagementHandler())
+                    .addHandler(loopHandler(3))
+                    .addHandler(new DataReadHandler())
+                    .addHandler(new InsertAction("00007"))
+                    .handleNext(null);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("poison record. data = [00007]"));
+        }
+        assertThat(VariousDbTestHelper.findAll(HandlerTestTable.class).size(), is(6));
+        assertThat(checkpoints().get("checkpointTest"), is(6L));
+
+        // 再実行(コミット済みのレコードを再度登録すると一意制約違反となる)
+        new ExecutionContext()
+                .setDataReader(reader(10))
+                .addHandler(dbConnectionManagementHandler())
+                .addHandler(loopHandler(3))
+                .addHandler(new DataReadHandler())
+                .addHandler(new InsertAction(null))
+                .handleNext(null);
+        assertThat(VariousDbTestHelper.findAll(HandlerTestTable.class).size(), is(10));
+        assertThat(checkpoints().get("checkpointTest"), is(CheckpointStore.COMPLETED));
+        assertTrue(contains(OnMemoryLogWriter.getMessages("writer.appLog"),
+                "restarted from checkpoint. checkpoint id = [checkpointTest], skipped record count = [6]"));
+
+        // 正常終了後の実行では、先頭から処理されること。
+        VariousDbTestHelper.delete(HandlerTestTable.class);
+        OnMemoryLogWriter.clear();
+        new ExecutionContext()
+                .setDataReader(reader(10))
+                .addHandler(dbConnectionManagementHandler())
+                .addHandler(loopHandler(3))
+                .addHandler(new DataReadHandler())
+                .addHandler(new InsertAction(null))
+                .handleNext(null);
+        assertThat(VariousDbTestHelper.findAll(HandlerTestTable.class).size(), is(10));
+        assertThat(contains(OnMemoryLogWriter.getMessages("writer.appLog"), "restarted from checkpoint."), is(false));
+    }
+
+    /**
+     * {@link MultiThreadExecutionHandler}で振り分けを行う場合、スレッド毎にチェックポイントが保存され、
+     * 再実行時にはスレッド毎にコミット済みのレコードが読み飛ばされること。
+     * <p/>
+     * 前回の実行は、各レーンを順に単一スレッドで処理することで再現する。
+     * レーン0とレーン1は途中で異常終了し、レーン2は処理を開始する前に終了したものとする。
+     */
+    @Test
+    public void testRestartWithMultiThread() throws Exception {
+        PartitionedDataReader<String> partitioned = new PartitionedDataReader<String>(reader(30), EXTRACTOR, 3);
+        for (int lane = 0; lane < 2; lane++) {
+            partitioned.bindLane(lane);
+            // 各レーンの5件目で異常終了させる(コミット間隔2のため4件がコミット済みとなる)
+            final int[] count = {0};
+            try {
+                ExecutionContext ctx = new ExecutionContext()
+                        .setDataReader(partitioned)
+                        .addHandler(dbConnectionManagementHandler())
+                        .addHandler(loopHandler(2))
+                        .addHandler(new DataReadHandler())
+                        .addHandler(new InsertAction(null) {
+                            @Override
+                            public Result handle(String data, ExecutionContext ctx) {
+                                super.handle(data, ctx);
+                                if (++count[0] == 5) {
+                                    throw new IllegalStateException("abnormal end.");
+                                }
+                                return new Result.Success();
+                            }
+                        });
+                ctx.setRequestScopedVar(MultiThreadExecutionHandler.LANE_COUNT_KEY, 3);
+                ctx.setRequestScopedVar(MultiThreadExecutionHandler.LANE_KEY, lane);
+                ctx.handleNext(null);
+                fail();
+            } catch (IllegalStateException e) {
+                assertThat(e.getMessage(), is("abnormal end."));
+            }
+        }
+        partitioned.unbindLane();
+        assertThat(VariousDbTestHelper.findAll(HandlerTestTable.class).size(), is(8));
+        Map<String, Long> checkpoints = checkpoints();
+        assertThat(checkpoints.get("checkpointTest#0"), is(4L));
+        assertThat(checkpoints.get("checkpointTest#1"), is(4L));
+        assertThat(checkpoints.containsKey("checkpointTest#2"), is(false));
+
+        // 再実行
+        Result.MultiStatus result = new ExecutionContext()
+                .setDataReader(reader(30))
+                .addHandler(new MultiThreadExecutionHandler()
+                        .setConcurrentNumber(3)
+                        .setPartitionKeyExtractor(EXTRACTOR))
+                .addHandler(dbConnectionManagementHandler())
+                .addHandler(loopHandler(2))
+                .addHandler(new DataReadHandler())
+                .addHandler(new InsertAction(null))
+                .handleNext(null);
+
+        assertTrue(result.isSuccess());
+        assertThat(VariousDbTestHelper.findAll(HandlerTestTable.class).size(), is(30));
+        checkpoints = checkpoints();
+        for (int lane = 0; lane < 3; lane++) {
+            assertThat(checkpoints.get("checkpointTest#" + lane), is(CheckpointStore.COMPLETED));
+        }
+        List<String> logs = OnMemoryLogWriter.getMessages("writer.appLog");
+        assertTrue(contains(logs, "checkpoint id = [checkpointTest#0], skipped record count = [4]"));
+        assertTrue(contains(logs, "checkpoint id = [checkpointTest#1], skipped record count = [4]"));
+        assertThat(contains(logs, "checkpoint id = [checkpointTest#2]"), is(false));
+    }
+
+    /** 振り分けを行わずに複数スレッドで処理する場合は例外が送出されること。 */
+    @Test
+    public void testMultiThreadWithoutPartitioning() {
+        ExecutionContext ctx = new ExecutionContext()
+                .setDataReader(reader(10))
+                .addHandler(dbConnectionManagementHandler())
+                .addHandler(loopHandler(2))
+                .addHandler(new DataReadHandler())
+                .addHandler(new InsertAction(null));
+        ctx.setRequestScopedVar(MultiThreadExecutionHandler.LANE_COUNT_KEY, 2);
+        try {
+            ctx.handleNext(null);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("checkpoint requires records to be partitioned when processed by multiple threads. "
+                    + "set partitionKeyExtractor to MultiThreadExecutionHandler."));
+        }
+    }
+
+    private static boolean contains(List<String> logs, String expected) {
+        for (String log : logs) {
+            if (log.contains(expected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
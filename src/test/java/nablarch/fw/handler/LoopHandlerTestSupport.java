@@ -0,0 +1,77 @@
+package nablarch.fw.handler;
+
+import java.util.List;
+
+import nablarch.core.transaction.Transaction;
+import nablarch.core.transaction.TransactionFactory;
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+
+/**
+ * ループ制御ハンドラのテストで共通に使用するデータリーダとトランザクションファクトリ。
+ */
+final class LoopHandlerTestSupport {
+
+    /** 何もしないトランザクションファクトリ */
+    static final TransactionFactory NOP_TRANSACTION_FACTORY = new TransactionFactory() {
+        public Transaction getTransaction(String connectionName) {
+            return new Transaction() {
+                public void begin() {
+                }
+                public void commit() {
+                }
+                public void rollback() {
+                }
+            };
+        }
+    };
+
+    /** 隠蔽コンストラクタ。 */
+    private LoopHandlerTestSupport() {
+    }
+
+    /**
+     * コミットとロールバックを"commit"、"rollback"として記録するトランザクションファクトリを生成する。
+     *
+     * @param events 記録先
+     * @return トランザクションファクトリ
+     */
+    static TransactionFactory recordingTransactionFactory(final List<String> events) {
+        return new TransactionFactory() {
+            public Transaction getTransaction(String connectionName) {
+                return new Transaction() {
+                    public void begin() {
+                    }
+                    public void commit() {
+                        events.add("commit");
+                    }
+                    public void rollback() {
+                        events.add("rollback");
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * 1から指定件数までの整数を返すデータリーダを生成する。
+     * <p/>
+     * 複数スレッドから使用できる。
+     *
+     * @param size 件数
+     * @return データリーダ
+     */
+    static DataReader<Integer> reader(final int size) {
+        return new DataReader<Integer>() {
+            private int count = 0;
+            public synchronized Integer read(ExecutionContext ctx) {
+                return count < size ? ++count : null;
+            }
+            public synchronized boolean hasNext(ExecutionContext ctx) {
+                return count < size;
+            }
+            public void close(ExecutionContext ctx) {
+            }
+        };
+    }
+}
@@ -14,6 +14,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
@@ -972,6 +973,81 @@ public class MultiThreadExecutionHandlerTest {
         sut.handle(null, originalContext);
     }
 
+    /**
+     * 仮想スレッドの使用を有効にした場合の検証。
+     * <p/>
+     * 仮想スレッドをサポートする実行環境では仮想スレッドで、サポートしない実行環境では
+     * 通常のスレッドプールで実行され、いずれの環境でも同じ処理結果となること。
+     */
+    @Test
+    public void testUseVirtualThreads() {
+        final AtomicInteger processed = new AtomicInteger();
+        final Set<Boolean> virtualFlags = Collections.synchronizedSet(new HashSet<Boolean>());
+        final Set<Integer> concurrentNumbers = Collections.synchronizedSet(new HashSet<Integer>());
+
+        final MultiThreadExecutionHandler sut = new MultiThreadExecutionHandler()
+                .setConcurrentNumber(50)
+                .setUseVirtualThreads(true);
+
+        ExecutionContext context = new ExecutionContext()
+                .setDataReader(new DataReader<Integer>() {
+                    private int count = 0;
+                    @Override
+                    public synchronized Integer read(ExecutionContext ctx) {
+                        return count < 1000 ? ++count : null;
+                    }
+                    @Override
+                    public synchronized boolean hasNext(ExecutionContext ctx) {
+                        return count < 1000;
+                    }
+                    @Override
+                    public void close(ExecutionContext ctx) {
+                        // nop
+                    }
+                })
+                .addHandler(sut)
+                .addHandler(new DbLessLoopHandler())
+                .addHandler(new DataReadHandler())
+                .addHandler(new Handler<Integer, Result>() {
+                    @Override
+                    public Result handle(Integer data, ExecutionContext ctx) {
+                        virtualFlags.add(isVirtual(Thread.currentThread()));
+                        concurrentNumbers.add(nablarch.core.ThreadContext.getConcurrentNumber());
+                        processed.incrementAndGet();
+                        return new Result.Success();
+                    }
+                });
+
+        Result.MultiStatus result = context.handleNext(null);
+
+        assertEquals(50, result.getResults().size());
+        assertTrue(result.isSuccess());
+        assertEquals(1000, processed.get());
+        assertEquals(Collections.singleton(virtualThreadsSupported()), virtualFlags);
+        assertEquals(Collections.singleton(50), concurrentNumbers);
+    }
+
+    /** 実行環境が仮想スレッドをサポートしているか否か。 */
+    private static boolean virtualThreadsSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /** 仮想スレッドか否か。(仮想スレッドをサポートしない実行環境では常に{@code false}) */
+    private static boolean isVirtual(Thread thread) {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (NoSuchMethodException e) {
+            return false;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private ExecutionContext createExecutionContext() {
         return new ExecutionContext()
               .setDataReaderFactory(action)
@@ -0,0 +1,163 @@
+package nablarch.fw.handler;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+
+/**
+ * {@link PartitionedDataReader}のテスト。
+ */
+public class PartitionedDataReaderTest {
+
+    /** 口座番号と連番を持つデータを返すデータリーダ。 */
+    private static class AccountReader implements DataReader<Map<String, Object>> {
+        private final LinkedList<Map<String, Object>> records = new LinkedList<Map<String, Object>>();
+        private boolean closed = false;
+
+        AccountReader(int accounts, int recordsPerAccount) {
+            for (int seq = 0; seq < recordsPerAccount; seq++) {
+                for (int account = 0; account < accounts; account++) {
+                    Map<String, Object> record = new HashMap<String, Object>();
+                    record.put("account", "acct" + account);
+                    record.put("seq", seq);
+                    records.add(record);
+                }
+            }
+        }
+
+        public synchronized Map<String, Object> read(ExecutionContext ctx) {
+            return records.isEmpty() ? null : records.removeFirst();
+        }
+
+        public synchronized boolean hasNext(ExecutionContext ctx) {
+            return !records.isEmpty();
+        }
+
+        public void close(ExecutionContext ctx) {
+            closed = true;
+        }
+    }
+
+    /** 同じ振り分けキーのデータが、同一スレッドで読み込み順に処理されること。 */
+    @Test
+    public void testPerKeyOrdering() {
+        final Map<Object, List<Integer>> processedSeq = new HashMap<Object, List<Integer>>();
+        final Map<Object, Set<String>> processedThreads = new HashMap<Object, Set<String>>();
+        AccountReader reader = new AccountReader(20, 50);
+
+        MapPartitionKeyExtractor extractor = new MapPartitionKeyExtractor();
+        extractor.setKeyName("account");
+
+        MultiThreadExecutionHandler executor = new MultiThreadExecutionHandler()
+                .setConcurrentNumber(4)
+                .setPartitionKeyExtractor(extractor);
+
+        ExecutionContext context = new ExecutionContext()
+                .setDataReader(reader)
+                .addHandler(executor)
+                .addHandler(new DbLessLoopHandler())
+                .addHandler(new DataReadHandler())
+                .addHandler(new Handler<Map<String, Object>, Result>() {
+                    public Result handle(Map<String, Object> data, ExecutionContext ctx) {
+                        Object account = data.get("account");
+                        synchronized (processedSeq) {
+                            if (!processedSeq.containsKey(account)) {
+                                processedSeq.put(account, new ArrayList<Integer>());
+                                processedThreads.put(account, new HashSet<String>());
+                            }
+                            processedSeq.get(account).add((Integer) data.get("seq"));
+                            processedThreads.get(account).add(Thread.currentThread().getName());
+                        }
+                        return new Result.Success();
+                    }
+                });
+
+        Result.MultiStatus result = context.handleNext(null);
+
+        assertThat(result.getResults().size(), is(4));
+        assertThat(processedSeq.size(), is(20));
+        for (Map.Entry<Object, List<Integer>> entry : processedSeq.entrySet()) {
+            List<Integer> seq = entry.getValue();
+            assertThat(seq.size(), is(50));
+            for (int i = 0; i < seq.size(); i++) {
+                assertThat("読み込み順に処理されること: " + entry.getKey(), seq.get(i), is(i));
+            }
+            assertThat("同一スレッドで処理されること: " + entry.getKey(),
+                    processedThreads.get(entry.getKey()).size(), is(1));
+        }
+        assertThat(reader.closed, is(true));
+    }
+
+    /** 未処理データ件数の上限に達しても、全てのデータが処理されること。 */
+    @Test(timeout = 10000)
+    public void testSmallBuffer() throws Exception {
+        AccountReader reader = new AccountReader(7, 30);
+        PartitionKeyExtractor extractor = new PartitionKeyExtractor() {
+            public Object extractKey(Object data) {
+                return ((Map<?, ?>) data).get("account");
+            }
+        };
+        final PartitionedDataReader<Map<String, Object>> sut =
+                new PartitionedDataReader<Map<String, Object>>(reader, extractor, 3).setBufferSize(1);
+        final ExecutionContext ctx = new ExecutionContext();
+        final AtomicInteger count = new AtomicInteger();
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 3; i++) {
+            final int lane = i;
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    sut.bindLane(lane);
+                    while (sut.hasNext(ctx)) {
+                        sut.read(ctx);
+                        count.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(sut.hasNext(ctx), is(false));
+        assertThat(count.get(), is(210));
+    }
+
+    /** レーンが割り当てられていないスレッドから読み込んだ場合は例外が送出されること。 */
+    @Test
+    public void testReadWithoutLane() {
+        PartitionedDataReader<Map<String, Object>> sut = new PartitionedDataReader<Map<String, Object>>(
+                new AccountReader(1, 1), new MapPartitionKeyExtractor(), 2);
+        ExecutionContext ctx = new ExecutionContext();
+        assertThat(sut.hasNext(ctx), is(true));
+        try {
+            sut.read(ctx);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage().startsWith("no lane is bound to the current thread."), is(true));
+        }
+    }
+
+    /** {@link MapPartitionKeyExtractor}にMap以外のデータを渡した場合は例外が送出されること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMapPartitionKeyExtractorWithNonMapData() {
+        new MapPartitionKeyExtractor().extractKey("not a map");
+    }
+}
@@ -0,0 +1,241 @@
+package nablarch.fw.handler;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+
+/**
+ * {@link PrefetchDataReader}のテスト。
+ */
+public class PrefetchDataReaderTest {
+
+    /** 指定件数のデータを返すデータリーダ。 */
+    private static class CountingReader implements DataReader<String> {
+        private final int total;
+        private final AtomicInteger readCount = new AtomicInteger();
+        private volatile boolean closed = false;
+
+        CountingReader(int total) {
+            this.total = total;
+        }
+
+        public String read(ExecutionContext ctx) {
+            return String.valueOf(readCount.incrementAndGet());
+        }
+
+        public boolean hasNext(ExecutionContext ctx) {
+            return readCount.get() < total;
+        }
+
+        public void close(ExecutionContext ctx) {
+            closed = true;
+        }
+    }
+
+    /** 全てのデータが読み込み順に取得できること。 */
+    @Test
+    public void testReadAll() {
+        CountingReader delegate = new CountingReader(50);
+        PrefetchDataReader<String> sut = new PrefetchDataReader<String>(delegate).setBufferSize(5);
+        ExecutionContext ctx = new ExecutionContext();
+
+        for (int i = 1; i <= 50; i++) {
+            assertThat(sut.hasNext(ctx), is(true));
+            assertThat(sut.read(ctx), is(String.valueOf(i)));
+        }
+        assertThat(sut.hasNext(ctx), is(false));
+        assertThat(sut.read(ctx), is((String) null));
+
+        sut.close(ctx);
+        assertThat(delegate.closed, is(true));
+    }
+
+    /** 先読み件数の上限に達した場合、読み込みスレッドが待機すること。 */
+    @Test
+    public void testBufferSizeLimit() throws Exception {
+        CountingReader delegate = new CountingReader(100);
+        PrefetchDataReader<String> sut = new PrefetchDataReader<String>(delegate).setBufferSize(3);
+        ExecutionContext ctx = new ExecutionContext();
+
+        assertThat(sut.hasNext(ctx), is(true));
+        TimeUnit.MILLISECONDS.sleep(200);
+        // キューに3件 + 格納待ちの1件
+        assertThat(delegate.readCount.get(), is(4));
+
+        sut.read(ctx);
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertThat(delegate.readCount.get(), is(5));
+        sut.close(ctx);
+    }
+
+    /** 先読みバイト数の上限に達した場合、読み込みスレッドが待機すること。 */
+    @Test
+    public void testBufferBytesLimit() throws Exception {
+        CountingReader delegate = new CountingReader(100);
+        PrefetchDataReader<String> sut = new PrefetchDataReader<String>(delegate)
+                .setBufferSize(100)
+                .setBufferBytes(20)
+                .setSizeEstimator(new SizeEstimator() {
+                    public long estimate(Object data) {
+                        return 10;
+                    }
+                });
+        ExecutionContext ctx = new ExecutionContext();
+
+        assertThat(sut.hasNext(ctx), is(true));
+        TimeUnit.MILLISECONDS.sleep(200);
+        // キューに2件(20バイト) + 格納待ちの1件
+        assertThat(delegate.readCount.get(), is(3));
+        sut.close(ctx);
+    }
+
+    /** 先読みバイト数の上限を設定していない場合、データサイズの見積りが行われないこと。 */
+    @Test
+    public void testNoEstimationWithoutBufferBytes() {
+        final AtomicInteger estimated = new AtomicInteger();
+        PrefetchDataReader<String> sut = new PrefetchDataReader<String>(new CountingReader(10))
+                .setSizeEstimator(new SizeEstimator() {
+                    public long estimate(Object data) {
+                        estimated.incrementAndGet();
+                        return 10;
+                    }
+                });
+        ExecutionContext ctx = new ExecutionContext();
+
+        int count = 0;
+        while (sut.hasNext(ctx)) {
+            sut.read(ctx);
+            count++;
+        }
+        sut.close(ctx);
+        assertThat(count, is(10));
+        assertThat(estimated.get(), is(0));
+    }
+
+    /** 読み込みスレッドで発生した例外が呼び出し元で送出されること。 */
+    @Test
+    public void testErrorInDelegate() {
+        PrefetchDataReader<String> sut = new PrefetchDataReader<String>(new CountingReader(10) {
+            @Override
+            public String read(ExecutionContext ctx) {
+                throw new IllegalStateException("read error");
+            }
+        });
+        ExecutionContext ctx = new ExecutionContext();
+        try {
+            sut.hasNext(ctx);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("read error"));
+        }
+        sut.close(ctx);
+    }
+
+    /** {@link MultiThreadExecutionHandler}で先読みを有効にした場合に全てのデータが処理されること。 */
+    @Test
+    public void testMultiThreadExecutionHandlerWithPrefetch() {
+        final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+        final CountingReader delegate = new CountingReader(500);
+
+        MultiThreadExecutionHandler executor = new MultiThreadExecutionHandler()
+                .setConcurrentNumber(8)
+                .setPrefetchSize(16);
+
+        ExecutionContext context = new ExecutionContext()
+                .setDataReader(delegate)
+                .addHandler(executor)
+                .addHandler(new DbLessLoopHandler())
+                .addHandler(new DataReadHandler())
+                .addHandler(new Handler<String, Result>() {
+                    public Result handle(String data, ExecutionContext ctx) {
+                        assertTrue(ctx.getDataReader() instanceof PrefetchDataReader);
+                        processed.add(data);
+                        return new Result.Success();
+                    }
+                });
+        Result.MultiStatus result = context.handleNext(null);
+
+        assertThat(result.getResults().size(), is(8));
+        assertThat(processed.size(), is(500));
+        assertThat(delegate.closed, is(true));
+    }
+
+    /**
+     * 読み込みスレッドが委譲先から読み込み中の場合、読み込みが終了するまで委譲先が閉じられず、
+     * クローズ要求時の実行コンテキストを使用して読み込みスレッド上で閉じられること。
+     */
+    @Test(timeout = 10000)
+    public void testCloseWhileReading() throws Exception {
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final List<ExecutionContext> closeContexts = new ArrayList<ExecutionContext>();
+        final PrefetchDataReader<String> sut = new PrefetchDataReader<String>(new CountingReader(10) {
+            @Override
+            public String read(ExecutionContext ctx) {
+                reading.countDown();
+                // 割り込みに応答しない読み込み
+                while (true) {
+                    try {
+                        release.await();
+                        break;
+                    } catch (InterruptedException ignored) {
+                        events.add("interrupted");
+                    }
+                }
+                events.add("read");
+                return super.read(ctx);
+            }
+            @Override
+            public void close(ExecutionContext ctx) {
+                events.add("close on " + Thread.currentThread().getName().startsWith("prefetch-"));
+                closeContexts.add(ctx);
+            }
+        });
+        new Thread(new Runnable() {
+            public void run() {
+                sut.hasNext(new ExecutionContext());
+            }
+        }).start();
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+        final ExecutionContext closeContext = new ExecutionContext();
+        Thread closer = new Thread(new Runnable() {
+            public void run() {
+                sut.close(closeContext);
+            }
+        });
+        closer.start();
+        closer.join(200);
+        assertTrue("読み込み中は復帰しないこと", closer.isAlive());
+        assertThat(events, is(Arrays.asList("interrupted")));
+
+        release.countDown();
+        closer.join();
+        assertThat(events, is(Arrays.asList("interrupted", "read", "close on true")));
+        assertSame(closeContext, closeContexts.get(0));
+    }
+
+    /** 委譲先にnullを指定した場合は例外が送出されること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullDelegate() {
+        new PrefetchDataReader<String>(null);
+    }
+}
@@ -0,0 +1,92 @@
+package nablarch.fw.handler;
+
+import static com.jayway.jsonpath.matchers.JsonPathMatchers.hasNoJsonPath;
+import static com.jayway.jsonpath.matchers.JsonPathMatchers.isJson;
+import static com.jayway.jsonpath.matchers.JsonPathMatchers.withJsonPath;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import nablarch.core.log.LogTestSupport;
+import nablarch.fw.handler.ProgressReporter.Progress;
+
+/**
+ * {@link ProgressJsonLogFormatter}のテストクラス。
+ */
+public class ProgressJsonLogFormatterTest extends LogTestSupport {
+
+    /**
+     * デフォルトの出力項目で正しくフォーマットされること。
+     */
+    @Test
+    public void testGetProgressLogMsg() {
+        ProgressLogFormatter formatter = new ProgressJsonLogFormatter();
+
+        String message = formatter.getProgressLogMsg(new Progress(250, 200, 1000, 25000, 10.0, 100000));
+        assertThat(message.startsWith("$JSON$"), is(true));
+        assertThat(message.substring("$JSON$".length()), isJson(allOf(
+                withJsonPath("$", hasEntry("label", "BATCH PROGRESS")),
+                withJsonPath("$", hasEntry("processedCount", 250)),
+                withJsonPath("$", hasEntry("committedCount", 200)),
+                withJsonPath("$", hasEntry("totalCount", 1000)),
+                withJsonPath("$", hasEntry("progressRate", 25.0)),
+                withJsonPath("$", hasEntry("throughput", 10.0)),
+                withJsonPath("$", hasEntry("averageLatency", 100000)),
+                withJsonPath("$", hasEntry("elapsedTime", 25000)),
+                withJsonPath("$", hasEntry("estimatedRemainingTime", 75000)))));
+    }
+
+    /**
+     * 総件数が分からない場合は、総件数、進捗率及び残り時間の見込みが出力されないこと。
+     */
+    @Test
+    public void testGetProgressLogMsgWithUnknownTotalCount() {
+        ProgressLogFormatter formatter = new ProgressJsonLogFormatter();
+
+        String message = formatter.getProgressLogMsg(new Progress(10, 10, -1, 1000, 10.0, 100));
+        assertThat(message.substring("$JSON$".length()), isJson(allOf(
+                withJsonPath("$", hasEntry("processedCount", 10)),
+                hasNoJsonPath("$.totalCount"),
+                hasNoJsonPath("$.progressRate"),
+                hasNoJsonPath("$.estimatedRemainingTime"))));
+    }
+
+    /**
+     * 出力項目とラベルを指定できること。
+     */
+    @Test
+    public void testGetProgressLogMsgWithTargets() {
+        System.setProperty("progressLogFormatter.targets", "label,processedCount ,, processedCount");
+        System.setProperty("progressLogFormatter.label", "progress-label");
+
+        ProgressLogFormatter formatter = new ProgressJsonLogFormatter();
+
+        String message = formatter.getProgressLogMsg(new Progress(250, 200, 1000, 25000, 10.0, 100000));
+        assertThat(message.substring("$JSON$".length()), isJson(allOf(
+                withJsonPath("$", hasEntry("label", "progress-label")),
+                withJsonPath("$", hasEntry("processedCount", 250)),
+                hasNoJsonPath("$.committedCount"),
+                hasNoJsonPath("$.throughput"))));
+    }
+
+    /**
+     * 不正な出力項目を指定した場合は例外が送出されること。
+     */
+    @Test
+    public void testIllegalTargets() {
+        System.setProperty("progressLogFormatter.targets", "processedCount,dummy");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                new ProgressJsonLogFormatter();
+            }
+        });
+        assertThat(e.getMessage(), is("[dummy] is unknown target. property name = [progressLogFormatter.targets]"));
+    }
+}
@@ -0,0 +1,174 @@
+package nablarch.fw.handler;
+
+import static nablarch.fw.handler.LoopHandlerTestSupport.NOP_TRANSACTION_FACTORY;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import nablarch.fw.DataReader;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+import nablarch.fw.handler.ProgressReporter.Progress;
+import nablarch.test.support.log.app.OnMemoryLogWriter;
+
+/**
+ * {@link ProgressReporter}のテスト。
+ */
+public class ProgressReporterTest {
+
+    /** 指定した時間待機するアクション。 */
+    private static Handler<Integer, Result> sleepAction(final long millis) {
+        return new Handler<Integer, Result>() {
+            public Result handle(Integer data, ExecutionContext ctx) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(millis);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return new Result.Success();
+            }
+        };
+    }
+
+    /** 1から指定件数までの整数を返し、総件数の見込みを提供するデータリーダ。 */
+    private static class CountableReader implements DataReader<Integer>, ProgressReporter.TotalCountAware {
+
+        private final int size;
+
+        private int count = 0;
+
+        CountableReader(int size) {
+            this.size = size;
+        }
+
+        public synchronized Integer read(ExecutionContext ctx) {
+            return count < size ? ++count : null;
+        }
+
+        public synchronized boolean hasNext(ExecutionContext ctx) {
+            return count < size;
+        }
+
+        public void close(ExecutionContext ctx) {
+        }
+
+        public long getTotalCountHint(ExecutionContext context) {
+            return size;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        OnMemoryLogWriter.clear();
+    }
+
+    /** 処理中は一定間隔毎に、処理終了時には最終的な進捗状況がログに出力されること。 */
+    @Test
+    public void testMultiThreadExecutionHandler() {
+        ProgressReporter reporter = new ProgressReporter().setReportInterval(50);
+        new ExecutionContext()
+                .setDataReader(new CountableReader(20))
+                .addHandler(new MultiThreadExecutionHandler()
+                        .setConcurrentNumber(2)
+                        .setProgressReporter(reporter))
+                .addHandler(new LoopHandler()
+                        .setTransactionFactory(NOP_TRANSACTION_FACTORY)
+                        .setCommitInterval(2)
+                        .setProgressReporter(reporter))
+                .addHandler(new DataReadHandler().setProgressReporter(reporter))
+                .addHandler(sleepAction(10))
+                .handleNext(null);
+
+        List<String> logs = OnMemoryLogWriter.getMessages("writer.appLog");
+        int reports = 0;
+        for (String log : logs) {
+            if (log.contains("@@@@ PROGRESS @@@@")) {
+                reports++;
+            }
+        }
+        assertTrue("処理中の出力と処理終了時の出力が行われること", reports >= 2);
+        assertThat(logs, hasItem(containsString(
+                "@@@@ PROGRESS @@@@ processed = [20] committed = [20] total = [20] progress(%) = [100.0]")));
+
+        Progress progress = reporter.getProgress();
+        assertThat(progress.getProcessedCount(), is(20L));
+        assertThat(progress.getCommittedCount(), is(20L));
+        assertTrue(progress.getThroughput() > 0);
+        assertTrue(progress.getAverageLatencyMicros() >= TimeUnit.MILLISECONDS.toMicros(10));
+        assertThat(progress.getEstimatedRemainingMillis(), is(0L));
+    }
+
+    /** 設定した総件数が、データリーダの見込み件数より優先されること。 */
+    @Test
+    public void testTotalCount() {
+        ProgressReporter reporter = new ProgressReporter().setTotalCount(100);
+        new ExecutionContext()
+                .setDataReader(new CountableReader(10))
+                .addHandler(new MultiThreadExecutionHandler().setProgressReporter(reporter))
+                .addHandler(new DbLessLoopHandler())
+                .addHandler(new DataReadHandler().setProgressReporter(reporter))
+                .addHandler(sleepAction(0))
+                .handleNext(null);
+
+        Progress progress = reporter.getProgress();
+        assertThat(progress.getProcessedCount(), is(10L));
+        assertThat(progress.getCommittedCount(), is(0L));
+        assertThat(progress.getTotalCount(), is(100L));
+        assertThat(progress.getProgressRate(), is(10.0));
+        assertTrue(progress.getEstimatedRemainingMillis() >= 0);
+    }
+
+    /** 進捗状況の取得では移動平均が更新されず、処理件数のみ現時点の値となること。 */
+    @Test
+    public void testGetProgressDoesNotUpdateMovingAverage() throws Exception {
+        ProgressReporter reporter = new ProgressReporter();
+        reporter.start(new ExecutionContext());
+        reporter.recordProcessed(1, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(1));
+        reporter.finish();
+        Progress reported = reporter.getProgress();
+
+        TimeUnit.MILLISECONDS.sleep(20);
+        reporter.recordProcessed(10, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5));
+        Progress first = reporter.getProgress();
+        Progress second = reporter.getProgress();
+
+        assertThat(first.getProcessedCount(), is(11L));
+        assertThat(first.getThroughput(), is(reported.getThroughput()));
+        assertThat(first.getAverageLatencyMicros(), is(reported.getAverageLatencyMicros()));
+        assertThat(second.getThroughput(), is(reported.getThroughput()));
+    }
+
+    /** 総件数が分からない場合は、進捗率と残り時間の見込みが出力されないこと。 */
+    @Test
+    public void testUnknownTotalCount() {
+        Progress progress = new Progress(10, 10, -1, 1000, 10.0, 100);
+        assertThat(progress.isTotalCountKnown(), is(false));
+        assertThat(progress.getProgressRate(), is(-1.0));
+        assertThat(progress.getEstimatedRemainingMillis(), is(-1L));
+        assertThat(new ProgressLogFormatter().getProgressLogMsg(progress), is("@@@@ PROGRESS @@@@"
+                + " processed = [10] committed = [10] total = [-] progress(%) = [-]"
+                + " throughput(records/sec) = [10.0] average latency(us) = [100]"
+                + " elapsed(ms) = [1000] remaining(ms) = [-]"));
+    }
+
+    /** 残り時間の見込みが、残り件数とスループットから算出されること。 */
+    @Test
+    public void testEstimatedRemainingTime() {
+        Progress progress = new Progress(250, 200, 1000, 25000, 10.0, 100000);
+        assertThat(progress.getProgressRate(), is(25.0));
+        assertThat(progress.getEstimatedRemainingMillis(), is(75000L));
+        assertThat(new ProgressLogFormatter().getProgressLogMsg(progress), is("@@@@ PROGRESS @@@@"
+                + " processed = [250] committed = [200] total = [1000] progress(%) = [25.0]"
+                + " throughput(records/sec) = [10.0] average latency(us) = [100000]"
+                + " elapsed(ms) = [25000] remaining(ms) = [75000]"));
+    }
+}
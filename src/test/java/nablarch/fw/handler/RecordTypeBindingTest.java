@@ -16,12 +16,23 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * 固定長ファイルリーダのレコードタイプベースのディスパッチ機能のテスト。
@@ -119,6 +130,102 @@ public class RecordTypeBindingTest {
         assertEquals("totalRecords = 5",       readData.get(3));
         assertEquals("おしまい。",              readData.get(4));
     }
+
+    /** 委譲先メソッドのキャッシュのテストで使用するアクション */
+    public static class CachedAction {
+        public Result doHeader(DataRecord record, ExecutionContext ctx) {
+            return new Result.Success("header");
+        }
+    }
+
+    /**
+     * 委譲先メソッドがクラスとレコードタイプの組み合わせ毎にキャッシュされること。
+     * 一致するメソッドが存在しない場合は、従来通り{@link Result.NotFound}が送出されること。
+     */
+    @Test
+    public void testMethodCache() {
+        RecordTypeBinding binding = new RecordTypeBinding(new CachedAction());
+        DataRecord header = new DataRecord().setRecordType("header");
+        Method method = binding.getMethodBoundTo(header, new ExecutionContext());
+        assertNotNull(method);
+        assertEquals("doHeader", method.getName());
+        assertSame(method, binding.getMethodBoundTo(header, new ExecutionContext()));
+        assertSame("別インスタンスでもキャッシュが共有されること", method,
+                new RecordTypeBinding(new CachedAction()).getMethodBoundTo(header, new ExecutionContext()));
+
+        assertEquals("header", binding.handle(header, new ExecutionContext()).getMessage());
+
+        DataRecord unknown = new DataRecord().setRecordType("Unknown");
+        assertNull(binding.getMethodBoundTo(unknown, new ExecutionContext()));
+        try {
+            binding.handle(unknown, new ExecutionContext());
+            fail();
+        } catch (Result.NotFound e) {
+            assertTrue(e.getMessage().startsWith("Couldn't find method to delegate."));
+        }
+    }
+
+    /**
+     * キャッシュが委譲対象のクラスのクラスローダを保持し続けないこと。
+     */
+    @Test
+    public void testMethodCacheDoesNotPinClassLoader() throws Exception {
+        WeakReference<ClassLoader> loaderRef = bindWithIsolatedLoader();
+        for (int i = 0; i < 50 && loaderRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        assertNull(loaderRef.get());
+    }
+
+    private static WeakReference<ClassLoader> bindWithIsolatedLoader() throws Exception {
+        ClassLoader loader = new IsolatingClassLoader(CachedAction.class.getName());
+        Class<?> actionClass = loader.loadClass(CachedAction.class.getName());
+        assertNotSame(CachedAction.class, actionClass);
+        RecordTypeBinding binding = new RecordTypeBinding(actionClass.newInstance());
+        assertNotNull(binding.getMethodBoundTo(new DataRecord().setRecordType("header"), new ExecutionContext()));
+        return new WeakReference<ClassLoader>(loader);
+    }
+
+    /** 指定したクラスのみを自身で定義するクラスローダ。 */
+    private static class IsolatingClassLoader extends ClassLoader {
+
+        private final String isolatedClassName;
+
+        IsolatingClassLoader(String isolatedClassName) {
+            super(RecordTypeBindingTest.class.getClassLoader());
+            this.isolatedClassName = isolatedClassName;
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(isolatedClassName)) {
+                return super.loadClass(name, resolve);
+            }
+            Class<?> loaded = findLoadedClass(name);
+            if (loaded != null) {
+                return loaded;
+            }
+            try {
+                InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+                try {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                    byte[] bytes = out.toByteArray();
+                    return defineClass(name, bytes, 0, bytes.length);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
     private DataRecordFormatter createFormatter(String filePath) {
         return new FormatterFactory().setCacheLayoutFileDefinition(false).createFormatter(new File(filePath));
     }
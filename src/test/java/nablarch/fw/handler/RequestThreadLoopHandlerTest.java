@@ -8,12 +8,15 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
 import org.hamcrest.CoreMatchers;
 
 import nablarch.fw.DataReader;
+import nablarch.fw.DataReaderFactory;
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.Handler;
 import nablarch.fw.Result;
@@ -320,6 +323,101 @@ public class RequestThreadLoopHandlerTest {
         sut.handle(null, originalContext);
     }
 
+    /**
+     * 実行コンテキストを再利用する場合、同じ実行コンテキストが後続ハンドラに渡され、
+     * リクエストスコープの変数が後続のリクエストに引き継がれないこと。
+     */
+    @Test
+    public void testReuseContext() {
+        final StandaloneExecutionContext originalContext = new StandaloneExecutionContext();
+        originalContext.setDataReader(new TestDataReader(createReadData(3)));
+        originalContext.setSessionScopedVar("session", "shared");
+
+        final List<ExecutionContext> contexts = new ArrayList<ExecutionContext>();
+        final List<Object> leaked = new ArrayList<Object>();
+        originalContext.addHandler(new DataReadHandler());
+        originalContext.addHandler(new Handler<String, Result>() {
+            @Override
+            public Result handle(String data, ExecutionContext context) {
+                contexts.add(context);
+                leaked.add(context.getRequestScopedVar("request"));
+                assertThat(context.<String>getSessionScopedVar("session"), is("shared"));
+                assertThat("最後に読み込んだデータは当該リクエストのものであること",
+                        context.<String>getLastReadData(), is(data));
+                context.setRequestScopedVar("request", data);
+                if (data.equals("2")) {
+                    // リクエストスコープを差し替えた場合も引き継がれないこと
+                    context.setRequestScopeMap(new HashMap<String, Object>());
+                    context.setRequestScopedVar("request", data);
+                }
+                return new Result.Success(data);
+            }
+        });
+
+        Result result = new RequestThreadLoopHandler().setReuseContext(true).handle(null, originalContext);
+
+        assertThat(result.getMessage(), is("3"));
+        assertThat(contexts.size(), is(3));
+        assertThat(contexts.get(1), is(sameInstance(contexts.get(0))));
+        assertThat(contexts.get(2), is(sameInstance(contexts.get(0))));
+        assertThat(contexts.get(0), is(not(sameInstance((ExecutionContext) originalContext))));
+        assertThat(contexts.get(0), CoreMatchers.<ExecutionContext>instanceOf(StandaloneExecutionContext.class));
+        assertThat(leaked, is(Arrays.<Object>asList(null, null, null)));
+        assertThat("元の実行コンテキストのハンドラキューは変更されないこと",
+                originalContext.getHandlerQueue().size(), is(2));
+    }
+
+    /** 実行コンテキストを再利用する場合、後続ハンドラが設定したデータリーダファクトリが後続のリクエストに引き継がれないこと。 */
+    @Test
+    public void testReuseContextResetsReaderFactory() {
+        final ExecutionContext originalContext = new ExecutionContext();
+        final DataReader<String> reader = new TestDataReader(createReadData(2));
+        originalContext.setDataReader(reader);
+
+        final List<Object> readers = new ArrayList<Object>();
+        originalContext.addHandler(new DataReadHandler());
+        originalContext.addHandler(new Handler<String, Result>() {
+            @Override
+            public Result handle(String data, ExecutionContext context) {
+                if (data.equals("1")) {
+                    context.setDataReaderFactory(new DataReaderFactory<String>() {
+                        public DataReader<String> createReader(ExecutionContext ctx) {
+                            return new TestDataReader(createReadData(1));
+                        }
+                    });
+                } else {
+                    context.setDataReader(null);
+                    readers.add(context.getDataReader());
+                }
+                return new Result.Success(data);
+            }
+        });
+
+        new RequestThreadLoopHandler().setReuseContext(true).handle(null, originalContext);
+
+        assertThat(readers.size(), is(1));
+        assertThat("元の実行コンテキストのデータリーダが取得されること",
+                readers.get(0), is(sameInstance((Object) reader)));
+    }
+
+    /** 実行コンテキストを再利用しない場合は、リクエスト毎に実行コンテキストのコピーが渡されること。 */
+    @Test
+    public void testNotReuseContext() {
+        ExecutionContext ctx = new ExecutionContext();
+        ctx.setDataReader(new TestDataReader(createReadData(2)));
+        final List<ExecutionContext> contexts = new ArrayList<ExecutionContext>();
+        ctx.addHandler(new Handler<String, Result>() {
+            public Result handle(String request, ExecutionContext context) {
+                contexts.add(context);
+                context.readNextData();
+                return new Result.Success();
+            }
+        });
+        new RequestThreadLoopHandler().handle(null, ctx);
+        assertThat(contexts.size(), is(2));
+        assertThat(contexts.get(1), is(not(sameInstance(contexts.get(0)))));
+    }
+
     /** テスト用のデータを作成する。 */
     private static List<String> createReadData(int dataCount) {
         List<String> data = new ArrayList<String>();
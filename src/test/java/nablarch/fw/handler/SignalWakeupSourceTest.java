@@ -0,0 +1,93 @@
+package nablarch.fw.handler;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+import nablarch.fw.handler.ProcessStopHandler.ProcessStop;
+
+/**
+ * {@link SignalWakeupSource}及び{@link ProcessResidentHandler}の起床要求連携のテスト。
+ */
+public class SignalWakeupSourceTest {
+
+    /** 起床要求がない場合は、最大待機時間の経過後に復帰すること。 */
+    @Test
+    public void testTimeout() throws Exception {
+        SignalWakeupSource source = new SignalWakeupSource();
+        long start = System.nanoTime();
+        assertThat(source.await(100), is(false));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+    }
+
+    /** 待機前の起床要求は保持され、複数回の要求も1回として扱われること。 */
+    @Test
+    public void testSignalBeforeAwait() throws Exception {
+        SignalWakeupSource source = new SignalWakeupSource();
+        source.signal();
+        source.signal();
+        assertThat(source.await(10000), is(true));
+        assertThat(source.await(10), is(false));
+    }
+
+    /** 待機中の起床要求で即座に復帰すること。 */
+    @Test
+    public void testSignalWhileWaiting() throws Exception {
+        final SignalWakeupSource source = new SignalWakeupSource();
+        Thread signaler = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                source.signal();
+            }
+        };
+        long start = System.nanoTime();
+        signaler.start();
+        assertThat(source.await(10000), is(true));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        signaler.join();
+    }
+
+    /**
+     * {@link ProcessResidentHandler}に設定した場合、データ監視間隔の経過を待たずに
+     * 起床要求により後続ハンドラが呼び出されること。
+     */
+    @Test
+    public void testProcessResidentHandler() {
+        final SignalWakeupSource source = new SignalWakeupSource();
+        final AtomicInteger count = new AtomicInteger();
+        ProcessResidentHandler handler = new ProcessResidentHandler();
+        handler.setDataWatchInterval(60000);
+        handler.setWakeupSource(source);
+
+        long start = System.nanoTime();
+        new ExecutionContext()
+                .addHandler(handler)
+                .addHandler(new Handler<Object, Result>() {
+                    public Result handle(Object data, ExecutionContext ctx) {
+                        if (count.incrementAndGet() == 3) {
+                            throw new ProcessStop(0);
+                        }
+                        // 処理中の起床要求により、次の待機は即座に終了する。
+                        source.signal();
+                        return new Result.Success();
+                    }
+                })
+                .handleNext(null);
+
+        assertThat(count.get(), is(3));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+    }
+}
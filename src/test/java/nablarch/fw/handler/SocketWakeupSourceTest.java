@@ -0,0 +1,84 @@
+package nablarch.fw.handler;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link SocketWakeupSource}のテスト。
+ */
+public class SocketWakeupSourceTest {
+
+    private SocketWakeupSource source;
+
+    private int port;
+
+    @Before
+    public void setUp() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        port = socket.getLocalPort();
+        socket.close();
+        source = new SocketWakeupSource();
+        source.setPort(port);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        source.dispose();
+    }
+
+    /** 接続がない場合は、最大待機時間の経過後に復帰すること。 */
+    @Test
+    public void testTimeout() throws Exception {
+        assertThat(source.await(50), is(false));
+    }
+
+    /** 待機していない間の接続も保持され、次回の待機で即座に復帰すること。 */
+    @Test
+    public void testPing() throws Exception {
+        assertThat(source.await(1), is(false));
+        SocketWakeupSource.ping(port);
+        assertThat(source.await(10000), is(true));
+        assertThat(source.await(50), is(false));
+    }
+
+    /** 初期化後は、最初の待機より前に行われた接続も保持されること。 */
+    @Test
+    public void testPingBeforeFirstAwait() throws Exception {
+        source.initialize();
+        SocketWakeupSource.ping(port);
+        assertThat(source.await(10000), is(true));
+        assertThat(source.await(50), is(false));
+    }
+
+    /** 破棄後は接続できないこと。 */
+    @Test
+    public void testDispose() throws Exception {
+        assertThat(source.await(1), is(false));
+        source.dispose();
+        try {
+            SocketWakeupSource.ping(port);
+            fail();
+        } catch (IOException e) {
+            // OK
+        }
+    }
+
+    /** ポートを設定していない場合は例外が送出されること。 */
+    @Test
+    public void testPortNotSpecified() throws Exception {
+        try {
+            new SocketWakeupSource().await(1);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("port is not specified."));
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package nablarch.fw.handler.retry;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Result;
+import nablarch.fw.handler.RetryHandler;
+import nablarch.fw.handler.RetryHandler.RetryContext;
+import nablarch.fw.handler.retry.ExponentialBackoffRetryContext.Clock;
+import nablarch.fw.handler.retry.ExponentialBackoffRetryContext.Sleeper;
+import nablarch.fw.launcher.ProcessAbnormalEnd;
+
+/**
+ * {@link ExponentialBackoffRetryContextFactory}及び{@link ExponentialBackoffRetryContext}のテスト。
+ */
+public class ExponentialBackoffRetryContextFactoryTest {
+
+    /** 待機した時間の記録 */
+    private final List<Long> sleeps = new ArrayList<Long>();
+
+    /** 現在時刻 */
+    private long now = 0;
+
+    private ExponentialBackoffRetryContextFactory factory;
+
+    /** 常に指定した値を返す乱数 */
+    private static Random fixedRandom(final double value) {
+        return new Random() {
+            @Override
+            public double nextDouble() {
+                return value;
+            }
+        };
+    }
+
+    @Before
+    public void setUp() {
+        factory = new ExponentialBackoffRetryContextFactory();
+        factory.setClock(new Clock() {
+            public long currentTimeMillis() {
+                return now;
+            }
+        });
+        factory.setSleeper(new Sleeper() {
+            public void sleep(long millis) {
+                sleeps.add(millis);
+                now += millis;
+            }
+        });
+    }
+
+    /** 待機時間の上限が倍率に従って最大間隔まで延びること。 */
+    @Test
+    public void testUpperBound() {
+        factory.setRetryCount(6);
+        factory.setBaseInterval(100);
+        factory.setMaxInterval(1000);
+        factory.setRandom(fixedRandom(0.9999999));
+
+        RetryContext context = factory.createRetryContext();
+        while (context.isRetryable()) {
+            context.prepareRetry();
+        }
+        assertThat(context.getCurrentRetryCount(), is(6));
+        assertThat(sleeps, is(Arrays.asList(100L, 200L, 400L, 800L, 1000L, 1000L)));
+    }
+
+    /** 待機時間が0から上限までの範囲でばらつくこと。 */
+    @Test
+    public void testFullJitter() {
+        factory.setRetryCount(3);
+        factory.setBaseInterval(1000);
+        factory.setMaxInterval(1000);
+        factory.setRandom(new Random(0));
+
+        for (int i = 0; i < 100; i++) {
+            RetryContext context = factory.createRetryContext();
+            while (context.isRetryable()) {
+                context.prepareRetry();
+            }
+        }
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (Long sleep : sleeps) {
+            assertTrue(String.valueOf(sleep), sleep >= 0 && sleep <= 1000);
+            min = Math.min(min, sleep);
+            max = Math.max(max, sleep);
+        }
+        assertTrue("min = " + min, min < 100);
+        assertTrue("max = " + max, max > 900);
+    }
+
+    /** 倍率を変更した場合は、その倍率で上限が延びること。 */
+    @Test
+    public void testMultiplier() {
+        factory.setRetryCount(3);
+        factory.setBaseInterval(10);
+        factory.setMultiplier(3);
+        factory.setRandom(fixedRandom(0.9999999));
+
+        RetryContext context = factory.createRetryContext();
+        while (context.isRetryable()) {
+            context.prepareRetry();
+        }
+        assertThat(sleeps, is(Arrays.asList(10L, 30L, 90L)));
+
+        try {
+            factory.setMultiplier(0.9);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("multiplier must be 1.0 or more. specified value is:0.9"));
+        }
+    }
+
+    /** 最長リトライ時間を超えた場合は、リトライ状態がリセットされること。 */
+    @Test
+    public void testMaxRetryTime() {
+        factory.setRetryCount(2);
+        factory.setBaseInterval(100);
+        factory.setMaxRetryTime(1000);
+        factory.setRandom(fixedRandom(0));
+
+        RetryContext context = factory.createRetryContext();
+        context.prepareRetry();
+        context.prepareRetry();
+        assertThat(context.isRetryable(), is(false));
+
+        now += 1001;
+        assertThat(context.isRetryable(), is(true));
+        assertThat(context.getCurrentRetryCount(), is(0));
+    }
+
+    /** 最長リトライ時間が待機時間の合計の最大値以下の場合は例外が送出されること。 */
+    @Test
+    public void testMaxRetryTimeTooShort() {
+        factory.setRetryCount(3);
+        factory.setBaseInterval(100);
+        factory.setMaxRetryTime(700);
+        try {
+            factory.createRetryContext();
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("maxRetryTime was too short. "
+                    + "must be set value greater than minRetryTime to maxRetryTime. "
+                    + "minRetryTime = [700], maxRetryTime = [700]"));
+        }
+    }
+
+    /** {@link RetryHandler}に設定した場合に、リトライ毎に待機時間が延びること。 */
+    @Test
+    public void testRetryHandler() {
+        factory.setRetryCount(3);
+        factory.setBaseInterval(50);
+        factory.setRandom(fixedRandom(0.9999999));
+        RetryHandler handler = new RetryHandler();
+        handler.setRetryContextFactory(factory);
+        handler.setRetryLimitExceededFailureCode("DUMMY");
+
+        final int[] count = {0};
+        Result result = new ExecutionContext()
+                .addHandler(handler)
+                .addHandler(new Handler<Object, Result>() {
+                    public Result handle(Object data, ExecutionContext ctx) {
+                        if (++count[0] < 3) {
+                            throw new RetryableException("retry");
+                        }
+                        return new Result.Success();
+                    }
+                })
+                .handleNext(null);
+        assertThat(result.isSuccess(), is(true));
+        assertThat(sleeps, is(Arrays.asList(50L, 100L)));
+
+        // リトライ上限を超えた場合
+        sleeps.clear();
+        try {
+            new ExecutionContext()
+                    .addHandler(handler)
+                    .addHandler(new Handler<Object, Result>() {
+                        public Result handle(Object data, ExecutionContext ctx) {
+                            throw new RetryableException("retry");
+                        }
+                    })
+                    .handleNext(null);
+            fail();
+        } catch (ProcessAbnormalEnd e) {
+            assertThat(sleeps, is(Arrays.asList(50L, 100L, 200L)));
+        }
+    }
+}
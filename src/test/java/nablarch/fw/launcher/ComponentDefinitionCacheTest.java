@@ -0,0 +1,131 @@
+package nablarch.fw.launcher;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nablarch.core.repository.di.ComponentDefinition;
+import nablarch.core.repository.di.DiContainer;
+
+/**
+ * {@link ComponentDefinitionCache}のテスト。
+ */
+public class ComponentDefinitionCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** テストで使用するコンポーネント */
+    public static class Bean {
+        private String value;
+        public String getValue() {
+            return value;
+        }
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+
+    private final ComponentDefinitionCache cache = new ComponentDefinitionCache();
+
+    private File root;
+
+    private File child;
+
+    @Before
+    public void setUp() throws Exception {
+        root = folder.newFile("root.xml");
+        child = folder.newFile("child.xml");
+        write(root, "<import file=\"" + path(child) + "\" />"
+                + "<component name=\"rootBean\" class=\"" + Bean.class.getName() + "\">"
+                + "<property name=\"value\" value=\"root\" /></component>");
+        writeChild("child");
+    }
+
+    /** 設定ファイルが変更されていない場合は、キャッシュしたコンポーネント定義が使用されること。 */
+    @Test
+    public void testCacheHit() {
+        DiContainer first = new DiContainer(cache.getLoader(path(root)));
+        DiContainer second = new DiContainer(cache.getLoader(path(root)));
+
+        Bean rootBean = second.getComponentByName("rootBean");
+        Bean childBean = second.getComponentByName("childBean");
+        assertThat(rootBean.getValue(), is("root"));
+        assertThat(childBean.getValue(), is("child"));
+        assertThat("コンポーネントはコンテナ毎に生成されること",
+                rootBean, not(sameInstance(first.<Bean>getComponentByName("rootBean"))));
+
+        List<ComponentDefinition> definitions = cache.load(path(root), new DiContainer(cache.getLoader(path(root))));
+        assertThat(definitions.get(0), sameInstance(cache.load(path(root), second).get(0)));
+    }
+
+    /** キャッシュを使用した場合も、コンテナが採番するIDがコンポーネント定義のIDと重複しないこと。 */
+    @Test
+    public void testReserveIds() {
+        new DiContainer(cache.getLoader(path(root)));
+        DiContainer container = new DiContainer(cache.getLoader(path(root)));
+        int maxId = 0;
+        for (ComponentDefinition definition : cache.load(path(root), new DiContainer(cache.getLoader(path(root))))) {
+            maxId = Math.max(maxId, definition.getId());
+        }
+        assertTrue(container.generateId() > maxId);
+    }
+
+    /** インポートした設定ファイルが変更された場合は、再度読み込まれること。 */
+    @Test
+    public void testImportedFileModified() throws Exception {
+        DiContainer first = new DiContainer(cache.getLoader(path(root)));
+        assertThat(first.<Bean>getComponentByName("childBean").getValue(), is("child"));
+
+        writeChild("modified");
+        DiContainer second = new DiContainer(cache.getLoader(path(root)));
+        assertThat(second.<Bean>getComponentByName("childBean").getValue(), is("modified"));
+    }
+
+    /** ディレクトリを指定したインポートを含む場合は、キャッシュされないこと。 */
+    @Test
+    public void testDirectoryImport() {
+        String path = "nablarch/fw/launcher/definitioncache/import-dir.xml";
+        DiContainer container = new DiContainer(cache.getLoader(path));
+        assertThat(container.<Bean>getComponentByName("childBean"), is(notNullValue()));
+
+        List<ComponentDefinition> first = cache.load(path, new DiContainer(cache.getLoader(path)));
+        List<ComponentDefinition> second = cache.load(path, new DiContainer(cache.getLoader(path)));
+        assertThat(second.get(0), not(sameInstance(first.get(0))));
+    }
+
+    private void writeChild(String value) throws IOException {
+        write(child, "<component name=\"childBean\" class=\"" + Bean.class.getName() + "\">"
+                + "<property name=\"value\" value=\"" + value + "\" /></component>");
+    }
+
+    private static String path(File file) {
+        return "file:" + file.getAbsolutePath();
+    }
+
+    private static void write(File file, String components) throws IOException {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<component-configuration xmlns=\"http://tis.co.jp/nablarch/component-configuration\">"
+                + components
+                + "</component-configuration>";
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(xml.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package nablarch.fw.launcher;
 
 import nablarch.core.repository.SystemRepository;
+import nablarch.fw.launcher.LaunchPhaseTimings.Phase;
 import nablarch.fw.results.BadRequest;
 import org.junit.After;
 import org.junit.Before;
@@ -8,7 +9,12 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import nablarch.test.support.log.app.OnMemoryLogWriter;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.hasItem;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -45,6 +51,32 @@ public class GenericLauncherTest {
         assertFalse(mock.vmShutdown);
     }
 
+    /** フェーズ毎の処理時間が記録され、ログに出力されること。 */
+    @Test
+    public void testPhaseTimings() {
+        OnMemoryLogWriter.clear();
+        GenericLauncher sut = new GenericLauncher(args) {
+            @Override
+            protected void initializeRepository() {
+                super.initializeRepository();
+                sleep(100);
+            }
+        };
+        sut.launch();
+
+        assertTrue(sut.getPhaseTimings().get(Phase.DI_LOADING) >= 100);
+        assertThat(OnMemoryLogWriter.getMessages("writer.appLog"),
+                hasItem(containsString("@@@@ PHASE TIMES @@@@")));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /** LifeCycleが定義されていない場合、例外が発生すること。 */
     @Test
     public void testLifecycleNotFound() {
@@ -0,0 +1,284 @@
+package nablarch.fw.launcher;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import nablarch.core.log.LogUtil;
+import nablarch.core.repository.ObjectLoader;
+import nablarch.core.repository.SystemRepository;
+import nablarch.test.support.db.helper.DatabaseTestRunner;
+import nablarch.test.support.log.app.OnMemoryLogWriter;
+
+/**
+ * {@link LauncherDaemon}のテスト。
+ */
+@RunWith(DatabaseTestRunner.class)
+public class LauncherDaemonTest {
+
+    private LauncherDaemon daemon;
+
+    private ExecutorService executor;
+
+    private Future<Object> running;
+
+    private int port;
+
+    private File tokenFile;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        System.clearProperty("nablarch.appLog.filePath");
+        LogUtil.removeAllObjectsBoundToContextClassLoader();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        SystemRepository.clear();
+        OnMemoryLogWriter.clear();
+        tokenFile = new File(folder.getRoot(), "launcher-daemon.token");
+        daemon = new LauncherDaemon(0, tokenFile) {
+            @Override
+            protected int execute(String[] args) {
+                if (args.length == 1 && args[0].equals("runtime-error")) {
+                    throw new IllegalStateException("runtime error.");
+                }
+                return super.execute(args);
+            }
+        }.setReadTimeout(500);
+        port = daemon.open();
+        executor = Executors.newSingleThreadExecutor();
+        running = executor.submit(new Callable<Object>() {
+            public Object call() throws Exception {
+                daemon.run();
+                return null;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        daemon.stop();
+        running.get(10, TimeUnit.SECONDS);
+        executor.shutdownNow();
+        SystemRepository.clear();
+    }
+
+    /** 依頼したバッチが実行され、{@link Main}で実行した場合と同じ終了コードが返されること。 */
+    @Test
+    public void testSubmit() throws Exception {
+        assertThat(LauncherDaemon.submit(port, tokenFile,
+                "-diConfig", "nablarch/fw/launcher/main.xml",
+                "-requestPath", "nablarch.fw.launcher.testaction.NormalEndAction/RS100",
+                "-userId", "hoge"), is(0));
+        assertThat(LauncherDaemon.submit(port, tokenFile,
+                "-diConfig", "nablarch/fw/launcher/main.xml",
+                "-requestPath", "nablarch.fw.launcher.testaction.AbnormalEndAction/RS100",
+                "-userId", "hoge"), is(100));
+        assertThat(LauncherDaemon.submit(port, tokenFile,
+                "-diConfig", "nablarch/fw/launcher/main.xml",
+                "-requestPath", "nablarch.fw.launcher.testaction.AbnormalEndAction2/RS100",
+                "-userId", "hoge"), is(20));
+
+        List<String> logs = OnMemoryLogWriter.getMessages("writer.appLog");
+        assertTrue(contains(logs, "@@@@ END @@@@ exit code = [0]"));
+        assertTrue(contains(logs, "@@@@ END @@@@ exit code = [100]"));
+        assertTrue(contains(logs, "@@@@ PHASE TIMES @@@@"));
+    }
+
+    /** バッチの実行後はシステムリポジトリがクリアされ、後続のバッチに引き継がれないこと。 */
+    @Test
+    public void testIsolation() throws Exception {
+        SystemRepository.load(new ObjectLoader() {
+            public Map<String, Object> load() {
+                return Collections.<String, Object>singletonMap("leftover", "value");
+            }
+        });
+        assertThat(LauncherDaemon.submit(port, tokenFile,
+                "-diConfig", "nablarch/fw/launcher/main.xml",
+                "-requestPath", "nablarch.fw.launcher.testaction.NormalEndAction/RS100",
+                "-userId", "hoge"), is(0));
+        assertThat(SystemRepository.get("leftover"), is(nullValue()));
+        assertThat(SystemRepository.get("handlerQueue"), is(nullValue()));
+    }
+
+    /** 必須のオプションが指定されていない場合は、終了コード1が返され、後続の依頼は受け付けられること。 */
+    @Test
+    public void testInvalidCommandLine() throws Exception {
+        assertThat(LauncherDaemon.submit(port, tokenFile, "-diConfig", "nablarch/fw/launcher/main.xml"), is(1));
+        assertTrue(contains(OnMemoryLogWriter.getMessages("writer.appLog"),
+                "invalid command line was submitted to launcher daemon."));
+        assertThat(LauncherDaemon.submit(port, tokenFile,
+                "-diConfig", "nablarch/fw/launcher/main.xml",
+                "-requestPath", "nablarch.fw.launcher.testaction.NormalEndAction/RS100",
+                "-userId", "hoge"), is(0));
+    }
+
+    /** トークンファイルが所有者のみ読み書きできる権限で作成され、停止時に削除されること。 */
+    @Test
+    public void testTokenFile() throws Exception {
+        assertTrue(tokenFile.exists());
+        assertThat(tokenFile.length(), is(64L));
+        Set<?> permissions = posixPermissions(tokenFile);
+        if (permissions != null) {
+            Set<String> names = new TreeSet<String>();
+            for (Object permission : permissions) {
+                names.add(permission.toString());
+            }
+            Set<String> expected = new TreeSet<String>(Arrays.asList("OWNER_READ", "OWNER_WRITE"));
+            assertThat("所有者のみが読み書きできること", names, is(expected));
+        }
+        daemon.stop();
+        assertThat(tokenFile.exists(), is(false));
+    }
+
+    /** トークンが一致しない依頼は、バッチを実行せずに切断されること。 */
+    @Test
+    public void testInvalidToken() throws Exception {
+        File invalid = folder.newFile("invalid.token");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(invalid), "UTF-8");
+        try {
+            writer.write("0000000000000000000000000000000000000000000000000000000000000000");
+        } finally {
+            writer.close();
+        }
+        try {
+            LauncherDaemon.submit(port, invalid,
+                    "-diConfig", "nablarch/fw/launcher/main.xml",
+                    "-requestPath", "nablarch.fw.launcher.testaction.NormalEndAction/RS100",
+                    "-userId", "hoge");
+            fail();
+        } catch (EOFException e) {
+            // 応答を返さずに切断される。
+        }
+        List<String> logs = OnMemoryLogWriter.getMessages("writer.appLog");
+        assertTrue(contains(logs, "request with an invalid token was rejected."));
+        assertThat(contains(logs, "@@@@ END @@@@"), is(false));
+    }
+
+    /** 引数の数が上限を超える依頼は破棄され、後続の依頼は受け付けられること。 */
+    @Test
+    public void testTooManyArguments() throws Exception {
+        Socket socket = new Socket(InetAddress.getByName(null), port);
+        try {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF(readToken());
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+            assertThat(socket.getInputStream().read(), is(-1));
+        } finally {
+            socket.close();
+        }
+        assertTrue(contains(OnMemoryLogWriter.getMessages("writer.appLog"),
+                "invalid argument count was received. count = [2147483647], max = [1024]"));
+        assertThat(submitNormalEnd(), is(0));
+    }
+
+    /** 依頼元が送信しない場合は読み込みタイムアウトで破棄され、後続の依頼は受け付けられること。 */
+    @Test(timeout = 30000)
+    public void testReadTimeout() throws Exception {
+        Socket socket = new Socket(InetAddress.getByName(null), port);
+        try {
+            assertThat(submitNormalEnd(), is(0));
+            assertTrue(contains(OnMemoryLogWriter.getMessages("writer.appLog"),
+                    "failed to communicate with launcher daemon client."));
+        } finally {
+            socket.close();
+        }
+    }
+
+    /** 依頼の処理中に実行時例外が発生した場合もデーモンは停止せず、後続の依頼は受け付けられること。 */
+    @Test
+    public void testRuntimeException() throws Exception {
+        try {
+            LauncherDaemon.submit(port, tokenFile, "runtime-error");
+            fail();
+        } catch (EOFException e) {
+            // 終了コードを返さずに切断される。
+        }
+        assertTrue(contains(OnMemoryLogWriter.getMessages("writer.appLog"),
+                "failed to process launcher daemon request."));
+        assertThat(submitNormalEnd(), is(0));
+    }
+
+    private int submitNormalEnd() throws Exception {
+        return LauncherDaemon.submit(port, tokenFile,
+                "-diConfig", "nablarch/fw/launcher/main.xml",
+                "-requestPath", "nablarch.fw.launcher.testaction.NormalEndAction/RS100",
+                "-userId", "hoge");
+    }
+
+    private String readToken() throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(tokenFile), "UTF-8"));
+        try {
+            return reader.readLine();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /** POSIXのファイル権限を取得する。(取得できない実行環境では{@code null}) */
+    private static Set<?> posixPermissions(File file) throws Exception {
+        try {
+            Class<?> files = Class.forName("java.nio.file.Files");
+            Class<?> path = Class.forName("java.nio.file.Path");
+            Class<?> linkOption = Class.forName("java.nio.file.LinkOption");
+            Object filePath = File.class.getMethod("toPath").invoke(file);
+            Object options = Array.newInstance(linkOption, 0);
+            return (Set<?>) files.getMethod("getPosixFilePermissions", path, options.getClass())
+                    .invoke(null, filePath, options);
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            // POSIXのファイル権限をサポートしないファイルシステム
+            return null;
+        }
+    }
+
+    private static boolean contains(List<String> logs, String expected) {
+        for (String log : logs) {
+            if (log.contains(expected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
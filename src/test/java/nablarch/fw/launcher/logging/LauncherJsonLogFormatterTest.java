@@ -6,6 +6,8 @@ import nablarch.core.text.json.JsonSerializationManager;
 import nablarch.core.text.json.JsonSerializationSettings;
 import nablarch.core.text.json.JsonSerializer;
 import nablarch.fw.launcher.CommandLine;
+import nablarch.fw.launcher.LaunchPhaseTimings;
+import nablarch.fw.launcher.LaunchPhaseTimings.Phase;
 import org.junit.Test;
 import org.junit.function.ThrowingRunnable;
 
@@ -296,6 +298,54 @@ public class LauncherJsonLogFormatterTest extends LogTestSupport {
         assertThat(sut.getEndLogMsg(10, 20), is("$JSON$mock serialization"));
     }
 
+    /**
+     * {@link LauncherJsonLogFormatter#getPhaseTimesLogMsg(LaunchPhaseTimings)}のテスト。
+     * デフォルトの出力項目で正しくフォーマットされること。
+     */
+    @Test
+    public void testGetPhaseTimesLogMsg() {
+        LaunchPhaseTimings timings = new LaunchPhaseTimings();
+        timings.add(Phase.LOG_INITIALIZATION, 1);
+        timings.add(Phase.DI_LOADING, 20);
+        timings.add(Phase.READER_PREPARATION, 300);
+        timings.add(Phase.PROCESSING, 4000);
+        timings.add(Phase.DISPOSAL, 5);
+
+        LauncherLogFormatter formatter = new LauncherJsonLogFormatter();
+
+        String message = formatter.getPhaseTimesLogMsg(timings);
+        assertThat(message.startsWith("$JSON$"), is(true));
+        assertThat(message.substring("$JSON$".length()), isJson(allOf(
+                withJsonPath("$.*", hasSize(6)),
+                withJsonPath("$", hasEntry("label", "BATCH PHASE TIMES")),
+                withJsonPath("$", hasEntry("logInitializationTime", 1)),
+                withJsonPath("$", hasEntry("diLoadingTime", 20)),
+                withJsonPath("$", hasEntry("readerPreparationTime", 300)),
+                withJsonPath("$", hasEntry("processingTime", 4000)),
+                withJsonPath("$", hasEntry("disposalTime", 5)))));
+    }
+
+    /**
+     * {@link LauncherJsonLogFormatter#getPhaseTimesLogMsg(LaunchPhaseTimings)}のテスト。
+     * targets とlabelの値を指定した場合。
+     */
+    @Test
+    public void testGetPhaseTimesLogMsgWithTargets() {
+        System.setProperty("launcherLogFormatter.phaseTimesTargets", "label,processingTime");
+        System.setProperty("launcherLogFormatter.phaseTimesLogMsgLabel", "phase-label");
+        LaunchPhaseTimings timings = new LaunchPhaseTimings();
+        timings.add(Phase.PROCESSING, 4000);
+
+        LauncherLogFormatter formatter = new LauncherJsonLogFormatter();
+
+        String message = formatter.getPhaseTimesLogMsg(timings);
+        assertThat(message.startsWith("$JSON$"), is(true));
+        assertThat(message.substring("$JSON$".length()), isJson(allOf(
+                withJsonPath("$.*", hasSize(2)),
+                withJsonPath("$", hasEntry("label", "phase-label")),
+                withJsonPath("$", hasEntry("processingTime", 4000)))));
+    }
+
     /**
      * {@link nablarch.core.text.json.JsonSerializationManager}のモッククラス。
      */
@@ -10,6 +10,8 @@ import nablarch.core.log.LogTestSupport;
 import nablarch.core.repository.ObjectLoader;
 import nablarch.core.repository.SystemRepository;
 import nablarch.fw.launcher.CommandLine;
+import nablarch.fw.launcher.LaunchPhaseTimings;
+import nablarch.fw.launcher.LaunchPhaseTimings.Phase;
 
 import nablarch.fw.mock.MockBusinessDateProvider;
 import org.junit.AfterClass;
@@ -199,6 +201,43 @@ public class LauncherLogUtilTest extends LogTestSupport {
                         + "], exit code = [1]"));
     }
 
+    /**
+     * {@link LauncherLogUtil#getPhaseTimesLogMsg(LaunchPhaseTimings)}のテスト。
+     */
+    @Test
+    public void testGetPhaseTimesLogMsg() {
+        init();
+        LaunchPhaseTimings timings = new LaunchPhaseTimings();
+        timings.add(Phase.LOG_INITIALIZATION, 1);
+        timings.add(Phase.DI_LOADING, 20);
+        timings.add(Phase.READER_PREPARATION, 300);
+        timings.add(Phase.PROCESSING, 4000);
+        timings.add(Phase.PROCESSING, 1000);
+        timings.add(Phase.DISPOSAL, 6);
+
+        assertThat(LauncherLogUtil.getPhaseTimesLogMsg(timings), is(
+                "@@@@ PHASE TIMES @@@@ log initialization(ms) = [1] di loading(ms) = [20]"
+                        + " reader preparation(ms) = [300] processing(ms) = [5000] disposal(ms) = [6]"));
+    }
+
+    /**
+     * {@link LauncherLogUtil#getPhaseTimesLogMsg(LaunchPhaseTimings)}のテスト。
+     * <p/>
+     * フォーマットをデフォルト設定から変更した場合のテスト
+     */
+    @Test
+    public void testGetPhaseTimesLogMsgOverrideFormat() {
+        init();
+        System.setProperty("launcherLogFormatter.phaseTimesFormat",
+                "@@@@ PHASE TIMES @@@@ di = [$diLoadingTime$], processing = [$processingTime$]");
+        LaunchPhaseTimings timings = new LaunchPhaseTimings();
+        timings.add(Phase.DI_LOADING, 20);
+        timings.add(Phase.PROCESSING, 4000);
+
+        assertThat(LauncherLogUtil.getPhaseTimesLogMsg(timings), is(
+                "@@@@ PHASE TIMES @@@@ di = [20], processing = [4000]"));
+    }
+
     /**
      * {@link LauncherLogFormatter}を拡張した場合のテスト。
      * <p/>